@@ -7,9 +7,12 @@ import eu.okaeri.persistence.document.Document;
 import eu.okaeri.persistence.document.DocumentSerializer;
 import eu.okaeri.persistence.document.DocumentSerializerConfig;
 import eu.okaeri.persistence.document.PersistenceBuilder;
+import eu.okaeri.persistence.document.index.CompoundPropertyIndex;
+import eu.okaeri.persistence.document.index.DocIdDictionary;
 import eu.okaeri.persistence.document.index.IndexExtractor;
 import eu.okaeri.persistence.document.index.IndexProperty;
 import eu.okaeri.persistence.document.index.PropertyIndex;
+import eu.okaeri.persistence.filter.CompiledCondition;
 import eu.okaeri.persistence.filter.DeleteFilter;
 import eu.okaeri.persistence.filter.FindFilter;
 import eu.okaeri.persistence.filter.InMemoryFilterEvaluator;
@@ -20,17 +23,20 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -44,6 +50,7 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
 
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("okaeri.platform.debug", "false"));
     private static final Logger LOGGER = Logger.getLogger(FlatPersistence.class.getSimpleName());
+    private static final int FILE_BUFFER_SIZE = 32 * 1024;
 
     // Core configuration
     private final @Getter PersistencePath basePath;
@@ -55,6 +62,8 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
     // Collection and index tracking
     private final Map<String, PersistenceCollection> knownCollections = new ConcurrentHashMap<>();
     private final Map<String, Map<String, PropertyIndex>> indexMap = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, CompoundPropertyIndex>> compoundIndexMap = new ConcurrentHashMap<>();
+    private final Map<String, DocIdDictionary> dictionaries = new ConcurrentHashMap<>();
     private final IndexQueryOptimizer queryOptimizer = new IndexQueryOptimizer();
 
     // File path helpers
@@ -166,17 +175,23 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
         File collectionFile = collectionPath.toFile();
         collectionFile.mkdirs();
 
-        // Create PropertyIndex for each indexed property
+        // Create PropertyIndex for each indexed property (sharing document ids)
+        DocIdDictionary dictionary = this.dictionaries.computeIfAbsent(
+            collection.getValue(), col -> new DocIdDictionary());
         Map<String, PropertyIndex> indexes = this.indexMap.computeIfAbsent(
             collection.getValue(), col -> new ConcurrentHashMap<>());
         collection.getIndexes().forEach(index ->
-            indexes.put(index.getValue(), new PropertyIndex()));
+            indexes.put(index.getValue(), new PropertyIndex(index, dictionary)));
+        Map<String, CompoundPropertyIndex> compoundIndexes = this.compoundIndexMap.computeIfAbsent(
+            collection.getValue(), col -> new ConcurrentHashMap<>());
+        collection.getCompoundIndexes().forEach(index ->
+            compoundIndexes.put(index.getValue(), new CompoundPropertyIndex(index, dictionary)));
 
         // Track collection
         this.knownCollections.put(collection.getValue(), collection);
 
         // Rebuild indexes from existing documents on disk
-        if (!collection.getIndexes().isEmpty()) {
+        if (!collection.getIndexes().isEmpty() || !collection.getCompoundIndexes().isEmpty()) {
             @Cleanup Stream<PersistenceEntity<Document>> docs = this.stream(collection, Integer.MAX_VALUE);
             docs.forEach(doc -> this.updateIndexes(collection, doc.getPath(), doc.getValue()));
         }
@@ -207,11 +222,7 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
         if (!file.exists()) {
             return Optional.empty();
         }
-        String json = this.fileToString(file);
-        if (json == null) {
-            return Optional.empty();
-        }
-        return Optional.of(this.serializer.deserialize(collection, path, json));
+        return Optional.ofNullable(this.readDocument(collection, path, file.toPath()));
     }
 
     @Override
@@ -244,9 +255,8 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
             .map(filePath -> {
                 String key = this.fileToKeyMapper.apply(filePath);
                 PersistencePath path = PersistencePath.of(key);
-                String json = this.fileToString(filePath.toFile());
-                if (json == null) return null;
-                Document doc = this.serializer.deserialize(collection, path, json);
+                Document doc = this.readDocument(collection, path, filePath);
+                if (doc == null) return null;
                 return new PersistenceEntity<>(path, doc);
             })
             .filter(Objects::nonNull);
@@ -264,48 +274,116 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
     @Override
     public Stream<PersistenceEntity<Document>> find(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
         this.checkCollectionRegistered(collection);
+        return this.readIndexes(collection, () -> this.findMatching(collection, filter));
+    }
+
+    private Stream<PersistenceEntity<Document>> findMatching(PersistenceCollection collection, FindFilter filter) {
+
+        Condition where = filter.getWhere();
+        Map<String, PropertyIndex> indexes = this.indexMap.get(collection.getValue());
+        IndexQueryOptimizer.IndexResult optimized = (where != null) ? this.optimize(collection, where) : null;
+
+        // Walk the index of the first ORDER BY field when only the top of the order is needed
+        PropertyIndex sortIndex = filter.hasOrderBy() ? indexes.get(filter.getOrderBy().get(0).getPath().getValue()) : null;
+        if (sortIndex != null) {
+            boolean indexed = (optimized != null) && !optimized.requiresFullScan();
+            Optional<Stream<PersistenceEntity<Document>>> ordered = this.filterEvaluator.applyIndexOrder(sortIndex,
+                indexed ? optimized.getIds() : null,
+                indexed ? optimized.getRemainingCondition() : where,
+                docId -> {
+                    PersistencePath path = PersistencePath.of(docId);
+                    return this.read(collection, path)
+                        .map(doc -> new PersistenceEntity<>(path, doc))
+                        .orElse(null);
+                }, filter);
+            if (ordered.isPresent()) {
+                return this.serializer.project(ordered.get(), filter);
+            }
+        }
 
         // Start with candidates from index or full scan
-        Stream<PersistenceEntity<Document>> candidates;
+        Stream<PersistenceEntity<Document>> candidates = (where != null)
+            ? this.matching(collection, where, optimized)
+            : this.streamAll(collection);
+
+        // Apply ORDER BY / SKIP / LIMIT, then copy only the selected fields
+        return this.serializer.project(this.filterEvaluator.applyFilter(candidates, filter), filter);
+    }
+
+    @Override
+    public long count(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
+        this.checkCollectionRegistered(collection);
+
         Condition where = filter.getWhere();
+        if (where == null) {
+            return filter.window(this.count(collection));
+        }
 
-        if (where != null) {
-            Map<String, PropertyIndex> indexes = this.indexMap.get(collection.getValue());
-            IndexQueryOptimizer.IndexResult optimized = this.queryOptimizer.optimize(where, indexes);
-
-            if (!optimized.requiresFullScan()) {
-                // Index provides at least partial coverage
-                candidates = optimized.getDocIds().stream()
-                    .map(docId -> {
-                        PersistencePath path = PersistencePath.of(docId);
-                        return this.read(collection, path)
-                            .map(doc -> new PersistenceEntity<>(path, doc))
-                            .orElseGet(() -> {
-                                // Stale index entry - clean up
-                                this.dropIndex(collection, path);
-                                return null;
-                            });
-                    })
-                    .filter(Objects::nonNull);
-
-                // Apply remaining filter if index only partially covered
-                if (optimized.hasRemainingCondition()) {
-                    Condition remaining = optimized.getRemainingCondition();
-                    candidates = candidates.filter(entity ->
-                        this.filterEvaluator.evaluateCondition(remaining, entity.getValue()));
-                }
-            } else {
-                // Full scan with WHERE filter
-                candidates = this.streamAll(collection)
-                    .filter(entity -> this.filterEvaluator.evaluateCondition(where, entity.getValue()));
+        // Fully indexed condition is answered by the size of the matching IDs
+        return this.readIndexes(collection, () -> {
+            IndexQueryOptimizer.IndexResult optimized = this.optimize(collection, where);
+            if (!optimized.requiresFullScan() && !optimized.hasRemainingCondition()) {
+                return filter.window(optimized.getIds().cardinality());
+            }
+            return filter.window(this.matching(collection, where, optimized).count());
+        });
+    }
+
+    @Override
+    public boolean exists(@NonNull PersistenceCollection collection, @NonNull Condition condition) {
+        this.checkCollectionRegistered(collection);
+
+        return this.readIndexes(collection, () -> {
+            IndexQueryOptimizer.IndexResult optimized = this.optimize(collection, condition);
+            if (!optimized.requiresFullScan() && !optimized.hasRemainingCondition()) {
+                return !optimized.getIds().isEmpty();
+            }
+            return this.matching(collection, condition, optimized).findAny().isPresent();
+        });
+    }
+
+    /**
+     * Run a query over the indexes of the collection, keeping the IDs it resolves from being reused meanwhile.
+     */
+    private <T> T readIndexes(PersistenceCollection collection, Supplier<T> query) {
+        return this.dictionaries.get(collection.getValue()).read(query);
+    }
+
+    private IndexQueryOptimizer.IndexResult optimize(PersistenceCollection collection, Condition where) {
+        Map<String, PropertyIndex> indexes = this.indexMap.get(collection.getValue());
+        Map<String, CompoundPropertyIndex> compoundIndexes = this.compoundIndexMap.get(collection.getValue());
+        return this.queryOptimizer.optimize(where, indexes, compoundIndexes.values());
+    }
+
+    private Stream<PersistenceEntity<Document>> matching(PersistenceCollection collection, Condition where, IndexQueryOptimizer.IndexResult optimized) {
+        Stream<PersistenceEntity<Document>> candidates;
+        if (!optimized.requiresFullScan()) {
+            // Index provides at least partial coverage
+            candidates = optimized.getDocIds().stream()
+                .map(docId -> {
+                    PersistencePath path = PersistencePath.of(docId);
+                    return this.read(collection, path)
+                        .map(doc -> new PersistenceEntity<>(path, doc))
+                        .orElseGet(() -> {
+                            // Stale index entry - clean up
+                            this.dropIndex(collection, path);
+                            return null;
+                        });
+                })
+                .filter(Objects::nonNull);
+
+            // Apply remaining filter if index only partially covered
+            if (optimized.hasRemainingCondition()) {
+                CompiledCondition remaining = this.filterEvaluator.compile(optimized.getRemainingCondition());
+                candidates = candidates.filter(entity -> remaining.test(entity.getValue()));
             }
         } else {
-            // No WHERE - start with all documents
-            candidates = this.streamAll(collection);
+            // Full scan with WHERE filter
+            CompiledCondition compiled = this.filterEvaluator.compile(where);
+            candidates = this.streamAll(collection)
+                .filter(entity -> compiled.test(entity.getValue()));
         }
-
-        // Apply ORDER BY / SKIP / LIMIT
-        return this.filterEvaluator.applyFilter(candidates, filter);
+        return candidates;
     }
 
     @Override
@@ -345,8 +423,7 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
         File parentFile = file.getParentFile();
         if (parentFile != null) parentFile.mkdirs();
 
-        String json = this.serializer.serialize(document);
-        this.writeToFile(file, json);
+        this.writeDocument(file, document);
         return true;
     }
 
@@ -389,6 +466,14 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
         if (indexes != null) {
             indexes.values().forEach(PropertyIndex::clear);
         }
+        Map<String, CompoundPropertyIndex> compoundIndexes = this.compoundIndexMap.get(collection.getValue());
+        if (compoundIndexes != null) {
+            compoundIndexes.values().forEach(CompoundPropertyIndex::clear);
+        }
+        DocIdDictionary dictionary = this.dictionaries.get(collection.getValue());
+        if (dictionary != null) {
+            dictionary.clear();
+        }
 
         return collectionFile.exists() && (this.deleteRecursive(collectionFile) > 0);
     }
@@ -402,6 +487,8 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
 
         // Clear all indexes
         this.indexMap.values().forEach(indexes -> indexes.values().forEach(PropertyIndex::clear));
+        this.compoundIndexMap.values().forEach(indexes -> indexes.values().forEach(CompoundPropertyIndex::clear));
+        this.dictionaries.values().forEach(DocIdDictionary::clear);
 
         return Arrays.stream(files)
             .filter(file -> this.knownCollections.containsKey(file.getName()))
@@ -419,7 +506,8 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
 
     private void updateIndexes(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull Document document) {
         Map<String, PropertyIndex> indexes = this.indexMap.get(collection.getValue());
-        if ((indexes == null) || indexes.isEmpty()) {
+        Map<String, CompoundPropertyIndex> compoundIndexes = this.compoundIndexMap.get(collection.getValue());
+        if (((indexes == null) || indexes.isEmpty()) && ((compoundIndexes == null) || compoundIndexes.isEmpty())) {
             return;
         }
 
@@ -432,6 +520,16 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
             Object value = indexValues.get(indexProp);
             index.put(path.getValue(), value);
         }
+
+        for (IndexProperty indexProp : collection.getCompoundIndexes()) {
+            CompoundPropertyIndex index = compoundIndexes.get(indexProp.getValue());
+            if (index == null) continue;
+
+            List<Object> values = indexProp.getComponents().stream()
+                .map(indexValues::get)
+                .collect(Collectors.toList());
+            index.put(path.getValue(), values);
+        }
     }
 
     private void dropIndex(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
@@ -441,6 +539,15 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
         for (PropertyIndex index : indexes.values()) {
             index.remove(path.getValue());
         }
+        Map<String, CompoundPropertyIndex> compoundIndexes = this.compoundIndexMap.get(collection.getValue());
+        if (compoundIndexes != null) {
+            compoundIndexes.values().forEach(index -> index.remove(path.getValue()));
+        }
+
+        DocIdDictionary dictionary = this.dictionaries.get(collection.getValue());
+        if (dictionary != null) {
+            dictionary.release(path.getValue());
+        }
     }
 
     // ==================== HELPERS ====================
@@ -470,21 +577,33 @@ public class FlatPersistence implements Persistence, FilterablePersistence, Stre
             });
     }
 
-    private String fileToString(@NonNull File file) {
+    private Document readDocument(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull Path file) {
+        InputStream input;
         try {
-            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            input = Files.newInputStream(file);
         } catch (IOException e) {
             if (DEBUG) {
                 LOGGER.log(Level.WARNING, "Failed to read file: " + file, e);
             }
             return null;
         }
+        try (InputStream buffered = new BufferedInputStream(input, FILE_BUFFER_SIZE)) {
+            return this.serializer.deserialize(collection, path, buffered);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot close " + file, e);
+        }
     }
 
-    @SneakyThrows
-    private void writeToFile(@NonNull File file, @NonNull String content) {
-        @Cleanup BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-        writer.write(content);
+    private void writeDocument(@NonNull File file, @NonNull Document document) {
+        // serialize fully before truncating the file, a failed write keeps the previous document
+        this.serializer.serialize(document, buffer -> {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            return null;
+        });
     }
 
     @SneakyThrows
@@ -11,8 +11,12 @@ import eu.okaeri.persistence.document.DocumentSerializerConfig;
 import eu.okaeri.persistence.document.PersistenceBuilder;
 import eu.okaeri.persistence.filter.DeleteFilter;
 import eu.okaeri.persistence.filter.FindFilter;
+import eu.okaeri.persistence.filter.PreparedQuery;
+import eu.okaeri.persistence.filter.condition.Condition;
+import eu.okaeri.persistence.jdbc.commons.SqlPreparedQuery;
 import eu.okaeri.persistence.jdbc.filter.H2FilterRenderer;
 import eu.okaeri.persistence.jdbc.filter.SqlStringRenderer;
+import eu.okaeri.persistence.jdbc.filter.SqlTemplate;
 import eu.okaeri.persistence.util.ConnectionRetry;
 import lombok.Getter;
 import lombok.NonNull;
@@ -31,7 +35,7 @@ import java.util.stream.StreamSupport;
  * H2 database persistence backend with native JSON filtering.
  * Uses H2's built-in JSON functions for all queries - no in-memory indexing needed.
  */
-public class H2Persistence implements Persistence, FilterablePersistence, StreamablePersistence {
+public class H2Persistence implements Persistence, FilterablePersistence, PreparablePersistence, StreamablePersistence {
 
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("okaeri.platform.debug", "false"));
     private static final Logger LOGGER = Logger.getLogger(H2Persistence.class.getSimpleName());
@@ -436,12 +440,48 @@ public class H2Persistence implements Persistence, FilterablePersistence, Stream
                 results.add(new PersistenceEntity<>(path, doc));
             }
 
-            return results.stream();
+            // Embedded database, fields are selected after reading
+            return this.serializer.project(results.stream(), filter);
         } catch (SQLException exception) {
             throw new RuntimeException("cannot find in " + collection, exception);
         }
     }
 
+    @Override
+    public long count(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
+        this.checkCollectionRegistered(collection);
+
+        String sql = "select count(1) from `" + this.table(collection) + "`";
+
+        if (filter.getWhere() != null) {
+            sql += " where " + this.filterRenderer.renderCondition(filter.getWhere());
+        }
+
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(this.debugQuery(sql))) {
+            return filter.window(resultSet.next() ? resultSet.getLong(1) : 0);
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot count in " + collection + " with " + filter, exception);
+        }
+    }
+
+    @Override
+    public boolean exists(@NonNull PersistenceCollection collection, @NonNull Condition condition) {
+        this.checkCollectionRegistered(collection);
+
+        String sql = "select 1 from `" + this.table(collection) + "` where " +
+            this.filterRenderer.renderCondition(condition) + " limit 1";
+
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(this.debugQuery(sql))) {
+            return resultSet.next();
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot check if " + condition + " matches in " + collection, exception);
+        }
+    }
+
     @Override
     public long delete(@NonNull PersistenceCollection collection, @NonNull DeleteFilter filter) {
         this.checkCollectionRegistered(collection);
@@ -461,6 +501,43 @@ public class H2Persistence implements Persistence, FilterablePersistence, Stream
         }
     }
 
+    @Override
+    public PreparedQuery prepare(@NonNull PersistenceCollection collection, @NonNull FindFilter template) {
+        this.checkCollectionRegistered(collection);
+
+        // Projections are applied by regular filters only
+        if (template.hasProjection()) {
+            return null;
+        }
+
+        SqlTemplate where = (template.getWhere() == null) ? null : new H2FilterRenderer(new SqlStringRenderer()).renderTemplate(template.getWhere());
+        if ((where != null) && !where.isPreparable()) {
+            return null;
+        }
+
+        String table = "`" + this.table(collection) + "`";
+        String condition = (where == null) ? "" : (" where " + where.getSql());
+        String findSql = "select `key`, `value` from " + table + condition;
+
+        if (template.hasOrderBy()) {
+            findSql += " order by " + this.filterRenderer.renderOrderBy(template.getOrderBy());
+        }
+
+        if (template.hasLimit()) {
+            findSql += " limit " + template.getLimit();
+        }
+
+        if (template.hasSkip()) {
+            findSql += " offset " + template.getSkip();
+        }
+
+        return new SqlPreparedQuery(this.dataSource, this.serializer, collection, template, where, findSql,
+            "select count(1) from " + table + condition,
+            "select 1 from " + table + condition + " limit 1",
+            "delete from " + table + condition,
+            this::debugQuery);
+    }
+
     // ==================== WRITE OPERATIONS ====================
 
     @Override
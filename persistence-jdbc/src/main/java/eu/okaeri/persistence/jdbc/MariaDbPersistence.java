@@ -12,11 +12,15 @@ import eu.okaeri.persistence.document.PersistenceBuilder;
 import eu.okaeri.persistence.document.index.IndexProperty;
 import eu.okaeri.persistence.filter.DeleteFilter;
 import eu.okaeri.persistence.filter.FindFilter;
+import eu.okaeri.persistence.filter.PreparedQuery;
 import eu.okaeri.persistence.filter.UpdateFilter;
+import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistence.filter.operation.UpdateOperation;
+import eu.okaeri.persistence.jdbc.commons.SqlPreparedQuery;
 import eu.okaeri.persistence.jdbc.filter.MariaDbFilterRenderer;
 import eu.okaeri.persistence.jdbc.filter.MariaDbStringRenderer;
 import eu.okaeri.persistence.jdbc.filter.MariaDbUpdateRenderer;
+import eu.okaeri.persistence.jdbc.filter.SqlTemplate;
 import eu.okaeri.persistence.util.ConnectionRetry;
 import lombok.Getter;
 import lombok.NonNull;
@@ -35,7 +39,7 @@ import java.util.stream.StreamSupport;
  * MariaDB persistence backend with native JSON filtering, indexing, and updates.
  * Uses generated columns for efficient JSON field indexing.
  */
-public class MariaDbPersistence implements Persistence, FilterablePersistence, StreamablePersistence, UpdatablePersistence {
+public class MariaDbPersistence implements Persistence, FilterablePersistence, PreparablePersistence, StreamablePersistence, UpdatablePersistence {
 
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("okaeri.platform.debug", "false"));
     private static final Logger LOGGER = Logger.getLogger(MariaDbPersistence.class.getSimpleName());
@@ -193,7 +197,8 @@ public class MariaDbPersistence implements Persistence, FilterablePersistence, S
 
     private void manageGeneratedColumns(@NonNull PersistenceCollection collection) {
         String tableName = this.table(collection);
-        Set<IndexProperty> desiredIndexes = collection.getIndexes();
+        // Compound index components need their own generated columns too
+        Set<IndexProperty> desiredIndexes = collection.getIndexedFields();
 
         try (Connection connection = this.dataSource.getConnection()) {
             // Get existing index columns
@@ -221,11 +226,60 @@ public class MariaDbPersistence implements Persistence, FilterablePersistence, S
                     this.ensureIndexExists(connection, tableName, columnName);
                 }
             }
+
+            this.manageCompoundIndexes(connection, tableName, collection.getCompoundIndexes());
         } catch (SQLException exception) {
             throw new RuntimeException("cannot manage generated columns for " + tableName, exception);
         }
     }
 
+    private void manageCompoundIndexes(@NonNull Connection connection, @NonNull String tableName,
+                                       @NonNull Set<IndexProperty> compoundIndexes) throws SQLException {
+        String prefix = tableName + "_cidx_";
+        Map<String, IndexProperty> desiredIndexes = new LinkedHashMap<>();
+        for (IndexProperty index : compoundIndexes) {
+            desiredIndexes.put((prefix + index.toSqlIdentifier()).toLowerCase(Locale.ROOT), index);
+        }
+
+        Set<String> existingIndexes = new HashSet<>();
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet rs = metaData.getIndexInfo(null, null, tableName, false, false)) {
+            while (rs.next()) {
+                String indexName = rs.getString("INDEX_NAME");
+                if ((indexName != null) && indexName.toLowerCase(Locale.ROOT).startsWith(prefix.toLowerCase(Locale.ROOT))) {
+                    existingIndexes.add(indexName);
+                }
+            }
+        }
+
+        // Remove indexes that are no longer declared
+        for (String indexName : existingIndexes) {
+            if (!desiredIndexes.containsKey(indexName.toLowerCase(Locale.ROOT))) {
+                String dropIndexSql = "drop index if exists `" + indexName + "` on `" + tableName + "`";
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(this.debugQuery(dropIndexSql));
+                }
+            }
+        }
+
+        // Column order follows the declared component order (equality prefix first)
+        for (IndexProperty index : compoundIndexes) {
+            String indexName = prefix + index.toSqlIdentifier();
+            if (existingIndexes.stream().anyMatch(indexName::equalsIgnoreCase)) {
+                continue;
+            }
+            String columns = index.getComponents().stream()
+                .map(component -> "`" + getIndexColumnName(component) + "`")
+                .collect(Collectors.joining(", "));
+            String createIndexSql = "create index `" + indexName + "` on `" + tableName + "` (" + columns + ")";
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(this.debugQuery(createIndexSql));
+            } catch (SQLException e) {
+                LOGGER.warning("Could not create index " + indexName + ": " + e.getMessage());
+            }
+        }
+    }
+
     private Set<String> getExistingIndexColumns(@NonNull Connection connection, @NonNull String tableName) throws SQLException {
         Set<String> columns = new HashSet<>();
         DatabaseMetaData metaData = connection.getMetaData();
@@ -546,10 +600,11 @@ public class MariaDbPersistence implements Persistence, FilterablePersistence, S
         this.checkCollectionRegistered(collection);
 
         // Set indexed properties context for the renderer to use generated columns
-        Set<IndexProperty> indexes = this.knownCollections.get(collection.getValue()).getIndexes();
+        Set<IndexProperty> indexes = this.knownCollections.get(collection.getValue()).getIndexedFields();
         this.filterRenderer.setIndexedProperties(indexes);
 
-        String sql = "select `key`, `value` from `" + this.table(collection) + "`";
+        String value = filter.hasProjection() ? (this.filterRenderer.renderProjection(filter.getProjection()) + " as `value`") : "`value`";
+        String sql = "select `key`, " + value + " from `" + this.table(collection) + "`";
 
         if (filter.getWhere() != null) {
             sql += " where " + this.filterRenderer.renderCondition(filter.getWhere());
@@ -586,6 +641,47 @@ public class MariaDbPersistence implements Persistence, FilterablePersistence, S
         }
     }
 
+    @Override
+    public long count(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
+        this.checkCollectionRegistered(collection);
+
+        Set<IndexProperty> indexes = this.knownCollections.get(collection.getValue()).getIndexedFields();
+        this.filterRenderer.setIndexedProperties(indexes);
+
+        String sql = "select count(1) from `" + this.table(collection) + "`";
+
+        if (filter.getWhere() != null) {
+            sql += " where " + this.filterRenderer.renderCondition(filter.getWhere());
+        }
+
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(this.debugQuery(sql))) {
+            return filter.window(resultSet.next() ? resultSet.getLong(1) : 0);
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot count in " + collection + " with " + filter, exception);
+        }
+    }
+
+    @Override
+    public boolean exists(@NonNull PersistenceCollection collection, @NonNull Condition condition) {
+        this.checkCollectionRegistered(collection);
+
+        Set<IndexProperty> indexes = this.knownCollections.get(collection.getValue()).getIndexedFields();
+        this.filterRenderer.setIndexedProperties(indexes);
+
+        String sql = "select 1 from `" + this.table(collection) + "` where " +
+            this.filterRenderer.renderCondition(condition) + " limit 1";
+
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(this.debugQuery(sql))) {
+            return resultSet.next();
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot check if " + condition + " matches in " + collection, exception);
+        }
+    }
+
     @Override
     public long delete(@NonNull PersistenceCollection collection, @NonNull DeleteFilter filter) {
         this.checkCollectionRegistered(collection);
@@ -594,7 +690,7 @@ public class MariaDbPersistence implements Persistence, FilterablePersistence, S
             throw new IllegalArgumentException("DeleteFilter requires WHERE condition - use deleteAll() instead");
         }
 
-        Set<IndexProperty> indexes = this.knownCollections.get(collection.getValue()).getIndexes();
+        Set<IndexProperty> indexes = this.knownCollections.get(collection.getValue()).getIndexedFields();
         this.filterRenderer.setIndexedProperties(indexes);
 
         String sql = "delete from `" + this.table(collection) + "` where " +
@@ -608,6 +704,47 @@ public class MariaDbPersistence implements Persistence, FilterablePersistence, S
         }
     }
 
+    @Override
+    public PreparedQuery prepare(@NonNull PersistenceCollection collection, @NonNull FindFilter template) {
+        this.checkCollectionRegistered(collection);
+
+        // Projections are applied by regular filters only
+        if (template.hasProjection()) {
+            return null;
+        }
+
+        // Render with the generated columns of indexed fields, using a dedicated renderer instance
+        MariaDbFilterRenderer renderer = new MariaDbFilterRenderer(STRING_RENDERER);
+        renderer.setIndexedProperties(this.knownCollections.get(collection.getValue()).getIndexedFields());
+
+        SqlTemplate where = (template.getWhere() == null) ? null : renderer.renderTemplate(template.getWhere());
+        if ((where != null) && !where.isPreparable()) {
+            return null;
+        }
+
+        String table = "`" + this.table(collection) + "`";
+        String condition = (where == null) ? "" : (" where " + where.getSql());
+        String findSql = "select `key`, `value` from " + table + condition;
+
+        if (template.hasOrderBy()) {
+            findSql += " order by " + renderer.renderOrderBy(template.getOrderBy());
+        }
+
+        if (template.hasLimit()) {
+            findSql += " limit " + template.getLimit();
+        }
+
+        if (template.hasSkip()) {
+            findSql += " offset " + template.getSkip();
+        }
+
+        return new SqlPreparedQuery(this.dataSource, this.serializer, collection, template, where, findSql,
+            "select count(1) from " + table + condition,
+            "select 1 from " + table + condition + " limit 1",
+            "delete from " + table + condition,
+            this::debugQuery);
+    }
+
     // ==================== UPDATES ====================
 
     @Override
@@ -728,7 +865,7 @@ public class MariaDbPersistence implements Persistence, FilterablePersistence, S
             throw new IllegalArgumentException("update requires a WHERE condition - use updateOne() for single document updates");
         }
 
-        Set<IndexProperty> indexes = this.knownCollections.get(collection.getValue()).getIndexes();
+        Set<IndexProperty> indexes = this.knownCollections.get(collection.getValue()).getIndexedFields();
         this.filterRenderer.setIndexedProperties(indexes);
 
         String updateExpr = UPDATE_RENDERER.render(filter.getOperations());
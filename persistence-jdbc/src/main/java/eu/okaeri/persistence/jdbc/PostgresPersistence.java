@@ -9,14 +9,18 @@ import eu.okaeri.persistence.document.Document;
 import eu.okaeri.persistence.document.DocumentSerializer;
 import eu.okaeri.persistence.document.DocumentSerializerConfig;
 import eu.okaeri.persistence.document.PersistenceBuilder;
+import eu.okaeri.persistence.document.index.IndexProperty;
 import eu.okaeri.persistence.filter.DeleteFilter;
 import eu.okaeri.persistence.filter.FindFilter;
+import eu.okaeri.persistence.filter.PreparedQuery;
 import eu.okaeri.persistence.filter.UpdateFilter;
+import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistence.filter.operation.UpdateOperation;
-import eu.okaeri.persistence.filter.renderer.FilterRenderer;
+import eu.okaeri.persistence.jdbc.commons.SqlPreparedQuery;
 import eu.okaeri.persistence.jdbc.filter.PostgresFilterRenderer;
 import eu.okaeri.persistence.jdbc.filter.PostgresUpdateRenderer;
 import eu.okaeri.persistence.jdbc.filter.SqlStringRenderer;
+import eu.okaeri.persistence.jdbc.filter.SqlTemplate;
 import eu.okaeri.persistence.util.ConnectionRetry;
 import lombok.Getter;
 import lombok.NonNull;
@@ -34,13 +38,13 @@ import java.util.stream.StreamSupport;
 /**
  * PostgreSQL persistence backend with native jsonb filtering, indexing, and updates.
  */
-public class PostgresPersistence implements Persistence, FilterablePersistence, StreamablePersistence, UpdatablePersistence {
+public class PostgresPersistence implements Persistence, FilterablePersistence, PreparablePersistence, StreamablePersistence, UpdatablePersistence {
 
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("okaeri.platform.debug", "false"));
     private static final Logger LOGGER = Logger.getLogger(PostgresPersistence.class.getSimpleName());
 
     private static final SqlStringRenderer STRING_RENDERER = new SqlStringRenderer();
-    private static final FilterRenderer FILTER_RENDERER = new PostgresFilterRenderer(STRING_RENDERER);
+    private static final PostgresFilterRenderer FILTER_RENDERER = new PostgresFilterRenderer(STRING_RENDERER);
     private static final PostgresUpdateRenderer UPDATE_RENDERER = new PostgresUpdateRenderer(STRING_RENDERER);
 
     private final @Getter PersistencePath basePath;
@@ -153,54 +157,98 @@ public class PostgresPersistence implements Persistence, FilterablePersistence,
         // Create native jsonb indexes
         collection.getIndexes().forEach(index -> {
             String indexName = this.basePath.sub(collection).sub(index).sub("idx").toSqlIdentifier();
-            PersistencePath indexPath = PersistencePath.of("value").sub(index);
-
-            // Apply type cast based on field type for proper index usage
-            String indexExpression;
-            if (index.isNumeric()) {
-                indexExpression = "((" + indexPath.toPostgresJsonPath() + ")::numeric)";
-            } else if (index.isBoolean()) {
-                indexExpression = "((" + indexPath.toPostgresJsonPath() + ")::boolean)";
+            if (index.isCollection()) {
+                // jsonb containment (@>) index for array element queries
+                PersistencePath indexPath = PersistencePath.of("value").sub(index);
+                this.ensureIndex(tableName, indexName, "using gin ", "(" + indexPath.toPostgresJsonPath() + ") jsonb_path_ops");
             } else {
-                indexExpression = "(" + indexPath.toPostgresJsonPath(true) + ")";
+                this.ensureIndex(tableName, indexName, this.indexExpression(index));
             }
+        });
+
+        // Create pg_trgm indexes for substring (like/ilike) queries
+        if (collection.getIndexes().stream().anyMatch(IndexProperty::isTrigram) && this.ensureTrigramExtension()) {
+            collection.getIndexes().stream().filter(IndexProperty::isTrigram).forEach(index -> {
+                String indexName = this.basePath.sub(collection).sub(index).sub("tidx").toSqlIdentifier();
+                PersistencePath indexPath = PersistencePath.of("value").sub(index);
+                this.ensureIndex(tableName, indexName, "using gin ", "(" + indexPath.toPostgresJsonPath(true) + ") gin_trgm_ops");
+            });
+        }
+
+        // Create multi-column indexes, column order follows the declared component order
+        collection.getCompoundIndexes().forEach(index -> {
+            String indexName = this.basePath.sub(collection).sub(index.toSqlIdentifier()).sub("cidx").toSqlIdentifier();
+            String indexExpression = index.getComponents().stream()
+                .map(this::indexExpression)
+                .collect(Collectors.joining(", "));
+            this.ensureIndex(tableName, indexName, indexExpression);
+        });
+
+        // Track collection
+        this.knownCollections.put(collection.getValue(), collection);
+    }
 
-            try (Connection connection = this.dataSource.getConnection()) {
-                // Check if index exists and if it needs migration
-                String checkSql = "select indexdef from pg_indexes where indexname = ?";
-                boolean needsCreate = true;
-
-                try (PreparedStatement checkStmt = connection.prepareStatement(this.debugQuery(checkSql))) {
-                    checkStmt.setString(1, indexName);
-                    try (ResultSet rs = checkStmt.executeQuery()) {
-                        if (rs.next()) {
-                            String existingDef = rs.getString("indexdef");
-                            if ((existingDef != null) && existingDef.contains(indexExpression)) {
-                                needsCreate = false;
-                            } else {
-                                String dropSql = "drop index if exists " + indexName;
-                                try (Statement stmt = connection.createStatement()) {
-                                    stmt.execute(this.debugQuery(dropSql));
-                                }
-                                LOGGER.info("Migrating index " + indexName + " to new expression: " + indexExpression);
+    private String indexExpression(@NonNull IndexProperty index) {
+        PersistencePath indexPath = PersistencePath.of("value").sub(index);
+        // Apply type cast based on field type for proper index usage
+        if (index.isNumeric()) {
+            return "((" + indexPath.toPostgresJsonPath() + ")::numeric)";
+        } else if (index.isBoolean()) {
+            return "((" + indexPath.toPostgresJsonPath() + ")::boolean)";
+        } else {
+            return "(" + indexPath.toPostgresJsonPath(true) + ")";
+        }
+    }
+
+    private boolean ensureTrigramExtension() {
+        String sql = "create extension if not exists pg_trgm";
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(this.debugQuery(sql));
+            return true;
+        } catch (SQLException exception) {
+            LOGGER.warning("Cannot enable pg_trgm, trigram indexes are not created: " + exception.getMessage());
+            return false;
+        }
+    }
+
+    private void ensureIndex(@NonNull String tableName, @NonNull String indexName, @NonNull String indexExpression) {
+        this.ensureIndex(tableName, indexName, "", indexExpression);
+    }
+
+    private void ensureIndex(@NonNull String tableName, @NonNull String indexName, @NonNull String method, @NonNull String indexExpression) {
+        try (Connection connection = this.dataSource.getConnection()) {
+            // Check if index exists and if it needs migration
+            String checkSql = "select indexdef from pg_indexes where indexname = ?";
+            boolean needsCreate = true;
+
+            try (PreparedStatement checkStmt = connection.prepareStatement(this.debugQuery(checkSql))) {
+                checkStmt.setString(1, indexName);
+                try (ResultSet rs = checkStmt.executeQuery()) {
+                    if (rs.next()) {
+                        String existingDef = rs.getString("indexdef");
+                        if ((existingDef != null) && existingDef.contains(indexExpression)) {
+                            needsCreate = false;
+                        } else {
+                            String dropSql = "drop index if exists " + indexName;
+                            try (Statement stmt = connection.createStatement()) {
+                                stmt.execute(this.debugQuery(dropSql));
                             }
+                            LOGGER.info("Migrating index " + indexName + " to new expression: " + indexExpression);
                         }
                     }
                 }
+            }
 
-                if (needsCreate) {
-                    String indexSql = "create index " + indexName + " on " + tableName + " (" + indexExpression + ")";
-                    try (Statement stmt = connection.createStatement()) {
-                        stmt.execute(this.debugQuery(indexSql));
-                    }
+            if (needsCreate) {
+                String indexSql = "create index " + indexName + " on " + tableName + " " + method + "(" + indexExpression + ")";
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(this.debugQuery(indexSql));
                 }
-            } catch (SQLException exception) {
-                throw new RuntimeException("cannot register collection index " + indexName, exception);
             }
-        });
-
-        // Track collection
-        this.knownCollections.put(collection.getValue(), collection);
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot register collection index " + indexName, exception);
+        }
     }
 
     /**
@@ -427,7 +475,8 @@ public class PostgresPersistence implements Persistence, FilterablePersistence,
     @Override
     public Stream<PersistenceEntity<Document>> find(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
         this.checkCollectionRegistered(collection);
-        String sql = "select key, value from \"" + this.table(collection) + "\"";
+        String value = filter.hasProjection() ? (FILTER_RENDERER.renderProjection(filter.getProjection()) + " as value") : "value";
+        String sql = "select key, " + value + " from \"" + this.table(collection) + "\"";
 
         if (filter.getWhere() != null) {
             sql += " where " + FILTER_RENDERER.renderCondition(filter.getWhere());
@@ -464,6 +513,39 @@ public class PostgresPersistence implements Persistence, FilterablePersistence,
         }
     }
 
+    @Override
+    public long count(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
+        this.checkCollectionRegistered(collection);
+        String sql = "select count(1) from \"" + this.table(collection) + "\"";
+
+        if (filter.getWhere() != null) {
+            sql += " where " + FILTER_RENDERER.renderCondition(filter.getWhere());
+        }
+
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(this.debugQuery(sql))) {
+            return filter.window(resultSet.next() ? resultSet.getLong(1) : 0);
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot count in " + collection + " with " + filter, exception);
+        }
+    }
+
+    @Override
+    public boolean exists(@NonNull PersistenceCollection collection, @NonNull Condition condition) {
+        this.checkCollectionRegistered(collection);
+        String sql = "select 1 from \"" + this.table(collection) + "\" where " +
+            FILTER_RENDERER.renderCondition(condition) + " limit 1";
+
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(this.debugQuery(sql))) {
+            return resultSet.next();
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot check if " + condition + " matches in " + collection, exception);
+        }
+    }
+
     @Override
     public long delete(@NonNull PersistenceCollection collection, @NonNull DeleteFilter filter) {
         this.checkCollectionRegistered(collection);
@@ -483,6 +565,43 @@ public class PostgresPersistence implements Persistence, FilterablePersistence,
         }
     }
 
+    @Override
+    public PreparedQuery prepare(@NonNull PersistenceCollection collection, @NonNull FindFilter template) {
+        this.checkCollectionRegistered(collection);
+
+        // Projections are applied by regular filters only
+        if (template.hasProjection()) {
+            return null;
+        }
+
+        SqlTemplate where = (template.getWhere() == null) ? null : new PostgresFilterRenderer(STRING_RENDERER).renderTemplate(template.getWhere());
+        if ((where != null) && !where.isPreparable()) {
+            return null;
+        }
+
+        String table = "\"" + this.table(collection) + "\"";
+        String condition = (where == null) ? "" : (" where " + where.getSql());
+        String findSql = "select key, value from " + table + condition;
+
+        if (template.hasOrderBy()) {
+            findSql += " order by " + FILTER_RENDERER.renderOrderBy(template.getOrderBy());
+        }
+
+        if (template.hasLimit()) {
+            findSql += " limit " + template.getLimit();
+        }
+
+        if (template.hasSkip()) {
+            findSql += " offset " + template.getSkip();
+        }
+
+        return new SqlPreparedQuery(this.dataSource, this.serializer, collection, template, where, findSql,
+            "select count(1) from " + table + condition,
+            "select 1 from " + table + condition + " limit 1",
+            "delete from " + table + condition,
+            this::debugQuery);
+    }
+
     // ==================== UPDATES ====================
 
     @Override
@@ -0,0 +1,117 @@
+package eu.okaeri.persistence.jdbc.commons;
+
+import eu.okaeri.persistence.PersistenceCollection;
+import eu.okaeri.persistence.PersistenceEntity;
+import eu.okaeri.persistence.PersistencePath;
+import eu.okaeri.persistence.document.Document;
+import eu.okaeri.persistence.document.DocumentSerializer;
+import eu.okaeri.persistence.filter.FindFilter;
+import eu.okaeri.persistence.filter.PreparedQuery;
+import eu.okaeri.persistence.jdbc.filter.SqlTemplate;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Prepared query executed as SQL statements rendered once from a template.
+ * <p>
+ * Every call sends the same SQL text and binds only the arguments, so that
+ * drivers and databases can cache the statements and reuse their plans.
+ * The statements must select {@code key} and {@code value} columns (find),
+ * a single count (count) or any row (exists), with the template condition
+ * as their only placeholders.
+ */
+@RequiredArgsConstructor
+public class SqlPreparedQuery implements PreparedQuery {
+
+    private final @NonNull DataSource dataSource;
+    private final @NonNull DocumentSerializer serializer;
+    private final @NonNull PersistenceCollection collection;
+    private final @NonNull FindFilter template;
+    private final SqlTemplate where;
+    private final @NonNull String findSql;
+    private final @NonNull String countSql;
+    private final @NonNull String existsSql;
+    private final @NonNull String deleteSql;
+    private final @NonNull UnaryOperator<String> debugQuery;
+
+    @Override
+    public Stream<PersistenceEntity<Document>> find(@NonNull Object... args) {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = this.prepare(connection, this.findSql, args);
+             ResultSet resultSet = statement.executeQuery()) {
+            List<PersistenceEntity<Document>> results = new ArrayList<>();
+
+            while (resultSet.next()) {
+                String key = resultSet.getString("key");
+                String json = resultSet.getString("value");
+                PersistencePath path = PersistencePath.of(key);
+                Document doc = this.serializer.deserialize(this.collection, path, json);
+                results.add(new PersistenceEntity<>(path, doc));
+            }
+
+            return results.stream();
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot read by filter from " + this.collection, exception);
+        }
+    }
+
+    @Override
+    public long count(@NonNull Object... args) {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = this.prepare(connection, this.countSql, args);
+             ResultSet resultSet = statement.executeQuery()) {
+            return this.template.window(resultSet.next() ? resultSet.getLong(1) : 0);
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot count in " + this.collection + " with " + this.template, exception);
+        }
+    }
+
+    @Override
+    public boolean exists(@NonNull Object... args) {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = this.prepare(connection, this.existsSql, args);
+             ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next();
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot check if " + this.template.getWhere() + " matches in " + this.collection, exception);
+        }
+    }
+
+    @Override
+    public long delete(@NonNull Object... args) {
+
+        if (this.where == null) {
+            throw new IllegalArgumentException("DeleteFilter requires WHERE condition - use deleteAll() instead");
+        }
+
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement statement = this.prepare(connection, this.deleteSql, args)) {
+            return statement.executeUpdate();
+        } catch (SQLException exception) {
+            throw new RuntimeException("cannot delete from " + this.collection + " with " + this.template, exception);
+        }
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql, Object[] args) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(this.debugQuery.apply(sql));
+        try {
+            if (this.where != null) {
+                this.where.bind(statement, args);
+            }
+            return statement;
+        } catch (SQLException | RuntimeException exception) {
+            statement.close();
+            throw exception;
+        }
+    }
+}
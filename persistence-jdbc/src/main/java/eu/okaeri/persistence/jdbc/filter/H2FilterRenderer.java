@@ -40,6 +40,17 @@ public class H2FilterRenderer extends SqlFilterRenderer {
             return "(" + fieldReference + " is not null)";
         }
 
+        // Array element predicates, matched against the compact JSON text of the array
+        // as a comma separated element list - scalar lists only, elements of nested
+        // arrays/objects also match and numbers compare by their text form (see README)
+        Collection<?> elements = this.arrayElements(predicate);
+        if (elements != null) {
+            String arrayField = "cast(" + fieldReference + " as varchar)";
+            String elementList = "(',' || substring(" + arrayField + ", 2, length(" + arrayField + ") - 2) || ',')";
+            return "((" + arrayField + " like '[%') and "
+                + this.renderArrayElements(elements, element -> elementList + " like " + this.renderLikePattern(element, "%,", ",%") + " escape '|'") + ")";
+        }
+
         // Handle ne/notIn with null inclusion (document-first: null != X is true)
         if (predicate instanceof NePredicate) {
             Object rightOperand = ((NePredicate) predicate).getRightOperand();
@@ -94,11 +105,11 @@ public class H2FilterRenderer extends SqlFilterRenderer {
         }
 
         // Handle numeric comparisons with proper type casting
-        if ((predicate instanceof SimplePredicate) && (((SimplePredicate) predicate).getRightOperand() instanceof Number)) {
-            Number value = (Number) ((SimplePredicate) predicate).getRightOperand();
+        if ((predicate instanceof SimplePredicate) && Number.class.isAssignableFrom(this.operandType((SimplePredicate) predicate))) {
+            Class<?> type = this.operandType((SimplePredicate) predicate);
 
             // Use decimal for floating point, int for integers
-            String castType = ((value instanceof Double) || (value instanceof Float))
+            String castType = ((type == Double.class) || (type == Float.class))
                 ? "decimal(20,10)"
                 : "int";
 
@@ -108,7 +119,7 @@ public class H2FilterRenderer extends SqlFilterRenderer {
         }
 
         // Handle boolean comparisons - JSON booleans don't have quotes, just cast to varchar
-        if ((predicate instanceof SimplePredicate) && (((SimplePredicate) predicate).getRightOperand() instanceof Boolean)) {
+        if ((predicate instanceof SimplePredicate) && (this.operandType((SimplePredicate) predicate) == Boolean.class)) {
             // H2 JSON boolean values (true/false) are stored without quotes in JSON
             // Cast to varchar gives us "true" or "false" as strings
             return "(cast(" + fieldReference + " as varchar) "
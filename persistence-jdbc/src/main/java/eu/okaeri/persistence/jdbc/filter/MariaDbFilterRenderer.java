@@ -3,6 +3,7 @@ package eu.okaeri.persistence.jdbc.filter;
 import eu.okaeri.persistence.PersistencePath;
 import eu.okaeri.persistence.document.index.IndexProperty;
 import eu.okaeri.persistence.filter.OrderBy;
+import eu.okaeri.persistence.filter.Projection;
 import eu.okaeri.persistence.filter.predicate.Predicate;
 import eu.okaeri.persistence.filter.predicate.SimplePredicate;
 import eu.okaeri.persistence.filter.predicate.collection.InPredicate;
@@ -21,6 +22,7 @@ import lombok.Setter;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -54,6 +56,13 @@ public class MariaDbFilterRenderer extends SqlFilterRenderer {
     @Override
     public String renderPredicate(@NonNull PersistencePath path, @NonNull Predicate predicate) {
 
+        // Array element predicates, an array candidate is contained only in arrays
+        Collection<?> elements = this.arrayElements(predicate);
+        if (elements != null) {
+            String arrayPath = this.renderOperand(path.toMariaDbJsonPath());
+            return this.renderArrayElements(elements, element -> "json_contains(`value`, " + this.renderOperand("[" + element + "]") + ", " + arrayPath + ")");
+        }
+
         // Check if this field is indexed - if so, use the generated column
         IndexProperty indexProperty = this.getIndexProperty(path.getValue());
         if (indexProperty != null) {
@@ -118,11 +127,11 @@ public class MariaDbFilterRenderer extends SqlFilterRenderer {
         }
 
         // Handle numeric comparisons with proper type casting
-        if ((predicate instanceof SimplePredicate) && (((SimplePredicate) predicate).getRightOperand() instanceof Number)) {
-            Number value = (Number) ((SimplePredicate) predicate).getRightOperand();
+        if ((predicate instanceof SimplePredicate) && Number.class.isAssignableFrom(this.operandType((SimplePredicate) predicate))) {
+            Class<?> type = this.operandType((SimplePredicate) predicate);
 
             // Use decimal for floating point, signed for integers
-            String castType = ((value instanceof Double) || (value instanceof Float))
+            String castType = ((type == Double.class) || (type == Float.class))
                 ? "decimal(20,10)"
                 : "signed";
 
@@ -247,4 +256,50 @@ public class MariaDbFilterRenderer extends SqlFilterRenderer {
             })
             .collect(Collectors.joining(", "));
     }
+
+    /**
+     * Render the projected document expression selected in place of {@code value}.
+     * Included fields are rebuilt with json_object and merged, skipping fields that are absent or null
+     * (selected values are copied as they are), excluded fields are removed with json_remove.
+     */
+    public String renderProjection(@NonNull Projection projection) {
+        if (projection.isExclude()) {
+            return projection.getPaths().stream()
+                .map(path -> this.renderOperand(path.toMariaDbJsonPath()))
+                .collect(Collectors.joining(", ", "json_remove(`value`, ", ")"));
+        }
+        return this.renderProjectionObject(projection.toTree());
+    }
+
+    @SuppressWarnings("unchecked")
+    private String renderProjectionObject(@NonNull Map<String, Object> tree) {
+        // fields are distinct keys, so merging only collects them (json_merge_patch would drop nested nulls)
+        return tree.entrySet().stream()
+            .map(entry -> {
+                String value = (entry.getValue() instanceof PersistencePath)
+                    ? this.renderProjectionPath((PersistencePath) entry.getValue())
+                    : this.renderProjectionObject((Map<String, Object>) entry.getValue());
+                return "if(" + this.renderProjectionPresent(entry.getValue())
+                    + ", json_object(" + this.stringRenderer.render(entry.getKey()) + ", " + value + "), json_object())";
+            })
+            .collect(Collectors.joining(", ", "json_merge_preserve(json_object(), ", ")"));
+    }
+
+    /**
+     * Render the condition of a projected field having a value, nested objects
+     * are kept when any of their selected fields has a value.
+     */
+    @SuppressWarnings("unchecked")
+    private String renderProjectionPresent(@NonNull Object node) {
+        if (node instanceof PersistencePath) {
+            return "json_type(" + this.renderProjectionPath((PersistencePath) node) + ") <> 'NULL'";
+        }
+        return ((Map<String, Object>) node).values().stream()
+            .map(this::renderProjectionPresent)
+            .collect(Collectors.joining(" or ", "(", ")"));
+    }
+
+    private String renderProjectionPath(@NonNull PersistencePath path) {
+        return "json_extract(`value`, " + this.renderOperand(path.toMariaDbJsonPath()) + ")";
+    }
 }
@@ -2,6 +2,8 @@ package eu.okaeri.persistence.jdbc.filter;
 
 import eu.okaeri.persistence.PersistencePath;
 import eu.okaeri.persistence.filter.OrderBy;
+import eu.okaeri.persistence.filter.Projection;
+import eu.okaeri.persistence.filter.QueryParameter;
 import eu.okaeri.persistence.filter.predicate.Predicate;
 import eu.okaeri.persistence.filter.predicate.SimplePredicate;
 import eu.okaeri.persistence.filter.predicate.collection.InPredicate;
@@ -16,7 +18,9 @@ import eu.okaeri.persistence.filter.predicate.string.StartsWithPredicate;
 import eu.okaeri.persistence.filter.renderer.StringRenderer;
 import lombok.NonNull;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class PostgresFilterRenderer extends SqlFilterRenderer {
@@ -38,6 +42,13 @@ public class PostgresFilterRenderer extends SqlFilterRenderer {
             return "(" + path.toPostgresJsonPath(true) + " is not null)";
         }
 
+        // Array element predicates, jsonb containment can use a GIN index on the array path
+        Collection<?> elements = this.arrayElements(predicate);
+        if (elements != null) {
+            String arrayPath = path.toPostgresJsonPath();
+            return this.renderArrayElements(elements, element -> arrayPath + " @> " + this.renderOperand("[" + element + "]") + "::jsonb");
+        }
+
         // Handle ne/notIn with null inclusion (document-first: null != X is true)
         if (predicate instanceof NePredicate) {
             Object rightOperand = ((NePredicate) predicate).getRightOperand();
@@ -69,14 +80,15 @@ public class PostgresFilterRenderer extends SqlFilterRenderer {
         }
 
         // Handle other numeric comparisons
-        if ((predicate instanceof SimplePredicate) && (((SimplePredicate) predicate).getRightOperand() instanceof Number)) {
+        if ((predicate instanceof SimplePredicate) && Number.class.isAssignableFrom(this.operandType((SimplePredicate) predicate))) {
             return "((" + path.toPostgresJsonPath() + ")::numeric " + this.renderOperator(predicate) + " " + this.renderOperand(predicate) + ")";
         }
 
         // Handle boolean comparisons with proper cast for index usage
-        if ((predicate instanceof SimplePredicate) && (((SimplePredicate) predicate).getRightOperand() instanceof Boolean)) {
-            Boolean value = (Boolean) ((SimplePredicate) predicate).getRightOperand();
-            return "((" + path.toPostgresJsonPath() + ")::boolean " + this.renderOperator(predicate) + " " + value + ")";
+        if ((predicate instanceof SimplePredicate) && (this.operandType((SimplePredicate) predicate) == Boolean.class)) {
+            Object value = ((SimplePredicate) predicate).getRightOperand();
+            String operand = (value instanceof QueryParameter) ? this.renderOperand(value) : String.valueOf(value);
+            return "((" + path.toPostgresJsonPath() + ")::boolean " + this.renderOperator(predicate) + " " + operand + ")";
         }
 
         // Handle case-insensitive equals
@@ -104,8 +116,9 @@ public class PostgresFilterRenderer extends SqlFilterRenderer {
         if (predicate instanceof ContainsPredicate) {
             String value = (String) ((ContainsPredicate) predicate).getRightOperand();
             String pattern = this.renderLikePattern(value, "%", "%");
+            // ilike (unlike lower() on the field) can use a pg_trgm index on the field
             String comparison = ((ContainsPredicate) predicate).isIgnoreCase()
-                ? ("lower(" + path.toPostgresJsonPath(true) + ") like lower(" + pattern + ")")
+                ? (path.toPostgresJsonPath(true) + " ilike " + pattern)
                 : (path.toPostgresJsonPath(true) + " like " + pattern);
             return "(" + comparison + " escape '|')";
         }
@@ -113,6 +126,14 @@ public class PostgresFilterRenderer extends SqlFilterRenderer {
         return "(" + path.toPostgresJsonPath(true) + " " + this.renderOperator(predicate) + " " + this.renderOperand(predicate) + ")";
     }
 
+    /**
+     * Booleans are compared as {@code ::boolean}, not as string literals.
+     */
+    @Override
+    public Object renderParameterValue(@NonNull Object value) {
+        return (value instanceof Boolean) ? value : super.renderParameterValue(value);
+    }
+
     @Override
     public String renderOrderBy(@NonNull List<OrderBy> orderBy) {
         return orderBy.stream()
@@ -122,4 +143,52 @@ public class PostgresFilterRenderer extends SqlFilterRenderer {
             })
             .collect(Collectors.joining(", "));
     }
+
+    /**
+     * Render the projected document expression selected in place of {@code value}.
+     * Included fields are rebuilt with jsonb_build_object, skipping fields that are absent or null
+     * (selected values are copied as they are), excluded fields are removed with the {@code #-} operator.
+     */
+    public String renderProjection(@NonNull Projection projection) {
+        if (projection.isExclude()) {
+            return projection.getPaths().stream()
+                .map(path -> " #- array[" + path.toParts().stream()
+                    .map(this.stringRenderer::render)
+                    .collect(Collectors.joining(", ")) + "]")
+                .collect(Collectors.joining("", "value", ""));
+        }
+        return this.renderProjectionObject(projection.toTree());
+    }
+
+    @SuppressWarnings("unchecked")
+    private String renderProjectionObject(@NonNull Map<String, Object> tree) {
+        return tree.entrySet().stream()
+            .map(entry -> {
+                String value = (entry.getValue() instanceof PersistencePath)
+                    ? this.renderProjectionPath((PersistencePath) entry.getValue())
+                    : this.renderProjectionObject((Map<String, Object>) entry.getValue());
+                return "case when " + this.renderProjectionPresent(entry.getValue())
+                    + " then jsonb_build_object(" + this.stringRenderer.render(entry.getKey()) + ", " + value + ")"
+                    + " else '{}'::jsonb end";
+            })
+            .collect(Collectors.joining(" || ", "(", ")"));
+    }
+
+    /**
+     * Render the condition of a projected field having a value, nested objects
+     * are kept when any of their selected fields has a value.
+     */
+    @SuppressWarnings("unchecked")
+    private String renderProjectionPresent(@NonNull Object node) {
+        if (node instanceof PersistencePath) {
+            return "jsonb_typeof(" + this.renderProjectionPath((PersistencePath) node) + ") <> 'null'";
+        }
+        return ((Map<String, Object>) node).values().stream()
+            .map(this::renderProjectionPresent)
+            .collect(Collectors.joining(" or ", "(", ")"));
+    }
+
+    private String renderProjectionPath(@NonNull PersistencePath path) {
+        return PersistencePath.of("value").sub(path).toPostgresJsonPath();
+    }
 }
@@ -1,20 +1,35 @@
 package eu.okaeri.persistence.jdbc.filter;
 
+import eu.okaeri.persistence.filter.QueryParameter;
+import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistence.filter.condition.LogicalOperator;
 import eu.okaeri.persistence.filter.predicate.Predicate;
 import eu.okaeri.persistence.filter.predicate.SimplePredicate;
+import eu.okaeri.persistence.filter.predicate.collection.ArrayContainsAnyPredicate;
+import eu.okaeri.persistence.filter.predicate.collection.ArrayContainsPredicate;
 import eu.okaeri.persistence.filter.predicate.collection.InPredicate;
 import eu.okaeri.persistence.filter.predicate.collection.NotInPredicate;
 import eu.okaeri.persistence.filter.predicate.equality.EqPredicate;
 import eu.okaeri.persistence.filter.renderer.DefaultFilterRenderer;
+import eu.okaeri.persistence.filter.renderer.JsonStringRenderer;
 import eu.okaeri.persistence.filter.renderer.StringRenderer;
 import lombok.NonNull;
 
-import java.util.Collection;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class SqlFilterRenderer extends DefaultFilterRenderer {
 
+    private static final JsonStringRenderer JSON_STRING_RENDERER = new JsonStringRenderer();
+
+    /**
+     * Parameters rendered as {@code ?} placeholders while rendering a template,
+     * in the order of appearance.
+     */
+    private List<QueryParameter> parameters;
+
     public SqlFilterRenderer(@NonNull StringRenderer stringRenderer) {
         super(stringRenderer);
     }
@@ -41,6 +56,93 @@ public class SqlFilterRenderer extends DefaultFilterRenderer {
         return this.stringRenderer.render(pattern);
     }
 
+    /**
+     * Renders a value as JSON text, for comparison with elements of stored JSON arrays.
+     */
+    protected String renderJsonValue(@NonNull Object value) {
+        if ((value instanceof CharSequence) || (value instanceof UUID)) {
+            return JSON_STRING_RENDERER.render(String.valueOf(value));
+        }
+        if (value instanceof Enum) {
+            return JSON_STRING_RENDERER.render(((Enum<?>) value).name());
+        }
+        if ((value instanceof Number) || (value instanceof Boolean)) {
+            return super.renderOperand(value);
+        }
+        throw new IllegalArgumentException("cannot render json value " + value + " [" + value.getClass() + "]");
+    }
+
+    /**
+     * Returns the searched elements of an array predicate.
+     *
+     * @return elements, or null if not an array predicate
+     */
+    protected Collection<?> arrayElements(@NonNull Predicate predicate) {
+        if (predicate instanceof ArrayContainsPredicate) {
+            return Collections.singletonList(((ArrayContainsPredicate) predicate).getRightOperand());
+        }
+        if (predicate instanceof ArrayContainsAnyPredicate) {
+            return (Collection<?>) ((ArrayContainsAnyPredicate) predicate).getRightOperand();
+        }
+        return null;
+    }
+
+    /**
+     * Renders an array predicate as an alternative of per-element conditions.
+     */
+    protected String renderArrayElements(@NonNull Collection<?> elements, @NonNull Function<String, String> elementCondition) {
+        if (elements.isEmpty()) {
+            return "(1 = 0)";
+        }
+        return "(" + elements.stream()
+            .map(element -> elementCondition.apply(this.renderJsonValue(element)))
+            .collect(Collectors.joining(" or ")) + ")";
+    }
+
+    /**
+     * Render a condition of a query template with its parameters as {@code ?} placeholders.
+     * <p>
+     * Not thread-safe, templates should be rendered with a dedicated renderer instance.
+     */
+    public SqlTemplate renderTemplate(@NonNull Condition condition) {
+        this.parameters = new ArrayList<>();
+        try {
+            return new SqlTemplate(this.renderCondition(condition), this.parameters, this);
+        } finally {
+            this.parameters = null;
+        }
+    }
+
+    @Override
+    protected String renderParameter(@NonNull QueryParameter parameter) {
+        if (this.parameters == null) {
+            return super.renderParameter(parameter);
+        }
+        this.parameters.add(parameter);
+        return "?";
+    }
+
+    /**
+     * Convert an argument for {@link java.sql.PreparedStatement#setObject},
+     * so that it compares the same as the literal rendered by {@link #renderOperand}.
+     */
+    public Object renderParameterValue(@NonNull Object value) {
+        // Booleans are compared as string literals 'true'/'false'
+        if (value instanceof Boolean) {
+            return String.valueOf(value);
+        }
+        if ((value instanceof Integer) || (value instanceof Long) || (value instanceof Short) || (value instanceof Byte) || (value instanceof BigDecimal)) {
+            return value;
+        }
+        if (value instanceof Number) {
+            return new BigDecimal(String.valueOf(value));
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return String.valueOf(value);
+    }
+
     @Override
     public String renderOperator(@NonNull LogicalOperator operator) {
         if (operator == LogicalOperator.AND) {
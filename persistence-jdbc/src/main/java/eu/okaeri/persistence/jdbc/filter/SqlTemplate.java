@@ -0,0 +1,41 @@
+package eu.okaeri.persistence.jdbc.filter;
+
+import eu.okaeri.persistence.filter.QueryParameter;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * SQL condition rendered from a query template, with {@code ?} placeholders
+ * for its parameters.
+ */
+@RequiredArgsConstructor
+public class SqlTemplate {
+
+    private final @Getter String sql;
+    private final @Getter List<QueryParameter> parameters;
+    private final SqlFilterRenderer renderer;
+
+    /**
+     * Check if all parameters can be bound as statement parameters.
+     */
+    public boolean isPreparable() {
+        return this.parameters.stream().allMatch(QueryParameter::isScalar);
+    }
+
+    /**
+     * Bind the arguments of a call to the placeholders of a statement.
+     *
+     * @param statement statement prepared with SQL containing this condition
+     * @param args      arguments of the call
+     */
+    public void bind(@NonNull PreparedStatement statement, @NonNull Object[] args) throws SQLException {
+        for (int i = 0; i < this.parameters.size(); i++) {
+            statement.setObject(i + 1, this.renderer.renderParameterValue(this.parameters.get(i).bind(args)));
+        }
+    }
+}
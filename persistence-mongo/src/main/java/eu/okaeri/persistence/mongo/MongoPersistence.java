@@ -14,10 +14,13 @@ import eu.okaeri.persistence.*;
 import eu.okaeri.persistence.document.*;
 import eu.okaeri.persistence.filter.DeleteFilter;
 import eu.okaeri.persistence.filter.FindFilter;
+import eu.okaeri.persistence.filter.PreparedQuery;
 import eu.okaeri.persistence.filter.UpdateFilter;
+import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistence.filter.operation.UpdateOperation;
 import eu.okaeri.persistence.filter.renderer.FilterRenderer;
 import eu.okaeri.persistence.mongo.filter.MongoFilterRenderer;
+import eu.okaeri.persistence.mongo.filter.MongoTemplate;
 import eu.okaeri.persistence.mongo.filter.MongoUpdateRenderer;
 import eu.okaeri.persistence.util.ConnectionRetry;
 import lombok.Getter;
@@ -36,7 +39,7 @@ import java.util.stream.StreamSupport;
 /**
  * MongoDB persistence backend with full native filtering, indexing, and updates.
  */
-public class MongoPersistence implements Persistence, FilterablePersistence, StreamablePersistence, UpdatablePersistence {
+public class MongoPersistence implements Persistence, FilterablePersistence, PreparablePersistence, StreamablePersistence, UpdatablePersistence {
 
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("okaeri.platform.debug", "false"));
     private static final Logger LOGGER = Logger.getLogger(MongoPersistence.class.getSimpleName());
@@ -121,10 +124,17 @@ public class MongoPersistence implements Persistence, FilterablePersistence, Str
     public void registerCollection(@NonNull PersistenceCollection collection) {
         this.knownCollections.computeIfAbsent(collection.getValue(), key -> {
             // Create native indexes (only once per collection)
-            if (!collection.getIndexes().isEmpty()) {
+            if (!collection.getIndexes().isEmpty() || !collection.getCompoundIndexes().isEmpty()) {
                 List<IndexModel> indexModels = collection.getIndexes().stream()
                     .map(index -> new IndexModel(Indexes.ascending(index.getValue())))
                     .collect(Collectors.toList());
+                // Compound indexes keep the declared component order (equality prefix first)
+                collection.getCompoundIndexes().stream()
+                    .map(index -> Indexes.compoundIndex(index.getComponents().stream()
+                        .map(component -> Indexes.ascending(component.getValue()))
+                        .collect(Collectors.toList())))
+                    .map(IndexModel::new)
+                    .forEach(indexModels::add);
                 this.mongo(collection).createIndexes(indexModels);
             }
             return collection;
@@ -238,14 +248,36 @@ public class MongoPersistence implements Persistence, FilterablePersistence, Str
     public Stream<PersistenceEntity<Document>> find(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
         this.checkCollectionRegistered(collection);
 
+        Bson where = (filter.getWhere() == null)
+            ? null
+            : org.bson.Document.parse(this.debugQuery(FILTER_RENDERER.renderCondition(filter.getWhere())));
+
+        Bson sort = filter.hasOrderBy()
+            ? org.bson.Document.parse(this.debugQuery(FILTER_RENDERER.renderOrderBy(filter.getOrderBy())))
+            : null;
+
+        return this.find(collection, where, sort, filter);
+    }
+
+    private Stream<PersistenceEntity<Document>> find(PersistenceCollection collection, Bson where, Bson sort, FindFilter filter) {
+
         FindIterable<BasicDBObject> findIterable = this.mongo(collection).find();
 
-        if (filter.getWhere() != null) {
-            findIterable = findIterable.filter(org.bson.Document.parse(this.debugQuery(FILTER_RENDERER.renderCondition(filter.getWhere()))));
+        if (where != null) {
+            findIterable = findIterable.filter(where);
         }
 
-        if (filter.hasOrderBy()) {
-            findIterable = findIterable.sort(org.bson.Document.parse(this.debugQuery(FILTER_RENDERER.renderOrderBy(filter.getOrderBy()))));
+        if (sort != null) {
+            findIterable = findIterable.sort(sort);
+        }
+
+        if (filter.hasProjection()) {
+            List<String> paths = filter.getProjection().getPaths().stream()
+                .map(PersistencePath::toMongoPath)
+                .collect(Collectors.toList());
+            findIterable = findIterable.projection(filter.getProjection().isExclude()
+                ? Projections.exclude(paths)
+                : Projections.include(paths));
         }
 
         if (filter.hasLimit()) {
@@ -264,6 +296,44 @@ public class MongoPersistence implements Persistence, FilterablePersistence, Str
             .spliterator(), false);
     }
 
+    @Override
+    public long count(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
+        this.checkCollectionRegistered(collection);
+
+        Bson where = (filter.getWhere() == null)
+            ? new org.bson.Document()
+            : org.bson.Document.parse(this.debugQuery(FILTER_RENDERER.renderCondition(filter.getWhere())));
+
+        return this.count(collection, where, filter);
+    }
+
+    private long count(PersistenceCollection collection, Bson where, FindFilter filter) {
+
+        CountOptions options = new CountOptions();
+        if (filter.hasLimit()) {
+            options.limit(filter.getLimit());
+        }
+        if (filter.hasSkip()) {
+            options.skip(filter.getSkip());
+        }
+
+        return this.mongo(collection).countDocuments(where, options);
+    }
+
+    @Override
+    public boolean exists(@NonNull PersistenceCollection collection, @NonNull Condition condition) {
+        this.checkCollectionRegistered(collection);
+        return this.exists(collection, org.bson.Document.parse(this.debugQuery(FILTER_RENDERER.renderCondition(condition))));
+    }
+
+    private boolean exists(PersistenceCollection collection, Bson where) {
+        return this.mongo(collection).find()
+            .filter(where)
+            .projection(Projections.include("_id"))
+            .limit(1)
+            .first() != null;
+    }
+
     @Override
     public long delete(@NonNull PersistenceCollection collection, @NonNull DeleteFilter filter) {
         this.checkCollectionRegistered(collection);
@@ -277,6 +347,45 @@ public class MongoPersistence implements Persistence, FilterablePersistence, Str
             .getDeletedCount();
     }
 
+    @Override
+    public PreparedQuery prepare(@NonNull PersistenceCollection collection, @NonNull FindFilter template) {
+        this.checkCollectionRegistered(collection);
+
+        MongoTemplate where = (template.getWhere() == null) ? null : new MongoFilterRenderer().renderTemplate(template.getWhere());
+        if ((where != null) && !where.isPreparable()) {
+            return null;
+        }
+
+        Bson sort = template.hasOrderBy()
+            ? org.bson.Document.parse(this.debugQuery(FILTER_RENDERER.renderOrderBy(template.getOrderBy())))
+            : null;
+
+        return new PreparedQuery() {
+            @Override
+            public Stream<PersistenceEntity<Document>> find(@NonNull Object... args) {
+                return MongoPersistence.this.find(collection, (where == null) ? null : where.bind(args), sort, template);
+            }
+
+            @Override
+            public long count(@NonNull Object... args) {
+                return MongoPersistence.this.count(collection, (where == null) ? new org.bson.Document() : where.bind(args), template);
+            }
+
+            @Override
+            public boolean exists(@NonNull Object... args) {
+                return MongoPersistence.this.exists(collection, (where == null) ? new org.bson.Document() : where.bind(args));
+            }
+
+            @Override
+            public long delete(@NonNull Object... args) {
+                if (where == null) {
+                    throw new IllegalArgumentException("DeleteFilter requires WHERE condition - use deleteAll() instead");
+                }
+                return MongoPersistence.this.mongo(collection).deleteMany(where.bind(args)).getDeletedCount();
+            }
+        };
+    }
+
     // ==================== UPDATES ====================
 
     @Override
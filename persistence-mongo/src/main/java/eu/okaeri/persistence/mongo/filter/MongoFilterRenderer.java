@@ -3,9 +3,12 @@ package eu.okaeri.persistence.mongo.filter;
 import eu.okaeri.persistence.PersistencePath;
 import eu.okaeri.persistence.filter.OrderBy;
 import eu.okaeri.persistence.filter.OrderDirection;
+import eu.okaeri.persistence.filter.QueryParameter;
 import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistence.filter.condition.LogicalOperator;
 import eu.okaeri.persistence.filter.predicate.Predicate;
+import eu.okaeri.persistence.filter.predicate.collection.ArrayContainsAnyPredicate;
+import eu.okaeri.persistence.filter.predicate.collection.ArrayContainsPredicate;
 import eu.okaeri.persistence.filter.predicate.collection.InPredicate;
 import eu.okaeri.persistence.filter.predicate.collection.NotInPredicate;
 import eu.okaeri.persistence.filter.predicate.equality.EqPredicate;
@@ -22,12 +25,20 @@ import eu.okaeri.persistence.filter.predicate.string.StartsWithPredicate;
 import eu.okaeri.persistence.filter.renderer.DefaultFilterRenderer;
 import lombok.NonNull;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class MongoFilterRenderer extends DefaultFilterRenderer {
 
+    /**
+     * Parameters rendered as placeholder documents while rendering a template,
+     * in the order of appearance.
+     */
+    private List<QueryParameter> parameters;
+
     public MongoFilterRenderer() {
         super(new MongoStringRenderer());
     }
@@ -44,6 +55,52 @@ public class MongoFilterRenderer extends DefaultFilterRenderer {
         return regexEscaped.replace("\\", "\\\\").replace("\"", "\\\"");
     }
 
+    /**
+     * Render a condition of a query template with its parameters as placeholder documents.
+     * <p>
+     * Not thread-safe, templates should be rendered with a dedicated renderer instance.
+     */
+    public MongoTemplate renderTemplate(@NonNull Condition condition) {
+        this.parameters = new ArrayList<>();
+        try {
+            return new MongoTemplate(this.renderCondition(condition), this.parameters, this);
+        } finally {
+            this.parameters = null;
+        }
+    }
+
+    @Override
+    protected String renderParameter(@NonNull QueryParameter parameter) {
+        if (this.parameters == null) {
+            return super.renderParameter(parameter);
+        }
+        this.parameters.add(parameter);
+        return "{\"" + MongoTemplate.PARAMETER_KEY + "\": " + (this.parameters.size() - 1) + "}";
+    }
+
+    /**
+     * Convert an argument to a BSON value that compares the same
+     * as the literal rendered by {@link #renderOperand}.
+     */
+    public Object renderParameterValue(@NonNull Object value) {
+        if ((value instanceof Integer) || (value instanceof Long) || (value instanceof Double) || (value instanceof BigDecimal) || (value instanceof Boolean)) {
+            return value;
+        }
+        if (value instanceof Float) {
+            return Double.valueOf(String.valueOf(value));
+        }
+        if ((value instanceof Short) || (value instanceof Byte)) {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof Number) {
+            return new BigDecimal(String.valueOf(value));
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return String.valueOf(value);
+    }
+
     @Override
     public String renderOperator(@NonNull LogicalOperator operator) {
         if (operator == LogicalOperator.AND) {
@@ -119,6 +176,14 @@ public class MongoFilterRenderer extends DefaultFilterRenderer {
             return "{ \"" + path.toMongoPath() + "\": { \"$ne\": null } }";
         }
 
+        // Array element predicates, $elemMatch matches arrays only and uses multikey indexes
+        if (predicate instanceof ArrayContainsPredicate) {
+            return "{ \"" + path.toMongoPath() + "\": { \"$elemMatch\": { \"$eq\": " + this.renderOperand(predicate) + " }}}";
+        }
+        if (predicate instanceof ArrayContainsAnyPredicate) {
+            return "{ \"" + path.toMongoPath() + "\": { \"$elemMatch\": { \"$in\": " + this.renderOperand(predicate) + " }}}";
+        }
+
         // Handle case-insensitive equals
         if ((predicate instanceof EqPredicate) && ((EqPredicate) predicate).isIgnoreCase()) {
             String value = this.escapeRegex((String) ((EqPredicate) predicate).getRightOperand());
@@ -0,0 +1,78 @@
+package eu.okaeri.persistence.mongo.filter;
+
+import eu.okaeri.persistence.filter.QueryParameter;
+import lombok.Getter;
+import lombok.NonNull;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filter document parsed once from a query template, with placeholder
+ * documents for its parameters.
+ */
+public class MongoTemplate {
+
+    static final String PARAMETER_KEY = "$okaeriParameter";
+
+    private final @Getter String json;
+    private final @Getter List<QueryParameter> parameters;
+    private final MongoFilterRenderer renderer;
+    private final Document filter;
+
+    MongoTemplate(@NonNull String json, @NonNull List<QueryParameter> parameters, @NonNull MongoFilterRenderer renderer) {
+        this.json = json;
+        this.parameters = parameters;
+        this.renderer = renderer;
+        this.filter = Document.parse(json);
+    }
+
+    /**
+     * Check if all parameters can be bound as BSON values.
+     */
+    public boolean isPreparable() {
+        return this.parameters.stream().allMatch(QueryParameter::isScalar);
+    }
+
+    /**
+     * Copy the filter with the arguments of a call in place of the placeholders.
+     *
+     * @param args arguments of the call
+     * @return filter document
+     */
+    public Document bind(@NonNull Object[] args) {
+        Object[] values = new Object[this.parameters.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.renderer.renderParameterValue(this.parameters.get(i).bind(args));
+        }
+        return (Document) bind(this.filter, values);
+    }
+
+    private static Object bind(Object node, Object[] values) {
+
+        if (node instanceof Document) {
+            Document document = (Document) node;
+            if ((document.size() == 1) && document.containsKey(PARAMETER_KEY)) {
+                return values[document.getInteger(PARAMETER_KEY)];
+            }
+            Document bound = new Document();
+            for (Map.Entry<String, Object> entry : document.entrySet()) {
+                bound.put(entry.getKey(), bind(entry.getValue(), values));
+            }
+            return bound;
+        }
+
+        if (node instanceof List) {
+            List<?> list = (List<?>) node;
+            List<Object> bound = new ArrayList<>(list.size());
+            for (Object element : list) {
+                bound.add(bind(element, values));
+            }
+            return bound;
+        }
+
+        return node;
+    }
+}
@@ -0,0 +1,110 @@
+package eu.okaeri.persistence.processor;
+
+import eu.okaeri.persistence.repository.query.EntitySchema;
+import lombok.NonNull;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entity schema built from the compiler model of a document class.
+ * <p>
+ * Follows the rules of the config declaration used at runtime: non-static fields
+ * of the class and its superclasses (up to {@code Document} or {@code OkaeriConfig}),
+ * excluding {@code @Exclude} fields and renamed with {@code @CustomKey}.
+ */
+final class ElementEntitySchema implements EntitySchema {
+
+    private static final String OKAERI_CONFIG = "eu.okaeri.configs.OkaeriConfig";
+    private static final String EXCLUDE = "eu.okaeri.configs.annotation.Exclude";
+    private static final String CUSTOM_KEY = "eu.okaeri.configs.annotation.CustomKey";
+    private static final String DOCUMENT = "eu.okaeri.persistence.document.Document";
+
+    private final ProcessingEnvironment env;
+    private final TypeElement type;
+    private final Map<String, TypeMirror> fields = new LinkedHashMap<>();
+
+    ElementEntitySchema(@NonNull ProcessingEnvironment env, @NonNull TypeElement type) {
+        this.env = env;
+        this.type = type;
+
+        TypeElement current = type;
+        while ((current != null) && !isBaseClass(current)) {
+            for (Element member : current.getEnclosedElements()) {
+                if ((member.getKind() != ElementKind.FIELD) || member.getModifiers().contains(Modifier.STATIC)) {
+                    continue;
+                }
+                if (findAnnotation(member, EXCLUDE) != null) {
+                    continue;
+                }
+                this.fields.putIfAbsent(fieldName((VariableElement) member), member.asType());
+            }
+            TypeMirror superclass = current.getSuperclass();
+            current = (superclass.getKind() == TypeKind.DECLARED) ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return this.type.getSimpleName().toString();
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return new ArrayList<>(this.fields.keySet());
+    }
+
+    @Override
+    public boolean hasField(@NonNull String name) {
+        return this.fields.containsKey(name);
+    }
+
+    @Override
+    public EntitySchema getNested(@NonNull String name) {
+
+        TypeMirror fieldType = this.fields.get(name);
+        TypeElement config = this.env.getElementUtils().getTypeElement(OKAERI_CONFIG);
+        if ((fieldType == null) || (fieldType.getKind() != TypeKind.DECLARED) || (config == null)) {
+            return null;
+        }
+
+        if (!this.env.getTypeUtils().isSubtype(this.env.getTypeUtils().erasure(fieldType), this.env.getTypeUtils().erasure(config.asType()))) {
+            return null;
+        }
+
+        return new ElementEntitySchema(this.env, (TypeElement) ((DeclaredType) fieldType).asElement());
+    }
+
+    private static boolean isBaseClass(TypeElement type) {
+        String name = type.getQualifiedName().toString();
+        return name.equals(DOCUMENT) || name.equals(OKAERI_CONFIG) || name.equals(Object.class.getName());
+    }
+
+    private static String fieldName(VariableElement field) {
+        AnnotationMirror customKey = findAnnotation(field, CUSTOM_KEY);
+        if (customKey != null) {
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : customKey.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value") && !String.valueOf(entry.getValue().getValue()).isEmpty()) {
+                    return String.valueOf(entry.getValue().getValue());
+                }
+            }
+        }
+        return field.getSimpleName().toString();
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+}
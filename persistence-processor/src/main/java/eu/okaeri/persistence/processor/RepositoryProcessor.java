@@ -0,0 +1,258 @@
+package eu.okaeri.persistence.processor;
+
+import eu.okaeri.persistence.PersistenceEntity;
+import eu.okaeri.persistence.document.Document;
+import eu.okaeri.persistence.repository.DefaultDocumentRepository;
+import eu.okaeri.persistence.repository.DocumentRepository;
+import eu.okaeri.persistence.repository.RepositoryDeclaration;
+import eu.okaeri.persistence.repository.annotation.DocumentCollection;
+import eu.okaeri.persistence.repository.query.EntitySchema;
+import eu.okaeri.persistence.repository.query.MethodNameParser;
+import eu.okaeri.persistence.repository.query.MethodParseException;
+import eu.okaeri.persistence.repository.query.ParsedMethod;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates implementations of {@link DocumentCollection} repository interfaces at compile time.
+ * <p>
+ * Query methods are parsed with {@link MethodNameParser} against the entity fields
+ * from the compiler model, so invalid method names fail the compilation instead of
+ * the repository creation. Generated classes prepare their query templates once and are
+ * used by {@code DocumentPersistence#createRepository} instead of the runtime proxy.
+ * Repositories that cannot be implemented from the outside (private, generic)
+ * are skipped and keep using the proxy.
+ */
+@SupportedAnnotationTypes("eu.okaeri.persistence.repository.annotation.DocumentCollection")
+public class RepositoryProcessor extends AbstractProcessor {
+
+    private static final Set<String> FIND_RETURN_TYPES = new HashSet<>(Arrays.asList(
+        "java.util.Optional", "java.util.stream.Stream", "java.util.List", "java.util.Collection", "java.util.Set"
+    ));
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(DocumentCollection.class)) {
+            if (element.getKind() == ElementKind.INTERFACE) {
+                this.generate((TypeElement) element);
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement repository) {
+
+        Types types = this.processingEnv.getTypeUtils();
+        Elements elements = this.processingEnv.getElementUtils();
+
+        if (!this.isImplementable(repository)) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "Repository " + repository.getSimpleName() + " is not accessible for a generated implementation, using proxy", repository);
+            return;
+        }
+
+        DeclaredType repositoryType = this.findSupertype(repository.asType(), DocumentRepository.class.getName());
+        if ((repositoryType == null) || (repositoryType.getTypeArguments().size() != 2)) {
+            this.error("Repository must extend DocumentRepository<PATH, T>: " + repository.getSimpleName(), repository);
+            return;
+        }
+
+        TypeMirror entityType = repositoryType.getTypeArguments().get(1);
+        if ((entityType.getKind() != TypeKind.DECLARED) || !((TypeElement) types.asElement(entityType)).getTypeParameters().isEmpty()) {
+            this.error("Repository entity must be a non-generic document class: " + repository.getSimpleName(), repository);
+            return;
+        }
+
+        TypeElement entity = (TypeElement) types.asElement(entityType);
+        EntitySchema schema = new ElementEntitySchema(this.processingEnv, entity);
+        TypeElement defaultRepository = elements.getTypeElement(DefaultDocumentRepository.class.getName());
+        TypeElement object = elements.getTypeElement(Object.class.getName());
+
+        String packageName = elements.getPackageOf(repository).getQualifiedName().toString();
+        String generatedName = RepositoryDeclaration.getGeneratedName(elements.getBinaryName(repository).toString());
+        RepositorySource source = new RepositorySource(packageName, generatedName.substring(generatedName.lastIndexOf('.') + 1),
+            repository.getQualifiedName().toString(), entity.getQualifiedName().toString());
+
+        boolean valid = true;
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(repository))) {
+
+            if (!method.getModifiers().contains(Modifier.ABSTRACT) || this.declares(object, method)) {
+                continue;
+            }
+
+            ExecutableType methodType = (ExecutableType) types.asMemberOf((DeclaredType) repository.asType(), method);
+            if (this.declares(defaultRepository, method)) {
+                source.delegate(method, methodType);
+                continue;
+            }
+
+            String methodName = method.getSimpleName().toString();
+            try {
+                ParsedMethod parsed = MethodNameParser.parse(methodName, method.getParameters().size(), schema);
+                String returnKind = this.validate(parsed, methodName, methodType.getReturnType(), entityType);
+                List<String> parameterClasses = methodType.getParameterTypes().stream()
+                    .map(parameterType -> types.erasure(parameterType) + ".class")
+                    .collect(Collectors.toList());
+                source.query(method, methodType, parsed, parameterClasses, returnKind, this.isEntityWrapper(methodType.getReturnType()));
+            } catch (MethodParseException exception) {
+                this.error(exception.getMessage(), (method.getEnclosingElement() == repository) ? method : repository);
+                valid = false;
+            }
+        }
+
+        if (!valid) {
+            return;
+        }
+
+        try (Writer writer = this.processingEnv.getFiler().createSourceFile(generatedName, repository).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException exception) {
+            this.error("Cannot write " + generatedName + ": " + exception.getMessage(), repository);
+        }
+    }
+
+    /**
+     * Validate the return type of a parsed method, mirroring the runtime validation.
+     *
+     * @return erased return type name, or the primitive name
+     */
+    private String validate(ParsedMethod parsed, String methodName, TypeMirror returnType, TypeMirror entityType) {
+
+        Types types = this.processingEnv.getTypeUtils();
+        String returnKind = types.erasure(returnType).toString();
+
+        if (parsed.isRequiresStreamReturn() && !returnKind.equals(Stream.class.getName())) {
+            throw new MethodParseException("Methods with 'stream' prefix must return Stream<T>: " + methodName);
+        }
+
+        switch (parsed.getOperation()) {
+            case COUNT:
+                if (!returnKind.equals("long") && !returnKind.equals(Long.class.getName())) {
+                    throw new MethodParseException("Count methods must return long: " + methodName);
+                }
+                break;
+            case EXISTS:
+                if (!returnKind.equals("boolean") && !returnKind.equals(Boolean.class.getName())) {
+                    throw new MethodParseException("Exists methods must return boolean: " + methodName);
+                }
+                break;
+            case DELETE:
+                if (!returnKind.equals("long") && !returnKind.equals(Long.class.getName()) && !returnKind.equals("void") && !returnKind.equals(Void.class.getName())) {
+                    throw new MethodParseException("Delete methods must return long or void: " + methodName);
+                }
+                if (parsed.getQueryParts().isEmpty()) {
+                    throw new MethodParseException("DELETE operations require a WHERE condition: " + methodName);
+                }
+                break;
+            case FIND:
+                if (FIND_RETURN_TYPES.contains(returnKind)) {
+                    break;
+                }
+                TypeElement document = this.processingEnv.getElementUtils().getTypeElement(Document.class.getName());
+                if ((returnType.getKind() != TypeKind.DECLARED) || !types.isAssignable(returnType, document.asType())) {
+                    throw new MethodParseException("Find methods must return Optional<T>, Stream<T>, List<T>, Collection<T>, Set<T>, or T: " + methodName);
+                }
+                if (!types.isAssignable(entityType, returnType)) {
+                    throw new MethodParseException("Find methods returning T must return the repository entity type: " + methodName);
+                }
+                break;
+        }
+
+        return returnKind;
+    }
+
+    private boolean isEntityWrapper(TypeMirror returnType) {
+        if (returnType.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        List<? extends TypeMirror> arguments = ((DeclaredType) returnType).getTypeArguments();
+        return !arguments.isEmpty()
+            && this.processingEnv.getTypeUtils().erasure(arguments.get(0)).toString().equals(PersistenceEntity.class.getName());
+    }
+
+    private boolean isImplementable(TypeElement repository) {
+        if (!repository.getTypeParameters().isEmpty()) {
+            return false;
+        }
+        Element current = repository;
+        while (current.getKind() != ElementKind.PACKAGE) {
+            if (!(current.getKind().isClass() || current.getKind().isInterface()) || current.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            current = current.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private DeclaredType findSupertype(TypeMirror type, String name) {
+        Types types = this.processingEnv.getTypeUtils();
+        for (TypeMirror supertype : types.directSupertypes(type)) {
+            if (types.erasure(supertype).toString().equals(name)) {
+                return (DeclaredType) supertype;
+            }
+            DeclaredType found = this.findSupertype(supertype, name);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if a type has a method with the same name and erased parameters,
+     * the same way the runtime proxy looks up {@link DefaultDocumentRepository} methods.
+     */
+    private boolean declares(TypeElement type, ExecutableElement method) {
+        Types types = this.processingEnv.getTypeUtils();
+        for (ExecutableElement candidate : ElementFilter.methodsIn(this.processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!candidate.getModifiers().contains(Modifier.PUBLIC) || !candidate.getSimpleName().equals(method.getSimpleName())) {
+                continue;
+            }
+            List<? extends VariableElement> candidateParameters = candidate.getParameters();
+            List<? extends VariableElement> parameters = method.getParameters();
+            if (candidateParameters.size() != parameters.size()) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < parameters.size(); i++) {
+                if (!types.isSameType(types.erasure(candidateParameters.get(i).asType()), types.erasure(parameters.get(i).asType()))) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void error(String message, Element element) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,243 @@
+package eu.okaeri.persistence.processor;
+
+import eu.okaeri.persistence.filter.condition.LogicalOperator;
+import eu.okaeri.persistence.repository.query.OrderPart;
+import eu.okaeri.persistence.repository.query.ParsedMethod;
+import eu.okaeri.persistence.repository.query.QueryPart;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Source of a generated repository implementation.
+ * <p>
+ * Library types are referenced by their qualified names, so that the generated
+ * class does not need imports that could clash with the user types.
+ */
+final class RepositorySource {
+
+    private static final String PERSISTENCE_ENTITY = "eu.okaeri.persistence.PersistenceEntity";
+    private static final String FIND_FILTER = "eu.okaeri.persistence.filter.FindFilter";
+    private static final String PREPARED_QUERY = "eu.okaeri.persistence.filter.PreparedQuery";
+    private static final String QUERY_PARAMETER = "eu.okaeri.persistence.filter.QueryParameter";
+    private static final String ORDER_BY = "eu.okaeri.persistence.filter.OrderBy";
+    private static final String CONDITION = "eu.okaeri.persistence.filter.condition.Condition";
+    private static final String EQ_PREDICATE = "eu.okaeri.persistence.filter.predicate.equality.EqPredicate";
+
+    private final StringBuilder header = new StringBuilder();
+    private final StringBuilder fields = new StringBuilder();
+    private final StringBuilder constructor = new StringBuilder();
+    private final StringBuilder methods = new StringBuilder();
+    private final String entityName;
+    private int queries;
+
+    RepositorySource(String packageName, String className, String repositoryName, String entityName) {
+
+        this.entityName = entityName;
+
+        if (!packageName.isEmpty()) {
+            this.header.append("package ").append(packageName).append(";\n\n");
+        }
+
+        this.header
+            .append("/**\n")
+            .append(" * Implementation of {@link ").append(repositoryName).append("} generated by the repository annotation processor.\n")
+            .append(" */\n")
+            .append("public final class ").append(className).append(" implements ").append(repositoryName).append(" {\n\n")
+            .append("    private final eu.okaeri.persistence.document.DocumentPersistence persistence;\n")
+            .append("    private final eu.okaeri.persistence.PersistenceCollection collection;\n")
+            .append("    private final eu.okaeri.persistence.repository.DefaultDocumentRepository<").append(entityName).append("> repository;\n");
+
+        this.constructor
+            .append("\n    public ").append(className).append("(eu.okaeri.persistence.document.DocumentPersistence persistence, eu.okaeri.persistence.PersistenceCollection collection) {\n")
+            .append("        this.persistence = persistence;\n")
+            .append("        this.collection = collection;\n")
+            .append("        this.repository = new eu.okaeri.persistence.repository.DefaultDocumentRepository<>(persistence, collection, ").append(entityName).append(".class);\n");
+    }
+
+    /**
+     * Implement a method provided by the default repository.
+     */
+    void delegate(ExecutableElement method, ExecutableType methodType) {
+        String arguments = method.getParameters().stream()
+            .map(parameter -> parameter.getSimpleName().toString())
+            .collect(Collectors.joining(", "));
+        String call = "this.repository." + method.getSimpleName() + "(" + arguments + ")";
+        this.signature(method, methodType);
+        this.methods.append("        ").append((methodType.getReturnType().getKind() == TypeKind.VOID) ? "" : "return ").append(call).append(";\n");
+        this.methods.append("    }\n");
+    }
+
+    /**
+     * Implement a query method with a query template prepared in the constructor.
+     *
+     * @param parameterClasses erased parameter types, as class literals
+     * @param returnKind       erased return type name, or the primitive name
+     * @param entityWrapper    whether the result elements are persistence entities
+     */
+    void query(ExecutableElement method, ExecutableType methodType, ParsedMethod parsed, List<String> parameterClasses, String returnKind, boolean entityWrapper) {
+
+        String query = "this.query" + this.queries++;
+        this.fields.append("    private final ").append(PREPARED_QUERY).append(" ").append(query.substring("this.".length())).append(";\n");
+        this.constructor.append("        ").append(query).append(" = persistence.prepare(collection, ")
+            .append(findFilter(parsed, condition(parsed, parameterClasses)).replace("\n            ", "\n                "))
+            .append(");\n");
+
+        List<String> parameters = method.getParameters().stream()
+            .map(parameter -> parameter.getSimpleName().toString())
+            .collect(Collectors.toList());
+        // a single argument is cast so that it is not spread as the varargs array
+        String arguments = (parameters.size() == 1) ? ("(Object) " + parameters.get(0)) : String.join(", ", parameters);
+        String value = entityWrapper ? "" : "\n            .map(" + PERSISTENCE_ENTITY + "::getValue)";
+
+        this.signature(method, methodType);
+        switch (parsed.getOperation()) {
+            case FIND:
+                String entities = "return " + query + ".find(" + arguments + ")\n            .map(entity -> entity.into(" + this.entityName + ".class))";
+                switch (returnKind) {
+                    case "java.util.Optional":
+                        this.line(entities + "\n            .findFirst()" + value + ";");
+                        break;
+                    case "java.util.stream.Stream":
+                        this.line(entities + value + ";");
+                        break;
+                    case "java.util.List":
+                    case "java.util.Collection":
+                        this.line(entities + value + "\n            .collect(java.util.stream.Collectors.toList());");
+                        break;
+                    case "java.util.Set":
+                        this.line(entities + value + "\n            .collect(java.util.stream.Collectors.toSet());");
+                        break;
+                    default:
+                        this.line(entities + "\n            .findFirst()\n            .map(" + PERSISTENCE_ENTITY + "::getValue)\n            .orElse(null);");
+                        break;
+                }
+                break;
+            case COUNT:
+                this.line("return " + query + ".count(" + arguments + ");");
+                break;
+            case EXISTS:
+                this.line("return " + query + ".exists(" + arguments + ");");
+                break;
+            case DELETE:
+                String delete = query + ".delete(" + arguments + ");";
+                if (returnKind.equals("void")) {
+                    this.line(delete);
+                } else if (returnKind.equals(Void.class.getName())) {
+                    this.line(delete);
+                    this.line("return null;");
+                } else {
+                    this.line("return " + delete);
+                }
+                break;
+        }
+        this.methods.append("    }\n");
+    }
+
+    private void signature(ExecutableElement method, ExecutableType methodType) {
+
+        this.methods.append("\n    @Override\n    public ");
+        if (!methodType.getTypeVariables().isEmpty()) {
+            this.methods.append(methodType.getTypeVariables().stream()
+                .map(RepositorySource::typeVariable)
+                .collect(Collectors.joining(", ", "<", "> ")));
+        }
+        this.methods.append(methodType.getReturnType()).append(" ").append(method.getSimpleName()).append("(");
+
+        List<? extends TypeMirror> parameterTypes = methodType.getParameterTypes();
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            if (i > 0) {
+                this.methods.append(", ");
+            }
+            this.methods.append(parameterTypes.get(i)).append(" ").append(method.getParameters().get(i).getSimpleName());
+        }
+        this.methods.append(")");
+
+        if (!methodType.getThrownTypes().isEmpty()) {
+            this.methods.append(methodType.getThrownTypes().stream()
+                .map(TypeMirror::toString)
+                .collect(Collectors.joining(", ", " throws ", "")));
+        }
+        this.methods.append(" {\n");
+    }
+
+    private void line(String line) {
+        this.methods.append("        ").append(line).append("\n");
+    }
+
+    private static String typeVariable(TypeVariable variable) {
+        String bound = variable.getUpperBound().toString();
+        return bound.equals(Object.class.getName()) ? variable.toString() : (variable + " extends " + bound);
+    }
+
+    private static String findFilter(ParsedMethod parsed, String condition) {
+
+        StringBuilder filter = new StringBuilder(FIND_FILTER).append(".builder()");
+        if (condition != null) {
+            filter.append("\n            .where(").append(condition).append(")");
+        }
+
+        if (!parsed.getOrderParts().isEmpty()) {
+            filter.append("\n            .orderBy(").append(parsed.getOrderParts().stream()
+                .map(RepositorySource::orderBy)
+                .collect(Collectors.joining(", "))).append(")");
+        }
+
+        if (parsed.getResultLimit() != null) {
+            filter.append("\n            .limit(").append(parsed.getResultLimit()).append(")");
+        }
+
+        return filter.append("\n            .build()").toString();
+    }
+
+    private static String orderBy(OrderPart part) {
+        return ORDER_BY + (part.isAscending() ? ".asc(" : ".desc(") + literal(part.getField()) + ")";
+    }
+
+    /**
+     * Template condition of the query parts, with the same precedence as the runtime proxy:
+     * consecutive AND parts are grouped first, then the groups are combined with OR.
+     *
+     * @return condition expression, or null for methods without conditions
+     */
+    private static String condition(ParsedMethod parsed, List<String> parameterClasses) {
+
+        List<QueryPart> parts = parsed.getQueryParts();
+        if (parts.isEmpty()) {
+            return null;
+        }
+
+        List<String> orOperands = new ArrayList<>();
+        List<String> andGroup = new ArrayList<>();
+        for (QueryPart part : parts) {
+            if ((part.getLogicalOperator() == LogicalOperator.OR) && !andGroup.isEmpty()) {
+                orOperands.add(group("and", andGroup));
+                andGroup = new ArrayList<>();
+            }
+            String parameter = QUERY_PARAMETER + ".of(" + part.getParameterIndex() + ", " + parameterClasses.get(part.getParameterIndex()) + ")";
+            andGroup.add(CONDITION + ".on(" + literal(part.getField()) + ", new " + EQ_PREDICATE + "(" + parameter + "))");
+        }
+        orOperands.add(group("and", andGroup));
+
+        return group("or", orOperands);
+    }
+
+    private static String group(String operator, List<String> operands) {
+        return (operands.size() == 1) ? operands.get(0) : (CONDITION + "." + operator + "(" + String.join(", ", operands) + ")");
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    @Override
+    public String toString() {
+        return this.header.toString() + this.fields + this.constructor + "    }\n" + this.methods + "}\n";
+    }
+}
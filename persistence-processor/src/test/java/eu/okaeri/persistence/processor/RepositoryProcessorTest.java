@@ -0,0 +1,100 @@
+package eu.okaeri.persistence.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryProcessorTest {
+
+    private static final String USER = "package shop;\n" +
+        "public class User extends eu.okaeri.persistence.document.Document {\n" +
+        "    public static class Profile extends eu.okaeri.configs.OkaeriConfig { private String city; }\n" +
+        "    private String name;\n" +
+        "    private int level;\n" +
+        "    private Profile profile;\n" +
+        "}\n";
+
+    private static String repository(String... methods) {
+        return "package shop;\n" +
+            "import java.util.*;\n" +
+            "@eu.okaeri.persistence.repository.annotation.DocumentCollection(path = \"users\")\n" +
+            "public interface UserRepository extends eu.okaeri.persistence.repository.DocumentRepository<UUID, User> {\n" +
+            String.join("\n", methods) + "\n" +
+            "}\n";
+    }
+
+    private static List<Diagnostic<? extends JavaFileObject>> compile(Path output, String... sources) throws IOException {
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<JavaFileObject> units = Arrays.stream(sources)
+            .map(source -> new SimpleJavaFileObject(URI.create("string:///" + className(source).replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            })
+            .collect(Collectors.toList());
+
+        List<String> options = Arrays.asList(
+            "-classpath", System.getProperty("java.class.path"),
+            "-processor", RepositoryProcessor.class.getName(),
+            "-d", output.toString(),
+            "-s", output.toString()
+        );
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            compiler.getTask(null, fileManager, diagnostics, options, null, units).call();
+        }
+        return diagnostics.getDiagnostics().stream()
+            .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+            .collect(Collectors.toList());
+    }
+
+    private static String className(String source) {
+        String packageName = source.substring("package ".length(), source.indexOf(';'));
+        int nameStart = source.indexOf(source.contains("public interface ") ? "public interface " : "public class ");
+        String name = source.substring(nameStart).split(" ")[2];
+        return packageName + "." + name;
+    }
+
+    @Test
+    void query_methods_are_implemented(@TempDir Path output) throws IOException {
+        String repository = repository(
+            "    Optional<User> findByName(String name);",
+            "    List<User> findByNameOrLevelAndProfileCity(String name, int level, String city);",
+            "    long countByLevel(int level);",
+            "    void deleteByName(String name);"
+        );
+
+        assertThat(compile(output, USER, repository)).isEmpty();
+
+        String generated = new String(Files.readAllBytes(output.resolve("shop/UserRepositoryImpl.java")), StandardCharsets.UTF_8);
+        assertThat(generated).contains("implements shop.UserRepository");
+        assertThat(generated).contains("Condition.on(\"profile.city\"");
+        assertThat(generated).contains("return this.repository.save(");
+        assertThat(output.resolve("shop/UserRepositoryImpl.class")).exists();
+    }
+
+    @Test
+    void invalid_method_fails_compilation(@TempDir Path output) throws IOException {
+        String repository = repository("    Optional<User> findByNickname(String nickname);");
+
+        List<Diagnostic<? extends JavaFileObject>> errors = compile(output, USER, repository);
+
+        assertThat(errors).hasSize(1);
+        assertThat(errors.get(0).getMessage(null)).contains("Unknown field 'nickname'");
+        assertThat(output.resolve("shop/UserRepositoryImpl.java")).doesNotExist();
+    }
+}
@@ -10,6 +10,7 @@ import eu.okaeri.persistence.document.PersistenceBuilder;
 import io.lettuce.core.*;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
 import io.lettuce.core.codec.RedisCodec;
 import io.lettuce.core.codec.StringCodec;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
@@ -18,6 +19,7 @@ import lombok.Getter;
 import lombok.NonNull;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
@@ -27,7 +29,8 @@ import java.util.stream.StreamSupport;
 
 /**
  * Redis persistence backend using Lettuce client.
- * Stores documents as JSON in Redis hashes.
+ * Stores documents in Redis hashes as the serializer's bytes in the configured encoding
+ * (JSON text, or a binary/compressed form when enabled in the serializer config).
  * <p>
  * Note: Redis doesn't support native filtering or indexing.
  * Use {@link eu.okaeri.persistence.document.DocumentPersistence} wrapper
@@ -39,6 +42,7 @@ public class RedisPersistence implements Persistence {
 
     private final @Getter PersistencePath basePath;
     private @Getter StatefulRedisConnection<String, String> connection;
+    private @Getter StatefulRedisConnection<String, byte[]> documentConnection;
     private @Getter RedisClient client;
 
     private final @Getter DocumentSerializer serializer;
@@ -91,6 +95,8 @@ public class RedisPersistence implements Persistence {
     private void connect(RedisClient client) {
         this.client = client;
         this.connection = this.createConnection(StringCodec.UTF8);
+        // documents are stored as the serializer's encoded bytes (possibly binary or compressed)
+        this.documentConnection = this.createConnection(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
     }
 
     public <K, V> StatefulRedisConnection<K, V> createConnection(RedisCodec<K, V> codec) {
@@ -145,7 +151,7 @@ public class RedisPersistence implements Persistence {
     @Override
     public Optional<Document> read(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
         this.checkCollectionRegistered(collection);
-        String json = this.connection.sync().hget(this.hashKey(collection), path.getValue());
+        byte[] json = this.documentConnection.sync().hget(this.hashKey(collection), path.getValue());
         if (json == null) {
             return Optional.empty();
         }
@@ -159,7 +165,7 @@ public class RedisPersistence implements Persistence {
             return Collections.emptyMap();
         }
 
-        RedisCommands<String, String> sync = this.connection.sync();
+        RedisCommands<String, byte[]> sync = this.documentConnection.sync();
         String hKey = this.hashKey(collection);
 
         // Use Lua script for atomic batch read
@@ -172,12 +178,12 @@ public class RedisPersistence implements Persistence {
             "return result\n";
 
         String[] keys = paths.stream().map(PersistencePath::getValue).toArray(String[]::new);
-        List<String> result = sync.eval(script, ScriptOutputType.MULTI, keys, hKey);
+        List<byte[]> result = sync.eval(script, ScriptOutputType.MULTI, keys, hKey.getBytes(StandardCharsets.UTF_8));
 
         Map<PersistencePath, Document> map = new LinkedHashMap<>();
         for (int i = 0; i < result.size(); i += 2) {
-            String key = result.get(i);
-            String json = result.get(i + 1);
+            String key = new String(result.get(i), StandardCharsets.UTF_8);
+            byte[] json = result.get(i + 1);
             if (json != null) {
                 PersistencePath path = PersistencePath.of(key);
                 map.put(path, this.serializer.deserialize(collection, path, json));
@@ -189,7 +195,7 @@ public class RedisPersistence implements Persistence {
     @Override
     public Map<PersistencePath, Document> readAll(@NonNull PersistenceCollection collection) {
         this.checkCollectionRegistered(collection);
-        Map<String, String> all = this.connection.sync().hgetall(this.hashKey(collection));
+        Map<String, byte[]> all = this.documentConnection.sync().hgetall(this.hashKey(collection));
         return all.entrySet().stream()
             .collect(Collectors.toMap(
                 e -> PersistencePath.of(e.getKey()),
@@ -202,10 +208,10 @@ public class RedisPersistence implements Persistence {
     @Override
     public Stream<PersistenceEntity<Document>> streamAll(@NonNull PersistenceCollection collection) {
         this.checkCollectionRegistered(collection);
-        RedisCommands<String, String> sync = this.connection.sync();
+        RedisCommands<String, byte[]> sync = this.documentConnection.sync();
         String hKey = this.hashKey(collection);
 
-        ScanIterator<KeyValue<String, String>> iterator = ScanIterator.hscan(sync, hKey, ScanArgs.Builder.limit(100));
+        ScanIterator<KeyValue<String, byte[]>> iterator = ScanIterator.hscan(sync, hKey, ScanArgs.Builder.limit(100));
         return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<PersistenceEntity<Document>>() {
             @Override
             public boolean hasNext() {
@@ -214,7 +220,7 @@ public class RedisPersistence implements Persistence {
 
             @Override
             public PersistenceEntity<Document> next() {
-                KeyValue<String, String> kv = iterator.next();
+                KeyValue<String, byte[]> kv = iterator.next();
                 PersistencePath path = PersistencePath.of(kv.getKey());
                 Document doc = RedisPersistence.this.serializer.deserialize(collection, path, kv.getValue());
                 return new PersistenceEntity<>(path, doc);
@@ -228,8 +234,8 @@ public class RedisPersistence implements Persistence {
     public boolean write(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull Document document) {
         this.checkCollectionRegistered(collection);
         this.serializer.setupDocument(document, collection, path);
-        String json = this.serializer.serialize(document);
-        this.connection.sync().hset(this.hashKey(collection), path.getValue(), json);
+        byte[] json = this.serializer.serializeToBytes(document);
+        this.documentConnection.sync().hset(this.hashKey(collection), path.getValue(), json);
         return true;
     }
 
@@ -240,13 +246,13 @@ public class RedisPersistence implements Persistence {
         }
         this.checkCollectionRegistered(collection);
 
-        Map<String, String> map = new LinkedHashMap<>();
+        Map<String, byte[]> map = new LinkedHashMap<>();
         for (Map.Entry<PersistencePath, Document> entry : documents.entrySet()) {
             this.serializer.setupDocument(entry.getValue(), collection, entry.getKey());
-            map.put(entry.getKey().getValue(), this.serializer.serialize(entry.getValue()));
+            map.put(entry.getKey().getValue(), this.serializer.serializeToBytes(entry.getValue()));
         }
 
-        this.connection.sync().hset(this.hashKey(collection), map);
+        this.documentConnection.sync().hset(this.hashKey(collection), map);
         return documents.size();
     }
 
@@ -316,6 +322,7 @@ public class RedisPersistence implements Persistence {
 
     @Override
     public void close() throws IOException {
+        this.documentConnection.close();
         this.connection.close();
         this.client.shutdown();
     }
@@ -18,10 +18,12 @@ public class TestContext {
 
     private final UserRepository userRepository;
     private final UserProfileRepository profileRepository;
+    private final TaggedUserRepository taggedUserRepository;
 
-    public TestContext(UserRepository userRepository, UserProfileRepository profileRepository) {
+    public TestContext(UserRepository userRepository, UserProfileRepository profileRepository, TaggedUserRepository taggedUserRepository) {
         this.userRepository = userRepository;
         this.profileRepository = profileRepository;
+        this.taggedUserRepository = taggedUserRepository;
     }
 
     /**
@@ -43,4 +45,14 @@ public class TestContext {
     })
     public interface UserProfileRepository extends DocumentRepository<UUID, UserProfile> {
     }
+
+    /**
+     * Repository interface for User documents with indexed list fields.
+     */
+    @DocumentCollection(path = "tagged_users", keyLength = 36, indexes = {
+        @DocumentIndex(path = "tags"),
+        @DocumentIndex(path = "scores")
+    })
+    public interface TaggedUserRepository extends DocumentRepository<UUID, User> {
+    }
 }
@@ -0,0 +1,27 @@
+package eu.okaeri.persistencetest.containers;
+
+import eu.okaeri.configs.json.simple.JsonSimpleConfigurer;
+import eu.okaeri.persistence.document.DocumentEncoding;
+import eu.okaeri.persistence.document.DocumentPersistence;
+
+/**
+ * InMemory backend container keeping documents in the binary encoding,
+ * compressing the larger ones. Every read decodes a new document, like remote backends.
+ */
+public class InMemoryBinaryBackendContainer extends InMemoryBackendContainer {
+
+    @Override
+    public String getName() {
+        return "InMemory (binary)";
+    }
+
+    @Override
+    public DocumentPersistence createPersistence() {
+        return new DocumentPersistence(this.createPersistenceBuilder()
+            .configurer(new JsonSimpleConfigurer())
+            .encoding(DocumentEncoding.BINARY)
+            .compression(256)
+            .serializedStorage(true)
+            .build());
+    }
+}
@@ -38,12 +38,14 @@ public class BackendTestContext implements AutoCloseable {
         DocumentPersistence persistence = backend.createPersistence();
         TestContext.UserRepository userRepo = persistence.createRepository(TestContext.UserRepository.class);
         TestContext.UserProfileRepository profileRepo = persistence.createRepository(TestContext.UserProfileRepository.class);
+        TestContext.TaggedUserRepository taggedUserRepo = persistence.createRepository(TestContext.TaggedUserRepository.class);
 
         // Clean slate for each test
         userRepo.deleteAll();
         profileRepo.deleteAll();
+        taggedUserRepo.deleteAll();
 
-        this.context = new TestContext(userRepo, profileRepo);
+        this.context = new TestContext(userRepo, profileRepo, taggedUserRepo);
 
         // Register for cleanup
         CURRENT.set(this);
@@ -70,6 +72,10 @@ public class BackendTestContext implements AutoCloseable {
         return this.context.getProfileRepository();
     }
 
+    public TestContext.TaggedUserRepository getTaggedUserRepository() {
+        return this.context.getTaggedUserRepository();
+    }
+
     @Override
     public String toString() {
         return this.backend.getName();
@@ -19,6 +19,7 @@ public abstract class E2ETestBase {
     protected static Stream<BackendContainer> allBackends() {
         return Stream.of(
             new InMemoryBackendContainer(),
+            new InMemoryBinaryBackendContainer(),
             new H2BackendContainer(),
             new PostgresBackendContainer(),
             new MariaDbBackendContainer(),
@@ -13,6 +13,7 @@ import static eu.okaeri.persistence.filter.condition.Condition.on;
 import static eu.okaeri.persistence.filter.predicate.SimplePredicate.eq;
 import static eu.okaeri.persistence.filter.predicate.SimplePredicate.gt;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * E2E Filter Query Tests - runs ALL filter query tests against ALL backends.
@@ -331,4 +332,91 @@ public class FilterQueryE2ETest extends E2ETestBase {
         assertThat(profiles.get(1).getName()).isEqualTo("bob");
         assertThat(profiles.get(1).getProfile().getAge()).isEqualTo(30);
     }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("allBackendsWithContext")
+    void test_count_by_condition(BackendTestContext btc) {
+        assertThat(btc.getUserRepository().count(on("exp", eq(123)))).isEqualTo(2);
+        assertThat(btc.getUserRepository().count(on("exp", gt(1000)))).isEqualTo(0);
+        assertThat(btc.getProfileRepository().count(on("profile.age", eq(25)))).isEqualTo(2);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("allBackendsWithContext")
+    void test_exists_by_condition(BackendTestContext btc) {
+        assertThat(btc.getUserRepository().exists(on("name", eq("tester2")))).isTrue();
+        assertThat(btc.getUserRepository().exists(on("name", eq("nobody")))).isFalse();
+        assertThat(btc.getProfileRepository().exists(on("profile.address.city", eq("Paris")))).isTrue();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("allBackendsWithContext")
+    void test_find_with_include_projection(BackendTestContext btc) {
+        List<UserProfile> profiles = btc.getProfileRepository()
+            .find(q -> q.where(on("name", eq("alice"))).include("name", "profile.age"))
+            .toList();
+
+        assertThat(profiles.size()).isEqualTo(1);
+        assertThat(profiles.get(0).getName()).isEqualTo("alice");
+        assertThat(profiles.get(0).getProfile().getAge()).isEqualTo(25);
+        assertThat(profiles.get(0).getProfile().getOccupation()).isNull();
+        assertThat(profiles.get(0).getProfile().getAddress()).isNull();
+
+        // saving would overwrite the fields that were not selected
+        assertThatThrownBy(() -> btc.getProfileRepository().save(profiles.get(0)))
+            .isInstanceOf(IllegalStateException.class);
+        UserProfile stored = btc.getProfileRepository().findOne(on("name", eq("alice"))).orElseThrow(IllegalStateException::new);
+        assertThat(stored.getProfile().getOccupation()).isNotNull();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("allBackendsWithContext")
+    void test_find_with_include_projection_of_nested_nulls(BackendTestContext btc) {
+        btc.getProfileRepository().save(new UserProfile("eve", new Profile(40, null, new Address("Oslo", null, 150))));
+
+        List<UserProfile> profiles = btc.getProfileRepository()
+            .find(q -> q.where(on("name", eq("eve"))).include("profile.occupation", "profile.address"))
+            .toList();
+
+        assertThat(profiles.size()).isEqualTo(1);
+        Profile profile = profiles.get(0).getProfile();
+        assertThat(profile.getAge()).isZero();
+        assertThat(profile.getOccupation()).isNull();
+        // selected objects are returned as stored, including their null fields
+        assertThat(profile.getAddress().getCity()).isEqualTo("Oslo");
+        assertThat(profile.getAddress().getCountry()).isNull();
+        assertThat(profile.getAddress().getZipCode()).isEqualTo(150);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("allBackendsWithContext")
+    void test_find_with_include_projection_of_missing_fields(BackendTestContext btc) {
+        btc.getProfileRepository().save(new UserProfile("frank", null));
+
+        List<UserProfile> profiles = btc.getProfileRepository()
+            .find(q -> q.where(on("name", eq("frank"))).include("name", "profile.occupation"))
+            .toList();
+
+        assertThat(profiles.size()).isEqualTo(1);
+        assertThat(profiles.get(0).getName()).isEqualTo("frank");
+        // parents of missing fields are not created
+        assertThat(profiles.get(0).getProfile()).isNull();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("allBackendsWithContext")
+    void test_find_with_exclude_projection(BackendTestContext btc) {
+        List<UserProfile> profiles = btc.getProfileRepository()
+            .find(q -> q.where(on("name", eq("bob"))).exclude("profile.address"))
+            .toList();
+
+        assertThat(profiles.size()).isEqualTo(1);
+        assertThat(profiles.get(0).getName()).isEqualTo("bob");
+        assertThat(profiles.get(0).getProfile().getOccupation()).isEqualTo("Designer");
+        assertThat(profiles.get(0).getProfile().getAddress()).isNull();
+
+        // stored document is not affected
+        UserProfile stored = btc.getProfileRepository().findOne(on("name", eq("bob"))).orElseThrow(IllegalStateException::new);
+        assertThat(stored.getProfile().getAddress().getCity()).isEqualTo("London");
+    }
 }
@@ -1,10 +1,12 @@
 package eu.okaeri.persistencetest.e2e;
 
+import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistencetest.fixtures.User;
 import eu.okaeri.persistencetest.fixtures.User.Status;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Stream;
 
@@ -727,6 +729,97 @@ public class PredicateOperatorsE2ETest extends E2ETestBase {
         assertThat(btc.getUserRepository().count()).isEqualTo(5);
     }
 
+    // ===== ARRAY CONTAINS (arrayContains / arrayContainsAny) =====
+
+    protected static Stream<BackendTestContext> arrayTestContext() {
+        return allBackends().map(backend -> {
+            BackendTestContext btc = BackendTestContext.create(backend);
+
+            User alice = new User("alice", 100);
+            alice.setTags(List.of("admin", "vip"));
+            alice.setScores(List.of(10, 20));
+            User bob = new User("bob", 200);
+            bob.setTags(List.of("vip"));
+            bob.setScores(List.of(30));
+            User charlie = new User("charlie", 300);
+            charlie.setTags(List.of("new \"player\""));
+            charlie.setScores(List.of());
+            User diana = new User("diana", 200); // no tags
+
+            btc.getUserRepository().save(alice);
+            btc.getUserRepository().save(bob);
+            btc.getUserRepository().save(charlie);
+            btc.getUserRepository().save(diana);
+
+            // Same documents with tags and scores indexed
+            btc.getTaggedUserRepository().save(alice);
+            btc.getTaggedUserRepository().save(bob);
+            btc.getTaggedUserRepository().save(charlie);
+            btc.getTaggedUserRepository().save(diana);
+
+            return btc;
+        });
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("arrayTestContext")
+    void test_arrayContains_string(BackendTestContext btc) {
+        long deleted = btc.getUserRepository().delete(q -> q.where(on("tags", arrayContains("vip"))));
+        assertThat(deleted).isEqualTo(2); // alice, bob
+
+        var remaining = btc.getUserRepository().streamAll().map(User::getName).toList();
+        assertThat(remaining).containsExactlyInAnyOrder("charlie", "diana");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("arrayTestContext")
+    void test_arrayContains_number(BackendTestContext btc) {
+        long deleted = btc.getUserRepository().delete(q -> q.where(on("scores", arrayContains(20))));
+        assertThat(deleted).isEqualTo(1); // alice
+
+        var remaining = btc.getUserRepository().streamAll().map(User::getName).toList();
+        assertThat(remaining).containsExactlyInAnyOrder("bob", "charlie", "diana");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("arrayTestContext")
+    void test_arrayContains_escaped(BackendTestContext btc) {
+        long deleted = btc.getUserRepository().delete(q -> q.where(on("tags", arrayContains("new \"player\""))));
+        assertThat(deleted).isEqualTo(1); // charlie
+
+        var remaining = btc.getUserRepository().streamAll().map(User::getName).toList();
+        assertThat(remaining).containsExactlyInAnyOrder("alice", "bob", "diana");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("arrayTestContext")
+    void test_arrayContainsAny(BackendTestContext btc) {
+        long deleted = btc.getUserRepository().delete(q -> q.where(on("scores", arrayContainsAny(30, 10, 99))));
+        assertThat(deleted).isEqualTo(2); // alice, bob
+
+        var remaining = btc.getUserRepository().streamAll().map(User::getName).toList();
+        assertThat(remaining).containsExactlyInAnyOrder("charlie", "diana");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("arrayTestContext")
+    void test_arrayContains_indexed(BackendTestContext btc) {
+        assertIndexedMatchesScan(btc, on("tags", arrayContains("vip")), "alice", "bob");
+        assertIndexedMatchesScan(btc, on("tags", arrayContains("new \"player\"")), "charlie");
+        assertIndexedMatchesScan(btc, on("tags", arrayContains("nobody")));
+        assertIndexedMatchesScan(btc, on("scores", arrayContains(20)), "alice");
+        assertIndexedMatchesScan(btc, on("scores", arrayContainsAny(30, 10, 99)), "alice", "bob");
+        assertIndexedMatchesScan(btc, on("tags", arrayContainsAny("admin", "new \"player\"")), "alice", "charlie");
+    }
+
+    private static void assertIndexedMatchesScan(BackendTestContext btc, Condition condition, String... expected) {
+        var scanned = btc.getUserRepository().find(condition).map(User::getName).toList();
+        var indexed = btc.getTaggedUserRepository().find(condition).map(User::getName).toList();
+        assertThat(scanned).containsExactlyInAnyOrder(expected);
+        assertThat(indexed).containsExactlyInAnyOrderElementsOf(scanned);
+        assertThat(btc.getTaggedUserRepository().count(condition)).isEqualTo(expected.length);
+    }
+
     // ===== ENUM EQUALS (eq) =====
 
     protected static Stream<BackendTestContext> enumTestContext() {
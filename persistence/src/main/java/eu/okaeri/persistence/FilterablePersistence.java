@@ -3,6 +3,7 @@ package eu.okaeri.persistence;
 import eu.okaeri.persistence.document.Document;
 import eu.okaeri.persistence.filter.DeleteFilter;
 import eu.okaeri.persistence.filter.FindFilter;
+import eu.okaeri.persistence.filter.condition.Condition;
 
 import java.util.stream.Stream;
 
@@ -27,6 +28,40 @@ public interface FilterablePersistence extends Persistence {
      */
     Stream<PersistenceEntity<Document>> find(PersistenceCollection collection, FindFilter filter);
 
+    /**
+     * Count entities matching a filter.
+     * SKIP and LIMIT are applied to the count, ORDER BY is ignored.
+     * <p>
+     * The default implementation counts the results of {@link #find},
+     * backends should override it to count without loading documents.
+     *
+     * @param collection Target collection
+     * @param filter     Find filter with conditions
+     * @return Number of matching entities
+     */
+    default long count(PersistenceCollection collection, FindFilter filter) {
+        try (Stream<PersistenceEntity<Document>> stream = this.find(collection, filter)) {
+            return stream.count();
+        }
+    }
+
+    /**
+     * Check if any entity matches a condition.
+     * <p>
+     * The default implementation looks for the first result of {@link #find},
+     * backends should override it to check without loading documents.
+     *
+     * @param collection Target collection
+     * @param condition  WHERE condition
+     * @return True if at least one entity matches
+     */
+    default boolean exists(PersistenceCollection collection, Condition condition) {
+        FindFilter filter = FindFilter.builder().where(condition).limit(1).build();
+        try (Stream<PersistenceEntity<Document>> stream = this.find(collection, filter)) {
+            return stream.findAny().isPresent();
+        }
+    }
+
     /**
      * Delete entities matching a filter.
      *
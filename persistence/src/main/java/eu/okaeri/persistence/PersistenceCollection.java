@@ -1,9 +1,10 @@
 package eu.okaeri.persistence;
 
 import eu.okaeri.configs.OkaeriConfig;
-import eu.okaeri.configs.schema.ConfigDeclaration;
-import eu.okaeri.configs.schema.FieldDeclaration;
+import eu.okaeri.persistence.document.Document;
+import eu.okaeri.persistence.document.DocumentMapping;
 import eu.okaeri.persistence.document.index.IndexProperty;
+import eu.okaeri.persistence.document.index.IndexType;
 import eu.okaeri.persistence.repository.annotation.DocumentCollection;
 import eu.okaeri.persistence.repository.annotation.DocumentIndex;
 import lombok.Getter;
@@ -12,10 +13,7 @@ import lombok.ToString;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
-import java.util.UUID;
+import java.util.*;
 
 @Getter
 @ToString(callSuper = true)
@@ -24,6 +22,8 @@ public class PersistenceCollection extends PersistencePath {
     private int keyLength;
     private boolean autofixIndexes = true;
     private Set<IndexProperty> indexes = new HashSet<>();
+    private Set<IndexProperty> compoundIndexes = new LinkedHashSet<>();
+    private Class<? extends Document> documentType;
 
     private PersistenceCollection(@NonNull String value, int keyLength) {
         super(value);
@@ -62,37 +62,62 @@ public class PersistenceCollection extends PersistencePath {
         }
 
         PersistenceCollection out = PersistenceCollection.of(collection.path(), keyLength);
+        Class<?> indexedType = entityType;
         for (DocumentIndex index : collection.indexes()) {
-            IndexProperty indexProperty = IndexProperty.parse(index.path()).maxLength(index.maxLength());
-            // Auto-detect field type from entity class
-            if (entityType != null) {
-                Class<?> fieldType = resolveFieldType(index.path(), entityType);
-                if (fieldType != null) {
-                    indexProperty.fieldType(fieldType);
+            if (index.path().isEmpty() == (index.paths().length == 0)) {
+                throw new IllegalArgumentException(clazz + " has @DocumentIndex with none or both of path and paths");
+            }
+            if (index.paths().length > 0) {
+                if (index.reverse()) {
+                    throw new IllegalArgumentException(clazz + " has @DocumentIndex with reverse and paths");
+                }
+                if (index.type() != IndexType.DEFAULT) {
+                    throw new IllegalArgumentException(clazz + " has @DocumentIndex with type " + index.type() + " and paths");
                 }
+                IndexProperty[] components = Arrays.stream(index.paths())
+                    .map(path -> indexProperty(path, indexedType))
+                    .toArray(IndexProperty[]::new);
+                out.index(IndexProperty.compound(components).maxLength(index.maxLength()));
+                continue;
             }
-            out.index(indexProperty);
+            out.index(indexProperty(index.path(), indexedType).maxLength(index.maxLength()).reverse(index.reverse()).type(index.type()));
+        }
+
+        if ((entityType != null) && Document.class.isAssignableFrom(entityType)) {
+            out.documentType(entityType.asSubclass(Document.class));
         }
 
         return out.autofixIndexes(collection.autofixIndexes());
     }
 
+    private static IndexProperty indexProperty(String path, Class<?> entityType) {
+        IndexProperty indexProperty = IndexProperty.parse(path);
+        // Auto-detect field type from entity class
+        if (entityType != null) {
+            Class<?> fieldType = resolveFieldType(path, entityType);
+            if (fieldType != null) {
+                indexProperty.fieldType(fieldType);
+            }
+        }
+        return indexProperty;
+    }
+
     /**
-     * Resolve field type from entity class using ConfigDeclaration.
+     * Resolve field type from entity class using {@link DocumentMapping}.
      * Supports nested paths like "profile.age".
      */
     private static Class<?> resolveFieldType(String path, Class<?> entityType) {
         try {
-            ConfigDeclaration declaration = ConfigDeclaration.of(entityType);
+            DocumentMapping mapping = DocumentMapping.of(entityType);
             String[] parts = path.split("\\.");
 
             for (int i = 0; i < parts.length; i++) {
-                Optional<FieldDeclaration> field = declaration.getField(parts[i]);
-                if (!field.isPresent()) {
+                DocumentMapping.FieldMapping field = mapping.getField(parts[i]);
+                if (field == null) {
                     return null;
                 }
 
-                Class<?> fieldType = field.get().getType().getType();
+                Class<?> fieldType = field.getType();
 
                 // If this is the last part, return the type
                 if (i == parts.length - 1) {
@@ -101,7 +126,7 @@ public class PersistenceCollection extends PersistencePath {
 
                 // For nested paths, descend into the field type
                 if (OkaeriConfig.class.isAssignableFrom(fieldType)) {
-                    declaration = ConfigDeclaration.of(fieldType);
+                    mapping = DocumentMapping.of(fieldType);
                 } else {
                     // Non-config type can't have subfields
                     return null;
@@ -128,8 +153,38 @@ public class PersistenceCollection extends PersistencePath {
         return this;
     }
 
+    /**
+     * Add an index. Compound indexes (see {@link IndexProperty#compound(IndexProperty...)})
+     * are kept separately in {@link #getCompoundIndexes()}, {@link #getIndexes()}
+     * contains single-field indexes only.
+     */
     public PersistenceCollection index(@NonNull IndexProperty indexProperty) {
-        this.indexes.add(indexProperty);
+        if (indexProperty.isCompound()) {
+            this.compoundIndexes.add(indexProperty);
+        } else {
+            this.indexes.add(indexProperty);
+        }
+        return this;
+    }
+
+    /**
+     * Get all indexed fields: single-field indexes and components of compound indexes.
+     */
+    public Set<IndexProperty> getIndexedFields() {
+        Set<IndexProperty> fields = new LinkedHashSet<>(this.indexes);
+        this.compoundIndexes.forEach(index -> fields.addAll(index.getComponents()));
+        return fields;
+    }
+
+    /**
+     * Set the document class stored in this collection.
+     * Backends deserialize documents directly into this class, making
+     * {@link Document#into(Class)} a no-op for it. Detected from the
+     * repository type in {@link #of(Class)}, repositories created for a
+     * collection without it convert the read documents instead.
+     */
+    public PersistenceCollection documentType(Class<? extends Document> documentType) {
+        this.documentType = documentType;
         return this;
     }
 
@@ -0,0 +1,27 @@
+package eu.okaeri.persistence;
+
+import eu.okaeri.persistence.filter.FindFilter;
+import eu.okaeri.persistence.filter.PreparedQuery;
+import eu.okaeri.persistence.filter.QueryParameter;
+
+/**
+ * Capability interface for backends that support prepared queries.
+ * <p>
+ * A query template is rendered into the native query language once,
+ * with placeholders for its {@link QueryParameter}s, and every call only
+ * binds the arguments (e.g. SQL with {@code ?} for JDBC backends).
+ * <p>
+ * Backends that don't implement this interface will have prepared queries
+ * handled by binding the arguments into regular filters on every call.
+ */
+public interface PreparablePersistence extends FilterablePersistence {
+
+    /**
+     * Prepare a query template for repeated execution.
+     *
+     * @param collection Target collection
+     * @param template   Find filter with {@link QueryParameter} operands
+     * @return Prepared query, or null if the backend cannot prepare the template natively
+     */
+    PreparedQuery prepare(PersistenceCollection collection, FindFilter template);
+}
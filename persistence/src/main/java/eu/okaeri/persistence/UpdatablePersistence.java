@@ -56,4 +56,15 @@ public interface UpdatablePersistence extends Persistence {
      * @return Number of entities updated
      */
     long update(PersistenceCollection collection, UpdateFilter filter);
+
+    /**
+     * Whether saving only the changed fields of a document with {@link #updateOne}
+     * is cheaper than writing it in full. Used for documents saved with change tracking,
+     * see {@link eu.okaeri.persistence.document.DocumentSerializerConfig#isChangeTracking()}.
+     *
+     * @return False if writes have no cost to save, e.g. in-memory storage
+     */
+    default boolean isPartialUpdatePreferred() {
+        return true;
+    }
 }
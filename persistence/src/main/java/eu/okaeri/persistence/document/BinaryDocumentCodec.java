@@ -0,0 +1,306 @@
+package eu.okaeri.persistence.document;
+
+import lombok.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact self-describing binary encoding of simplified document maps.
+ * <p>
+ * Values are tagged (null, booleans, varint integers, IEEE floats, decimals,
+ * UTF-8 strings, lists, maps). Field names are written once per document and
+ * referenced by index afterwards, so lists of objects do not repeat their keys.
+ * Encoded documents start with {@link #MAGIC}, a byte never found in UTF-8 text,
+ * which tells them apart from documents stored by the configurer.
+ */
+public final class BinaryDocumentCodec {
+
+    public static final int MAGIC = 0xC1;
+    private static final int VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int FLOAT = 5;
+    private static final int DOUBLE = 6;
+    private static final int BIG_INTEGER = 7;
+    private static final int BIG_DECIMAL = 8;
+    private static final int STRING = 9;
+    private static final int LIST = 10;
+    private static final int MAP = 11;
+
+    private BinaryDocumentCodec() {
+    }
+
+    /**
+     * Check if the first byte of a stored document marks the binary encoding.
+     */
+    public static boolean isBinary(int firstByte) {
+        return (firstByte & 0xFF) == MAGIC;
+    }
+
+    /**
+     * Encode a simplified document map.
+     * Map keys are written as strings, values of unknown types as their string form.
+     */
+    public static void encode(@NonNull Map<?, ?> document, @NonNull OutputStream output) throws IOException {
+        output.write(MAGIC);
+        output.write(VERSION);
+        new Writer(output).writeMap(document);
+    }
+
+    /**
+     * Decode a document encoded with {@link #encode}.
+     *
+     * @return map with String, Boolean, Integer, Long, Float, Double, BigInteger,
+     * BigDecimal, List and Map values
+     * @throws IOException if the input is not a valid binary document
+     */
+    public static Map<String, Object> decode(@NonNull InputStream input) throws IOException {
+        if (!isBinary(input.read())) {
+            throw new IOException("not a binary document");
+        }
+        int version = input.read();
+        if (version != VERSION) {
+            throw new IOException("unsupported binary document version: " + version);
+        }
+        Reader reader = new Reader(input);
+        if (reader.readByte() != MAP) {
+            throw new IOException("binary document is not a map");
+        }
+        return reader.readMap();
+    }
+
+    private static final class Writer {
+
+        private final OutputStream output;
+        private final Map<String, Integer> keys = new HashMap<>();
+
+        private Writer(OutputStream output) {
+            this.output = output;
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                this.output.write(NULL);
+            } else if (value instanceof String) {
+                this.output.write(STRING);
+                this.writeString((String) value);
+            } else if (value instanceof Boolean) {
+                this.output.write(((Boolean) value) ? TRUE : FALSE);
+            } else if ((value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+                this.output.write(INT);
+                int number = ((Number) value).intValue();
+                this.writeVarLong(((number << 1) ^ (number >> 31)) & 0xFFFFFFFFL);
+            } else if (value instanceof Long) {
+                this.output.write(LONG);
+                long number = (Long) value;
+                this.writeVarLong((number << 1) ^ (number >> 63));
+            } else if (value instanceof Float) {
+                this.output.write(FLOAT);
+                this.writeFixed(Float.floatToIntBits((Float) value), 4);
+            } else if (value instanceof BigInteger) {
+                this.output.write(BIG_INTEGER);
+                this.writeString(value.toString());
+            } else if (value instanceof BigDecimal) {
+                this.output.write(BIG_DECIMAL);
+                this.writeString(value.toString());
+            } else if (value instanceof Number) {
+                this.output.write(DOUBLE);
+                this.writeFixed(Double.doubleToLongBits(((Number) value).doubleValue()), 8);
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                this.output.write(LIST);
+                this.writeVarLong(collection.size());
+                for (Object element : collection) {
+                    this.writeValue(element);
+                }
+            } else if (value instanceof Map) {
+                this.writeMap((Map<?, ?>) value);
+            } else {
+                this.output.write(STRING);
+                this.writeString(String.valueOf(value));
+            }
+        }
+
+        private void writeMap(Map<?, ?> map) throws IOException {
+            this.output.write(MAP);
+            this.writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                this.writeKey(String.valueOf(entry.getKey()));
+                this.writeValue(entry.getValue());
+            }
+        }
+
+        // new keys are written as (length << 1), known keys as (index << 1) | 1
+        private void writeKey(String key) throws IOException {
+            Integer index = this.keys.get(key);
+            if (index != null) {
+                this.writeVarLong(((long) index << 1) | 1);
+                return;
+            }
+            this.keys.put(key, this.keys.size());
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            this.writeVarLong((long) bytes.length << 1);
+            this.output.write(bytes);
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.writeVarLong(bytes.length);
+            this.output.write(bytes);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                this.output.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            this.output.write((int) value);
+        }
+
+        private void writeFixed(long bits, int bytes) throws IOException {
+            for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+                this.output.write((int) (bits >>> shift));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final InputStream input;
+        private final List<String> keys = new ArrayList<>();
+
+        private Reader(InputStream input) {
+            this.input = input;
+        }
+
+        private Object readValue() throws IOException {
+            int tag = this.readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case FALSE:
+                    return Boolean.FALSE;
+                case TRUE:
+                    return Boolean.TRUE;
+                case INT: {
+                    int number = (int) this.readVarLong();
+                    return (number >>> 1) ^ -(number & 1);
+                }
+                case LONG: {
+                    long number = this.readVarLong();
+                    return (number >>> 1) ^ -(number & 1);
+                }
+                case FLOAT:
+                    return Float.intBitsToFloat((int) this.readFixed(4));
+                case DOUBLE:
+                    return Double.longBitsToDouble(this.readFixed(8));
+                case BIG_INTEGER:
+                    return new BigInteger(this.readString(this.readLength()));
+                case BIG_DECIMAL:
+                    return new BigDecimal(this.readString(this.readLength()));
+                case STRING:
+                    return this.readString(this.readLength());
+                case LIST: {
+                    int size = this.readLength();
+                    List<Object> list = new ArrayList<>(Math.min(size, 1024));
+                    for (int i = 0; i < size; i++) {
+                        list.add(this.readValue());
+                    }
+                    return list;
+                }
+                case MAP:
+                    return this.readMap();
+                default:
+                    throw new IOException("invalid binary document value tag: " + tag);
+            }
+        }
+
+        private Map<String, Object> readMap() throws IOException {
+            int size = this.readLength();
+            Map<String, Object> map = new LinkedHashMap<>(Math.min(size, 1024) * 2);
+            for (int i = 0; i < size; i++) {
+                String key = this.readKey();
+                map.put(key, this.readValue());
+            }
+            return map;
+        }
+
+        private String readKey() throws IOException {
+            long ref = this.readVarLong();
+            if ((ref & 1) == 1) {
+                long index = ref >>> 1;
+                if (index >= this.keys.size()) {
+                    throw new IOException("invalid binary document key reference: " + index);
+                }
+                return this.keys.get((int) index);
+            }
+            long length = ref >>> 1;
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("invalid binary document key length: " + length);
+            }
+            String key = this.readString((int) length);
+            this.keys.add(key);
+            return key;
+        }
+
+        private String readString(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int read = this.input.read(bytes, offset, length - offset);
+                if (read < 0) {
+                    throw new EOFException("truncated binary document");
+                }
+                offset += read;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int readLength() throws IOException {
+            long length = this.readVarLong();
+            if ((length < 0) || (length > Integer.MAX_VALUE)) {
+                throw new IOException("invalid binary document length: " + length);
+            }
+            return (int) length;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int current = this.readByte();
+                value |= (long) (current & 0x7F) << shift;
+                if ((current & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("invalid binary document varint");
+        }
+
+        private long readFixed(int bytes) throws IOException {
+            long bits = 0;
+            for (int i = 0; i < bytes; i++) {
+                bits = (bits << 8) | this.readByte();
+            }
+            return bits;
+        }
+
+        private int readByte() throws IOException {
+            int value = this.input.read();
+            if (value < 0) {
+                throw new EOFException("truncated binary document");
+            }
+            return value;
+        }
+    }
+}
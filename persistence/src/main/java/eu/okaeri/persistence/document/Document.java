@@ -6,16 +6,18 @@ import eu.okaeri.configs.annotation.Exclude;
 import eu.okaeri.configs.exception.OkaeriException;
 import eu.okaeri.persistence.PersistenceCollection;
 import eu.okaeri.persistence.PersistencePath;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.ToString;
 
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.logging.Logger;
 
-@ToString(exclude = "cachedInto")
+@ToString(exclude = {"cachedInto", "snapshot"})
 public class Document extends OkaeriConfig {
 
     private static final @Exclude boolean DEBUG = Boolean.parseBoolean(System.getProperty("okaeri.platform.debug", "false"));
@@ -25,6 +27,12 @@ public class Document extends OkaeriConfig {
     private @Exclude @Getter PersistencePath path;
     private @Exclude @Getter @Setter PersistenceCollection collection;
     private @Exclude Document cachedInto = this;
+    private @Exclude @Getter(AccessLevel.PACKAGE) @Setter(AccessLevel.PACKAGE) Map<String, Object> snapshot;
+    /**
+     * Whether this document was found with a {@link eu.okaeri.persistence.filter.Projection}.
+     * Fields that were not selected hold their defaults, so projected documents cannot be written.
+     */
+    private @Exclude @Getter @Setter(AccessLevel.PACKAGE) boolean projected;
 
     public void setPath(PersistencePath path) {
         this.path = path;
@@ -89,6 +97,11 @@ public class Document extends OkaeriConfig {
         throw new RuntimeException("saveDefaults() not available for ConfigDocument");
     }
 
+    /**
+     * Get this document as an instance of the given class, converting (and caching) it if needed.
+     * Documents read from a collection with {@link PersistenceCollection#getDocumentType()}
+     * are already instances of that class and are returned as is.
+     */
     @SuppressWarnings("unchecked")
     public <T extends Document> T into(@NonNull Class<T> configClazz) {
 
@@ -97,6 +110,7 @@ public class Document extends OkaeriConfig {
             newEntity.setPath(this.cachedInto.getPath());
             newEntity.setCollection(this.cachedInto.getCollection());
             newEntity.setPersistence(this.cachedInto.getPersistence());
+            newEntity.setProjected(this.cachedInto.isProjected());
             this.cachedInto = newEntity;
         }
 
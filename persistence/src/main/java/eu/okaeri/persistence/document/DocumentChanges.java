@@ -0,0 +1,103 @@
+package eu.okaeri.persistence.document;
+
+import eu.okaeri.persistence.filter.operation.SetOperation;
+import eu.okaeri.persistence.filter.operation.UnsetOperation;
+import eu.okaeri.persistence.filter.operation.UpdateOperation;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Changes of a document since its snapshot as update operations.
+ * <p>
+ * Nested maps present in both versions are compared per key, so that
+ * changing {@code profile.age} results in a single {@code SET profile.age}.
+ * Other values are compared as a whole and only scalar values
+ * (strings, booleans, primitive numbers and null) are written as operations,
+ * changed lists and new nested documents require writing the full document.
+ */
+public final class DocumentChanges {
+
+    private DocumentChanges() {
+    }
+
+    /**
+     * Compute update operations turning the snapshot into the current document.
+     *
+     * @param snapshot document map at load or last save
+     * @param current  current document map
+     * @return operations, empty if nothing changed, or null if the document should
+     * be written fully (changes not expressible as operations, or most fields changed)
+     */
+    public static List<UpdateOperation> diff(@NonNull Map<String, Object> snapshot, @NonNull Map<String, Object> current) {
+        List<UpdateOperation> operations = new ArrayList<>();
+        if (!diff(snapshot, current, "", operations)) {
+            return null;
+        }
+        if ((operations.size() * 2) > Math.max(snapshot.size(), current.size())) {
+            return null;
+        }
+        return operations;
+    }
+
+    private static boolean diff(Map<?, ?> snapshot, Map<?, ?> current, String prefix, List<UpdateOperation> operations) {
+
+        for (Map.Entry<?, ?> entry : current.entrySet()) {
+            if (!isFieldName(entry.getKey())) {
+                return false;
+            }
+
+            String key = (String) entry.getKey();
+            Object value = entry.getValue();
+            Object previous = snapshot.get(key);
+            if (snapshot.containsKey(key) && Objects.equals(previous, value)) {
+                continue;
+            }
+
+            String field = prefix + key;
+            if ((previous instanceof Map) && (value instanceof Map)) {
+                if (!diff((Map<?, ?>) previous, (Map<?, ?>) value, field + ".", operations)) {
+                    return false;
+                }
+                continue;
+            }
+
+            if (!isScalar(value)) {
+                return false;
+            }
+            operations.add(new SetOperation(field, value));
+        }
+
+        for (Object key : snapshot.keySet()) {
+            if (current.containsKey(key)) {
+                continue;
+            }
+            if (!isFieldName(key)) {
+                return false;
+            }
+            operations.add(new UnsetOperation(prefix + key));
+        }
+
+        return true;
+    }
+
+    private static boolean isFieldName(Object key) {
+        // other keys are not addressable as a field path
+        return (key instanceof String) && !((String) key).isEmpty() && (((String) key).indexOf('.') == -1);
+    }
+
+    private static boolean isScalar(Object value) {
+        return (value == null)
+            || (value instanceof String)
+            || (value instanceof Boolean)
+            || (value instanceof Integer)
+            || (value instanceof Long)
+            || (value instanceof Double)
+            || (value instanceof Float)
+            || (value instanceof Short)
+            || (value instanceof Byte);
+    }
+}
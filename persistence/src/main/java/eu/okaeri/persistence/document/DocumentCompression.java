@@ -0,0 +1,73 @@
+package eu.okaeri.persistence.document;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compressed document envelope.
+ * <p>
+ * Compressed documents start with {@link #MAGIC}, a byte never found in UTF-8 text
+ * (and distinct from {@link BinaryDocumentCodec#MAGIC}), followed by the codec id
+ * and the compressed document in either {@link DocumentEncoding}.
+ */
+public final class DocumentCompression {
+
+    public static final int MAGIC = 0xC0;
+    private static final int DEFLATE = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private DocumentCompression() {
+    }
+
+    /**
+     * Check if the first byte of a stored document marks a compressed document.
+     */
+    public static boolean isCompressed(int firstByte) {
+        return (firstByte & 0xFF) == MAGIC;
+    }
+
+    /**
+     * Write a compressed document.
+     *
+     * @param data  serialized document
+     * @param level {@link Deflater} compression level
+     */
+    public static void compress(@NonNull byte[] data, int offset, int length, int level, @NonNull OutputStream output) throws IOException {
+        output.write(MAGIC);
+        output.write(DEFLATE);
+        Deflater deflater = new Deflater(level);
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(output, deflater, BUFFER_SIZE);
+            deflated.write(data, offset, length);
+            deflated.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Open a compressed document written by {@link #compress}.
+     * The inflater is owned by the caller and must be ended after reading.
+     *
+     * @return stream of the serialized document
+     * @throws IOException if the input is not a compressed document
+     */
+    public static InputStream decompress(@NonNull InputStream input, @NonNull Inflater inflater) throws IOException {
+        if (!isCompressed(input.read())) {
+            throw new IOException("not a compressed document");
+        }
+        int codec = input.read();
+        if (codec != DEFLATE) {
+            throw new IOException("unsupported document compression: " + codec);
+        }
+        return new InflaterInputStream(input, inflater, BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,19 @@
+package eu.okaeri.persistence.document;
+
+/**
+ * Format of documents stored as bytes (Flat Files, Redis, In-Memory serialized storage).
+ * Backends storing documents natively (JDBC, MongoDB) always use the configurer format.
+ * Values are read in both formats, so existing documents are converted on their next write.
+ */
+public enum DocumentEncoding {
+
+    /**
+     * Text written by the configurer (JSON, YAML, etc).
+     */
+    TEXT,
+
+    /**
+     * Compact binary format, see {@link BinaryDocumentCodec}.
+     */
+    BINARY
+}
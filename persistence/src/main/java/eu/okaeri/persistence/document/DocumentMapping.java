@@ -0,0 +1,114 @@
+package eu.okaeri.persistence.document;
+
+import eu.okaeri.configs.schema.ConfigDeclaration;
+import eu.okaeri.configs.schema.FieldDeclaration;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Declared fields of a document (or nested config) class with direct accessors.
+ * <p>
+ * Fields are resolved once per class with {@link ConfigDeclaration} and cached in a
+ * {@link ClassValue}, which does not keep classes of unloaded class loaders alive.
+ * Reads go through {@link MethodHandle}s adapted to {@code (Object)Object},
+ * without per-call access checks of {@link Field#get}.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class DocumentMapping {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<DocumentMapping> MAPPINGS = new ClassValue<DocumentMapping>() {
+        @Override
+        protected DocumentMapping computeValue(Class<?> type) {
+            return create(type);
+        }
+    };
+
+    @Getter
+    private final Class<?> type;
+    private final Map<String, FieldMapping> fields;
+
+    /**
+     * Get the mapping of a class, created on first use.
+     */
+    public static DocumentMapping of(@NonNull Class<?> type) {
+        return MAPPINGS.get(type);
+    }
+
+    /**
+     * Get a declared field by its name in the document.
+     *
+     * @return field, or null if not declared
+     */
+    public FieldMapping getField(@NonNull String name) {
+        return this.fields.get(name);
+    }
+
+    /**
+     * Declared fields in declaration order.
+     */
+    public Collection<FieldMapping> getFields() {
+        return this.fields.values();
+    }
+
+    private static DocumentMapping create(Class<?> type) {
+        Map<String, FieldMapping> fields = new LinkedHashMap<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (FieldDeclaration declaration : ConfigDeclaration.of(type).getFields()) {
+            Field field = declaration.getField();
+            field.setAccessible(true);
+            fields.put(declaration.getName(), new FieldMapping(
+                declaration.getName(),
+                declaration.getType().getType(),
+                field,
+                getter(lookup, field)
+            ));
+        }
+        return new DocumentMapping(type, fields.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(fields));
+    }
+
+    private static MethodHandle getter(MethodHandles.Lookup lookup, Field field) {
+        try {
+            return lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (IllegalAccessException exception) {
+            throw new IllegalStateException("cannot access field " + field.getName() + " of " + field.getDeclaringClass().getName(), exception);
+        }
+    }
+
+    /**
+     * Declared field with its accessor.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class FieldMapping {
+
+        private final String name;
+        private final Class<?> type;
+        private final Field field;
+        @Getter(AccessLevel.NONE)
+        private final MethodHandle getter;
+
+        /**
+         * Read the field value of an instance.
+         */
+        public Object get(@NonNull Object instance) {
+            try {
+                return (Object) this.getter.invokeExact(instance);
+            } catch (Throwable throwable) {
+                throw new IllegalStateException("cannot read field " + this.name + " of " + instance.getClass().getName(), throwable);
+            }
+        }
+    }
+}
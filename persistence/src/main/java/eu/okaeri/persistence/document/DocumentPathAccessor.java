@@ -0,0 +1,101 @@
+package eu.okaeri.persistence.document;
+
+import eu.okaeri.configs.OkaeriConfig;
+import eu.okaeri.configs.configurer.Configurer;
+import eu.okaeri.persistence.PersistencePath;
+import eu.okaeri.persistence.document.DocumentMapping.FieldMapping;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static eu.okaeri.persistence.document.DocumentValueUtils.extractValue;
+
+/**
+ * Reads the value at a fixed path straight from a live {@link Document},
+ * without converting the whole document with {@link Document#asMap}.
+ * <p>
+ * Declared fields are read through the accessors of {@link DocumentMapping},
+ * undeclared keys are read from the document configurer
+ * (where values are already simplified). Collections of scalars are copied to a list.
+ * Values that would be converted by {@link Document#asMap} (enums, custom objects,
+ * other collections of declared fields) fall back to reading the simplified document map.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class DocumentPathAccessor {
+
+    private final PersistencePath path;
+    private final List<String> parts;
+
+    public static DocumentPathAccessor of(@NonNull PersistencePath path) {
+        return new DocumentPathAccessor(path, path.toParts());
+    }
+
+    /**
+     * Read the value at the path.
+     *
+     * @param document document to read from
+     * @param fallback supplies the simplified document map, called only if the value cannot be read directly
+     * @return value as in the simplified document map, or null if not present
+     */
+    public Object read(@NonNull Document document, @NonNull Supplier<Map<String, Object>> fallback) {
+        if (this.parts.isEmpty()) {
+            return fallback.get();
+        }
+
+        Object current = document;
+        boolean simplified = false;
+
+        for (String part : this.parts) {
+            if (current instanceof OkaeriConfig) {
+                OkaeriConfig config = (OkaeriConfig) current;
+                FieldMapping field = DocumentMapping.of(config.getClass()).getField(part);
+                if (field != null) {
+                    current = field.get(config);
+                    simplified = false;
+                } else {
+                    Configurer configurer = config.getConfigurer();
+                    current = (configurer == null) ? null : configurer.getValue(part);
+                    simplified = true;
+                }
+            } else if (simplified && (current instanceof Map)) {
+                current = ((Map<?, ?>) current).get(part);
+            } else {
+                // custom object of a declared field, only its simplified form is navigable
+                return extractValue(fallback.get(), this.parts);
+            }
+
+            if (current == null) {
+                return null;
+            }
+        }
+
+        if (simplified || isScalar(current)) {
+            return current;
+        }
+        if ((current instanceof Collection) && isScalarCollection((Collection<?>) current)) {
+            return new ArrayList<>((Collection<?>) current);
+        }
+        return extractValue(fallback.get(), this.parts);
+    }
+
+    private static boolean isScalarCollection(@NonNull Collection<?> collection) {
+        for (Object element : collection) {
+            if ((element != null) && !isScalar(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isScalar(@NonNull Object value) {
+        return (value instanceof String) || (value instanceof Number) || (value instanceof Boolean);
+    }
+}
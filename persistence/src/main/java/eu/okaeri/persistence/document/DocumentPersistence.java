@@ -3,7 +3,9 @@ package eu.okaeri.persistence.document;
 import eu.okaeri.configs.configurer.Configurer;
 import eu.okaeri.configs.serdes.OkaeriSerdes;
 import eu.okaeri.persistence.*;
+import eu.okaeri.persistence.document.ref.RefBatch;
 import eu.okaeri.persistence.filter.*;
+import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistence.filter.operation.UpdateOperation;
 import eu.okaeri.persistence.repository.DocumentRepository;
 import eu.okaeri.persistence.repository.RepositoryDeclaration;
@@ -24,10 +26,13 @@ import java.util.stream.Stream;
  * <ul>
  *   <li>Repository creation via {@link #createRepository(Class)}</li>
  *   <li>Fallback filtering for backends that don't implement {@link FilterablePersistence}</li>
+ *   <li>Fallback prepared queries for backends that don't implement {@link PreparablePersistence}</li>
  *   <li>Fallback updates for backends that don't implement {@link UpdatablePersistence}</li>
+ *   <li>Batched resolution of references in read documents, see {@link RefBatch}</li>
+ *   <li>Opt-in identity map and unit of work for request-scoped code via {@link #session()}</li>
  * </ul>
  */
-public class DocumentPersistence implements Persistence, FilterablePersistence, StreamablePersistence, UpdatablePersistence {
+public class DocumentPersistence implements Persistence, FilterablePersistence, PreparablePersistence, StreamablePersistence, UpdatablePersistence {
 
     private static final Logger LOGGER = Logger.getLogger(DocumentPersistence.class.getSimpleName());
 
@@ -37,6 +42,7 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
     private final DocumentSerializer serializer;
     private final InMemoryFilterEvaluator filterEvaluator;
     private final InMemoryUpdateEvaluator updateEvaluator;
+    private final ThreadLocal<DocumentSession> sessions = new ThreadLocal<>();
 
     /**
      * Wrap a persistence backend with document handling capabilities.
@@ -85,14 +91,44 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
 
     /**
      * Create and register a repository for the given interface.
+     * <p>
+     * Uses the implementation generated by the repository annotation processor
+     * when present, otherwise a proxy parsing the method names at runtime.
      */
     public <T extends DocumentRepository<?, ?>> T createRepository(@NonNull Class<T> repositoryClass) {
         PersistenceCollection collection = PersistenceCollection.of(repositoryClass);
         this.registerCollection(collection);
+        T generated = RepositoryDeclaration.newGenerated(repositoryClass, this, collection);
+        if (generated != null) {
+            return generated;
+        }
         return RepositoryDeclaration.of(repositoryClass)
             .newProxy(this, collection, repositoryClass.getClassLoader());
     }
 
+    /**
+     * Open a session bound to the current thread, keeping read documents in an identity map
+     * and writing the changed ones on close. Use with try-with-resources.
+     *
+     * @return opened session
+     * @throws IllegalStateException if a session is already open on the current thread
+     * @see DocumentSession
+     */
+    public DocumentSession session() {
+        if (this.sessions.get() != null) {
+            throw new IllegalStateException("session already open on this thread");
+        }
+        DocumentSession session = new DocumentSession(this);
+        this.sessions.set(session);
+        return session;
+    }
+
+    void closeSession(@NonNull DocumentSession session) {
+        if (this.sessions.get() == session) {
+            this.sessions.remove();
+        }
+    }
+
     // ==================== DELEGATION TO BACKEND ====================
 
     @Override
@@ -117,51 +153,112 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
 
     @Override
     public Optional<Document> read(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
-        return this.backend.read(collection, path);
+        DocumentSession session = this.sessions.get();
+        if (session == null) {
+            return RefBatch.collect(() -> this.backend.read(collection, path));
+        }
+
+        Document held = session.get(collection, path);
+        if (held != null) {
+            return Optional.of(held);
+        }
+
+        return RefBatch.collect(() -> this.backend.read(collection, path))
+            .map(document -> session.attach(collection, path, document));
     }
 
     @Override
     public Map<PersistencePath, Document> read(@NonNull PersistenceCollection collection, @NonNull Collection<PersistencePath> paths) {
-        return this.backend.read(collection, paths);
+        DocumentSession session = this.sessions.get();
+        if (session == null) {
+            return RefBatch.collect(() -> this.backend.read(collection, paths));
+        }
+
+        // Read only the documents not held by the session
+        Map<PersistencePath, Document> documents = new LinkedHashMap<>();
+        List<PersistencePath> missing = new ArrayList<>();
+        for (PersistencePath path : paths) {
+            Document held = session.get(collection, path);
+            if (held == null) {
+                missing.add(path);
+            } else {
+                documents.put(path, held);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            RefBatch.collect(() -> this.backend.read(collection, missing))
+                .forEach((path, document) -> documents.put(path, session.attach(collection, path, document)));
+        }
+
+        return documents;
     }
 
     @Override
     public Map<PersistencePath, Document> readAll(@NonNull PersistenceCollection collection) {
-        return this.backend.readAll(collection);
+        Map<PersistencePath, Document> documents = RefBatch.collect(() -> this.backend.readAll(collection));
+        DocumentSession session = this.sessions.get();
+        if (session == null) {
+            return documents;
+        }
+
+        Map<PersistencePath, Document> attached = new LinkedHashMap<>();
+        documents.forEach((path, document) -> attached.put(path, session.attach(collection, path, document)));
+        return attached;
     }
 
     @Override
     public Stream<PersistenceEntity<Document>> streamAll(@NonNull PersistenceCollection collection) {
-        return this.backend.streamAll(collection);
+        return this.attach(collection, RefBatch.stream(() -> this.backend.streamAll(collection)));
     }
 
     @Override
     public boolean write(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull Document document) {
-        return this.backend.write(collection, path, document);
+        this.checkNotProjected(path, document);
+        if (this.serializer.getConfig().isChangeTracking()
+            && (this.backend instanceof UpdatablePersistence)
+            && ((UpdatablePersistence) this.backend).isPartialUpdatePreferred()) {
+            boolean written = this.writeChanges((UpdatablePersistence) this.backend, collection, path, document);
+            this.holdWritten(collection, path, document);
+            return written;
+        }
+        boolean written = this.backend.write(collection, path, document);
+        this.holdWritten(collection, path, document);
+        return written;
     }
 
     @Override
     public long write(@NonNull PersistenceCollection collection, @NonNull Map<PersistencePath, Document> documents) {
-        return this.backend.write(collection, documents);
+        documents.forEach(this::checkNotProjected);
+        long written = this.backend.write(collection, documents);
+        documents.forEach((path, document) -> this.holdWritten(collection, path, document));
+        return written;
     }
 
     @Override
     public boolean delete(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
+        this.detach(collection, path);
         return this.backend.delete(collection, path);
     }
 
     @Override
     public long delete(@NonNull PersistenceCollection collection, @NonNull Collection<PersistencePath> paths) {
+        paths.forEach(path -> this.detach(collection, path));
         return this.backend.delete(collection, paths);
     }
 
     @Override
     public boolean deleteAll(@NonNull PersistenceCollection collection) {
+        this.detach(collection);
         return this.backend.deleteAll(collection);
     }
 
     @Override
     public long deleteAll() {
+        DocumentSession session = this.sessions.get();
+        if (session != null) {
+            session.clear();
+        }
         return this.backend.deleteAll();
     }
 
@@ -176,18 +273,55 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
     public Stream<PersistenceEntity<Document>> find(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
         // Try native filtering first
         if (this.backend instanceof FilterablePersistence) {
-            return ((FilterablePersistence) this.backend).find(collection, filter);
+            Stream<PersistenceEntity<Document>> found = RefBatch.stream(() -> ((FilterablePersistence) this.backend).find(collection, filter));
+            return filter.hasProjection() ? this.markProjected(found) : this.attach(collection, found);
         }
 
         // Fallback: load all and filter in memory
         LOGGER.fine("Backend doesn't support native find(), using in-memory filtering");
-        return this.filterEvaluator.applyFilter(this.streamAll(collection), filter);
+        Stream<PersistenceEntity<Document>> found = this.serializer.project(this.filterEvaluator.applyFilter(this.streamAll(collection), filter), filter);
+        return filter.hasProjection() ? this.markProjected(found) : found;
+    }
+
+    @Override
+    public long count(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
+        // Try native count first
+        if (this.backend instanceof FilterablePersistence) {
+            return ((FilterablePersistence) this.backend).count(collection, filter);
+        }
+
+        // Fallback: load all and count matching in memory
+        LOGGER.fine("Backend doesn't support native count(), using in-memory filtering");
+        if (filter.getWhere() == null) {
+            return filter.window(this.backend.count(collection));
+        }
+
+        CompiledCondition where = this.filterEvaluator.compile(filter.getWhere());
+        long matched = this.streamAll(collection)
+            .filter(entity -> where.test(entity.getValue()))
+            .count();
+
+        return filter.window(matched);
+    }
+
+    @Override
+    public boolean exists(@NonNull PersistenceCollection collection, @NonNull Condition condition) {
+        // Try native exists first
+        if (this.backend instanceof FilterablePersistence) {
+            return ((FilterablePersistence) this.backend).exists(collection, condition);
+        }
+
+        // Fallback: load all and stop at first match
+        LOGGER.fine("Backend doesn't support native exists(), using in-memory filtering");
+        CompiledCondition where = this.filterEvaluator.compile(condition);
+        return this.streamAll(collection).anyMatch(entity -> where.test(entity.getValue()));
     }
 
     @Override
     public long delete(@NonNull PersistenceCollection collection, @NonNull DeleteFilter filter) {
         // Try native delete first
         if (this.backend instanceof FilterablePersistence) {
+            this.flushDetach(collection);
             return ((FilterablePersistence) this.backend).delete(collection, filter);
         }
 
@@ -197,21 +331,41 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
             throw new IllegalArgumentException("DeleteFilter requires WHERE condition - use deleteAll() instead");
         }
 
+        CompiledCondition where = this.filterEvaluator.compile(filter.getWhere());
         List<PersistencePath> toDelete = this.streamAll(collection)
-            .filter(entity -> this.filterEvaluator.evaluateCondition(filter.getWhere(), entity.getValue()))
+            .filter(entity -> where.test(entity.getValue()))
             .map(PersistenceEntity::getPath)
             .collect(Collectors.toList());
 
         return this.delete(collection, toDelete);
     }
 
+    /**
+     * Prepare a query template, natively if the backend supports it.
+     * Never returns null, other templates bind their arguments into
+     * regular filters on every call.
+     */
+    @Override
+    public PreparedQuery prepare(@NonNull PersistenceCollection collection, @NonNull FindFilter template) {
+        // Try native prepared query first
+        if (this.backend instanceof PreparablePersistence) {
+            PreparedQuery prepared = ((PreparablePersistence) this.backend).prepare(collection, template);
+            if (prepared != null) {
+                return this.wrapPrepared(collection, template, prepared);
+            }
+        }
+
+        // Fallback: build filters with the arguments for every call
+        return PreparedQuery.of(this, collection, template);
+    }
+
     // ==================== STREAMING (WITH FALLBACK) ====================
 
     @Override
     public Stream<PersistenceEntity<Document>> stream(@NonNull PersistenceCollection collection, int batchSize) {
         // Try native streaming first
         if (this.backend instanceof StreamablePersistence) {
-            return ((StreamablePersistence) this.backend).stream(collection, batchSize);
+            return this.attach(collection, RefBatch.stream(() -> ((StreamablePersistence) this.backend).stream(collection, batchSize)));
         }
 
         // Fallback: streamAll (no batching)
@@ -223,6 +377,7 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
     @Override
     public boolean updateOne(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull List<UpdateOperation> operations) {
         this.validateNoFieldConflicts(operations);
+        this.flushDetach(collection, path);
 
         if (this.backend instanceof UpdatablePersistence) {
             try {
@@ -239,6 +394,7 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
     @Override
     public Optional<Document> updateOneAndGet(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull List<UpdateOperation> operations) {
         this.validateNoFieldConflicts(operations);
+        this.flushDetach(collection, path);
 
         if (this.backend instanceof UpdatablePersistence) {
             try {
@@ -255,6 +411,7 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
     @Override
     public Optional<Document> getAndUpdateOne(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull List<UpdateOperation> operations) {
         this.validateNoFieldConflicts(operations);
+        this.flushDetach(collection, path);
 
         if (this.backend instanceof UpdatablePersistence) {
             try {
@@ -271,6 +428,7 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
     @Override
     public long update(@NonNull PersistenceCollection collection, @NonNull UpdateFilter filter) {
         this.validateNoFieldConflicts(filter.getOperations());
+        this.flushDetach(collection);
 
         if (this.backend instanceof UpdatablePersistence) {
             try {
@@ -284,8 +442,128 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
         return this.updateInMemory(collection, filter);
     }
 
+    @Override
+    public boolean isPartialUpdatePreferred() {
+        return (this.backend instanceof UpdatablePersistence) && ((UpdatablePersistence) this.backend).isPartialUpdatePreferred();
+    }
+
     // ==================== HELPER METHODS ====================
 
+    /**
+     * Resolve references of the documents found by a natively prepared query in batches
+     * and keep the documents in the session of the calling thread.
+     */
+    private PreparedQuery wrapPrepared(PersistenceCollection collection, FindFilter template, PreparedQuery query) {
+        return new PreparedQuery() {
+            @Override
+            public Stream<PersistenceEntity<Document>> find(@NonNull Object... args) {
+                Stream<PersistenceEntity<Document>> found = RefBatch.stream(() -> query.find(args));
+                return template.hasProjection() ? DocumentPersistence.this.markProjected(found) : DocumentPersistence.this.attach(collection, found);
+            }
+
+            @Override
+            public long count(@NonNull Object... args) {
+                return query.count(args);
+            }
+
+            @Override
+            public boolean exists(@NonNull Object... args) {
+                return query.exists(args);
+            }
+
+            @Override
+            public long delete(@NonNull Object... args) {
+                DocumentPersistence.this.flushDetach(collection);
+                return query.delete(args);
+            }
+        };
+    }
+
+    private Stream<PersistenceEntity<Document>> attach(PersistenceCollection collection, Stream<PersistenceEntity<Document>> stream) {
+        DocumentSession session = this.sessions.get();
+        return (session == null) ? stream : stream.map(entity -> session.attach(collection, entity));
+    }
+
+    /**
+     * Mark documents found with a projection, they are not kept in the session either.
+     */
+    private Stream<PersistenceEntity<Document>> markProjected(Stream<PersistenceEntity<Document>> stream) {
+        return stream.peek(entity -> entity.getValue().setProjected(true));
+    }
+
+    private void checkNotProjected(PersistencePath path, Document document) {
+        if (document.isProjected()) {
+            throw new IllegalStateException("cannot write projected document " + path.getValue() + ", fields that were not selected would be overwritten");
+        }
+    }
+
+    private void holdWritten(PersistenceCollection collection, PersistencePath path, Document document) {
+        DocumentSession session = this.sessions.get();
+        if (session != null) {
+            session.written(collection, path, document);
+        }
+    }
+
+    private void detach(PersistenceCollection collection, PersistencePath path) {
+        DocumentSession session = this.sessions.get();
+        if (session != null) {
+            session.detach(collection, path);
+        }
+    }
+
+    private void detach(PersistenceCollection collection) {
+        DocumentSession session = this.sessions.get();
+        if (session != null) {
+            session.detach(collection);
+        }
+    }
+
+    private void flushDetach(PersistenceCollection collection, PersistencePath path) {
+        DocumentSession session = this.sessions.get();
+        if (session != null) {
+            session.flushDetach(collection, path);
+        }
+    }
+
+    private void flushDetach(PersistenceCollection collection) {
+        DocumentSession session = this.sessions.get();
+        if (session != null) {
+            session.flushDetach(collection);
+        }
+    }
+
+    /**
+     * Write only the changed fields of a tracked document if possible, the full document otherwise.
+     */
+    private boolean writeChanges(UpdatablePersistence backend, PersistenceCollection collection, PersistencePath path, Document document) {
+        Map<String, Object> current = this.serializer.toMap(document);
+        Map<String, Object> snapshot = document.getSnapshot();
+
+        if ((snapshot != null) && path.equals(document.getPath()) && collection.equals(document.getCollection())) {
+            List<UpdateOperation> operations = DocumentChanges.diff(snapshot, current);
+            if ((operations != null) && operations.isEmpty()) {
+                // Unchanged, unless deleted meanwhile - fall through to full write
+                if (backend.exists(collection, path)) {
+                    return true;
+                }
+            } else if (operations != null) {
+                try {
+                    if (backend.updateOne(collection, path, operations)) {
+                        document.setSnapshot(current);
+                        return true;
+                    }
+                    // Not found - fall through to full write
+                } catch (UnsupportedOperationException ignored) {
+                    // Fall through to full write
+                }
+            }
+        }
+
+        boolean written = backend.write(collection, path, document);
+        document.setSnapshot(current);
+        return written;
+    }
+
     private void validateNoFieldConflicts(List<UpdateOperation> operations) {
         Map<String, Integer> fieldCounts = new HashMap<>();
         for (UpdateOperation op : operations) {
@@ -353,8 +631,8 @@ public class DocumentPersistence implements Persistence, FilterablePersistence,
         Stream<PersistenceEntity<Document>> stream = this.streamAll(collection);
 
         if (filter.getWhere() != null) {
-            stream = stream.filter(entity ->
-                this.filterEvaluator.evaluateCondition(filter.getWhere(), entity.getValue()));
+            CompiledCondition where = this.filterEvaluator.compile(filter.getWhere());
+            stream = stream.filter(entity -> where.test(entity.getValue()));
         }
 
         List<PersistencePath> pathsToUpdate = stream
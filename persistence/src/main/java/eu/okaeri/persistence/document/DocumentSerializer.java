@@ -2,21 +2,35 @@ package eu.okaeri.persistence.document;
 
 import eu.okaeri.configs.ConfigManager;
 import eu.okaeri.configs.configurer.Configurer;
+import eu.okaeri.configs.migrate.view.RawConfigView;
 import eu.okaeri.configs.serdes.OkaeriSerdes;
 import eu.okaeri.configs.serdes.SerdesRegistry;
 import eu.okaeri.configs.serdes.commons.SerdesCommons;
 import eu.okaeri.configs.serdes.commons.serializer.InstantSerializer;
 import eu.okaeri.configs.serdes.standard.StandardSerdes;
 import eu.okaeri.persistence.PersistenceCollection;
+import eu.okaeri.persistence.PersistenceEntity;
 import eu.okaeri.persistence.PersistencePath;
 import eu.okaeri.persistence.document.ref.EagerRefSerializer;
 import eu.okaeri.persistence.document.ref.LazyRefSerializer;
+import eu.okaeri.persistence.filter.FindFilter;
+import eu.okaeri.persistence.filter.Projection;
+import eu.okaeri.persistence.util.PooledBuffer;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.Inflater;
 
 /**
  * Utility for serializing/deserializing Documents.
@@ -85,20 +99,125 @@ public class DocumentSerializer {
         return document.saveToString();
     }
 
+    /**
+     * Serialize a document to the stream in the configured {@link DocumentEncoding},
+     * compressed if at least {@link DocumentSerializerConfig#getCompressionThreshold()} bytes long.
+     */
+    @SneakyThrows
+    public void serialize(@NonNull Document document, @NonNull OutputStream output) {
+        int threshold = this.config.getCompressionThreshold();
+        if (threshold <= 0) {
+            this.encode(document, output);
+            return;
+        }
+        try (PooledBuffer buffer = PooledBuffer.acquire()) {
+            this.encode(document, buffer);
+            if (buffer.size() < threshold) {
+                buffer.writeTo(output);
+                return;
+            }
+            ByteBuffer plain = buffer.toByteBuffer();
+            DocumentCompression.compress(plain.array(), plain.arrayOffset(), plain.remaining(), this.config.getCompressionLevel(), output);
+        }
+    }
+
+    private void encode(@NonNull Document document, @NonNull OutputStream output) throws IOException {
+        if (this.config.getEncoding() == DocumentEncoding.BINARY) {
+            BinaryDocumentCodec.encode(this.toMap(document), output);
+            return;
+        }
+        document.save(output);
+    }
+
+    /**
+     * Serialize a document to bytes in the configured {@link DocumentEncoding}.
+     * The document is written to a pooled buffer and copied once to the result.
+     */
+    public byte[] serializeToBytes(@NonNull Document document) {
+        try (PooledBuffer buffer = PooledBuffer.acquire()) {
+            this.serialize(document, buffer);
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * Serialize a document to a pooled buffer and pass it to the handler.
+     * See {@link #serialize(Document, OutputStream)}.
+     * The buffer is reused after the handler returns and must not be retained.
+     */
+    @SneakyThrows
+    public <T> T serialize(@NonNull Document document, @NonNull BufferHandler<T> handler) {
+        try (PooledBuffer buffer = PooledBuffer.acquire()) {
+            this.serialize(document, buffer);
+            return handler.handle(buffer.toByteBuffer());
+        }
+    }
+
     /**
      * Deserialize JSON string to a document.
      */
     public Document deserialize(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull String json) {
         Document document = this.createDocument(collection, path);
         document.load(json);
+        this.track(document);
+        return document;
+    }
+
+    /**
+     * Deserialize a document from the stream, in either {@link DocumentEncoding}, compressed or not.
+     * The stream is read fully but not closed.
+     */
+    @SneakyThrows
+    public Document deserialize(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull InputStream input) {
+        PushbackInputStream pushback = new PushbackInputStream(input, 1);
+        int first = pushback.read();
+        if (first >= 0) {
+            pushback.unread(first);
+        }
+
+        if (DocumentCompression.isCompressed(first)) {
+            Inflater inflater = new Inflater();
+            try {
+                return this.deserialize(collection, path, DocumentCompression.decompress(pushback, inflater));
+            } finally {
+                inflater.end();
+            }
+        }
+
+        Document document = this.createDocument(collection, path);
+        if (BinaryDocumentCodec.isBinary(first)) {
+            BinaryDocumentCodec.decode(pushback).forEach(document::set);
+        } else {
+            document.load(pushback);
+        }
+        this.track(document);
         return document;
     }
 
+    /**
+     * Deserialize a document from bytes, in either {@link DocumentEncoding}, compressed or not.
+     */
+    public Document deserialize(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull byte[] data) {
+        return this.deserialize(collection, path, new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Snapshot a document read from storage if change tracking is enabled,
+     * see {@link DocumentSerializerConfig#isChangeTracking()}.
+     */
+    public void track(@NonNull Document document) {
+        if (this.config.isChangeTracking()) {
+            document.setSnapshot(this.toMap(document));
+        }
+    }
+
     /**
      * Create a new empty document for a collection.
+     * The document is an instance of {@link PersistenceCollection#getDocumentType()} if set.
      */
     public Document createDocument(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
-        Document document = ConfigManager.create(Document.class);
+        Class<? extends Document> documentType = collection.getDocumentType();
+        Document document = ConfigManager.create((documentType == null) ? Document.class : documentType);
         this.setupDocument(document, collection, path);
         return document;
     }
@@ -131,10 +250,33 @@ public class DocumentSerializer {
     }
 
     /**
-     * Deep copy a document.
+     * Create a new document with only the projected fields of a document.
+     * The source document is not modified.
+     */
+    public Document project(@NonNull Document document, @NonNull Projection projection) {
+        Document projected = this.createDocument(document.getCollection(), document.getPath());
+        RawConfigView view = new RawConfigView(projected);
+        projection.apply(this.toMap(document)).forEach(view::set);
+        return projected;
+    }
+
+    /**
+     * Apply the projection of a find filter to found entities, if any.
+     * Used by backends projecting in memory.
+     */
+    public Stream<PersistenceEntity<Document>> project(@NonNull Stream<PersistenceEntity<Document>> stream, @NonNull FindFilter filter) {
+        if (!filter.hasProjection()) {
+            return stream;
+        }
+        Projection projection = filter.getProjection();
+        return stream.map(entity -> new PersistenceEntity<>(entity.getPath(), this.project(entity.getValue(), projection)));
+    }
+
+    /**
+     * Deep copy a document, keeping its class.
      */
     public Document deepCopy(@NonNull Document source) {
-        Document copy = ConfigManager.deepCopy(source, this.configurer, Document.class);
+        Document copy = ConfigManager.deepCopy(source, this.configurer, source.getClass());
         copy.setPath(source.getPath());
         copy.setCollection(source.getCollection());
         if (this.persistence instanceof DocumentPersistence) {
@@ -142,4 +284,12 @@ public class DocumentSerializer {
         }
         return copy;
     }
+
+    /**
+     * Consumer of a serialized document buffer.
+     */
+    @FunctionalInterface
+    public interface BufferHandler<T> {
+        T handle(@NonNull ByteBuffer buffer) throws IOException;
+    }
 }
@@ -8,6 +8,7 @@ import lombok.NonNull;
 import lombok.Singular;
 
 import java.util.List;
+import java.util.zip.Deflater;
 
 /**
  * Configuration for DocumentSerializer.
@@ -35,4 +36,33 @@ public class DocumentSerializerConfig {
      */
     @Builder.Default
     private final DocumentConfigurator documentConfigurator = DocumentConfigurator.identity();
+
+    /**
+     * Format of documents stored as bytes.
+     */
+    @NonNull
+    @Builder.Default
+    private final DocumentEncoding encoding = DocumentEncoding.TEXT;
+
+    /**
+     * Documents stored as bytes are compressed from this size in bytes, 0 to disable.
+     */
+    @Builder.Default
+    private final int compressionThreshold = 0;
+
+    /**
+     * {@link Deflater} level of compressed documents.
+     */
+    @Builder.Default
+    private final int compressionLevel = Deflater.BEST_SPEED;
+
+    /**
+     * Keep a snapshot of read documents and save them with update operations
+     * of the changed fields when supported by the backend, see {@link DocumentChanges}
+     * and {@link eu.okaeri.persistence.UpdatablePersistence#isPartialUpdatePreferred()}.
+     * Saving an unchanged document still checks that it exists, so that documents
+     * deleted meanwhile are written again.
+     */
+    @Builder.Default
+    private final boolean changeTracking = false;
 }
@@ -0,0 +1,188 @@
+package eu.okaeri.persistence.document;
+
+import eu.okaeri.persistence.PersistenceCollection;
+import eu.okaeri.persistence.PersistenceEntity;
+import eu.okaeri.persistence.PersistencePath;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.*;
+
+/**
+ * Unit of work bound to the thread that opened it with {@link DocumentPersistence#session()}.
+ * <p>
+ * While the session is open, documents read through the persistence (by path, by
+ * filter, as streams or as references) are kept in an identity map: the same
+ * collection and path always resolve to the same instance, and repeated reads
+ * by path are served without going to the backend.
+ * <p>
+ * Closing the session writes the documents that were changed since they were
+ * read or written. Deletes, updates and writes of other documents in the
+ * collection are not reflected in documents already held by the session;
+ * updates and deletes detach the affected documents instead. Filtered deletes
+ * and updates first write the pending changes of the documents they detach.
+ *
+ * <pre>{@code
+ * try (DocumentSession session = persistence.session()) {
+ *     User user = repository.findByPath(id).get();
+ *     user.setCoins(user.getCoins() + 10); // written on close
+ * }
+ * }</pre>
+ */
+@RequiredArgsConstructor
+public class DocumentSession implements AutoCloseable {
+
+    private final @NonNull DocumentPersistence persistence;
+    private final Map<PersistencePath, Map<PersistencePath, Entry>> entries = new HashMap<>();
+    private boolean closed;
+
+    /**
+     * Write all documents changed since they were read or last written, without closing the session.
+     *
+     * @return number of written documents
+     */
+    public long flush() {
+        List<Entry> held = new ArrayList<>();
+        for (Map<PersistencePath, Entry> collectionEntries : this.entries.values()) {
+            held.addAll(collectionEntries.values());
+        }
+        return this.writeChanged(held);
+    }
+
+    /**
+     * Detach all documents without writing their changes.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Flush the changed documents and unbind the session from its thread.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.persistence.closeSession(this);
+        this.flush();
+        this.entries.clear();
+    }
+
+    // ==================== IDENTITY MAP ====================
+
+    Document get(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
+        Map<PersistencePath, Entry> collectionEntries = this.entries.get(collection);
+        if (collectionEntries == null) {
+            return null;
+        }
+        Entry entry = collectionEntries.get(path);
+        return (entry == null) ? null : entry.document;
+    }
+
+    /**
+     * Get the document held for the path, or hold the read document if there is none.
+     */
+    Document attach(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull Document document) {
+        if (this.closed) {
+            return document;
+        }
+        Map<PersistencePath, Entry> collectionEntries = this.entries.computeIfAbsent(collection, key -> new HashMap<>());
+        Entry entry = collectionEntries.get(path);
+        if (entry != null) {
+            return entry.document;
+        }
+        collectionEntries.put(path, new Entry(collection, path, document, this.snapshot(document)));
+        return document;
+    }
+
+    PersistenceEntity<Document> attach(@NonNull PersistenceCollection collection, @NonNull PersistenceEntity<Document> entity) {
+        return entity.into(this.attach(collection, entity.getPath(), entity.getValue()));
+    }
+
+    /**
+     * Hold a document that was just written, replacing the document previously held for the path.
+     */
+    void written(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull Document document) {
+        if (this.closed) {
+            return;
+        }
+        Map<String, Object> snapshot = this.persistence.getSerializer().toMap(document);
+        this.entries.computeIfAbsent(collection, key -> new HashMap<>())
+            .put(path, new Entry(collection, path, document, snapshot));
+    }
+
+    void detach(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
+        Map<PersistencePath, Entry> collectionEntries = this.entries.get(collection);
+        if (collectionEntries != null) {
+            collectionEntries.remove(path);
+        }
+    }
+
+    void detach(@NonNull PersistenceCollection collection) {
+        this.entries.remove(collection);
+    }
+
+    /**
+     * Write the pending changes of the document held for the path and detach it.
+     */
+    void flushDetach(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
+        Map<PersistencePath, Entry> collectionEntries = this.entries.get(collection);
+        Entry entry = (collectionEntries == null) ? null : collectionEntries.get(path);
+        if (entry != null) {
+            this.writeChanged(Collections.singletonList(entry));
+        }
+        this.detach(collection, path);
+    }
+
+    /**
+     * Write the pending changes of the documents held for the collection and detach them.
+     */
+    void flushDetach(@NonNull PersistenceCollection collection) {
+        Map<PersistencePath, Entry> collectionEntries = this.entries.get(collection);
+        if (collectionEntries != null) {
+            this.writeChanged(new ArrayList<>(collectionEntries.values()));
+        }
+        this.detach(collection);
+    }
+
+    private long writeChanged(Collection<Entry> held) {
+
+        List<Entry> changed = new ArrayList<>();
+        for (Entry entry : held) {
+            if (!this.persistence.getSerializer().toMap(entry.current()).equals(entry.snapshot)) {
+                changed.add(entry);
+            }
+        }
+
+        // Writes through the persistence take new snapshots of the open session
+        for (Entry entry : changed) {
+            this.persistence.write(entry.collection, entry.path, entry.current());
+        }
+
+        return changed.size();
+    }
+
+    private Map<String, Object> snapshot(Document document) {
+        // Documents read with change tracking already carry their state
+        Map<String, Object> snapshot = document.getSnapshot();
+        return (snapshot == null) ? this.persistence.getSerializer().toMap(document) : snapshot;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final PersistenceCollection collection;
+        private final PersistencePath path;
+        private final Document document;
+        private final Map<String, Object> snapshot;
+
+        /**
+         * Get the latest typed copy the document was converted to with {@link Document#into(Class)}.
+         */
+        Document current() {
+            return this.document.into(Document.class);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import eu.okaeri.configs.configurer.Configurer;
 import eu.okaeri.configs.configurer.InMemoryConfigurer;
 import eu.okaeri.configs.serdes.OkaeriSerdes;
 import eu.okaeri.persistence.*;
+import eu.okaeri.persistence.document.index.CompoundPropertyIndex;
+import eu.okaeri.persistence.document.index.DocIdDictionary;
 import eu.okaeri.persistence.document.index.IndexExtractor;
 import eu.okaeri.persistence.document.index.IndexProperty;
 import eu.okaeri.persistence.document.index.PropertyIndex;
@@ -17,12 +19,16 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * In-memory persistence backend with full filtering and update support.
  * Documents are stored in ConcurrentHashMaps with per-document locking.
+ * <p>
+ * With serialized storage, documents are kept encoded (see {@link DocumentEncoding})
+ * and every read returns a new instance, like remote backends do.
  */
 public class InMemoryPersistence implements Persistence, FilterablePersistence, UpdatablePersistence {
 
@@ -34,22 +40,34 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
     private final InMemoryFilterEvaluator filterEvaluator;
     private final InMemoryUpdateEvaluator updateEvaluator;
     private final IndexQueryOptimizer queryOptimizer = new IndexQueryOptimizer();
+    private final boolean serializedStorage;
 
     // Data storage
     private final Map<String, PersistenceCollection> knownCollections = new ConcurrentHashMap<>();
     private final Map<String, Map<String, PropertyIndex>> indexMap = new ConcurrentHashMap<>();
-    private final Map<String, Map<PersistencePath, Document>> documents = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, CompoundPropertyIndex>> compoundIndexMap = new ConcurrentHashMap<>();
+    private final Map<String, DocIdDictionary> dictionaries = new ConcurrentHashMap<>();
+    private final Map<String, Map<PersistencePath, Object>> documents = new ConcurrentHashMap<>(); // Document or byte[]
     private final Map<String, Map<PersistencePath, Object>> documentLocks = new ConcurrentHashMap<>();
 
     public InMemoryPersistence(@NonNull Configurer configurer, @NonNull OkaeriSerdes... serdes) {
         this.serializer = new DocumentSerializer(configurer, serdes);
+        this.serializedStorage = false;
         this.indexExtractor = new IndexExtractor(this.serializer.getConfigurer());
         this.filterEvaluator = new InMemoryFilterEvaluator(this.serializer.getConfigurer());
         this.updateEvaluator = new InMemoryUpdateEvaluator(this.serializer.getSerdesRegistry());
     }
 
     public InMemoryPersistence(@NonNull DocumentSerializerConfig serializerConfig) {
+        this(serializerConfig, false);
+    }
+
+    public InMemoryPersistence(@NonNull DocumentSerializerConfig serializerConfig, boolean serializedStorage) {
+        if (serializedStorage && (serializerConfig.getEncoding() == DocumentEncoding.TEXT) && (serializerConfig.getConfigurer() instanceof InMemoryConfigurer)) {
+            throw new IllegalArgumentException("serialized storage with InMemoryConfigurer requires DocumentEncoding.BINARY");
+        }
         this.serializer = new DocumentSerializer(serializerConfig);
+        this.serializedStorage = serializedStorage;
         this.indexExtractor = new IndexExtractor(this.serializer.getConfigurer());
         this.filterEvaluator = new InMemoryFilterEvaluator(this.serializer.getConfigurer());
         this.updateEvaluator = new InMemoryUpdateEvaluator(this.serializer.getSerdesRegistry());
@@ -65,15 +83,26 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
 
     public static class Builder extends PersistenceBuilder<Builder, InMemoryPersistence> {
 
+        private boolean serializedStorage;
+
         @Override
         protected Builder self() {
             return this;
         }
 
+        /**
+         * Keep documents encoded instead of as live objects, trading CPU for memory.
+         * Requires {@link DocumentEncoding#BINARY} unless the configurer writes text.
+         */
+        public Builder serializedStorage(boolean serializedStorage) {
+            this.serializedStorage = serializedStorage;
+            return this;
+        }
+
         @Override
         public InMemoryPersistence build() {
             DocumentSerializerConfig serializerConfig = this.buildSerializerConfig();
-            return new InMemoryPersistence(serializerConfig);
+            return new InMemoryPersistence(serializerConfig, this.serializedStorage);
         }
     }
 
@@ -93,11 +122,17 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
         this.documents.put(collection.getValue(), new ConcurrentHashMap<>());
         this.documentLocks.put(collection.getValue(), new ConcurrentHashMap<>());
 
-        // Create PropertyIndex for each indexed property
+        // Create PropertyIndex for each indexed property (sharing document ids)
+        DocIdDictionary dictionary = this.dictionaries.computeIfAbsent(
+            collection.getValue(), col -> new DocIdDictionary());
         Map<String, PropertyIndex> indexes = this.indexMap.computeIfAbsent(
             collection.getValue(), col -> new ConcurrentHashMap<>());
         collection.getIndexes().forEach(index ->
-            indexes.put(index.getValue(), new PropertyIndex()));
+            indexes.put(index.getValue(), new PropertyIndex(index, dictionary)));
+        Map<String, CompoundPropertyIndex> compoundIndexes = this.compoundIndexMap.computeIfAbsent(
+            collection.getValue(), col -> new ConcurrentHashMap<>());
+        collection.getCompoundIndexes().forEach(index ->
+            compoundIndexes.put(index.getValue(), new CompoundPropertyIndex(index, dictionary)));
     }
 
     private void checkCollectionRegistered(@NonNull PersistenceCollection collection) {
@@ -135,18 +170,18 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
     @Override
     public Optional<Document> read(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
         this.checkCollectionRegistered(collection);
-        Document doc = this.documents.get(collection.getValue()).get(path);
-        return Optional.ofNullable(doc);
+        Object stored = this.documents.get(collection.getValue()).get(path);
+        return Optional.ofNullable(this.decode(collection, path, stored));
     }
 
     @Override
     public Map<PersistencePath, Document> read(@NonNull PersistenceCollection collection, @NonNull Collection<PersistencePath> paths) {
         this.checkCollectionRegistered(collection);
-        Map<PersistencePath, Document> collectionDocs = this.documents.get(collection.getValue());
+        Map<PersistencePath, Object> collectionDocs = this.documents.get(collection.getValue());
         Map<PersistencePath, Document> result = new LinkedHashMap<>();
 
         for (PersistencePath path : paths) {
-            Document doc = collectionDocs.get(path);
+            Document doc = this.decode(collection, path, collectionDocs.get(path));
             if (doc != null) {
                 result.put(path, doc);
             }
@@ -157,7 +192,10 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
     @Override
     public Map<PersistencePath, Document> readAll(@NonNull PersistenceCollection collection) {
         this.checkCollectionRegistered(collection);
-        return new LinkedHashMap<>(this.documents.get(collection.getValue()));
+        Map<PersistencePath, Document> result = new LinkedHashMap<>();
+        this.documents.get(collection.getValue()).forEach((path, stored) ->
+            result.put(path, this.decode(collection, path, stored)));
+        return result;
     }
 
     // ==================== STREAMING ====================
@@ -165,8 +203,8 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
     @Override
     public Stream<PersistenceEntity<Document>> streamAll(@NonNull PersistenceCollection collection) {
         this.checkCollectionRegistered(collection);
-        return this.documents.get(collection.getValue()).values().stream()
-            .map(doc -> new PersistenceEntity<>(doc.getPath(), doc));
+        return this.documents.get(collection.getValue()).entrySet().stream()
+            .map(entry -> new PersistenceEntity<>(entry.getKey(), this.decode(collection, entry.getKey(), entry.getValue())));
     }
 
 
@@ -175,44 +213,111 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
     @Override
     public Stream<PersistenceEntity<Document>> find(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
         this.checkCollectionRegistered(collection);
+        return this.readIndexes(collection, () -> this.findMatching(collection, filter));
+    }
+
+    private Stream<PersistenceEntity<Document>> findMatching(PersistenceCollection collection, FindFilter filter) {
+
+        Condition where = filter.getWhere();
+        Map<String, PropertyIndex> indexes = this.indexMap.get(collection.getValue());
+        IndexQueryOptimizer.IndexResult optimized = (where != null) ? this.optimize(collection, where) : null;
+
+        // Walk the index of the first ORDER BY field when only the top of the order is needed
+        PropertyIndex sortIndex = filter.hasOrderBy() ? indexes.get(filter.getOrderBy().get(0).getPath().getValue()) : null;
+        if (sortIndex != null) {
+            boolean indexed = (optimized != null) && !optimized.requiresFullScan();
+            Optional<Stream<PersistenceEntity<Document>>> ordered = this.filterEvaluator.applyIndexOrder(sortIndex,
+                indexed ? optimized.getIds() : null,
+                indexed ? optimized.getRemainingCondition() : where,
+                docId -> {
+                    PersistencePath path = PersistencePath.of(docId);
+                    Document doc = this.decode(collection, path, this.documents.get(collection.getValue()).get(path));
+                    return (doc != null) ? new PersistenceEntity<>(path, doc) : null;
+                }, filter);
+            if (ordered.isPresent()) {
+                return this.serializer.project(ordered.get(), filter);
+            }
+        }
 
         // Start with candidates from index or full scan
-        Stream<PersistenceEntity<Document>> candidates;
+        Stream<PersistenceEntity<Document>> candidates = (where != null)
+            ? this.matching(collection, where, optimized)
+            : this.streamAll(collection);
+
+        // Apply ORDER BY / SKIP / LIMIT, then copy only the selected fields
+        return this.serializer.project(this.filterEvaluator.applyFilter(candidates, filter), filter);
+    }
+
+    @Override
+    public long count(@NonNull PersistenceCollection collection, @NonNull FindFilter filter) {
+        this.checkCollectionRegistered(collection);
+
         Condition where = filter.getWhere();
+        if (where == null) {
+            return filter.window(this.count(collection));
+        }
+
+        // Fully indexed condition is answered by the size of the matching IDs
+        return this.readIndexes(collection, () -> {
+            IndexQueryOptimizer.IndexResult optimized = this.optimize(collection, where);
+            if (!optimized.requiresFullScan() && !optimized.hasRemainingCondition()) {
+                return filter.window(optimized.getIds().cardinality());
+            }
+            return filter.window(this.matching(collection, where, optimized).count());
+        });
+    }
+
+    @Override
+    public boolean exists(@NonNull PersistenceCollection collection, @NonNull Condition condition) {
+        this.checkCollectionRegistered(collection);
+
+        return this.readIndexes(collection, () -> {
+            IndexQueryOptimizer.IndexResult optimized = this.optimize(collection, condition);
+            if (!optimized.requiresFullScan() && !optimized.hasRemainingCondition()) {
+                return !optimized.getIds().isEmpty();
+            }
+            return this.matching(collection, condition, optimized).findAny().isPresent();
+        });
+    }
+
+    /**
+     * Run a query over the indexes of the collection, keeping the IDs it resolves from being reused meanwhile.
+     */
+    private <T> T readIndexes(PersistenceCollection collection, Supplier<T> query) {
+        return this.dictionaries.get(collection.getValue()).read(query);
+    }
+
+    private IndexQueryOptimizer.IndexResult optimize(PersistenceCollection collection, Condition where) {
+        Map<String, PropertyIndex> indexes = this.indexMap.get(collection.getValue());
+        Map<String, CompoundPropertyIndex> compoundIndexes = this.compoundIndexMap.get(collection.getValue());
+        return this.queryOptimizer.optimize(where, indexes, compoundIndexes.values());
+    }
 
-        if (where != null) {
-            Map<String, PropertyIndex> indexes = this.indexMap.get(collection.getValue());
-            IndexQueryOptimizer.IndexResult optimized = this.queryOptimizer.optimize(where, indexes);
-
-            if (!optimized.requiresFullScan()) {
-                // Index provides at least partial coverage
-                Map<PersistencePath, Document> collectionDocs = this.documents.get(collection.getValue());
-                candidates = optimized.getDocIds().stream()
-                    .map(docId -> {
-                        PersistencePath path = PersistencePath.of(docId);
-                        Document doc = collectionDocs.get(path);
-                        return (doc != null) ? new PersistenceEntity<>(path, doc) : null;
-                    })
-                    .filter(Objects::nonNull);
-
-                // Apply remaining filter if index only partially covered
-                if (optimized.hasRemainingCondition()) {
-                    Condition remaining = optimized.getRemainingCondition();
-                    candidates = candidates.filter(entity ->
-                        this.filterEvaluator.evaluateCondition(remaining, entity.getValue()));
-                }
-            } else {
-                // Full scan with WHERE filter
-                candidates = this.streamAll(collection)
-                    .filter(entity -> this.filterEvaluator.evaluateCondition(where, entity.getValue()));
+    private Stream<PersistenceEntity<Document>> matching(PersistenceCollection collection, Condition where, IndexQueryOptimizer.IndexResult optimized) {
+        Stream<PersistenceEntity<Document>> candidates;
+        if (!optimized.requiresFullScan()) {
+            // Index provides at least partial coverage
+            Map<PersistencePath, Object> collectionDocs = this.documents.get(collection.getValue());
+            candidates = optimized.getDocIds().stream()
+                .map(docId -> {
+                    PersistencePath path = PersistencePath.of(docId);
+                    Document doc = this.decode(collection, path, collectionDocs.get(path));
+                    return (doc != null) ? new PersistenceEntity<>(path, doc) : null;
+                })
+                .filter(Objects::nonNull);
+
+            // Apply remaining filter if index only partially covered
+            if (optimized.hasRemainingCondition()) {
+                CompiledCondition remaining = this.filterEvaluator.compile(optimized.getRemainingCondition());
+                candidates = candidates.filter(entity -> remaining.test(entity.getValue()));
             }
         } else {
-            // No WHERE - start with all documents
-            candidates = this.streamAll(collection);
+            // Full scan with WHERE filter
+            CompiledCondition compiled = this.filterEvaluator.compile(where);
+            candidates = this.streamAll(collection)
+                .filter(entity -> compiled.test(entity.getValue()));
         }
-
-        // Apply ORDER BY / SKIP / LIMIT
-        return this.filterEvaluator.applyFilter(candidates, filter);
+        return candidates;
     }
 
     @Override
@@ -248,6 +353,7 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
 
             if (modified) {
                 this.updateIndexes(collection, path, document);
+                this.store(collection, path, document);
             }
             return true;
         }
@@ -266,6 +372,7 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
 
             if (modified) {
                 this.updateIndexes(collection, path, document);
+                this.store(collection, path, document);
             }
             return Optional.of(document);
         }
@@ -285,6 +392,7 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
             boolean modified = this.updateEvaluator.applyUpdate(document, operations);
             if (modified) {
                 this.updateIndexes(collection, path, document);
+                this.store(collection, path, document);
             }
             return Optional.of(oldVersion);
         }
@@ -297,8 +405,8 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
         Stream<PersistenceEntity<Document>> stream = this.streamAll(collection);
 
         if (filter.getWhere() != null) {
-            stream = stream.filter(entity ->
-                this.filterEvaluator.evaluateCondition(filter.getWhere(), entity.getValue()));
+            CompiledCondition where = this.filterEvaluator.compile(filter.getWhere());
+            stream = stream.filter(entity -> where.test(entity.getValue()));
         }
 
         List<PersistencePath> pathsToUpdate = stream
@@ -314,6 +422,12 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
         return count;
     }
 
+    @Override
+    public boolean isPartialUpdatePreferred() {
+        // no I/O to save, and the stored document may be the written one itself
+        return false;
+    }
+
     // ==================== WRITE OPERATIONS ====================
 
     @Override
@@ -323,7 +437,7 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
             this.serializer.setupDocument(document, collection, path);
             document.validate();
             this.updateIndexes(collection, path, document);
-            return this.documents.get(collection.getValue()).put(path, document) != null;
+            return this.documents.get(collection.getValue()).put(path, this.encode(document)) != null;
         }
     }
 
@@ -361,7 +475,7 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
     @Override
     public boolean deleteAll(@NonNull PersistenceCollection collection) {
         this.checkCollectionRegistered(collection);
-        Map<PersistencePath, Document> data = this.documents.get(collection.getValue());
+        Map<PersistencePath, Object> data = this.documents.get(collection.getValue());
         Map<PersistencePath, Object> locks = this.documentLocks.get(collection.getValue());
         Map<String, PropertyIndex> indexes = this.indexMap.get(collection.getValue());
 
@@ -374,6 +488,14 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
             if (indexes != null) {
                 indexes.values().forEach(PropertyIndex::clear);
             }
+            Map<String, CompoundPropertyIndex> compoundIndexes = this.compoundIndexMap.get(collection.getValue());
+            if (compoundIndexes != null) {
+                compoundIndexes.values().forEach(CompoundPropertyIndex::clear);
+            }
+            DocIdDictionary dictionary = this.dictionaries.get(collection.getValue());
+            if (dictionary != null) {
+                dictionary.clear();
+            }
             return changed;
         }
     }
@@ -385,6 +507,8 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
             .count();
         this.documentLocks.values().forEach(Map::clear);
         this.indexMap.values().forEach(indexes -> indexes.values().forEach(PropertyIndex::clear));
+        this.compoundIndexMap.values().forEach(indexes -> indexes.values().forEach(CompoundPropertyIndex::clear));
+        this.dictionaries.values().forEach(DocIdDictionary::clear);
         return count;
     }
 
@@ -393,11 +517,31 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
         // Nothing to close for in-memory storage
     }
 
+    // ==================== STORAGE (INTERNAL) ====================
+
+    private Object encode(@NonNull Document document) {
+        return this.serializedStorage ? this.serializer.serializeToBytes(document) : document;
+    }
+
+    private Document decode(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, Object stored) {
+        if (stored instanceof byte[]) {
+            return this.serializer.deserialize(collection, path, (byte[]) stored);
+        }
+        return (Document) stored;
+    }
+
+    private void store(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull Document document) {
+        if (this.serializedStorage) {
+            this.documents.get(collection.getValue()).put(path, this.encode(document));
+        }
+    }
+
     // ==================== INDEX MANAGEMENT (INTERNAL) ====================
 
     private void updateIndexes(@NonNull PersistenceCollection collection, @NonNull PersistencePath path, @NonNull Document document) {
         Map<String, PropertyIndex> indexes = this.indexMap.get(collection.getValue());
-        if ((indexes == null) || indexes.isEmpty()) {
+        Map<String, CompoundPropertyIndex> compoundIndexes = this.compoundIndexMap.get(collection.getValue());
+        if (((indexes == null) || indexes.isEmpty()) && ((compoundIndexes == null) || compoundIndexes.isEmpty())) {
             return;
         }
 
@@ -410,6 +554,16 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
             Object value = indexValues.get(indexProp);
             index.put(path.getValue(), value);
         }
+
+        for (IndexProperty indexProp : collection.getCompoundIndexes()) {
+            CompoundPropertyIndex index = compoundIndexes.get(indexProp.getValue());
+            if (index == null) continue;
+
+            List<Object> values = indexProp.getComponents().stream()
+                .map(indexValues::get)
+                .collect(Collectors.toList());
+            index.put(path.getValue(), values);
+        }
     }
 
     private void dropIndex(@NonNull PersistenceCollection collection, @NonNull PersistencePath path) {
@@ -419,5 +573,14 @@ public class InMemoryPersistence implements Persistence, FilterablePersistence,
         for (PropertyIndex index : indexes.values()) {
             index.remove(path.getValue());
         }
+        Map<String, CompoundPropertyIndex> compoundIndexes = this.compoundIndexMap.get(collection.getValue());
+        if (compoundIndexes != null) {
+            compoundIndexes.values().forEach(index -> index.remove(path.getValue()));
+        }
+
+        DocIdDictionary dictionary = this.dictionaries.get(collection.getValue());
+        if (dictionary != null) {
+            dictionary.release(path.getValue());
+        }
     }
 }
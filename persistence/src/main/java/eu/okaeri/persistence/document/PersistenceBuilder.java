@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.zip.Deflater;
 
 /**
  * Base builder for persistence backends.
@@ -26,6 +27,10 @@ public abstract class PersistenceBuilder<T extends PersistenceBuilder<T, P>, P e
     protected Configurer configurer;
     protected List<OkaeriSerdes> serdesPacks = new ArrayList<>();
     protected DocumentConfigurator documentConfigurator = DocumentConfigurator.identity();
+    protected DocumentEncoding encoding = DocumentEncoding.TEXT;
+    protected int compressionThreshold = 0;
+    protected int compressionLevel = Deflater.BEST_SPEED;
+    protected boolean changeTracking = false;
 
     @SuppressWarnings("unchecked")
     protected T self() {
@@ -59,6 +64,56 @@ public abstract class PersistenceBuilder<T extends PersistenceBuilder<T, P>, P e
         return this.self();
     }
 
+    /**
+     * Set the format of documents stored as bytes (Flat Files, Redis, In-Memory serialized storage).
+     * Other backends always store the configurer format.
+     * <p>
+     * Example: {@code .encoding(DocumentEncoding.BINARY)}
+     */
+    public T encoding(@NonNull DocumentEncoding encoding) {
+        this.encoding = encoding;
+        return this.self();
+    }
+
+    /**
+     * Compress documents stored as bytes (Flat Files, Redis, In-Memory serialized storage)
+     * from the given size, with the fastest {@link Deflater} level.
+     * Compressed and plain documents are both read, so the threshold can be changed at any time.
+     * <p>
+     * Example: {@code .compression(16 * 1024)}
+     */
+    public T compression(int thresholdBytes) {
+        return this.compression(thresholdBytes, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Compress documents stored as bytes from the given size with the given {@link Deflater} level.
+     */
+    public T compression(int thresholdBytes, int level) {
+        if (thresholdBytes < 0) {
+            throw new IllegalArgumentException("thresholdBytes cannot be negative: " + thresholdBytes);
+        }
+        if ((level < Deflater.BEST_SPEED) || (level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("level must be between 1 and 9: " + level);
+        }
+        this.compressionThreshold = thresholdBytes;
+        this.compressionLevel = level;
+        return this.self();
+    }
+
+    /**
+     * Track changes of read documents, so that saving them updates only the changed fields
+     * (PostgreSQL, MariaDB, MongoDB). Documents with changed lists, new nested documents
+     * or mostly changed fields are written fully, unchanged documents are not written at all.
+     * Costs a snapshot of every read document.
+     * <p>
+     * Example: {@code .changeTracking(true)}
+     */
+    public T changeTracking(boolean changeTracking) {
+        this.changeTracking = changeTracking;
+        return this.self();
+    }
+
     /**
      * Add serdes packs for custom type serialization.
      */
@@ -119,6 +174,10 @@ public abstract class PersistenceBuilder<T extends PersistenceBuilder<T, P>, P e
             .configurer(this.configurer)
             .serdesPacks(this.serdesPacks)
             .documentConfigurator(this.documentConfigurator)
+            .encoding(this.encoding)
+            .compressionThreshold(this.compressionThreshold)
+            .compressionLevel(this.compressionLevel)
+            .changeTracking(this.changeTracking)
             .build();
     }
 
@@ -0,0 +1,357 @@
+package eu.okaeri.persistence.document.index;
+
+import eu.okaeri.persistence.filter.condition.Condition;
+import eu.okaeri.persistence.filter.predicate.Predicate;
+import eu.okaeri.persistence.filter.predicate.SimplePredicate;
+import eu.okaeri.persistence.filter.predicate.equality.EqPredicate;
+import eu.okaeri.persistence.filter.predicate.numeric.GtPredicate;
+import eu.okaeri.persistence.filter.predicate.numeric.GtePredicate;
+import eu.okaeri.persistence.filter.predicate.numeric.LtPredicate;
+import eu.okaeri.persistence.filter.predicate.numeric.LtePredicate;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Composite-key index over the ordered components of a compound {@link IndexProperty}.
+ * Thread-safe for concurrent reads and writes, with the same guarantees as {@link PropertyIndex}.
+ * <p>
+ * Keys are value tuples kept in a sorted map, so equality on a prefix of the
+ * components, optionally followed by a range on the next component, is a single
+ * contiguous seek. Tuple components are ordered by type (null, boolean, number,
+ * other) and then by value, numbers are compared numerically.
+ */
+public class CompoundPropertyIndex {
+
+    // sentinels padding seek bounds, lower/greater than any component value
+    private static final Object LOWEST = new Object();
+    private static final Object HIGHEST = new Object();
+
+    // kinds of component values counted per component, see kindOf
+    private static final int NUMBER = 0;
+    private static final int STRING = 1;
+    private static final int BOOLEAN = 2;
+    private static final int OTHER = 3;
+    private static final int KINDS = 4;
+
+    @Getter
+    private final IndexProperty property;
+
+    @Getter
+    private final DocIdDictionary dictionary;
+
+    // serializes writers, readers do not lock
+    private final Lock writeLock = new ReentrantLock();
+
+    // value tuple -> ids
+    private final NavigableMap<Object[], DocIdBitmap> entries = new ConcurrentSkipListMap<>(CompoundPropertyIndex::compareKeys);
+
+    // id -> value tuple (for removal)
+    private Object[][] keys = new Object[16][];
+
+    // component * KINDS + kind -> number of indexed non-null values of that kind
+    private final AtomicIntegerArray kindCounts;
+
+    public CompoundPropertyIndex(@NonNull IndexProperty property, @NonNull DocIdDictionary dictionary) {
+        if (!property.isCompound()) {
+            throw new IllegalArgumentException("not a compound index: " + property.getValue());
+        }
+        this.property = property;
+        this.dictionary = dictionary;
+        this.kindCounts = new AtomicIntegerArray(property.getComponents().size() * KINDS);
+    }
+
+    // ===== WRITE OPERATIONS =====
+
+    /**
+     * Add or update the component values of a document.
+     *
+     * @param docId  document identifier
+     * @param values component values in index order (may contain nulls)
+     */
+    public void put(@NonNull String docId, @NonNull List<?> values) {
+        if (values.size() != this.property.getComponents().size()) {
+            throw new IllegalArgumentException("expected " + this.property.getComponents().size() + " values, got " + values.size());
+        }
+        int id = this.dictionary.idOf(docId);
+        Object[] key = values.toArray();
+        this.writeLock.lock();
+        try {
+            if ((id < this.keys.length) && Arrays.equals(this.keys[id], key)) {
+                return; // unchanged
+            }
+            this.removeEntry(id);
+            if (id >= this.keys.length) {
+                this.keys = Arrays.copyOf(this.keys, Math.max(this.keys.length * 2, id + 1));
+            }
+            this.keys[id] = key;
+            this.countKinds(key, 1);
+            DocIdBitmap ids = this.entries.get(key);
+            this.entries.put(key, (ids == null) ? DocIdBitmap.of(id) : ids.with(id));
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a document from the index.
+     * The document ID is not released from the shared dictionary.
+     *
+     * @param docId document identifier
+     * @return true if the document was in the index
+     */
+    public boolean remove(@NonNull String docId) {
+        int id = this.dictionary.find(docId);
+        if (id < 0) {
+            return false;
+        }
+        this.writeLock.lock();
+        try {
+            return this.removeEntry(id);
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    public void clear() {
+        this.writeLock.lock();
+        try {
+            this.entries.clear();
+            this.keys = new Object[16][];
+            for (int i = 0; i < this.kindCounts.length(); i++) {
+                this.kindCounts.set(i, 0);
+            }
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    // ===== READ OPERATIONS =====
+
+    /**
+     * Try to answer single-field conditions on the component paths with one seek.
+     * Uses equality conditions on the longest prefix of the components, followed
+     * by a numeric range condition on the next component if present.
+     * <p>
+     * Components are looked up by their typed value, while the filter evaluator also
+     * matches numbers against numeric strings (and compares string lengths in ranges).
+     * A condition is used only if all values indexed for its component are of the same
+     * kind as its operand, otherwise the seek stops before it and it is left to verification.
+     *
+     * @param conditions single-field conditions by path value
+     * @return matching IDs with the conditions they satisfy, or empty if the leading component is not constrained
+     */
+    public Optional<Seek> trySeek(@NonNull Map<String, Condition> conditions) {
+        List<IndexProperty> components = this.property.getComponents();
+        Object[] from = new Object[components.size()];
+        Object[] to = new Object[components.size()];
+        List<Condition> used = new ArrayList<>();
+        boolean fromInclusive = true;
+        boolean toInclusive = true;
+
+        // Equality prefix
+        int position = 0;
+        for (; position < components.size(); position++) {
+            Condition condition = conditions.get(components.get(position).getValue());
+            Object value = (condition == null) ? null : equalityOperand(condition);
+            if ((value == null) || !this.isUniform(position, kindOf(value))) {
+                break;
+            }
+            from[position] = value;
+            to[position] = value;
+            used.add(condition);
+        }
+
+        // Range suffix
+        if (position < components.size()) {
+            Condition condition = conditions.get(components.get(position).getValue());
+            Predicate[] range = (condition == null) ? null : rangePredicates(condition);
+            if ((range != null) && this.isUniform(position, NUMBER)) {
+                SimplePredicate lower = (SimplePredicate) range[0];
+                SimplePredicate upper = (SimplePredicate) range[1];
+                from[position] = (lower == null) ? Double.NEGATIVE_INFINITY : lower.getRightOperand();
+                to[position] = (upper == null) ? Double.POSITIVE_INFINITY : upper.getRightOperand();
+                fromInclusive = (lower == null) || (lower instanceof GtePredicate);
+                toInclusive = (upper == null) || (upper instanceof LtePredicate);
+                // exclusive bounds skip all tuples sharing the bound value
+                Arrays.fill(from, position + 1, from.length, fromInclusive ? LOWEST : HIGHEST);
+                Arrays.fill(to, position + 1, to.length, toInclusive ? HIGHEST : LOWEST);
+                used.add(condition);
+            } else {
+                Arrays.fill(from, position, from.length, LOWEST);
+                Arrays.fill(to, position, to.length, HIGHEST);
+            }
+        }
+
+        if (used.isEmpty()) {
+            return Optional.empty();
+        }
+        if (compareKeys(from, to) > 0) {
+            return Optional.of(new Seek(new DocIdBitmap(), used));
+        }
+
+        DocIdBitmap result = new DocIdBitmap();
+        for (DocIdBitmap ids : this.entries.subMap(from, fromInclusive, to, toInclusive).values()) {
+            result.or(ids);
+        }
+        return Optional.of(new Seek(result, used));
+    }
+
+    /**
+     * Result of {@link #trySeek(Map)}.
+     */
+    @Data
+    public static class Seek {
+        /**
+         * Matching IDs, owned by the caller.
+         */
+        private final DocIdBitmap ids;
+        /**
+         * Conditions fully answered by the seek.
+         */
+        private final List<Condition> conditions;
+    }
+
+    // ===== INTERNAL HELPERS =====
+
+    private boolean removeEntry(int id) {
+        Object[] key = (id < this.keys.length) ? this.keys[id] : null;
+        if (key == null) {
+            return false;
+        }
+        this.keys[id] = null;
+        this.countKinds(key, -1);
+        DocIdBitmap ids = this.entries.get(key);
+        if (ids != null) {
+            ids = ids.without(id);
+            if (ids.isEmpty()) {
+                this.entries.remove(key);
+            } else {
+                this.entries.put(key, ids);
+            }
+        }
+        return true;
+    }
+
+    private void countKinds(@NonNull Object[] key, int delta) {
+        for (int position = 0; position < key.length; position++) {
+            if (key[position] != null) {
+                this.kindCounts.addAndGet((position * KINDS) + kindOf(key[position]), delta);
+            }
+        }
+    }
+
+    /**
+     * @return true if all non-null values indexed for the component are of the kind
+     */
+    private boolean isUniform(int position, int kind) {
+        if (kind == OTHER) {
+            return false;
+        }
+        for (int other = 0; other < KINDS; other++) {
+            if ((other != kind) && (this.kindCounts.get((position * KINDS) + other) != 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int kindOf(@NonNull Object value) {
+        if (value instanceof Number) return NUMBER;
+        if (value instanceof String) return STRING;
+        if (value instanceof Boolean) return BOOLEAN;
+        return OTHER;
+    }
+
+    private static Object equalityOperand(@NonNull Condition condition) {
+        Predicate[] predicates = condition.getPredicates();
+        if ((predicates.length != 1) || !(predicates[0] instanceof EqPredicate)) {
+            return null;
+        }
+        EqPredicate eq = (EqPredicate) predicates[0];
+        if (eq.isIgnoreCase()) {
+            return null;
+        }
+        // components are indexed simplified, enums match their name ignoring case and are left to verification
+        Object operand = eq.getRightOperand();
+        if (operand instanceof Enum) {
+            return null;
+        }
+        return ((operand instanceof CharSequence) || (operand instanceof UUID)) ? operand.toString() : operand;
+    }
+
+    /**
+     * @return {lower, upper} bound predicates (either may be null), or null if not a numeric range
+     */
+    private static Predicate[] rangePredicates(@NonNull Condition condition) {
+        Predicate lower = null;
+        Predicate upper = null;
+        for (Predicate predicate : condition.getPredicates()) {
+            if (!(predicate instanceof SimplePredicate) || !(((SimplePredicate) predicate).getRightOperand() instanceof Number)) {
+                return null;
+            }
+            if (((predicate instanceof GtPredicate) || (predicate instanceof GtePredicate)) && (lower == null)) {
+                lower = predicate;
+            } else if (((predicate instanceof LtPredicate) || (predicate instanceof LtePredicate)) && (upper == null)) {
+                upper = predicate;
+            } else {
+                return null;
+            }
+        }
+        return new Predicate[]{lower, upper};
+    }
+
+    private static int compareKeys(Object[] left, Object[] right) {
+        for (int i = 0; i < left.length; i++) {
+            int result = compareValues(left[i], right[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object left, Object right) {
+        if (left == right) {
+            return 0;
+        }
+        if ((left == LOWEST) || (right == HIGHEST)) {
+            return -1;
+        }
+        if ((left == HIGHEST) || (right == LOWEST)) {
+            return 1;
+        }
+
+        int rank = Integer.compare(rank(left), rank(right));
+        if ((rank != 0) || (left == null)) {
+            return rank;
+        }
+
+        if (left instanceof Number) {
+            double leftNumber = ((Number) left).doubleValue();
+            double rightNumber = ((Number) right).doubleValue();
+            // == keeps -0.0 and 0.0 equal, compare orders NaN last
+            return (leftNumber == rightNumber) ? 0 : Double.compare(leftNumber, rightNumber);
+        }
+        if ((left.getClass() == right.getClass()) && (left instanceof Comparable)) {
+            return ((Comparable<Object>) left).compareTo(right);
+        }
+
+        int type = left.getClass().getName().compareTo(right.getClass().getName());
+        return (type != 0) ? type : String.valueOf(left).compareTo(String.valueOf(right));
+    }
+
+    private static int rank(Object value) {
+        if (value == null) return 0;
+        if (value instanceof Boolean) return 1;
+        if (value instanceof Number) return 2;
+        return 3;
+    }
+}
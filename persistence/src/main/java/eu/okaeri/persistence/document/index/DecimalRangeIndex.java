@@ -0,0 +1,144 @@
+package eu.okaeri.persistence.document.index;
+
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * Arbitrary-precision range index keyed by {@link BigDecimal}.
+ * Used for BigDecimal/BigInteger fields and fields of unknown type
+ * (including numeric strings).
+ * <p>
+ * Backed by a {@link ConcurrentSkipListMap} with copy-on-write postings,
+ * so range scans never wait for a writer.
+ */
+class DecimalRangeIndex extends NumericRangeIndex {
+
+    private final NavigableMap<BigDecimal, DocIdBitmap> index = new ConcurrentSkipListMap<>();
+
+    // number of indexed documents, only modified by the (single) writer
+    private volatile int count;
+
+    @Override
+    boolean add(int id, @NonNull Object value) {
+        BigDecimal numeric = toDecimal(value);
+        if (numeric != null) {
+            DocIdBitmap ids = this.index.get(numeric);
+            DocIdBitmap updated = (ids == null) ? DocIdBitmap.of(id) : ids.with(id);
+            if (updated != ids) {
+                this.index.put(numeric, updated);
+                this.count++;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    void remove(int id, @NonNull Object value) {
+        BigDecimal numeric = toDecimal(value);
+        if (numeric == null) {
+            return;
+        }
+        DocIdBitmap ids = this.index.get(numeric);
+        if (ids == null) {
+            return;
+        }
+        DocIdBitmap updated = ids.without(id);
+        if (updated == ids) {
+            return;
+        }
+        if (updated.isEmpty()) {
+            this.index.remove(numeric);
+        } else {
+            this.index.put(numeric, updated);
+        }
+        this.count--;
+    }
+
+    @Override
+    void collectRange(Number min, boolean minInclusive, Number max, boolean maxInclusive, @NonNull DocIdBitmap into) {
+        for (DocIdBitmap ids : this.range(min, minInclusive, max, maxInclusive).values()) {
+            into.or(ids);
+        }
+    }
+
+    @Override
+    long estimateRange(Number min, boolean minInclusive, Number max, boolean maxInclusive) {
+        // exact count, postings know their cardinality
+        long count = 0;
+        for (DocIdBitmap ids : this.range(min, minInclusive, max, maxInclusive).values()) {
+            count += ids.cardinality();
+        }
+        return count;
+    }
+
+    @Override
+    void forEachOrdered(boolean descending, @NonNull Predicate<DocIdBitmap> visitor) {
+        for (DocIdBitmap ids : (descending ? this.index.descendingMap() : this.index).values()) {
+            if (!visitor.test(ids)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    int count() {
+        return this.count;
+    }
+
+    @Override
+    boolean isEmpty() {
+        return this.index.isEmpty();
+    }
+
+    @Override
+    void clear() {
+        this.index.clear();
+        this.count = 0;
+    }
+
+    private NavigableMap<BigDecimal, DocIdBitmap> range(Number min, boolean minInclusive, Number max, boolean maxInclusive) {
+        BigDecimal from = (min == null) ? null : toDecimal(min);
+        BigDecimal to = (max == null) ? null : toDecimal(max);
+        if (((min != null) && (from == null)) || ((max != null) && (to == null))) {
+            return Collections.emptyNavigableMap();
+        }
+
+        if ((from != null) && (to != null)) {
+            if (from.compareTo(to) > 0) {
+                return Collections.emptyNavigableMap();
+            }
+            return this.index.subMap(from, minInclusive, to, maxInclusive);
+        }
+        if (from != null) {
+            return this.index.tailMap(from, minInclusive);
+        }
+        if (to != null) {
+            return this.index.headMap(to, maxInclusive);
+        }
+        return this.index;
+    }
+
+    /**
+     * Convert a value to BigDecimal for numeric indexing.
+     * Returns null if the value is not numeric (including NaN and infinities).
+     */
+    static BigDecimal toDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if ((value instanceof Number) || (value instanceof String)) {
+            try {
+                // Use string conversion to preserve precision
+                return new BigDecimal(value.toString());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
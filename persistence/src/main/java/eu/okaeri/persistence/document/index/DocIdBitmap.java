@@ -0,0 +1,631 @@
+package eu.okaeri.persistence.document.index;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of int document IDs (see {@link DocIdDictionary}).
+ * <p>
+ * Roaring-style layout: IDs are partitioned by their high 16 bits and each
+ * partition is stored either as a sorted {@code char[]} (sparse) or as a
+ * 65536-bit {@code long[]} (dense), switching at 4096 entries. Set operations
+ * follow {@link java.util.BitSet} conventions and modify this bitmap in place.
+ * <p>
+ * Not thread-safe, except for bitmaps maintained only through the copy-on-write
+ * {@link #with(int)} and {@link #without(int)}: these are never modified after
+ * being returned and can be read (or {@link #copy()}-ed) by any number of threads.
+ */
+public final class DocIdBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public DocIdBitmap() {
+        this.keys = new char[1];
+        this.containers = new Container[1];
+    }
+
+    private DocIdBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * Create a bitmap containing the given IDs.
+     */
+    public static DocIdBitmap of(int... ids) {
+        DocIdBitmap bitmap = new DocIdBitmap();
+        for (int id : ids) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    // ===== SINGLE ELEMENT OPERATIONS =====
+
+    /**
+     * Add an ID to the bitmap.
+     *
+     * @param id non-negative document ID
+     * @return true if the bitmap changed
+     */
+    public boolean add(int id) {
+        char high = (char) (id >>> 16);
+        int pos = this.findKey(high);
+        if (pos < 0) {
+            pos = -(pos + 1);
+            this.insertContainer(pos, high, new ArrayContainer());
+        }
+        Container container = this.containers[pos];
+        int before = container.cardinality();
+        this.containers[pos] = container.add((char) id);
+        return this.containers[pos].cardinality() != before;
+    }
+
+    /**
+     * Remove an ID from the bitmap.
+     *
+     * @param id document ID
+     * @return true if the bitmap changed
+     */
+    public boolean remove(int id) {
+        int pos = this.findKey((char) (id >>> 16));
+        if (pos < 0) {
+            return false;
+        }
+        Container container = this.containers[pos];
+        int before = container.cardinality();
+        Container updated = container.remove((char) id);
+        if (updated.cardinality() == 0) {
+            this.removeContainer(pos);
+        } else {
+            this.containers[pos] = updated;
+        }
+        return updated.cardinality() != before;
+    }
+
+    /**
+     * Copy-on-write add. This bitmap is not modified, the returned one
+     * shares all containers except the one holding the ID.
+     *
+     * @param id non-negative document ID
+     * @return bitmap containing the ID (this if already present)
+     */
+    public DocIdBitmap with(int id) {
+        char high = (char) (id >>> 16);
+        int pos = this.findKey(high);
+        if (pos >= 0) {
+            Container container = this.containers[pos];
+            if (container.contains((char) id)) {
+                return this;
+            }
+            DocIdBitmap result = this.shallowCopy();
+            result.containers[pos] = container.copy().add((char) id);
+            return result;
+        }
+
+        pos = -(pos + 1);
+        char[] newKeys = new char[this.size + 1];
+        Container[] newContainers = new Container[this.size + 1];
+        System.arraycopy(this.keys, 0, newKeys, 0, pos);
+        System.arraycopy(this.containers, 0, newContainers, 0, pos);
+        newKeys[pos] = high;
+        newContainers[pos] = new ArrayContainer().add((char) id);
+        System.arraycopy(this.keys, pos, newKeys, pos + 1, this.size - pos);
+        System.arraycopy(this.containers, pos, newContainers, pos + 1, this.size - pos);
+        return new DocIdBitmap(newKeys, newContainers, this.size + 1);
+    }
+
+    /**
+     * Copy-on-write remove. This bitmap is not modified, the returned one
+     * shares all containers except the one holding the ID.
+     *
+     * @param id document ID
+     * @return bitmap without the ID (this if not present)
+     */
+    public DocIdBitmap without(int id) {
+        int pos = this.findKey((char) (id >>> 16));
+        if ((pos < 0) || !this.containers[pos].contains((char) id)) {
+            return this;
+        }
+
+        Container updated = this.containers[pos].copy().remove((char) id);
+        if (updated.cardinality() > 0) {
+            DocIdBitmap result = this.shallowCopy();
+            result.containers[pos] = updated;
+            return result;
+        }
+
+        char[] newKeys = new char[Math.max(this.size - 1, 1)];
+        Container[] newContainers = new Container[Math.max(this.size - 1, 1)];
+        System.arraycopy(this.keys, 0, newKeys, 0, pos);
+        System.arraycopy(this.containers, 0, newContainers, 0, pos);
+        System.arraycopy(this.keys, pos + 1, newKeys, pos, this.size - pos - 1);
+        System.arraycopy(this.containers, pos + 1, newContainers, pos, this.size - pos - 1);
+        return new DocIdBitmap(newKeys, newContainers, this.size - 1);
+    }
+
+    public boolean contains(int id) {
+        int pos = this.findKey((char) (id >>> 16));
+        return (pos >= 0) && this.containers[pos].contains((char) id);
+    }
+
+    // ===== SET OPERATIONS =====
+
+    /**
+     * Keep only IDs that are also present in the other bitmap.
+     */
+    public void and(@NonNull DocIdBitmap other) {
+        int written = 0;
+        int i = 0;
+        int j = 0;
+        while ((i < this.size) && (j < other.size)) {
+            int cmp = Character.compare(this.keys[i], other.keys[j]);
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                Container result = this.containers[i].and(other.containers[j]);
+                if (result.cardinality() > 0) {
+                    this.keys[written] = this.keys[i];
+                    this.containers[written] = result;
+                    written++;
+                }
+                i++;
+                j++;
+            }
+        }
+        Arrays.fill(this.containers, written, this.size, null);
+        this.size = written;
+    }
+
+    /**
+     * Add all IDs present in the other bitmap.
+     */
+    public void or(@NonNull DocIdBitmap other) {
+        for (int j = 0; j < other.size; j++) {
+            int pos = this.findKey(other.keys[j]);
+            if (pos >= 0) {
+                this.containers[pos] = this.containers[pos].or(other.containers[j]);
+            } else {
+                this.insertContainer(-(pos + 1), other.keys[j], other.containers[j].copy());
+            }
+        }
+    }
+
+    /**
+     * Remove all IDs present in the other bitmap.
+     */
+    public void andNot(@NonNull DocIdBitmap other) {
+        int written = 0;
+        int j = 0;
+        for (int i = 0; i < this.size; i++) {
+            while ((j < other.size) && (other.keys[j] < this.keys[i])) {
+                j++;
+            }
+            Container result = this.containers[i];
+            if ((j < other.size) && (other.keys[j] == this.keys[i])) {
+                result = result.andNot(other.containers[j]);
+            }
+            if (result.cardinality() > 0) {
+                this.keys[written] = this.keys[i];
+                this.containers[written] = result;
+                written++;
+            }
+        }
+        Arrays.fill(this.containers, written, this.size, null);
+        this.size = written;
+    }
+
+    // ===== ACCESS =====
+
+    /**
+     * @return number of IDs in the bitmap
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < this.size; i++) {
+            cardinality += this.containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Call the consumer for each ID in ascending order.
+     */
+    public void forEach(@NonNull IntConsumer consumer) {
+        for (int i = 0; i < this.size; i++) {
+            this.containers[i].forEach(this.keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * @return IDs in ascending order
+     */
+    public int[] toArray() {
+        int[] result = new int[this.cardinality()];
+        int[] index = {0};
+        this.forEach(id -> result[index[0]++] = id);
+        return result;
+    }
+
+    /**
+     * @return deep copy of this bitmap
+     */
+    public DocIdBitmap copy() {
+        Container[] copied = new Container[Math.max(this.size, 1)];
+        for (int i = 0; i < this.size; i++) {
+            copied[i] = this.containers[i].copy();
+        }
+        return new DocIdBitmap(Arrays.copyOf(this.keys, copied.length), copied, this.size);
+    }
+
+    public void clear() {
+        this.keys = new char[1];
+        this.containers = new Container[1];
+        this.size = 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof DocIdBitmap)) return false;
+        return Arrays.equals(this.toArray(), ((DocIdBitmap) other).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.toArray());
+    }
+
+    @Override
+    public String toString() {
+        return "DocIdBitmap" + Arrays.toString(this.toArray());
+    }
+
+    // ===== INTERNAL HELPERS =====
+
+    private DocIdBitmap shallowCopy() {
+        return new DocIdBitmap(Arrays.copyOf(this.keys, this.size), Arrays.copyOf(this.containers, this.size), this.size);
+    }
+
+    private int findKey(char high) {
+        return Arrays.binarySearch(this.keys, 0, this.size, high);
+    }
+
+    private void insertContainer(int pos, char high, Container container) {
+        if (this.size == this.keys.length) {
+            int capacity = Math.max(this.keys.length * 2, 1);
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.containers = Arrays.copyOf(this.containers, capacity);
+        }
+        System.arraycopy(this.keys, pos, this.keys, pos + 1, this.size - pos);
+        System.arraycopy(this.containers, pos, this.containers, pos + 1, this.size - pos);
+        this.keys[pos] = high;
+        this.containers[pos] = container;
+        this.size++;
+    }
+
+    private void removeContainer(int pos) {
+        System.arraycopy(this.keys, pos + 1, this.keys, pos, this.size - pos - 1);
+        System.arraycopy(this.containers, pos + 1, this.containers, pos, this.size - pos - 1);
+        this.size--;
+        this.containers[this.size] = null;
+    }
+
+    // ===== CONTAINERS =====
+
+    private abstract static class Container {
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract void forEach(int base, IntConsumer consumer);
+
+        abstract Container copy();
+    }
+
+    /**
+     * Sparse container: sorted low 16 bits.
+     */
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[2], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int pos = Arrays.binarySearch(this.values, 0, this.cardinality, value);
+            if (pos >= 0) {
+                return this;
+            }
+            if (this.cardinality == ARRAY_MAX) {
+                return this.toBitmap().add(value);
+            }
+            pos = -(pos + 1);
+            if (this.cardinality == this.values.length) {
+                this.values = Arrays.copyOf(this.values, Math.min(this.values.length * 2, ARRAY_MAX));
+            }
+            System.arraycopy(this.values, pos, this.values, pos + 1, this.cardinality - pos);
+            this.values[pos] = value;
+            this.cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int pos = Arrays.binarySearch(this.values, 0, this.cardinality, value);
+            if (pos >= 0) {
+                System.arraycopy(this.values, pos + 1, this.values, pos, this.cardinality - pos - 1);
+                this.cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(this.values, 0, this.cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[this.cardinality];
+            int written = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while ((i < this.cardinality) && (j < array.cardinality)) {
+                    if (this.values[i] < array.values[j]) {
+                        i++;
+                    } else if (this.values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[written++] = this.values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < this.cardinality; i++) {
+                    if (other.contains(this.values[i])) {
+                        result[written++] = this.values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, written);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[this.cardinality + array.cardinality];
+            int written = 0;
+            int i = 0;
+            int j = 0;
+            while ((i < this.cardinality) || (j < array.cardinality)) {
+                if ((j >= array.cardinality) || ((i < this.cardinality) && (this.values[i] < array.values[j]))) {
+                    result[written++] = this.values[i++];
+                } else if ((i >= this.cardinality) || (this.values[i] > array.values[j])) {
+                    result[written++] = array.values[j++];
+                } else {
+                    result[written++] = this.values[i];
+                    i++;
+                    j++;
+                }
+            }
+            if (written > ARRAY_MAX) {
+                return new ArrayContainer(result, written).toBitmap();
+            }
+            return new ArrayContainer(result, written);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[this.cardinality];
+            int written = 0;
+            for (int i = 0; i < this.cardinality; i++) {
+                if (!other.contains(this.values[i])) {
+                    result[written++] = this.values[i];
+                }
+            }
+            return new ArrayContainer(result, written);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer consumer) {
+            for (int i = 0; i < this.cardinality; i++) {
+                consumer.accept(base | this.values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(this.values, Math.max(this.cardinality, 2)), this.cardinality);
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < this.cardinality; i++) {
+                bitmap.add(this.values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * Dense container: 65536 bits.
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[BITMAP_WORDS], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = this.words[value >>> 6];
+            long after = before | (1L << value);
+            if (before != after) {
+                this.words[value >>> 6] = after;
+                this.cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = this.words[value >>> 6];
+            long after = before & ~(1L << value);
+            if (before != after) {
+                this.words[value >>> 6] = after;
+                this.cardinality--;
+            }
+            return (this.cardinality <= ARRAY_MAX) ? this.toArray() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (this.words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            int cardinality = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = this.words[i] & otherWords[i];
+                cardinality += Long.bitCount(result[i]);
+            }
+            return new BitmapContainer(result, cardinality).normalize();
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = this.words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    result[value >>> 6] |= (1L << value);
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] |= otherWords[i];
+                }
+            }
+            return new BitmapContainer(result, countBits(result));
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = this.words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    result[value >>> 6] &= ~(1L << value);
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] &= ~otherWords[i];
+                }
+            }
+            return new BitmapContainer(result, countBits(result)).normalize();
+        }
+
+        @Override
+        void forEach(int base, IntConsumer consumer) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = this.words[i];
+                while (word != 0) {
+                    consumer.accept(base | ((i << 6) + Long.numberOfTrailingZeros(word)));
+                    word &= (word - 1);
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(this.words.clone(), this.cardinality);
+        }
+
+        private Container normalize() {
+            return (this.cardinality <= ARRAY_MAX) ? this.toArray() : this;
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(this.cardinality, 2)];
+            int[] written = {0};
+            this.forEach(0, value -> values[written[0]++] = (char) value);
+            return new ArrayContainer(values, this.cardinality);
+        }
+
+        private static int countBits(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            return cardinality;
+        }
+    }
+}
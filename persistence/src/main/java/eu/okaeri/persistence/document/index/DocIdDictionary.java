@@ -0,0 +1,227 @@
+package eu.okaeri.persistence.document.index;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Dense int identifiers for the document IDs of a single collection.
+ * Shared by all {@link PropertyIndex} instances of the collection so that
+ * their {@link DocIdBitmap} postings can be combined directly.
+ * <p>
+ * Released identifiers are reused to keep bitmaps dense. Thread-safe,
+ * lookups never block (assignment and release are serialized).
+ * <p>
+ * Index readers work on bitmap snapshots that may still contain identifiers of
+ * documents removed meanwhile. Queries resolving identifiers therefore run in
+ * {@link #read(Supplier)}: a released identifier is reused only after all reads
+ * that started before its release have finished, so it can never resolve to a
+ * different document within a read. Reads are counted per epoch, the epoch is
+ * advanced once the identifiers released in the previous one can be reused.
+ */
+public class DocIdDictionary {
+
+    private final Map<String, Integer> idByDocId = new ConcurrentHashMap<>();
+    private volatile String[] docIdById = new String[64];
+    private final AtomicInteger[] readers = {new AtomicInteger(), new AtomicInteger()};
+    private volatile int epoch;
+    // reusable, released in the current epoch, and released in the previous epoch
+    private final IdStack free = new IdStack();
+    private final IdStack pending = new IdStack();
+    private final IdStack retiring = new IdStack();
+    private int nextId;
+
+    /**
+     * Get or assign the identifier of a document.
+     *
+     * @param docId document identifier
+     * @return dense int identifier
+     */
+    public int idOf(@NonNull String docId) {
+        Integer existing = this.idByDocId.get(docId);
+        if (existing != null) {
+            return existing;
+        }
+
+        synchronized (this) {
+            existing = this.idByDocId.get(docId);
+            if (existing != null) {
+                return existing;
+            }
+
+            int id;
+            if (this.free.isEmpty()) {
+                this.reclaim();
+            }
+            if (!this.free.isEmpty()) {
+                id = this.free.pop();
+            } else {
+                id = this.nextId++;
+                if (id == this.docIdById.length) {
+                    this.docIdById = Arrays.copyOf(this.docIdById, this.docIdById.length * 2);
+                }
+            }
+
+            this.docIdById[id] = docId;
+            this.idByDocId.put(docId, id);
+            return id;
+        }
+    }
+
+    /**
+     * Get the identifier of a document without assigning a new one.
+     *
+     * @param docId document identifier
+     * @return dense int identifier or -1 if unknown
+     */
+    public int find(@NonNull String docId) {
+        Integer existing = this.idByDocId.get(docId);
+        return (existing == null) ? -1 : existing;
+    }
+
+    /**
+     * Resolve the document of an identifier.
+     *
+     * @param id dense int identifier
+     * @return document identifier or null if not assigned
+     */
+    public String docIdOf(int id) {
+        String[] docIds = this.docIdById;
+        return ((id < 0) || (id >= docIds.length)) ? null : docIds[id];
+    }
+
+    /**
+     * Release the identifier of a removed document for reuse.
+     * Must only be called once the document was removed from all indexes.
+     * The identifier is reused once reads that may still see it have finished.
+     *
+     * @param docId document identifier
+     */
+    public synchronized void release(@NonNull String docId) {
+        Integer id = this.idByDocId.remove(docId);
+        if (id == null) {
+            return;
+        }
+        this.docIdById[id] = null;
+        this.pending.push(id);
+    }
+
+    /**
+     * Run a query that reads index snapshots and resolves their identifiers.
+     * Identifiers released during the query are not reused until it returns.
+     *
+     * @param query reads the indexes and resolves the matching identifiers
+     * @param <T>   type of the result
+     * @return result of the query
+     */
+    public <T> T read(@NonNull Supplier<T> query) {
+        AtomicInteger readers;
+        while (true) {
+            int epoch = this.epoch;
+            readers = this.readers[epoch & 1];
+            readers.incrementAndGet();
+            // the epoch may have been advanced before this read was counted
+            if (this.epoch == epoch) {
+                break;
+            }
+            readers.decrementAndGet();
+        }
+        try {
+            return query.get();
+        } finally {
+            readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Move identifiers to the free list once no read started before their release is running.
+     * Identifiers released in an epoch retire when the epoch is advanced, and are free when
+     * the reads counted in that epoch are finished.
+     */
+    private void reclaim() {
+        if (this.retiring.isEmpty() && !this.pending.isEmpty() && (this.readers[(this.epoch + 1) & 1].get() == 0)) {
+            this.retiring.pushAll(this.pending);
+            this.epoch++;
+        }
+        if (!this.retiring.isEmpty() && (this.readers[(this.epoch + 1) & 1].get() == 0)) {
+            this.free.pushAll(this.retiring);
+        }
+    }
+
+    /**
+     * Resolve all identifiers of a bitmap to document IDs.
+     *
+     * @param bitmap identifiers
+     * @return set of document IDs
+     */
+    public Set<String> toDocIds(@NonNull DocIdBitmap bitmap) {
+        String[] docIds = this.docIdById;
+        Set<String> result = new HashSet<>();
+        bitmap.forEach(id -> {
+            String docId = (id < docIds.length) ? docIds[id] : null;
+            if (docId != null) {
+                result.add(docId);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return number of assigned identifiers
+     */
+    public int size() {
+        return this.idByDocId.size();
+    }
+
+    /**
+     * Release the identifiers of all documents.
+     * Like {@link #release(String)}, the identifiers are reused once reads that may still see them have finished.
+     */
+    public synchronized void clear() {
+        for (int id : this.idByDocId.values()) {
+            this.docIdById[id] = null;
+            this.pending.push(id);
+        }
+        this.idByDocId.clear();
+    }
+
+    private static class IdStack {
+        private int[] ids = new int[16];
+        private int size;
+
+        boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        void push(int id) {
+            if (this.size == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            }
+            this.ids[this.size++] = id;
+        }
+
+        int pop() {
+            return this.ids[--this.size];
+        }
+
+        /**
+         * Move all identifiers of the other stack to this one.
+         */
+        void pushAll(IdStack other) {
+            for (int i = 0; i < other.size; i++) {
+                this.push(other.ids[i]);
+            }
+            other.size = 0;
+        }
+
+        void clear() {
+            this.size = 0;
+        }
+    }
+}
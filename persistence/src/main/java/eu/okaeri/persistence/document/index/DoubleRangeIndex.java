@@ -0,0 +1,83 @@
+package eu.okaeri.persistence.document.index;
+
+import lombok.NonNull;
+
+/**
+ * Range index for floating-point fields (float, double).
+ * <p>
+ * Values are stored as order-preserving long encodings of their IEEE 754 bits,
+ * so range scans compare primitive longs only. NaN values are not range indexed.
+ */
+class DoubleRangeIndex extends LongKeyedRangeIndex {
+
+    @Override
+    boolean accepts(@NonNull Object value) {
+        return (value instanceof Double)
+            || (value instanceof Float)
+            || (value instanceof Integer)
+            || (value instanceof Long)
+            || (value instanceof Short)
+            || (value instanceof Byte);
+    }
+
+    @Override
+    boolean add(int id, @NonNull Object value) {
+        if (this.accepts(value) && Double.isNaN(((Number) value).doubleValue())) {
+            return true;
+        }
+        return super.add(id, value);
+    }
+
+    @Override
+    void remove(int id, @NonNull Object value) {
+        if (this.accepts(value) && Double.isNaN(((Number) value).doubleValue())) {
+            return;
+        }
+        super.remove(id, value);
+    }
+
+    @Override
+    long toKey(@NonNull Object value) {
+        return encode(toDouble((Number) value));
+    }
+
+    @Override
+    KeyBound lowerBound(@NonNull Number min, boolean inclusive) {
+        double value = toDouble(min);
+        if (Double.isNaN(value)) {
+            return null;
+        }
+        long key = encode(value);
+        return new KeyBound(inclusive ? key : (key + 1));
+    }
+
+    @Override
+    KeyBound upperBound(@NonNull Number max, boolean inclusive) {
+        double value = toDouble(max);
+        if (Double.isNaN(value)) {
+            return null;
+        }
+        long key = encode(value);
+        return new KeyBound(inclusive ? key : (key - 1));
+    }
+
+    /**
+     * Convert to double keeping the decimal representation of floats
+     * (0.1f is indexed as 0.1, consistent with BigDecimal-based predicates).
+     */
+    private static double toDouble(@NonNull Number value) {
+        if (value instanceof Float) {
+            return Double.parseDouble(value.toString());
+        }
+        return value.doubleValue();
+    }
+
+    /**
+     * Map a double to a long preserving numeric order under signed comparison.
+     * Negative zero is normalized to positive zero.
+     */
+    static long encode(double value) {
+        long bits = Double.doubleToLongBits((value == 0.0d) ? 0.0d : value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+}
@@ -3,11 +3,14 @@ package eu.okaeri.persistence.document.index;
 import eu.okaeri.configs.configurer.Configurer;
 import eu.okaeri.persistence.PersistenceCollection;
 import eu.okaeri.persistence.document.Document;
+import eu.okaeri.persistence.document.DocumentPathAccessor;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import static eu.okaeri.persistence.document.DocumentValueUtils.extractValue;
 
@@ -15,13 +18,16 @@ import static eu.okaeri.persistence.document.DocumentValueUtils.extractValue;
  * Utility for extracting index values from documents.
  * Used by backends with emulated (in-memory) indexing.
  * <p>
- * Extracts values for all indexed properties defined in a collection,
- * preserving types for range queries (numbers stay as numbers).
+ * Extracts values for all indexed properties defined in a collection
+ * (including components of compound indexes), preserving types for range queries (numbers stay as numbers).
+ * Values are read from documents with a {@link DocumentPathAccessor} per indexed path,
+ * the whole document is converted with {@link Document#asMap} only for values not readable directly.
  */
 @RequiredArgsConstructor
 public class IndexExtractor {
 
     private final Configurer simplifier;
+    private final Map<String, DocumentPathAccessor> accessors = new ConcurrentHashMap<>();
 
     /**
      * Extract all indexed property values from a document.
@@ -31,8 +37,14 @@ public class IndexExtractor {
      * @return Map of IndexProperty to value (null values included)
      */
     public Map<IndexProperty, Object> extract(@NonNull PersistenceCollection collection, @NonNull Document document) {
-        Map<String, Object> documentMap = document.asMap(this.simplifier, true);
-        return this.extract(collection, documentMap);
+        Map<IndexProperty, Object> result = new LinkedHashMap<>();
+        Supplier<Map<String, Object>> documentMap = this.lazyMap(document);
+
+        for (IndexProperty index : collection.getIndexedFields()) {
+            result.put(index, this.accessor(index).read(document, documentMap));
+        }
+
+        return result;
     }
 
     /**
@@ -45,7 +57,7 @@ public class IndexExtractor {
     public Map<IndexProperty, Object> extract(@NonNull PersistenceCollection collection, @NonNull Map<String, Object> documentMap) {
         Map<IndexProperty, Object> result = new LinkedHashMap<>();
 
-        for (IndexProperty index : collection.getIndexes()) {
+        for (IndexProperty index : collection.getIndexedFields()) {
             Object value = extractValue(documentMap, index.toParts());
             result.put(index, value);
         }
@@ -61,7 +73,24 @@ public class IndexExtractor {
      * @return Value or null if not present
      */
     public Object extractSingle(@NonNull Document document, @NonNull IndexProperty property) {
-        Map<String, Object> documentMap = document.asMap(this.simplifier, true);
-        return extractValue(documentMap, property.toParts());
+        return this.accessor(property).read(document, this.lazyMap(document));
+    }
+
+    private DocumentPathAccessor accessor(IndexProperty property) {
+        return this.accessors.computeIfAbsent(property.getValue(), path -> DocumentPathAccessor.of(property));
+    }
+
+    private Supplier<Map<String, Object>> lazyMap(Document document) {
+        return new Supplier<Map<String, Object>>() {
+            private Map<String, Object> map;
+
+            @Override
+            public Map<String, Object> get() {
+                if (this.map == null) {
+                    this.map = document.asMap(IndexExtractor.this.simplifier, true);
+                }
+                return this.map;
+            }
+        };
     }
 }
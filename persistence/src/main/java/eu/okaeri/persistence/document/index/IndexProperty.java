@@ -7,18 +7,36 @@ import lombok.ToString;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Getter
 @ToString(callSuper = true)
 public class IndexProperty extends PersistencePath {
 
+    /**
+     * Separator of component paths in the value of a compound index.
+     */
+    public static final String COMPOUND_SEPARATOR = "+";
+
     private int maxLength;
     private Class<?> fieldType;
+    private List<IndexProperty> components;
+    private boolean reverse;
+    private IndexType type = IndexType.DEFAULT;
 
     private IndexProperty(@NonNull String value, int maxLength, Class<?> fieldType) {
+        this(value, maxLength, fieldType, Collections.emptyList());
+    }
+
+    private IndexProperty(@NonNull String value, int maxLength, Class<?> fieldType, @NonNull List<IndexProperty> components) {
         super(value);
         this.maxLength = maxLength;
         this.fieldType = fieldType;
+        this.components = components;
     }
 
     public static IndexProperty of(@NonNull String path) {
@@ -33,18 +51,89 @@ public class IndexProperty extends PersistencePath {
         return of(source.replace(".", SEPARATOR));
     }
 
+    /**
+     * Create a compound index over multiple fields. Component order matters:
+     * queries with equality on a prefix of the components, optionally followed
+     * by a range on the next component, are answered by a single index seek.
+     *
+     * @param components indexed fields in index order (at least two)
+     * @return compound index property
+     */
+    public static IndexProperty compound(@NonNull IndexProperty... components) {
+        if (components.length < 2) {
+            throw new IllegalArgumentException("compound index requires at least two components");
+        }
+        for (IndexProperty component : components) {
+            if (component.isCompound()) {
+                throw new IllegalArgumentException("compound index components cannot be compound: " + component.getValue());
+            }
+        }
+        String value = Arrays.stream(components)
+            .map(IndexProperty::getValue)
+            .collect(Collectors.joining(COMPOUND_SEPARATOR));
+        return new IndexProperty(value, 255, null, Collections.unmodifiableList(Arrays.asList(components)));
+    }
+
     @Override
     public IndexProperty sub(@NonNull String sub) {
-        return new IndexProperty(super.sub(sub).getValue(), this.maxLength, this.fieldType);
+        if (this.isCompound()) {
+            throw new UnsupportedOperationException("cannot create sub path of compound index " + this.getValue());
+        }
+        return new IndexProperty(super.sub(sub).getValue(), this.maxLength, this.fieldType).reverse(this.reverse).type(this.type);
+    }
+
+    @Override
+    public String toSqlIdentifier() {
+        if (this.isCompound()) {
+            return this.components.stream()
+                .map(IndexProperty::toSqlIdentifier)
+                .collect(Collectors.joining("_"));
+        }
+        return super.toSqlIdentifier();
+    }
+
+    /**
+     * Check if this is a compound (multi-field) index, see {@link #getComponents()}.
+     */
+    public boolean isCompound() {
+        return !this.components.isEmpty();
     }
 
     public IndexProperty maxLength(int maxLength) {
         if ((maxLength < 1) || (maxLength > 255))
             throw new IllegalArgumentException("max length should be between 1 and 255");
         this.maxLength = maxLength;
+        this.components.forEach(component -> component.maxLength(maxLength));
         return this;
     }
 
+    /**
+     * Also index reversed string values, so that suffix (endsWith) queries
+     * can be answered by emulated indexes. Used by In-Memory and Flat Files.
+     */
+    public IndexProperty reverse(boolean reverse) {
+        this.reverse = reverse;
+        return this;
+    }
+
+    /**
+     * Set the index type, see {@link IndexType}.
+     */
+    public IndexProperty type(@NonNull IndexType type) {
+        if (this.isCompound() && (type != IndexType.DEFAULT)) {
+            throw new IllegalArgumentException("compound index cannot be of type " + type + ": " + this.getValue());
+        }
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * Check if string values are also indexed by trigrams, see {@link IndexType#TRIGRAM}.
+     */
+    public boolean isTrigram() {
+        return this.type == IndexType.TRIGRAM;
+    }
+
     public IndexProperty fieldType(Class<?> fieldType) {
         this.fieldType = fieldType;
         return this;
@@ -86,6 +175,14 @@ public class IndexProperty extends PersistencePath {
         return this.fieldType == Boolean.class || this.fieldType == boolean.class;
     }
 
+    /**
+     * Check if this index is for a collection (array) field type, indexed by each element.
+     */
+    public boolean isCollection() {
+        if (this.fieldType == null) return false;
+        return Collection.class.isAssignableFrom(this.fieldType) || this.fieldType.isArray();
+    }
+
     /**
      * Check if this index is for a text/string field type.
      */
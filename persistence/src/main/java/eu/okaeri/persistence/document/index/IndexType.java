@@ -0,0 +1,20 @@
+package eu.okaeri.persistence.document.index;
+
+/**
+ * Kind of lookups an {@link IndexProperty} is built for.
+ */
+public enum IndexType {
+
+    /**
+     * Equality, range and prefix lookups.
+     */
+    DEFAULT,
+
+    /**
+     * Like {@link #DEFAULT}, additionally indexing the trigrams (three character substrings)
+     * of string values, so that {@code contains} queries are narrowed down to candidates
+     * sharing all trigrams of the searched substring instead of scanning all documents.
+     * Substrings shorter than three characters are not indexed.
+     */
+    TRIGRAM
+}
@@ -0,0 +1,409 @@
+package eu.okaeri.persistence.document.index;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Range index over primitive long keys.
+ * <p>
+ * Keys are kept in sorted fixed-size blocks of primitive arrays (a flat,
+ * two-level B+-tree), so neither keys nor lookups require boxing. Postings
+ * hold a single document ID inline and only grow into a {@link DocIdBitmap}
+ * when a key is shared by multiple documents.
+ * <p>
+ * Each block also tracks its document count, so blocks double as an
+ * equi-depth histogram for range cardinality estimates.
+ * <p>
+ * Blocks are copy-on-write: a write replaces only the affected block in the
+ * block array, so range scans never wait for a writer and always see whole
+ * blocks. Only splitting or dropping a block publishes a new block array.
+ * <p>
+ * Subclasses define how values and query bounds map to keys. The mapping
+ * must preserve numeric order under signed long comparison.
+ */
+abstract class LongKeyedRangeIndex extends NumericRangeIndex {
+
+    private static final int BLOCK_SIZE = 256;
+
+    private static final AtomicReferenceArray<Block> EMPTY = new AtomicReferenceArray<>(0);
+
+    private volatile AtomicReferenceArray<Block> blocks = EMPTY;
+
+    /**
+     * Check whether the value can be represented as a key.
+     */
+    abstract boolean accepts(@NonNull Object value);
+
+    /**
+     * Convert an accepted value to its key.
+     */
+    abstract long toKey(@NonNull Object value);
+
+    /**
+     * Compute the smallest key matching the lower bound.
+     *
+     * @return key range start, or null if no key can match
+     */
+    abstract KeyBound lowerBound(@NonNull Number min, boolean inclusive);
+
+    /**
+     * Compute the largest key matching the upper bound.
+     *
+     * @return key range end, or null if no key can match
+     */
+    abstract KeyBound upperBound(@NonNull Number max, boolean inclusive);
+
+    @Override
+    boolean add(int id, @NonNull Object value) {
+        if (!this.accepts(value)) {
+            return false;
+        }
+        this.insert(this.toKey(value), id);
+        return true;
+    }
+
+    @Override
+    void remove(int id, @NonNull Object value) {
+        if (this.accepts(value)) {
+            this.delete(this.toKey(value), id);
+        }
+    }
+
+    @Override
+    void collectRange(Number min, boolean minInclusive, Number max, boolean maxInclusive, @NonNull DocIdBitmap into) {
+        long[] range = this.keyRange(min, minInclusive, max, maxInclusive);
+        if (range == null) {
+            return;
+        }
+        long from = range[0];
+        long to = range[1];
+
+        AtomicReferenceArray<Block> snapshot = this.blocks;
+        for (int b = findBlock(snapshot, from); b < snapshot.length(); b++) {
+            Block block = snapshot.get(b);
+            int start = 0;
+            if (block.keys[0] < from) {
+                start = Arrays.binarySearch(block.keys, 0, block.size, from);
+                if (start < 0) {
+                    start = -(start + 1);
+                }
+            }
+            for (int i = start; i < block.size; i++) {
+                if (block.keys[i] > to) {
+                    return;
+                }
+                if (block.postings[i] == null) {
+                    into.add(block.singles[i]);
+                } else {
+                    into.or(block.postings[i]);
+                }
+            }
+        }
+    }
+
+    @Override
+    long estimateRange(Number min, boolean minInclusive, Number max, boolean maxInclusive) {
+        long[] range = this.keyRange(min, minInclusive, max, maxInclusive);
+        if (range == null) {
+            return 0;
+        }
+        long from = range[0];
+        long to = range[1];
+
+        long count = 0;
+        AtomicReferenceArray<Block> snapshot = this.blocks;
+        for (int b = findBlock(snapshot, from); b < snapshot.length(); b++) {
+            Block block = snapshot.get(b);
+            if (block.keys[0] > to) {
+                break;
+            }
+            // fully covered blocks are counted at once, boundary blocks key by key
+            if ((block.keys[0] >= from) && (block.keys[block.size - 1] <= to)) {
+                count += block.docs;
+                continue;
+            }
+            for (int i = 0; i < block.size; i++) {
+                if ((block.keys[i] >= from) && (block.keys[i] <= to)) {
+                    count += block.weight(i);
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    void forEachOrdered(boolean descending, @NonNull Predicate<DocIdBitmap> visitor) {
+        AtomicReferenceArray<Block> snapshot = this.blocks;
+        for (int b = 0; b < snapshot.length(); b++) {
+            Block block = snapshot.get(descending ? (snapshot.length() - 1 - b) : b);
+            for (int i = 0; i < block.size; i++) {
+                int pos = descending ? (block.size - 1 - i) : i;
+                DocIdBitmap ids = (block.postings[pos] == null) ? DocIdBitmap.of(block.singles[pos]) : block.postings[pos];
+                if (!visitor.test(ids)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    int count() {
+        int count = 0;
+        AtomicReferenceArray<Block> snapshot = this.blocks;
+        for (int b = 0; b < snapshot.length(); b++) {
+            count += snapshot.get(b).docs;
+        }
+        return count;
+    }
+
+    @Override
+    boolean isEmpty() {
+        return this.blocks.length() == 0;
+    }
+
+    @Override
+    void clear() {
+        this.blocks = EMPTY;
+    }
+
+    // ===== INTERNAL HELPERS =====
+
+    /**
+     * Resolve query bounds to an inclusive key range.
+     *
+     * @return {from, to} or null if no key can match
+     */
+    private long[] keyRange(Number min, boolean minInclusive, Number max, boolean maxInclusive) {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+
+        if (min != null) {
+            KeyBound bound = this.lowerBound(min, minInclusive);
+            if (bound == null) {
+                return null;
+            }
+            from = bound.key;
+        }
+        if (max != null) {
+            KeyBound bound = this.upperBound(max, maxInclusive);
+            if (bound == null) {
+                return null;
+            }
+            to = bound.key;
+        }
+        return (from > to) ? null : new long[]{from, to};
+    }
+
+    private void insert(long key, int id) {
+        AtomicReferenceArray<Block> snapshot = this.blocks;
+        if (snapshot.length() == 0) {
+            Block block = new Block();
+            block.insertAt(0, key, id);
+            this.blocks = new AtomicReferenceArray<>(new Block[]{block});
+            return;
+        }
+
+        int blockIndex = findBlock(snapshot, key);
+        Block block = snapshot.get(blockIndex).copy();
+        int pos = Arrays.binarySearch(block.keys, 0, block.size, key);
+
+        // Existing key - extend posting
+        if (pos >= 0) {
+            block.addPosting(pos, id);
+            snapshot.set(blockIndex, block);
+            return;
+        }
+        pos = -(pos + 1);
+
+        // Full block - split in half and retarget
+        if (block.size == BLOCK_SIZE) {
+            Block right = block.splitRight();
+            if (pos > block.size) {
+                right.insertAt(pos - block.size, key, id);
+            } else {
+                block.insertAt(pos, key, id);
+            }
+            this.blocks = replace(snapshot, blockIndex, block, right);
+            return;
+        }
+
+        block.insertAt(pos, key, id);
+        snapshot.set(blockIndex, block);
+    }
+
+    private void delete(long key, int id) {
+        AtomicReferenceArray<Block> snapshot = this.blocks;
+        if (snapshot.length() == 0) {
+            return;
+        }
+
+        int blockIndex = findBlock(snapshot, key);
+        Block current = snapshot.get(blockIndex);
+        int pos = Arrays.binarySearch(current.keys, 0, current.size, key);
+        if (pos < 0) {
+            return;
+        }
+
+        Block block = current.copy();
+        if (block.removePosting(pos, id)) {
+            block.removeAt(pos);
+        }
+
+        if (block.size == 0) {
+            this.blocks = replace(snapshot, blockIndex);
+        } else {
+            snapshot.set(blockIndex, block);
+        }
+    }
+
+    /**
+     * Copy the block array replacing the block at the index with zero or more blocks.
+     * Used only when the number of blocks changes, other writes replace a single block in place.
+     */
+    private static AtomicReferenceArray<Block> replace(AtomicReferenceArray<Block> blocks, int index, Block... replacement) {
+        int length = blocks.length();
+        Block[] result = new Block[(length - 1) + replacement.length];
+        for (int i = 0; i < index; i++) {
+            result[i] = blocks.get(i);
+        }
+        System.arraycopy(replacement, 0, result, index, replacement.length);
+        for (int i = index + 1; i < length; i++) {
+            result[(i - 1) + replacement.length] = blocks.get(i);
+        }
+        return new AtomicReferenceArray<>(result);
+    }
+
+    /**
+     * Find index of the last block whose first key is lower or equal to the key (or 0).
+     */
+    private static int findBlock(AtomicReferenceArray<Block> blocks, long key) {
+        int low = 0;
+        int high = blocks.length() - 1;
+        int result = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blocks.get(mid).keys[0] <= key) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resolved key bound of a range query.
+     */
+    static final class KeyBound {
+
+        final long key;
+
+        KeyBound(long key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Sorted keys with postings. Never modified once published,
+     * writers modify a {@link #copy()} instead.
+     */
+    private static final class Block {
+
+        private final long[] keys = new long[BLOCK_SIZE];
+        // single document per key is stored inline, shared keys use a bitmap
+        private final int[] singles = new int[BLOCK_SIZE];
+        private final DocIdBitmap[] postings = new DocIdBitmap[BLOCK_SIZE];
+        private int size;
+        // total documents of all keys
+        private int docs;
+
+        private Block copy() {
+            Block copy = new Block();
+            System.arraycopy(this.keys, 0, copy.keys, 0, this.size);
+            System.arraycopy(this.singles, 0, copy.singles, 0, this.size);
+            System.arraycopy(this.postings, 0, copy.postings, 0, this.size);
+            copy.size = this.size;
+            copy.docs = this.docs;
+            return copy;
+        }
+
+        private int weight(int pos) {
+            return (this.postings[pos] == null) ? 1 : this.postings[pos].cardinality();
+        }
+
+        private void insertAt(int pos, long key, int id) {
+            System.arraycopy(this.keys, pos, this.keys, pos + 1, this.size - pos);
+            System.arraycopy(this.singles, pos, this.singles, pos + 1, this.size - pos);
+            System.arraycopy(this.postings, pos, this.postings, pos + 1, this.size - pos);
+            this.keys[pos] = key;
+            this.singles[pos] = id;
+            this.postings[pos] = null;
+            this.size++;
+            this.docs++;
+        }
+
+        private void removeAt(int pos) {
+            this.docs -= this.weight(pos);
+            System.arraycopy(this.keys, pos + 1, this.keys, pos, this.size - pos - 1);
+            System.arraycopy(this.singles, pos + 1, this.singles, pos, this.size - pos - 1);
+            System.arraycopy(this.postings, pos + 1, this.postings, pos, this.size - pos - 1);
+            this.size--;
+            this.postings[this.size] = null;
+        }
+
+        private void addPosting(int pos, int id) {
+            DocIdBitmap posting = this.postings[pos];
+            if (posting != null) {
+                this.postings[pos] = posting.with(id);
+                if (this.postings[pos] != posting) {
+                    this.docs++;
+                }
+            } else if (this.singles[pos] != id) {
+                this.postings[pos] = DocIdBitmap.of(this.singles[pos], id);
+                this.docs++;
+            }
+        }
+
+        /**
+         * @return true if the key has no documents left
+         */
+        private boolean removePosting(int pos, int id) {
+            DocIdBitmap posting = this.postings[pos];
+            if (posting == null) {
+                return this.singles[pos] == id;
+            }
+            DocIdBitmap updated = posting.without(id);
+            if (updated != posting) {
+                this.docs--;
+            }
+            posting = updated;
+            if (posting.cardinality() == 1) {
+                this.singles[pos] = posting.toArray()[0];
+                this.postings[pos] = null;
+            } else {
+                this.postings[pos] = posting;
+            }
+            return false;
+        }
+
+        private Block splitRight() {
+            Block right = new Block();
+            int half = this.size / 2;
+            right.size = this.size - half;
+            System.arraycopy(this.keys, half, right.keys, 0, right.size);
+            System.arraycopy(this.singles, half, right.singles, 0, right.size);
+            System.arraycopy(this.postings, half, right.postings, 0, right.size);
+            Arrays.fill(this.postings, half, this.size, null);
+            this.size = half;
+            for (int i = 0; i < right.size; i++) {
+                right.docs += right.weight(i);
+            }
+            this.docs -= right.docs;
+            return right;
+        }
+    }
+}
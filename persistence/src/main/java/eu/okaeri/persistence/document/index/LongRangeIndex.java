@@ -0,0 +1,110 @@
+package eu.okaeri.persistence.document.index;
+
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Range index for integral fields (byte, short, int, long) keyed by the value itself.
+ * Non-integral bounds are rounded towards the matching side, e.g. {@code gt(10.5)} becomes {@code gte(11)}.
+ */
+class LongRangeIndex extends LongKeyedRangeIndex {
+
+    private static final BigDecimal MIN_KEY = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal MAX_KEY = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    @Override
+    boolean accepts(@NonNull Object value) {
+        return isIntegral(value);
+    }
+
+    @Override
+    long toKey(@NonNull Object value) {
+        return ((Number) value).longValue();
+    }
+
+    @Override
+    KeyBound lowerBound(@NonNull Number min, boolean inclusive) {
+        if (isIntegral(min)) {
+            long key = min.longValue();
+            if (inclusive) {
+                return new KeyBound(key);
+            }
+            return (key == Long.MAX_VALUE) ? null : new KeyBound(key + 1);
+        }
+
+        BigDecimal decimal = toDecimal(min);
+        if (decimal == null) {
+            return isNegativeInfinity(min) ? new KeyBound(Long.MIN_VALUE) : null;
+        }
+        BigDecimal key = inclusive
+            ? decimal.setScale(0, RoundingMode.CEILING)
+            : decimal.setScale(0, RoundingMode.FLOOR).add(BigDecimal.ONE);
+        if (key.compareTo(MAX_KEY) > 0) {
+            return null;
+        }
+        return new KeyBound((key.compareTo(MIN_KEY) < 0) ? Long.MIN_VALUE : key.longValue());
+    }
+
+    @Override
+    KeyBound upperBound(@NonNull Number max, boolean inclusive) {
+        if (isIntegral(max)) {
+            long key = max.longValue();
+            if (inclusive) {
+                return new KeyBound(key);
+            }
+            return (key == Long.MIN_VALUE) ? null : new KeyBound(key - 1);
+        }
+
+        BigDecimal decimal = toDecimal(max);
+        if (decimal == null) {
+            return isPositiveInfinity(max) ? new KeyBound(Long.MAX_VALUE) : null;
+        }
+        BigDecimal key = inclusive
+            ? decimal.setScale(0, RoundingMode.FLOOR)
+            : decimal.setScale(0, RoundingMode.CEILING).subtract(BigDecimal.ONE);
+        if (key.compareTo(MIN_KEY) < 0) {
+            return null;
+        }
+        return new KeyBound((key.compareTo(MAX_KEY) > 0) ? Long.MAX_VALUE : key.longValue());
+    }
+
+    private static boolean isIntegral(@NonNull Object value) {
+        return (value instanceof Integer)
+            || (value instanceof Long)
+            || (value instanceof Short)
+            || (value instanceof Byte)
+            || (value instanceof AtomicInteger)
+            || (value instanceof AtomicLong);
+    }
+
+    private static BigDecimal toDecimal(@NonNull Number value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        double doubleValue = value.doubleValue();
+        if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNegativeInfinity(@NonNull Number value) {
+        return value.doubleValue() == Double.NEGATIVE_INFINITY;
+    }
+
+    private static boolean isPositiveInfinity(@NonNull Number value) {
+        return value.doubleValue() == Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,96 @@
+package eu.okaeri.persistence.document.index;
+
+import lombok.NonNull;
+
+import java.util.function.Predicate;
+
+/**
+ * Sorted numeric postings backing range queries of {@link PropertyIndex}.
+ * <p>
+ * Implementations allow any number of concurrent readers alongside a single
+ * writer ({@link PropertyIndex} serializes writes). Readers never block.
+ */
+abstract class NumericRangeIndex {
+
+    /**
+     * Create the most compact range index for the given property.
+     * Integral fields use primitive long keys, floating-point fields use
+     * order-preserving long-encoded double keys, everything else uses BigDecimal.
+     *
+     * @param property index property (may be null when field type is unknown)
+     * @return new empty range index
+     */
+    static NumericRangeIndex forProperty(IndexProperty property) {
+        if ((property == null) || !property.isNumeric()) {
+            return new DecimalRangeIndex();
+        }
+        Class<?> type = property.getFieldType();
+        if ((type == double.class) || (type == Double.class) || (type == float.class) || (type == Float.class)) {
+            return new DoubleRangeIndex();
+        }
+        if ((type == int.class) || (type == Integer.class)
+            || (type == long.class) || (type == Long.class)
+            || (type == short.class) || (type == Short.class)
+            || (type == byte.class) || (type == Byte.class)) {
+            return new LongRangeIndex();
+        }
+        return new DecimalRangeIndex();
+    }
+
+    /**
+     * Add a value to the index.
+     *
+     * @param id    document identifier (see {@link DocIdDictionary})
+     * @param value value to index (non-null)
+     * @return false if the value cannot be represented by this index
+     */
+    abstract boolean add(int id, @NonNull Object value);
+
+    /**
+     * Remove a previously added value from the index.
+     *
+     * @param id    document identifier (see {@link DocIdDictionary})
+     * @param value value that was passed to {@link #add(int, Object)}
+     */
+    abstract void remove(int id, @NonNull Object value);
+
+    /**
+     * Collect document IDs with values in the given range.
+     *
+     * @param min          lower bound or null if unbounded
+     * @param minInclusive whether the lower bound is inclusive
+     * @param max          upper bound or null if unbounded
+     * @param maxInclusive whether the upper bound is inclusive
+     * @param into         target bitmap
+     */
+    abstract void collectRange(Number min, boolean minInclusive, Number max, boolean maxInclusive, @NonNull DocIdBitmap into);
+
+    /**
+     * Estimate the number of documents with values in the given range.
+     * Used for query planning, so it must be much cheaper than {@link #collectRange}.
+     *
+     * @param min          lower bound or null if unbounded
+     * @param minInclusive whether the lower bound is inclusive
+     * @param max          upper bound or null if unbounded
+     * @param maxInclusive whether the upper bound is inclusive
+     * @return estimated document count
+     */
+    abstract long estimateRange(Number min, boolean minInclusive, Number max, boolean maxInclusive);
+
+    /**
+     * Visit postings in key order, used for index-driven sorting.
+     *
+     * @param descending whether to visit the highest keys first
+     * @param visitor    receives the IDs of each key, returns false to stop
+     */
+    abstract void forEachOrdered(boolean descending, @NonNull Predicate<DocIdBitmap> visitor);
+
+    /**
+     * Get the number of indexed documents.
+     */
+    abstract int count();
+
+    abstract boolean isEmpty();
+
+    abstract void clear();
+}
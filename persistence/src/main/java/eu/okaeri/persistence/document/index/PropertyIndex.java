@@ -2,51 +2,144 @@ package eu.okaeri.persistence.document.index;
 
 import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistence.filter.predicate.Predicate;
+import eu.okaeri.persistence.filter.predicate.SimplePredicate;
+import eu.okaeri.persistence.filter.predicate.collection.ArrayContainsAnyPredicate;
+import eu.okaeri.persistence.filter.predicate.collection.ArrayContainsPredicate;
 import eu.okaeri.persistence.filter.predicate.collection.InPredicate;
+import eu.okaeri.persistence.filter.predicate.collection.NotInPredicate;
 import eu.okaeri.persistence.filter.predicate.equality.EqPredicate;
+import eu.okaeri.persistence.filter.predicate.equality.NePredicate;
 import eu.okaeri.persistence.filter.predicate.nullity.IsNullPredicate;
 import eu.okaeri.persistence.filter.predicate.nullity.NotNullPredicate;
 import eu.okaeri.persistence.filter.predicate.numeric.GtPredicate;
 import eu.okaeri.persistence.filter.predicate.numeric.GtePredicate;
 import eu.okaeri.persistence.filter.predicate.numeric.LtPredicate;
 import eu.okaeri.persistence.filter.predicate.numeric.LtePredicate;
+import eu.okaeri.persistence.filter.predicate.string.ContainsPredicate;
+import eu.okaeri.persistence.filter.predicate.string.EndsWithPredicate;
+import eu.okaeri.persistence.filter.predicate.string.StartsWithPredicate;
+import lombok.Getter;
 import lombok.NonNull;
 
-import java.math.BigDecimal;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * Unified index supporting equality and range queries.
- * Thread-safe for concurrent reads and writes.
+ * Thread-safe for concurrent reads and writes. Writes are serialized, while
+ * reads never block: all postings are copy-on-write and published through
+ * concurrent maps or volatile fields, so readers see a weakly consistent
+ * snapshot (like {@link java.util.concurrent.ConcurrentHashMap} iterators).
  * <p>
  * Supports:
- * - Exact match (EqPredicate)
+ * - Exact match (EqPredicate, NePredicate)
  * - Range queries (GtPredicate, GtePredicate, LtPredicate, LtePredicate)
- * - IN queries (InPredicate)
+ * - IN queries (InPredicate, NotInPredicate)
+ * - Array element queries (ArrayContainsPredicate, ArrayContainsAnyPredicate), collection
+ *   values are additionally indexed by each of their elements (multikey)
+ * - Prefix queries (StartsWithPredicate), case-sensitive or ignoring case
+ * - Suffix queries (EndsWithPredicate) if the property is {@link IndexProperty#isReverse() reversed}
+ * - Substring candidates (ContainsPredicate) if the property is a {@link IndexProperty#isTrigram() trigram} index,
+ *   see {@link #tryCandidatesBitmap(Condition)}
  * <p>
- * Uses TreeMap for numeric values to enable O(log n) range queries.
+ * Documents are referenced by dense int IDs from a {@link DocIdDictionary}
+ * (shared by all indexes of a collection) and postings are stored as
+ * compressed {@link DocIdBitmap}s, so combining results is a bitmap operation.
+ * <p>
+ * Numeric values are kept in a sorted range index specialized for the field type
+ * (primitive long keys for integral and floating-point fields, BigDecimal otherwise)
+ * to enable O(log n) range queries. String values are additionally kept in sorted
+ * maps, so a prefix query is a single contiguous range of keys. String queries are
+ * answered only while all indexed values are strings, since string predicates match
+ * other values by their text form.
  */
 public class PropertyIndex {
 
-    // docId -> stored value (for reverse lookup and removal)
-    private final ConcurrentHashMap<String, Object> docIdToValue = new ConcurrentHashMap<>();
+    @Getter
+    private final DocIdDictionary dictionary;
+
+    // serializes writers, readers do not lock
+    private final Lock writeLock = new ReentrantLock();
+
+    // id -> stored value (for reverse lookup and removal)
+    private volatile Object[] values = new Object[16];
+
+    // ids with non-null values
+    private volatile DocIdBitmap valueIds = new DocIdBitmap();
+
+    // value -> ids (for equality queries)
+    private final Map<Object, DocIdBitmap> valueToIds = new ConcurrentHashMap<>();
+
+    // string -> ids (for prefix queries, sorted)
+    private final NavigableMap<String, DocIdBitmap> stringToIds = new ConcurrentSkipListMap<>();
+
+    // lowercase string -> ids (for case-insensitive string queries, sorted)
+    private final NavigableMap<String, DocIdBitmap> lowercaseToIds = new ConcurrentSkipListMap<>();
+
+    // reversed string -> ids (for suffix queries, sorted, null if not enabled)
+    private final NavigableMap<String, DocIdBitmap> reversedToIds;
+
+    // reversed lowercase string -> ids (for case-insensitive suffix queries, sorted, null if not enabled)
+    private final NavigableMap<String, DocIdBitmap> reversedLowercaseToIds;
+
+    // trigram of folded lowercase string -> ids (for substring queries, null if not enabled)
+    private final Map<String, DocIdBitmap> trigramToIds;
+
+    // element of collection value -> ids (for array element queries)
+    private final Map<Object, DocIdBitmap> elementToIds = new ConcurrentHashMap<>();
+
+    // ids with null values (for isNull queries)
+    private volatile DocIdBitmap nullIds = new DocIdBitmap();
 
-    // value -> set of docIds (for equality queries)
-    private final ConcurrentHashMap<Object, Set<String>> valueToDocIds = new ConcurrentHashMap<>();
+    // numeric value -> ids (for numeric range queries, sorted)
+    private volatile NumericRangeIndex numericIndex;
 
-    // lowercase string -> set of docIds (for case-insensitive string queries)
-    private final ConcurrentHashMap<String, Set<String>> lowercaseToDocIds = new ConcurrentHashMap<>();
+    private volatile int valueCount;
 
-    // docIds with null values (for isNull queries)
-    private final Set<String> nullDocIds = ConcurrentHashMap.newKeySet();
+    private volatile int stringCount;
 
-    // BigDecimal -> set of docIds (for numeric range queries, sorted)
-    // Note: Not using synchronizedNavigableMap - we use synchronized(this) blocks instead
-    private final NavigableMap<BigDecimal, Set<String>> numericIndex = new TreeMap<>();
+    private volatile int numberCount;
 
-    // Track which docIds have numeric values (for cleanup)
-    private final ConcurrentHashMap<String, BigDecimal> docIdToNumeric = new ConcurrentHashMap<>();
+    // indexed collection elements, in total and by kind of element key
+    private volatile int elementCount;
+    private volatile int stringElementCount;
+    private volatile int numberElementCount;
+    private volatile int booleanElementCount;
+
+    /**
+     * Create a standalone index of unknown field type (BigDecimal range keys).
+     */
+    public PropertyIndex() {
+        this(null);
+    }
+
+    /**
+     * Create a standalone index with range keys specialized for the property field type.
+     *
+     * @param property indexed property (may be null if unknown)
+     */
+    public PropertyIndex(IndexProperty property) {
+        this(property, new DocIdDictionary());
+    }
+
+    /**
+     * Create an index sharing document IDs with other indexes of the collection.
+     *
+     * @param property   indexed property (may be null if unknown)
+     * @param dictionary collection document ID dictionary
+     */
+    public PropertyIndex(IndexProperty property, @NonNull DocIdDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.numericIndex = NumericRangeIndex.forProperty(property);
+        boolean reverse = (property != null) && property.isReverse();
+        this.reversedToIds = reverse ? new ConcurrentSkipListMap<>() : null;
+        this.reversedLowercaseToIds = reverse ? new ConcurrentSkipListMap<>() : null;
+        this.trigramToIds = ((property != null) && property.isTrigram()) ? new ConcurrentHashMap<>() : null;
+    }
 
     // ===== WRITE OPERATIONS =====
 
@@ -55,60 +148,87 @@ public class PropertyIndex {
      *
      * @param docId document identifier
      * @param value the value to index (can be null)
-     * @return true if this changed the index
+     * @return true if this changed the index, false if the value was already indexed
      */
     public boolean put(@NonNull String docId, Object value) {
-        synchronized (this) {
-            // Remove old entry if exists
-            Object oldValue = this.docIdToValue.get(docId);
-            if (oldValue != null) {
-                this.removeFromMaps(docId, oldValue);
+        int id = this.dictionary.idOf(docId);
+        this.writeLock.lock();
+        try {
+            // Skip rewriting the postings of an unchanged value
+            if (this.isIndexed(id, value)) {
+                return false;
             }
 
+            // Remove old entry if exists
+            this.removeFromMaps(id);
+
             if (value == null) {
-                this.docIdToValue.remove(docId);
-                this.nullDocIds.add(docId);
+                this.nullIds = this.nullIds.with(id);
                 return true;
             }
-            this.nullDocIds.remove(docId);
 
             // Store the value
-            this.docIdToValue.put(docId, value);
+            Object[] values = this.values;
+            if (id >= values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, id + 1));
+            }
+            values[id] = value;
+            this.values = values;
+            this.valueIds = this.valueIds.with(id);
+            this.valueCount++;
+            if (value instanceof Number) {
+                this.numberCount++;
+            }
 
             // Add to equality index
-            this.valueToDocIds.computeIfAbsent(value, k -> ConcurrentHashMap.newKeySet()).add(docId);
+            addPosting(this.valueToIds, value, id);
 
-            // Add to lowercase index if string
+            // Add to string indexes if string
             if (value instanceof String) {
-                String lowercase = ((String) value).toLowerCase();
-                this.lowercaseToDocIds.computeIfAbsent(lowercase, k -> ConcurrentHashMap.newKeySet()).add(docId);
+                this.addString(id, (String) value);
+            }
+
+            // Add each element to element index if collection
+            if (value instanceof Collection) {
+                this.updateElements(id, (Collection<?>) value, true);
             }
 
-            // Add to numeric index if applicable
-            BigDecimal numeric = this.toNumeric(value);
-            if (numeric != null) {
-                this.numericIndex.computeIfAbsent(numeric, k -> ConcurrentHashMap.newKeySet()).add(docId);
-                this.docIdToNumeric.put(docId, numeric);
+            // Add to numeric index, falling back to BigDecimal keys for unexpected values
+            if (!this.numericIndex.add(id, value)) {
+                this.promoteNumericIndex();
             }
 
             return true;
+        } finally {
+            this.writeLock.unlock();
         }
     }
 
+    private boolean isIndexed(int id, Object value) {
+        if (value == null) {
+            return this.nullIds.contains(id);
+        }
+        Object[] values = this.values;
+        return this.valueIds.contains(id) && (id < values.length) && value.equals(values[id]);
+    }
+
     /**
      * Remove a document from the index.
+     * The document ID is not released from the shared dictionary.
      *
      * @param docId document identifier
      * @return true if the document was in the index
      */
     public boolean remove(@NonNull String docId) {
-        synchronized (this) {
-            Object value = this.docIdToValue.remove(docId);
-            if (value != null) {
-                this.removeFromMaps(docId, value);
-                return true;
-            }
-            return this.nullDocIds.remove(docId);
+        int id = this.dictionary.find(docId);
+        if (id < 0) {
+            return false;
+        }
+        this.writeLock.lock();
+        try {
+            return this.removeFromMaps(id);
+        } finally {
+            this.writeLock.unlock();
         }
     }
 
@@ -116,13 +236,32 @@ public class PropertyIndex {
      * Clear all entries from the index.
      */
     public void clear() {
-        synchronized (this) {
-            this.docIdToValue.clear();
-            this.valueToDocIds.clear();
-            this.lowercaseToDocIds.clear();
-            this.nullDocIds.clear();
+        this.writeLock.lock();
+        try {
+            this.values = new Object[16];
+            this.valueIds = new DocIdBitmap();
+            this.valueToIds.clear();
+            this.stringToIds.clear();
+            this.lowercaseToIds.clear();
+            if (this.reversedToIds != null) {
+                this.reversedToIds.clear();
+                this.reversedLowercaseToIds.clear();
+            }
+            if (this.trigramToIds != null) {
+                this.trigramToIds.clear();
+            }
+            this.elementToIds.clear();
+            this.nullIds = new DocIdBitmap();
             this.numericIndex.clear();
-            this.docIdToNumeric.clear();
+            this.valueCount = 0;
+            this.numberCount = 0;
+            this.stringCount = 0;
+            this.elementCount = 0;
+            this.stringElementCount = 0;
+            this.numberElementCount = 0;
+            this.booleanElementCount = 0;
+        } finally {
+            this.writeLock.unlock();
         }
     }
 
@@ -135,11 +274,7 @@ public class PropertyIndex {
      * @return set of document IDs (never null)
      */
     public Set<String> findEquals(Object value) {
-        if (value == null) {
-            return Collections.emptySet();
-        }
-        Set<String> result = this.valueToDocIds.get(value);
-        return (result != null) ? new HashSet<>(result) : Collections.emptySet();
+        return this.resolve(() -> this.equalsBitmap(value));
     }
 
     /**
@@ -149,8 +284,7 @@ public class PropertyIndex {
      * @return set of document IDs (never null)
      */
     public Set<String> findEqualsIgnoreCase(@NonNull String value) {
-        Set<String> result = this.lowercaseToDocIds.get(value.toLowerCase());
-        return (result != null) ? new HashSet<>(result) : Collections.emptySet();
+        return this.resolve(() -> this.equalsIgnoreCaseBitmap(value));
     }
 
     /**
@@ -159,7 +293,7 @@ public class PropertyIndex {
      * @return set of document IDs (never null)
      */
     public Set<String> findNull() {
-        return new HashSet<>(this.nullDocIds);
+        return this.resolve(() -> this.nullBitmap());
     }
 
     /**
@@ -168,7 +302,7 @@ public class PropertyIndex {
      * @return set of document IDs (never null)
      */
     public Set<String> findNotNull() {
-        return new HashSet<>(this.docIdToValue.keySet());
+        return this.resolve(() -> this.notNullBitmap());
     }
 
     /**
@@ -178,14 +312,38 @@ public class PropertyIndex {
      * @return set of document IDs matching any value
      */
     public Set<String> findIn(@NonNull Collection<?> values) {
-        Set<String> result = new HashSet<>();
-        for (Object value : values) {
-            Set<String> docIds = this.valueToDocIds.get(value);
-            if (docIds != null) {
-                result.addAll(docIds);
-            }
+        return this.resolve(() -> this.inBitmap(values));
+    }
+
+    /**
+     * Find all documents with a string value starting with the prefix.
+     *
+     * @param prefix     the prefix to match
+     * @param ignoreCase whether to match ignoring case
+     * @return set of document IDs (never null)
+     */
+    public Set<String> findStartsWith(@NonNull String prefix, boolean ignoreCase) {
+        return this.resolve(() -> ignoreCase
+            ? prefixBitmap(this.lowercaseToIds, prefix.toLowerCase())
+            : prefixBitmap(this.stringToIds, prefix));
+    }
+
+    /**
+     * Find all documents with a string value ending with the suffix.
+     * Requires a {@link IndexProperty#isReverse() reversed} index.
+     *
+     * @param suffix     the suffix to match
+     * @param ignoreCase whether to match ignoring case
+     * @return set of document IDs (never null)
+     * @throws IllegalStateException if the index is not reversed
+     */
+    public Set<String> findEndsWith(@NonNull String suffix, boolean ignoreCase) {
+        if (this.reversedToIds == null) {
+            throw new IllegalStateException("index is not reversed");
         }
-        return result;
+        return this.resolve(() -> ignoreCase
+            ? prefixBitmap(this.reversedLowercaseToIds, reverse(suffix.toLowerCase()))
+            : prefixBitmap(this.reversedToIds, reverse(suffix)));
     }
 
     /**
@@ -195,14 +353,16 @@ public class PropertyIndex {
      * @return the indexed value, or null if not found
      */
     public Object getValue(@NonNull String docId) {
-        return this.docIdToValue.get(docId);
+        int id = this.dictionary.find(docId);
+        Object[] values = this.values;
+        return ((id < 0) || (id >= values.length)) ? null : values[id];
     }
 
     /**
      * Check if a document is in the index.
      */
     public boolean containsDoc(@NonNull String docId) {
-        return this.docIdToValue.containsKey(docId);
+        return this.getValue(docId) != null;
     }
 
     // ===== READ OPERATIONS - RANGE QUERIES =====
@@ -214,18 +374,7 @@ public class PropertyIndex {
      * @return set of document IDs
      */
     public Set<String> findGreaterThan(@NonNull Number value) {
-        BigDecimal threshold = this.toNumeric(value);
-        if (threshold == null) {
-            return Collections.emptySet();
-        }
-
-        synchronized (this) {
-            Set<String> result = new HashSet<>();
-            for (Set<String> docIds : this.numericIndex.tailMap(threshold, false).values()) {
-                result.addAll(docIds);
-            }
-            return result;
-        }
+        return this.resolve(() -> this.rangeBitmap(value, false, null, false));
     }
 
     /**
@@ -235,18 +384,7 @@ public class PropertyIndex {
      * @return set of document IDs
      */
     public Set<String> findGreaterThanOrEqual(@NonNull Number value) {
-        BigDecimal threshold = this.toNumeric(value);
-        if (threshold == null) {
-            return Collections.emptySet();
-        }
-
-        synchronized (this) {
-            Set<String> result = new HashSet<>();
-            for (Set<String> docIds : this.numericIndex.tailMap(threshold, true).values()) {
-                result.addAll(docIds);
-            }
-            return result;
-        }
+        return this.resolve(() -> this.rangeBitmap(value, true, null, false));
     }
 
     /**
@@ -256,18 +394,7 @@ public class PropertyIndex {
      * @return set of document IDs
      */
     public Set<String> findLessThan(@NonNull Number value) {
-        BigDecimal threshold = this.toNumeric(value);
-        if (threshold == null) {
-            return Collections.emptySet();
-        }
-
-        synchronized (this) {
-            Set<String> result = new HashSet<>();
-            for (Set<String> docIds : this.numericIndex.headMap(threshold, false).values()) {
-                result.addAll(docIds);
-            }
-            return result;
-        }
+        return this.resolve(() -> this.rangeBitmap(null, false, value, false));
     }
 
     /**
@@ -277,18 +404,7 @@ public class PropertyIndex {
      * @return set of document IDs
      */
     public Set<String> findLessThanOrEqual(@NonNull Number value) {
-        BigDecimal threshold = this.toNumeric(value);
-        if (threshold == null) {
-            return Collections.emptySet();
-        }
-
-        synchronized (this) {
-            Set<String> result = new HashSet<>();
-            for (Set<String> docIds : this.numericIndex.headMap(threshold, true).values()) {
-                result.addAll(docIds);
-            }
-            return result;
-        }
+        return this.resolve(() -> this.rangeBitmap(null, false, value, true));
     }
 
     /**
@@ -299,19 +415,41 @@ public class PropertyIndex {
      * @return set of document IDs
      */
     public Set<String> findBetween(@NonNull Number min, @NonNull Number max) {
-        BigDecimal minThreshold = this.toNumeric(min);
-        BigDecimal maxThreshold = this.toNumeric(max);
-        if ((minThreshold == null) || (maxThreshold == null)) {
-            return Collections.emptySet();
+        return this.resolve(() -> this.rangeBitmap(min, true, max, true));
+    }
+
+    // ===== READ OPERATIONS - ORDER =====
+
+    /**
+     * Visit documents in value order, grouped by value, for index-driven sorting.
+     * Null values are ordered after all other values (visited first when descending),
+     * matching {@link eu.okaeri.persistence.document.DocumentValueUtils#compareForSort}.
+     *
+     * @param descending whether to visit the greatest values first
+     * @param visitor    receives the IDs of each distinct value, returns false to stop
+     * @return false if the index cannot order the values (some are not numeric)
+     */
+    public boolean forEachOrdered(boolean descending, java.util.function.Predicate<DocIdBitmap> visitor) {
+        NumericRangeIndex numericIndex = this.numericIndex;
+        if (numericIndex.count() != this.valueCount) {
+            return false;
         }
 
-        synchronized (this) {
-            Set<String> result = new HashSet<>();
-            for (Set<String> docIds : this.numericIndex.subMap(minThreshold, true, maxThreshold, true).values()) {
-                result.addAll(docIds);
-            }
-            return result;
+        DocIdBitmap nullIds = this.nullIds;
+        if (descending && !nullIds.isEmpty() && !visitor.test(nullIds)) {
+            return true;
+        }
+
+        boolean[] stopped = new boolean[1];
+        numericIndex.forEachOrdered(descending, ids -> {
+            stopped[0] = !visitor.test(ids);
+            return !stopped[0];
+        });
+
+        if (!descending && !stopped[0] && !nullIds.isEmpty()) {
+            visitor.test(nullIds);
         }
+        return true;
     }
 
     // ===== PREDICATE-BASED QUERY =====
@@ -324,6 +462,17 @@ public class PropertyIndex {
      * @return Optional containing matching docIds, or empty if index cannot help
      */
     public Optional<Set<String>> tryQuery(@NonNull Condition condition) {
+        return this.dictionary.read(() -> this.tryQueryBitmap(condition).map(this.dictionary::toDocIds));
+    }
+
+    /**
+     * Try to use the index to satisfy a condition, returning IDs from the {@link #getDictionary()}.
+     * Returns empty Optional if the condition cannot be optimized with this index.
+     *
+     * @param condition the condition to evaluate
+     * @return Optional containing matching IDs (owned by the caller), or empty if index cannot help
+     */
+    public Optional<DocIdBitmap> tryQueryBitmap(@NonNull Condition condition) {
         Predicate[] predicates = condition.getPredicates();
         if ((predicates == null) || (predicates.length == 0)) {
             return Optional.empty();
@@ -336,55 +485,128 @@ public class PropertyIndex {
 
         // Multiple predicates - intersect results from each
         // ALL predicates must be indexable, otherwise fall back to full scan
-        Set<String> result = null;
+        DocIdBitmap result = null;
         for (Predicate p : predicates) {
-            Optional<Set<String>> indexed = this.tryQueryPredicate(p);
+            Optional<DocIdBitmap> indexed = this.tryQueryPredicate(p);
             if (!indexed.isPresent()) {
                 // Can't index this predicate - must fall back to full scan
                 return Optional.empty();
             }
             if (result == null) {
-                result = new HashSet<>(indexed.get());
+                result = indexed.get();
             } else {
-                result.retainAll(indexed.get());
+                result.and(indexed.get());
             }
             // Early exit if intersection is empty
             if (result.isEmpty()) {
-                return Optional.of(Collections.emptySet());
+                return Optional.of(result);
+            }
+        }
+
+        return Optional.of(result);
+    }
+
+    /**
+     * Try to use the index to narrow down documents possibly matching a condition.
+     * Unlike {@link #tryQueryBitmap(Condition)}, substring (ContainsPredicate) predicates
+     * are also answered, from the trigram postings of a {@link IndexProperty#isTrigram() trigram}
+     * index: documents containing all trigrams of the substring are a superset of the matches,
+     * so the candidates must be verified against the condition.
+     *
+     * @param condition the condition to evaluate
+     * @return Optional containing candidate IDs (owned by the caller), or empty if index cannot help
+     */
+    public Optional<DocIdBitmap> tryCandidatesBitmap(@NonNull Condition condition) {
+        Predicate[] predicates = condition.getPredicates();
+        if ((predicates == null) || (predicates.length == 0)) {
+            return Optional.empty();
+        }
+
+        DocIdBitmap result = null;
+        for (Predicate predicate : predicates) {
+            Optional<DocIdBitmap> indexed = this.tryQueryPredicate(predicate);
+            if (!indexed.isPresent()) {
+                indexed = this.tryTrigramPredicate(predicate);
+            }
+            if (!indexed.isPresent()) {
+                return Optional.empty();
+            }
+            if (result == null) {
+                result = indexed.get();
+            } else {
+                result.and(indexed.get());
+            }
+            if (result.isEmpty()) {
+                break;
             }
         }
 
         return Optional.of(result);
     }
 
+    /**
+     * Try to use the trigram postings for a substring predicate, most selective trigram first.
+     */
+    private Optional<DocIdBitmap> tryTrigramPredicate(@NonNull Predicate predicate) {
+        List<DocIdBitmap> postings = this.trigramPostings(predicate);
+        if (postings == null) {
+            return Optional.empty();
+        }
+        DocIdBitmap result = postings.get(0).copy();
+        for (int i = 1; (i < postings.size()) && !result.isEmpty(); i++) {
+            result.and(postings.get(i));
+        }
+        return Optional.of(result);
+    }
+
     /**
      * Try to use the index for a single predicate.
      */
-    private Optional<Set<String>> tryQueryPredicate(@NonNull Predicate predicate) {
+    private Optional<DocIdBitmap> tryQueryPredicate(@NonNull Predicate predicate) {
         if (predicate instanceof EqPredicate) {
             EqPredicate eq = (EqPredicate) predicate;
             if (eq.isIgnoreCase()) {
                 Object val = eq.getRightOperand();
                 if (val instanceof String) {
-                    return Optional.of(this.findEqualsIgnoreCase((String) val));
+                    return Optional.of(this.equalsIgnoreCaseBitmap((String) val));
                 }
                 return Optional.empty();
             }
-            return Optional.of(this.findEquals(eq.getRightOperand()));
+            return Optional.ofNullable(this.matchingBitmap(eq.getRightOperand()));
+        }
+
+        if (predicate instanceof NePredicate) {
+            DocIdBitmap matching = this.matchingBitmap(((NePredicate) predicate).getRightOperand());
+            if (matching == null) {
+                return Optional.empty();
+            }
+            // null != X is true, so start from all documents
+            DocIdBitmap result = this.allBitmap();
+            result.andNot(matching);
+            return Optional.of(result);
         }
 
         if (predicate instanceof InPredicate) {
-            InPredicate in = (InPredicate) predicate;
-            @SuppressWarnings("unchecked")
-            Collection<?> values = (Collection<?>) in.getRightOperand();
-            return Optional.of(this.findIn(values));
+            Collection<?> values = (Collection<?>) ((InPredicate) predicate).getRightOperand();
+            return Optional.ofNullable(this.matchingBitmap(values));
+        }
+
+        if (predicate instanceof NotInPredicate) {
+            DocIdBitmap matching = this.matchingBitmap((Collection<?>) ((NotInPredicate) predicate).getRightOperand());
+            if (matching == null) {
+                return Optional.empty();
+            }
+            // null is not in any set, so start from all documents
+            DocIdBitmap result = this.allBitmap();
+            result.andNot(matching);
+            return Optional.of(result);
         }
 
         if (predicate instanceof GtPredicate) {
             GtPredicate gt = (GtPredicate) predicate;
             Object val = gt.getRightOperand();
             if (val instanceof Number) {
-                return Optional.of(this.findGreaterThan((Number) val));
+                return Optional.of(this.rangeBitmap((Number) val, false, null, false));
             }
         }
 
@@ -392,7 +614,7 @@ public class PropertyIndex {
             GtePredicate gte = (GtePredicate) predicate;
             Object val = gte.getRightOperand();
             if (val instanceof Number) {
-                return Optional.of(this.findGreaterThanOrEqual((Number) val));
+                return Optional.of(this.rangeBitmap((Number) val, true, null, false));
             }
         }
 
@@ -400,7 +622,7 @@ public class PropertyIndex {
             LtPredicate lt = (LtPredicate) predicate;
             Object val = lt.getRightOperand();
             if (val instanceof Number) {
-                return Optional.of(this.findLessThan((Number) val));
+                return Optional.of(this.rangeBitmap(null, false, (Number) val, false));
             }
         }
 
@@ -408,43 +630,333 @@ public class PropertyIndex {
             LtePredicate lte = (LtePredicate) predicate;
             Object val = lte.getRightOperand();
             if (val instanceof Number) {
-                return Optional.of(this.findLessThanOrEqual((Number) val));
+                return Optional.of(this.rangeBitmap(null, false, (Number) val, true));
             }
         }
 
         if (predicate instanceof IsNullPredicate) {
-            return Optional.of(this.findNull());
+            return Optional.of(this.nullBitmap());
         }
 
         if (predicate instanceof NotNullPredicate) {
-            return Optional.of(this.findNotNull());
+            return Optional.of(this.notNullBitmap());
+        }
+
+        NavigableMap<String, DocIdBitmap> strings = this.stringPostings(predicate);
+        if (strings != null) {
+            return Optional.of(prefixBitmap(strings, this.stringOperand(predicate)));
+        }
+
+        List<DocIdBitmap> elements = this.elementPostings(predicate);
+        if (elements != null) {
+            DocIdBitmap result = new DocIdBitmap();
+            elements.forEach(result::or);
+            return Optional.of(result);
         }
 
         // Cannot use index for this predicate
         return Optional.empty();
     }
 
+    // ===== STATISTICS =====
+
+    /**
+     * Estimate the number of documents matching a condition without evaluating it.
+     * Equality, IN and nullity estimates are exact posting sizes, range estimates
+     * come from the numeric index histogram. Substring estimates are the size of the
+     * smallest trigram posting, an upper bound of the candidates.
+     *
+     * @param condition the condition to estimate
+     * @return estimated document count, or -1 if the index cannot answer the condition
+     */
+    public long estimate(@NonNull Condition condition) {
+        Predicate[] predicates = condition.getPredicates();
+        if ((predicates == null) || (predicates.length == 0)) {
+            return -1;
+        }
+
+        // Multiple predicates are intersected, the result is at most the smallest
+        long estimate = Long.MAX_VALUE;
+        Predicate lower = null;
+        Predicate upper = null;
+        for (Predicate predicate : predicates) {
+            long predicateEstimate = this.estimatePredicate(predicate);
+            if (predicateEstimate < 0) {
+                return -1;
+            }
+            estimate = Math.min(estimate, predicateEstimate);
+            if ((predicate instanceof GtPredicate) || (predicate instanceof GtePredicate)) {
+                lower = predicate;
+            } else if ((predicate instanceof LtPredicate) || (predicate instanceof LtePredicate)) {
+                upper = predicate;
+            }
+        }
+
+        // Both bounds of a range (between) - estimate the closed range
+        if ((lower != null) && (upper != null)) {
+            estimate = Math.min(estimate, this.numericIndex.estimateRange(
+                (Number) ((SimplePredicate) lower).getRightOperand(), lower instanceof GtePredicate,
+                (Number) ((SimplePredicate) upper).getRightOperand(), upper instanceof LtePredicate));
+        }
+
+        return estimate;
+    }
+
+    /**
+     * Get the number of distinct non-null values.
+     */
+    public int distinctCount() {
+        return this.valueToIds.size();
+    }
+
+    /**
+     * Get the number of documents with null values.
+     */
+    public int nullCount() {
+        return this.nullIds.cardinality();
+    }
+
+    /**
+     * Get the number of documents with an exact value.
+     */
+    public int postingSize(Object value) {
+        DocIdBitmap ids = (value == null) ? null : this.valueToIds.get(value);
+        return (ids == null) ? 0 : ids.cardinality();
+    }
+
+    private long estimatePredicate(@NonNull Predicate predicate) {
+        if (predicate instanceof EqPredicate) {
+            EqPredicate eq = (EqPredicate) predicate;
+            if (eq.isIgnoreCase()) {
+                Object val = eq.getRightOperand();
+                if (val instanceof String) {
+                    DocIdBitmap ids = this.lowercaseToIds.get(((String) val).toLowerCase());
+                    return (ids == null) ? 0 : ids.cardinality();
+                }
+                return -1;
+            }
+            return this.estimateMatching(eq.getRightOperand());
+        }
+
+        if (predicate instanceof NePredicate) {
+            long matching = this.estimateMatching(((NePredicate) predicate).getRightOperand());
+            return (matching < 0) ? -1 : ((this.size() + this.nullCount()) - matching);
+        }
+
+        if ((predicate instanceof InPredicate) || (predicate instanceof NotInPredicate)) {
+            long matching = 0;
+            for (Object value : (Collection<?>) ((SimplePredicate) predicate).getRightOperand()) {
+                long valueMatching = this.estimateMatching(value);
+                if (valueMatching < 0) {
+                    return -1;
+                }
+                matching += valueMatching;
+            }
+            return (predicate instanceof InPredicate)
+                ? matching
+                : ((this.size() + this.nullCount()) - matching);
+        }
+
+        if ((predicate instanceof GtPredicate) || (predicate instanceof GtePredicate)) {
+            Object val = ((SimplePredicate) predicate).getRightOperand();
+            if (val instanceof Number) {
+                return this.numericIndex.estimateRange((Number) val, predicate instanceof GtePredicate, null, false);
+            }
+        }
+
+        if ((predicate instanceof LtPredicate) || (predicate instanceof LtePredicate)) {
+            Object val = ((SimplePredicate) predicate).getRightOperand();
+            if (val instanceof Number) {
+                return this.numericIndex.estimateRange(null, false, (Number) val, predicate instanceof LtePredicate);
+            }
+        }
+
+        if (predicate instanceof IsNullPredicate) {
+            return this.nullCount();
+        }
+
+        if (predicate instanceof NotNullPredicate) {
+            return this.size();
+        }
+
+        NavigableMap<String, DocIdBitmap> strings = this.stringPostings(predicate);
+        if (strings != null) {
+            long matching = 0;
+            for (DocIdBitmap ids : prefixRange(strings, this.stringOperand(predicate)).values()) {
+                matching += ids.cardinality();
+            }
+            return matching;
+        }
+
+        List<DocIdBitmap> elements = this.elementPostings(predicate);
+        if (elements != null) {
+            long matching = 0;
+            for (DocIdBitmap ids : elements) {
+                matching += ids.cardinality();
+            }
+            return matching;
+        }
+
+        List<DocIdBitmap> trigrams = this.trigramPostings(predicate);
+        if (trigrams != null) {
+            return trigrams.get(0).cardinality();
+        }
+
+        // Cannot use index for this predicate
+        return -1;
+    }
+
+    // ===== READ OPERATIONS - BITMAPS =====
+
+    private DocIdBitmap equalsBitmap(Object value) {
+        if (value == null) {
+            return new DocIdBitmap();
+        }
+        DocIdBitmap ids = this.valueToIds.get(value);
+        return (ids != null) ? ids.copy() : new DocIdBitmap();
+    }
+
+    /**
+     * Get the documents with values equal to the operand as compared by the filter evaluator
+     * ({@code DocumentValueUtils#compareEquals}): numbers by value, UUIDs by text, enums by name
+     * ignoring case. Values are indexed in their simplified form, so this is exact only if all
+     * values are numbers (for number operands) or strings (for text operands).
+     *
+     * @return matching IDs (owned by the caller), or null if the postings cannot answer the operand exactly
+     */
+    private DocIdBitmap matchingBitmap(Object operand) {
+        if (operand instanceof Number) {
+            Number number = (Number) operand;
+            return (this.numberCount == this.valueCount) ? this.rangeBitmap(number, true, number, true) : null;
+        }
+        if ((operand instanceof String) || (operand instanceof UUID) || (operand instanceof Enum)) {
+            if (this.stringCount != this.valueCount) {
+                return null;
+            }
+            if (operand instanceof Enum) {
+                return this.equalsIgnoreCaseBitmap(((Enum<?>) operand).name());
+            }
+            return this.equalsBitmap(operand.toString());
+        }
+        return this.equalsBitmap(operand);
+    }
+
+    private DocIdBitmap matchingBitmap(@NonNull Collection<?> operands) {
+        DocIdBitmap result = new DocIdBitmap();
+        for (Object operand : operands) {
+            DocIdBitmap ids = this.matchingBitmap(operand);
+            if (ids == null) {
+                return null;
+            }
+            result.or(ids);
+        }
+        return result;
+    }
+
+    /**
+     * Estimate {@link #matchingBitmap(Object)} without collecting it.
+     *
+     * @return number of matching documents, or -1 if the postings cannot answer the operand exactly
+     */
+    private long estimateMatching(Object operand) {
+        if (operand instanceof Number) {
+            Number number = (Number) operand;
+            return (this.numberCount == this.valueCount) ? this.numericIndex.estimateRange(number, true, number, true) : -1;
+        }
+        if ((operand instanceof String) || (operand instanceof UUID) || (operand instanceof Enum)) {
+            if (this.stringCount != this.valueCount) {
+                return -1;
+            }
+            if (operand instanceof Enum) {
+                DocIdBitmap ids = this.lowercaseToIds.get(((Enum<?>) operand).name().toLowerCase());
+                return (ids == null) ? 0 : ids.cardinality();
+            }
+            return this.postingSize(operand.toString());
+        }
+        return this.postingSize(operand);
+    }
+
+    private DocIdBitmap equalsIgnoreCaseBitmap(@NonNull String value) {
+        DocIdBitmap ids = this.lowercaseToIds.get(value.toLowerCase());
+        return (ids != null) ? ids.copy() : new DocIdBitmap();
+    }
+
+    private DocIdBitmap inBitmap(@NonNull Collection<?> values) {
+        DocIdBitmap result = new DocIdBitmap();
+        for (Object value : values) {
+            DocIdBitmap ids = this.valueToIds.get(value);
+            if (ids != null) {
+                result.or(ids);
+            }
+        }
+        return result;
+    }
+
+    private static DocIdBitmap prefixBitmap(@NonNull NavigableMap<String, DocIdBitmap> postings, @NonNull String prefix) {
+        DocIdBitmap result = new DocIdBitmap();
+        for (DocIdBitmap ids : prefixRange(postings, prefix).values()) {
+            result.or(ids);
+        }
+        return result;
+    }
+
+    private static NavigableMap<String, DocIdBitmap> prefixRange(@NonNull NavigableMap<String, DocIdBitmap> postings, @NonNull String prefix) {
+        if (prefix.isEmpty()) {
+            return postings;
+        }
+        // strings with the prefix sort before the prefix with its last incrementable char incremented
+        int last = prefix.length() - 1;
+        while ((last >= 0) && (prefix.charAt(last) == Character.MAX_VALUE)) {
+            last--;
+        }
+        if (last < 0) {
+            return postings.tailMap(prefix, true);
+        }
+        String end = prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+        return postings.subMap(prefix, true, end, false);
+    }
+
+    private DocIdBitmap nullBitmap() {
+        return this.nullIds.copy();
+    }
+
+    private DocIdBitmap notNullBitmap() {
+        return this.valueIds.copy();
+    }
+
+    private DocIdBitmap allBitmap() {
+        DocIdBitmap result = this.valueIds.copy();
+        result.or(this.nullIds);
+        return result;
+    }
+
+    private DocIdBitmap rangeBitmap(Number min, boolean minInclusive, Number max, boolean maxInclusive) {
+        DocIdBitmap result = new DocIdBitmap();
+        this.numericIndex.collectRange(min, minInclusive, max, maxInclusive, result);
+        return result;
+    }
+
     // ===== UTILITY =====
 
     /**
      * Get the number of indexed documents.
      */
     public int size() {
-        return this.docIdToValue.size();
+        return this.valueCount;
     }
 
     /**
      * Check if the index is empty.
      */
     public boolean isEmpty() {
-        return this.docIdToValue.isEmpty();
+        return this.size() == 0;
     }
 
     /**
      * Get all document IDs in this index.
      */
     public Set<String> getAllDocIds() {
-        return new HashSet<>(this.docIdToValue.keySet());
+        return this.findNotNull();
     }
 
     /**
@@ -456,67 +968,272 @@ public class PropertyIndex {
 
     // ===== INTERNAL HELPERS =====
 
-    private void removeFromMaps(@NonNull String docId, @NonNull Object value) {
-        // Remove from equality index
-        Set<String> docIds = this.valueToDocIds.get(value);
-        if (docIds != null) {
-            docIds.remove(docId);
-            if (docIds.isEmpty()) {
-                this.valueToDocIds.remove(value);
-            }
+    private Set<String> resolve(Supplier<DocIdBitmap> query) {
+        return this.dictionary.read(() -> this.dictionary.toDocIds(query.get()));
+    }
+
+    private boolean removeFromMaps(int id) {
+        if (this.nullIds.contains(id)) {
+            this.nullIds = this.nullIds.without(id);
+            return true;
+        }
+
+        Object[] values = this.values;
+        Object value = (id < values.length) ? values[id] : null;
+        if (value == null) {
+            return false;
+        }
+        values[id] = null;
+        this.valueIds = this.valueIds.without(id);
+        this.valueCount--;
+        if (value instanceof Number) {
+            this.numberCount--;
         }
 
-        // Remove from lowercase index
+        // Remove from equality index
+        removePosting(this.valueToIds, value, id);
+
+        // Remove from string indexes
         if (value instanceof String) {
-            String lowercase = ((String) value).toLowerCase();
-            Set<String> lcDocIds = this.lowercaseToDocIds.get(lowercase);
-            if (lcDocIds != null) {
-                lcDocIds.remove(docId);
-                if (lcDocIds.isEmpty()) {
-                    this.lowercaseToDocIds.remove(lowercase);
-                }
-            }
+            this.removeString(id, (String) value);
+        }
+
+        // Remove from element index
+        if (value instanceof Collection) {
+            this.updateElements(id, (Collection<?>) value, false);
         }
 
         // Remove from numeric index
-        BigDecimal numeric = this.docIdToNumeric.remove(docId);
-        if (numeric != null) {
-            Set<String> numericDocIds = this.numericIndex.get(numeric);
-            if (numericDocIds != null) {
-                numericDocIds.remove(docId);
-                if (numericDocIds.isEmpty()) {
-                    this.numericIndex.remove(numeric);
-                }
-            }
+        this.numericIndex.remove(id, value);
+        return true;
+    }
+
+    /**
+     * @return sorted postings answering a string predicate, or null if the index cannot answer it
+     */
+    private NavigableMap<String, DocIdBitmap> stringPostings(@NonNull Predicate predicate) {
+        // string predicates match other values by their text form, which is not indexed
+        if (this.stringCount != this.valueCount) {
+            return null;
+        }
+        if (predicate instanceof StartsWithPredicate) {
+            return ((StartsWithPredicate) predicate).isIgnoreCase() ? this.lowercaseToIds : this.stringToIds;
         }
+        if (predicate instanceof EndsWithPredicate) {
+            return ((EndsWithPredicate) predicate).isIgnoreCase() ? this.reversedLowercaseToIds : this.reversedToIds;
+        }
+        return null;
     }
 
     /**
-     * Convert a value to BigDecimal for numeric indexing.
-     * Returns null if the value is not numeric.
+     * @return operand of a string predicate as a key prefix of {@link #stringPostings(Predicate)}
      */
-    private BigDecimal toNumeric(Object value) {
-        if (value == null) {
+    private String stringOperand(@NonNull Predicate predicate) {
+        String operand = (String) ((SimplePredicate) predicate).getRightOperand();
+        if (predicate instanceof StartsWithPredicate) {
+            return ((StartsWithPredicate) predicate).isIgnoreCase() ? operand.toLowerCase() : operand;
+        }
+        return ((EndsWithPredicate) predicate).isIgnoreCase() ? reverse(operand.toLowerCase()) : reverse(operand);
+    }
+
+    /**
+     * @return postings of the trigrams of a substring predicate operand (empty bitmaps for
+     * unknown trigrams) ordered by size, or null if the index cannot answer it
+     */
+    private List<DocIdBitmap> trigramPostings(@NonNull Predicate predicate) {
+        if ((this.trigramToIds == null) || !(predicate instanceof ContainsPredicate) || (this.stringCount != this.valueCount)) {
             return null;
         }
-        if (value instanceof BigDecimal) {
-            return (BigDecimal) value;
+        // both cases are looked up lowercase, case-sensitive matches are verified by the caller
+        Set<String> trigrams = trigrams(((String) ((ContainsPredicate) predicate).getRightOperand()).toLowerCase());
+        if (trigrams.isEmpty()) {
+            return null;
         }
-        if (value instanceof Number) {
-            // Use string conversion to preserve precision
-            return new BigDecimal(value.toString());
+        List<DocIdBitmap> postings = new ArrayList<>(trigrams.size());
+        for (String trigram : trigrams) {
+            DocIdBitmap ids = this.trigramToIds.get(trigram);
+            postings.add((ids == null) ? new DocIdBitmap() : ids);
         }
-        // Try parsing string as number
-        if (value instanceof String) {
-            try {
-                return new BigDecimal((String) value);
-            } catch (NumberFormatException e) {
+        postings.sort(Comparator.comparingInt(DocIdBitmap::cardinality));
+        return postings;
+    }
+
+    /**
+     * Distinct trigrams of a lowercase string. Chars are additionally folded one by one,
+     * so that context dependent lowercasing (final sigma) cannot hide a case-sensitive match.
+     */
+    private static Set<String> trigrams(@NonNull String lowercase) {
+        if (lowercase.length() < 3) {
+            return Collections.emptySet();
+        }
+        char[] folded = new char[lowercase.length()];
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(Character.toUpperCase(lowercase.charAt(i)));
+        }
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i <= (folded.length - 3); i++) {
+            trigrams.add(new String(folded, i, 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * @return postings of the operands of an array element predicate, or null if the index cannot answer it
+     */
+    private List<DocIdBitmap> elementPostings(@NonNull Predicate predicate) {
+        Collection<?> operands;
+        if (predicate instanceof ArrayContainsPredicate) {
+            operands = Collections.singletonList(((ArrayContainsPredicate) predicate).getRightOperand());
+        } else if (predicate instanceof ArrayContainsAnyPredicate) {
+            operands = (Collection<?>) ((ArrayContainsAnyPredicate) predicate).getRightOperand();
+        } else {
+            return null;
+        }
+
+        List<DocIdBitmap> postings = new ArrayList<>(operands.size());
+        for (Object operand : operands) {
+            Object key = elementKey(operand);
+            // elements equal operands of other types (e.g. "1" and 1), answer only if all elements are of the operand kind
+            if ((key == null) || (this.elementKindCount(key) != this.elementCount)) {
                 return null;
             }
+            DocIdBitmap ids = this.elementToIds.get(key);
+            // NaN equals nothing
+            if ((ids != null) && !((key instanceof Double) && ((Double) key).isNaN())) {
+                postings.add(ids);
+            }
+        }
+        return postings;
+    }
+
+    private void updateElements(int id, @NonNull Collection<?> elements, boolean add) {
+        Set<Object> keys = new HashSet<>();
+        int others = 0;
+        for (Object element : elements) {
+            Object key = elementKey(element);
+            if (key != null) {
+                keys.add(key);
+            } else if (element != null) {
+                others++;
+            }
+        }
+
+        int delta = add ? 1 : -1;
+        this.elementCount += delta * (keys.size() + others);
+        for (Object key : keys) {
+            if (key instanceof String) {
+                this.stringElementCount += delta;
+            } else if (key instanceof Double) {
+                this.numberElementCount += delta;
+            } else {
+                this.booleanElementCount += delta;
+            }
+            if (add) {
+                addPosting(this.elementToIds, key, id);
+            } else {
+                removePosting(this.elementToIds, key, id);
+            }
+        }
+    }
+
+    private int elementKindCount(@NonNull Object key) {
+        if (key instanceof String) {
+            return this.stringElementCount;
+        }
+        if (key instanceof Double) {
+            return this.numberElementCount;
+        }
+        return this.booleanElementCount;
+    }
+
+    /**
+     * Key of a collection element (or array predicate operand) in the element postings,
+     * equal keys for values equal by {@link eu.okaeri.persistence.document.DocumentValueUtils#compareEquals}
+     * within a kind. Numbers are compared as doubles, UUIDs as strings.
+     *
+     * @return String, Double or Boolean key, or null if the value is not indexed
+     */
+    private static Object elementKey(Object value) {
+        if ((value instanceof String) || (value instanceof Boolean)) {
+            return value;
+        }
+        if (value instanceof UUID) {
+            return value.toString();
+        }
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            // == treats -0.0 and 0.0 as equal
+            return (number == 0) ? 0.0d : number;
         }
         return null;
     }
 
+    private void addString(int id, @NonNull String value) {
+        this.stringCount++;
+        String lowercase = value.toLowerCase();
+        addPosting(this.stringToIds, value, id);
+        addPosting(this.lowercaseToIds, lowercase, id);
+        if (this.reversedToIds != null) {
+            addPosting(this.reversedToIds, reverse(value), id);
+            addPosting(this.reversedLowercaseToIds, reverse(lowercase), id);
+        }
+        if (this.trigramToIds != null) {
+            for (String trigram : trigrams(lowercase)) {
+                addPosting(this.trigramToIds, trigram, id);
+            }
+        }
+    }
+
+    private void removeString(int id, @NonNull String value) {
+        this.stringCount--;
+        String lowercase = value.toLowerCase();
+        removePosting(this.stringToIds, value, id);
+        removePosting(this.lowercaseToIds, lowercase, id);
+        if (this.reversedToIds != null) {
+            removePosting(this.reversedToIds, reverse(value), id);
+            removePosting(this.reversedLowercaseToIds, reverse(lowercase), id);
+        }
+        if (this.trigramToIds != null) {
+            for (String trigram : trigrams(lowercase)) {
+                removePosting(this.trigramToIds, trigram, id);
+            }
+        }
+    }
+
+    private static String reverse(@NonNull String value) {
+        return new StringBuilder(value).reverse().toString();
+    }
+
+    private static <K> void addPosting(@NonNull Map<K, DocIdBitmap> postings, @NonNull K key, int id) {
+        DocIdBitmap ids = postings.get(key);
+        postings.put(key, (ids == null) ? DocIdBitmap.of(id) : ids.with(id));
+    }
+
+    private static <K> void removePosting(@NonNull Map<K, DocIdBitmap> postings, @NonNull K key, int id) {
+        DocIdBitmap ids = postings.get(key);
+        if (ids == null) {
+            return;
+        }
+        ids = ids.without(id);
+        if (ids.isEmpty()) {
+            postings.remove(key);
+        } else {
+            postings.put(key, ids);
+        }
+    }
+
+    /**
+     * Replace the specialized numeric index with BigDecimal keys
+     * after encountering a value it cannot represent. Rebuilds from
+     * all currently stored values (including the one being added).
+     */
+    private void promoteNumericIndex() {
+        NumericRangeIndex promoted = new DecimalRangeIndex();
+        Object[] values = this.values;
+        this.valueIds.forEach(id -> promoted.add(id, values[id]));
+        this.numericIndex = promoted;
+    }
+
     // ===== SERIALIZATION SUPPORT =====
 
     /**
@@ -527,7 +1244,11 @@ public class PropertyIndex {
         Map<String, Object> data = new HashMap<>();
         // Store docId -> value mappings
         Map<String, Object> entries = new HashMap<>();
-        entries.putAll(this.docIdToValue);
+        this.dictionary.read(() -> {
+            Object[] values = this.values;
+            this.valueIds.forEach(id -> entries.put(this.dictionary.docIdOf(id), values[id]));
+            return null;
+        });
         data.put("entries", entries);
         return data;
     }
@@ -37,8 +37,11 @@ public class EagerRefSerializer implements ObjectSerializer<EagerRef<? extends D
         if (subtype == null) throw new IllegalArgumentException("cannot create LazyRef from " + genericsDeclaration);
         Class<? extends Document> type = (Class<? extends Document>) subtype.getType();
 
+        // Fetched together with the batch of documents if there is one
         EagerRef<Document> ref = new EagerRef<>(id, collection, type, null, false, this.persistence);
-        ref.fetch();
+        if (!RefBatch.register(ref)) {
+            ref.fetch();
+        }
 
         return ref;
     }
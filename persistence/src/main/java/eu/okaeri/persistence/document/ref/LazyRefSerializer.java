@@ -37,6 +37,9 @@ public class LazyRefSerializer implements ObjectSerializer<Ref<? extends Documen
         if (subtype == null) throw new IllegalArgumentException("cannot create LazyRef from " + genericsDeclaration);
         Class<? extends Document> type = (Class<? extends Document>) subtype.getType();
 
-        return new LazyRef<>(id, collection, type, null, false, this.persistence);
+        LazyRef<Document> ref = new LazyRef<>(id, collection, type, null, false, this.persistence);
+        RefBatch.register(ref);
+
+        return ref;
     }
 }
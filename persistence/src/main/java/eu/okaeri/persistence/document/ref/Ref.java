@@ -4,12 +4,9 @@ import eu.okaeri.persistence.PersistenceCollection;
 import eu.okaeri.persistence.PersistencePath;
 import eu.okaeri.persistence.document.Document;
 import eu.okaeri.persistence.document.DocumentPersistence;
-import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.*;
 
-import java.util.NoSuchElementException;
-import java.util.Optional;
+import java.util.*;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
@@ -22,11 +19,13 @@ import java.util.logging.Logger;
  *   <li>{@link EagerRef} - fetches referenced document immediately during deserialization</li>
  *   <li>{@link LazyRef} - defers fetch until first access via {@link #get()}</li>
  * </ul>
+ * <p>
+ * References deserialized together (e.g. from the results of a single find) are
+ * collected into a {@link RefBatch} and fetched with a single read per collection.
  *
  * @param <T> the type of the referenced document
  */
 @Data
-@AllArgsConstructor(access = AccessLevel.PROTECTED)
 public abstract class Ref<T extends Document> {
 
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("okaeri.platform.debug", "false"));
@@ -40,6 +39,21 @@ public abstract class Ref<T extends Document> {
     private boolean fetched;
     private DocumentPersistence persistence;
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.PACKAGE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private RefBatch batch;
+
+    protected Ref(@NonNull PersistencePath id, @NonNull PersistencePath collection, @NonNull Class<? extends Document> valueType, T value, boolean fetched, @NonNull DocumentPersistence persistence) {
+        this.id = id;
+        this.collection = collection;
+        this.valueType = valueType;
+        this.value = value;
+        this.fetched = fetched;
+        this.persistence = persistence;
+    }
+
     /**
      * Returns an {@code Optional} containing the referenced document if present, otherwise an empty {@code Optional}.
      * If the document has not been fetched yet, triggers a fetch from persistence.
@@ -90,27 +104,73 @@ public abstract class Ref<T extends Document> {
      * If the document has already been fetched, returns the cached value without fetching again.
      * <p>
      * This method is typically called automatically by {@link #get()} when needed.
-     * Direct use is rarely necessary.
+     * Direct use is rarely necessary. References deserialized in the same batch
+     * and pointing to the same collection are fetched together, see {@link RefBatch}.
      *
      * @return the referenced document, or {@code null} if not found in persistence
      */
-    @SuppressWarnings("unchecked")
     public T fetch() {
 
+        RefBatch batch = this.batch;
+        if ((batch != null) && !this.fetched) {
+            batch.fetch(this);
+            return this.value;
+        }
+
         long start = System.currentTimeMillis();
         PersistenceCollection collection = PersistenceCollection.of(this.collection.getValue());
-        this.value = (T) this.persistence.read(collection, this.id).orElse(null);
-
-        if (this.value != null) {
-            this.value = (T) this.value.into(this.valueType);
-        }
+        this.resolve(this.persistence.read(collection, this.id).orElse(null));
 
         if (DEBUG) {
             long took = System.currentTimeMillis() - start;
             LOGGER.info("Fetched document reference for " + this.collection.getValue() + " [" + this.id.getValue() + "]: " + took + " ms");
         }
 
-        this.fetched = true;
         return this.value;
     }
+
+    /**
+     * Fetches all unfetched references with a single read per collection.
+     * Already fetched references are left untouched.
+     *
+     * @param refs references to fetch
+     */
+    public static void fetchAll(@NonNull Iterable<? extends Ref<?>> refs) {
+
+        Map<DocumentPersistence, Map<PersistencePath, List<Ref<?>>>> groups = new LinkedHashMap<>();
+        for (Ref<?> ref : refs) {
+            if (ref.isFetched()) {
+                continue;
+            }
+            groups.computeIfAbsent(ref.getPersistence(), persistence -> new LinkedHashMap<>())
+                .computeIfAbsent(ref.getCollection(), collection -> new ArrayList<>())
+                .add(ref);
+        }
+
+        for (Map.Entry<DocumentPersistence, Map<PersistencePath, List<Ref<?>>>> persistenceEntry : groups.entrySet()) {
+            for (Map.Entry<PersistencePath, List<Ref<?>>> collectionEntry : persistenceEntry.getValue().entrySet()) {
+
+                long start = System.currentTimeMillis();
+                List<Ref<?>> group = collectionEntry.getValue();
+                Set<PersistencePath> ids = new LinkedHashSet<>();
+                group.forEach(ref -> ids.add(ref.getId()));
+
+                PersistenceCollection collection = PersistenceCollection.of(collectionEntry.getKey().getValue());
+                Map<PersistencePath, Document> documents = persistenceEntry.getKey().read(collection, ids);
+                group.forEach(ref -> ref.resolve(documents.get(ref.getId())));
+
+                if (DEBUG) {
+                    long took = System.currentTimeMillis() - start;
+                    LOGGER.info("Fetched " + ids.size() + " document references for " + collection.getValue() + ": " + took + " ms");
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resolve(Document document) {
+        this.value = (document == null) ? null : (T) document.into(this.valueType);
+        this.fetched = true;
+        this.batch = null;
+    }
 }
@@ -0,0 +1,158 @@
+package eu.okaeri.persistence.document.ref;
+
+import lombok.NonNull;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Collects references deserialized while a batch of documents is materialized,
+ * so that they can be resolved with a single read per collection.
+ * <p>
+ * {@link EagerRef}s are resolved when the batch is closed, before the documents
+ * are returned. {@link LazyRef}s stay lazy, but fetching one of them fetches up to
+ * 100 unfetched references of the batch pointing to the same collection. Once closed,
+ * the batch holds only its unfetched lazy references and can be fetched from any thread.
+ * <p>
+ * Batches are bound to the thread materializing the documents and can be nested,
+ * e.g. resolving references opens a batch for the referenced documents.
+ */
+public final class RefBatch {
+
+    private static final ThreadLocal<RefBatch> CURRENT = new ThreadLocal<>();
+    private static final int STREAM_CHUNK_SIZE = 100;
+    private static final int FETCH_GROUP_SIZE = 100;
+
+    private final List<Ref<?>> refs = new ArrayList<>();
+
+    private RefBatch() {
+    }
+
+    /**
+     * Register a reference in the batch of the current thread.
+     *
+     * @param ref deserialized reference
+     * @return true if the reference was added to a batch, false if there is no batch open
+     */
+    static boolean register(@NonNull Ref<?> ref) {
+        RefBatch batch = CURRENT.get();
+        if (batch == null) {
+            return false;
+        }
+        ref.setBatch(batch);
+        synchronized (batch) {
+            batch.refs.add(ref);
+        }
+        return true;
+    }
+
+    /**
+     * Fetch an unfetched reference of this batch together with other unfetched
+     * references to the same collection, up to 100 in total.
+     */
+    synchronized void fetch(@NonNull Ref<?> ref) {
+        if (ref.isFetched()) {
+            return; // fetched by another thread meanwhile
+        }
+        List<Ref<?>> group = new ArrayList<>();
+        group.add(ref);
+        for (Ref<?> other : this.refs) {
+            if (group.size() == FETCH_GROUP_SIZE) {
+                break;
+            }
+            if ((other != ref) && !other.isFetched() && (other.getPersistence() == ref.getPersistence()) && other.getCollection().equals(ref.getCollection())) {
+                group.add(other);
+            }
+        }
+        Ref.fetchAll(group);
+        // fetched references are released from the batch, and the batch from them
+        this.refs.removeIf(Ref::isFetched);
+    }
+
+    /**
+     * Materialize documents with the references deserialized meanwhile collected into a batch.
+     *
+     * @param supplier reads the documents
+     * @param <T>      type of the result
+     * @return result of the supplier, with its eager references resolved
+     */
+    public static <T> T collect(@NonNull Supplier<T> supplier) {
+
+        RefBatch previous = CURRENT.get();
+        RefBatch batch = new RefBatch();
+        CURRENT.set(batch);
+
+        T result;
+        try {
+            result = supplier.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+
+        batch.resolveEager();
+        return result;
+    }
+
+    /**
+     * Materialize a stream of documents in batches. Elements are read one by one until
+     * a document turns out to contain references, then chunks of documents are read
+     * ahead so that their references can be resolved together.
+     *
+     * @param supplier opens the stream
+     * @param <T>      type of the elements
+     * @return stream with eager references of its elements resolved
+     */
+    public static <T> Stream<T> stream(@NonNull Supplier<Stream<T>> supplier) {
+
+        Stream<T> stream = collect(supplier);
+        Iterator<T> iterator = stream.iterator();
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {
+
+            private final Deque<T> buffer = new ArrayDeque<>();
+            private boolean chunked;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (this.buffer.isEmpty()) {
+                    int size = this.chunked ? STREAM_CHUNK_SIZE : 1;
+                    this.chunked = collect(() -> {
+                        for (int i = 0; (i < size) && iterator.hasNext(); i++) {
+                            this.buffer.add(iterator.next());
+                        }
+                        return !CURRENT.get().refs.isEmpty();
+                    }) || this.chunked;
+                }
+                T next = this.buffer.poll();
+                if (next == null) {
+                    return false;
+                }
+                action.accept(next);
+                return true;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(stream::close);
+    }
+
+    private synchronized void resolveEager() {
+        List<Ref<?>> eager = new ArrayList<>();
+        for (Ref<?> ref : this.refs) {
+            if ((ref instanceof EagerRef) && !ref.isFetched()) {
+                eager.add(ref);
+            }
+        }
+        if (!eager.isEmpty()) {
+            Ref.fetchAll(eager);
+        }
+        // keep only the lazy references to fetch later
+        this.refs.removeIf(Ref::isFetched);
+    }
+}
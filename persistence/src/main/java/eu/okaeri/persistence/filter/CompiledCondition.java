@@ -0,0 +1,123 @@
+package eu.okaeri.persistence.filter;
+
+import eu.okaeri.configs.configurer.Configurer;
+import eu.okaeri.persistence.document.Document;
+import eu.okaeri.persistence.document.DocumentPathAccessor;
+import eu.okaeri.persistence.filter.condition.Condition;
+import eu.okaeri.persistence.filter.condition.LogicalOperator;
+import eu.okaeri.persistence.filter.predicate.Predicate;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Condition compiled for repeated in-memory evaluation against live documents.
+ * <p>
+ * Paths are resolved once into {@link DocumentPathAccessor}s, so a check reads only
+ * the referenced fields instead of converting every document with {@link Document#asMap}.
+ * Evaluation results are the same as {@link Condition#check} on the document map.
+ */
+public class CompiledCondition {
+
+    @Getter
+    private final Condition condition;
+    private final Configurer configurer;
+    private final Node root;
+
+    private CompiledCondition(@NonNull Condition condition, @NonNull Configurer configurer) {
+        this.condition = condition;
+        this.configurer = configurer;
+        this.root = compile(condition);
+    }
+
+    /**
+     * Compile a condition.
+     *
+     * @param condition  condition to compile
+     * @param configurer configurer used for documents that cannot be read directly
+     * @return reusable compiled condition
+     */
+    public static CompiledCondition compile(@NonNull Condition condition, @NonNull Configurer configurer) {
+        return new CompiledCondition(condition, configurer);
+    }
+
+    /**
+     * Evaluate the condition against a document.
+     */
+    public boolean test(@NonNull Document document) {
+        return this.root.test(new Context(document));
+    }
+
+    private static Node compile(@NonNull Predicate predicate) {
+
+        // Bare predicate checks the document itself
+        if (!(predicate instanceof Condition)) {
+            return context -> predicate.check(context.asMap());
+        }
+
+        Condition condition = (Condition) predicate;
+        Predicate[] predicates = condition.getPredicates();
+        boolean and = isAnd(condition.getOperator());
+
+        // Path condition checks its predicates against the value at the path
+        if (condition.getPath() != null) {
+            DocumentPathAccessor accessor = DocumentPathAccessor.of(condition.getPath());
+            return context -> {
+                Object value = accessor.read(context.document, context::asMap);
+                for (Predicate child : predicates) {
+                    if (child.check(value) != and) {
+                        return !and;
+                    }
+                }
+                return and;
+            };
+        }
+
+        // Logical combination of conditions on the document
+        Node[] children = new Node[predicates.length];
+        for (int i = 0; i < predicates.length; i++) {
+            children[i] = compile(predicates[i]);
+        }
+        return context -> {
+            for (Node child : children) {
+                if (child.test(context) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        };
+    }
+
+    private static boolean isAnd(LogicalOperator operator) {
+        if (operator == LogicalOperator.AND) {
+            return true;
+        }
+        if (operator == LogicalOperator.OR) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unsupported operator: " + operator);
+    }
+
+    private interface Node {
+        boolean test(Context context);
+    }
+
+    /**
+     * Document being evaluated, with the simplified map computed on first use.
+     */
+    @RequiredArgsConstructor
+    private class Context {
+
+        private final Document document;
+        private Map<String, Object> map;
+
+        private Map<String, Object> asMap() {
+            if (this.map == null) {
+                this.map = this.document.asMap(CompiledCondition.this.configurer, true);
+            }
+            return this.map;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package eu.okaeri.persistence.filter;
+
+import eu.okaeri.persistence.FilterablePersistence;
+import eu.okaeri.persistence.PersistenceCollection;
+import eu.okaeri.persistence.PersistenceEntity;
+import eu.okaeri.persistence.document.Document;
+import eu.okaeri.persistence.filter.condition.Condition;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.stream.Stream;
+
+/**
+ * Prepared query executed by binding the arguments into regular filters.
+ */
+@RequiredArgsConstructor
+class FilterPreparedQuery implements PreparedQuery {
+
+    private final @NonNull FilterablePersistence persistence;
+    private final @NonNull PersistenceCollection collection;
+    private final @NonNull FindFilter template;
+
+    @Override
+    public Stream<PersistenceEntity<Document>> find(@NonNull Object... args) {
+        return this.persistence.find(this.collection, this.bind(args));
+    }
+
+    @Override
+    public long count(@NonNull Object... args) {
+        return this.persistence.count(this.collection, this.bind(args));
+    }
+
+    @Override
+    public boolean exists(@NonNull Object... args) {
+        if (this.template.getWhere() == null) {
+            return this.persistence.count(this.collection, FindFilter.builder().limit(1).build()) > 0;
+        }
+        return this.persistence.exists(this.collection, QueryParameter.bind(this.template.getWhere(), args));
+    }
+
+    @Override
+    public long delete(@NonNull Object... args) {
+        if (this.template.getWhere() == null) {
+            throw new IllegalArgumentException("DeleteFilter requires WHERE condition - use deleteAll() instead");
+        }
+        return this.persistence.delete(this.collection, DeleteFilter.builder()
+            .where(QueryParameter.bind(this.template.getWhere(), args))
+            .build());
+    }
+
+    private FindFilter bind(Object[] args) {
+        Condition where = this.template.getWhere();
+        return (where == null)
+            ? this.template
+            : new FindFilter(QueryParameter.bind(where, args), this.template.getLimit(), this.template.getSkip(), this.template.getOrderBy(), this.template.getProjection());
+    }
+}
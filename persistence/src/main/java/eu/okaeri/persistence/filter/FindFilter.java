@@ -12,6 +12,7 @@ public class FindFilter {
     private final int limit;
     private final int skip;
     private final List<OrderBy> orderBy;
+    private final Projection projection;
 
     public static FindFilterBuilder builder() {
         return new FindFilterBuilder();
@@ -25,7 +26,22 @@ public class FindFilter {
         return this.limit > 0;
     }
 
+    /**
+     * Apply SKIP and LIMIT to a number of matching entities.
+     *
+     * @param matched number of entities matching the WHERE condition
+     * @return number of entities the filter would return
+     */
+    public long window(long matched) {
+        long count = Math.max(0, matched - Math.max(0, this.skip));
+        return this.hasLimit() ? Math.min(count, this.limit) : count;
+    }
+
     public boolean hasOrderBy() {
         return (this.orderBy != null) && !this.orderBy.isEmpty();
     }
+
+    public boolean hasProjection() {
+        return (this.projection != null) && !this.projection.getPaths().isEmpty();
+    }
 }
@@ -15,6 +15,7 @@ public class FindFilterBuilder {
     private int limit;
     private int skip;
     private List<OrderBy> orderBy;
+    private Projection projection;
 
     public FindFilterBuilder where(@NonNull Condition where) {
         this.where = where;
@@ -39,7 +40,26 @@ public class FindFilterBuilder {
         return this;
     }
 
+    public FindFilterBuilder projection(@NonNull Projection projection) {
+        this.projection = projection;
+        return this;
+    }
+
+    /**
+     * Return only the given fields, see {@link Projection#include(String...)}.
+     */
+    public FindFilterBuilder include(@NonNull String... paths) {
+        return this.projection(Projection.include(paths));
+    }
+
+    /**
+     * Return all but the given fields, see {@link Projection#exclude(String...)}.
+     */
+    public FindFilterBuilder exclude(@NonNull String... paths) {
+        return this.projection(Projection.exclude(paths));
+    }
+
     public FindFilter build() {
-        return new FindFilter(this.where, this.limit, this.skip, this.orderBy);
+        return new FindFilter(this.where, this.limit, this.skip, this.orderBy, this.projection);
     }
 }
@@ -3,17 +3,19 @@ package eu.okaeri.persistence.filter;
 import eu.okaeri.configs.configurer.Configurer;
 import eu.okaeri.persistence.PersistenceEntity;
 import eu.okaeri.persistence.document.Document;
+import eu.okaeri.persistence.document.DocumentPathAccessor;
+import eu.okaeri.persistence.document.index.DocIdBitmap;
+import eu.okaeri.persistence.document.index.PropertyIndex;
 import eu.okaeri.persistence.filter.condition.Condition;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static eu.okaeri.persistence.document.DocumentValueUtils.compareForSort;
-import static eu.okaeri.persistence.document.DocumentValueUtils.extractValue;
 
 /**
  * Evaluates filters in-memory for backends that don't support native query translation.
@@ -30,15 +32,18 @@ public class InMemoryFilterEvaluator {
     public Stream<PersistenceEntity<Document>> applyFilter(@NonNull Stream<PersistenceEntity<Document>> stream, @NonNull FindFilter filter) {
         // Apply WHERE clause
         if (filter.getWhere() != null) {
-            stream = stream.filter(entity -> this.evaluateCondition(filter.getWhere(), entity.getValue()));
+            CompiledCondition where = this.compile(filter.getWhere());
+            stream = stream.filter(entity -> where.test(entity.getValue()));
         }
 
-        // Apply ORDER BY
+        // Apply ORDER BY (only the first skip + limit are kept when limited)
         if (filter.hasOrderBy()) {
-            Comparator<PersistenceEntity<Document>> comparator = this.buildComparator(filter.getOrderBy());
-            if (comparator != null) {
-                stream = stream.sorted(comparator);
-            }
+            SortOrder order = new SortOrder(filter.getOrderBy());
+            Stream<SortKey> keys = stream.map(order::key);
+            keys = filter.hasLimit()
+                ? topK(keys, order, pageEnd(filter))
+                : keys.sorted(order);
+            stream = keys.map(SortKey::getEntity);
         }
 
         // Apply SKIP
@@ -55,49 +60,200 @@ public class InMemoryFilterEvaluator {
     }
 
     /**
-     * Evaluate a condition against a document.
+     * Apply ORDER BY, SKIP, LIMIT by walking the index of the first ORDER BY field
+     * instead of sorting all candidates. Documents are loaded in index order until the
+     * page is filled, remaining ORDER BY fields only sort documents sharing a value.
+     * <p>
+     * Used only for limited queries, and only when the page is likely to be filled before
+     * visiting more documents than there are candidates (a selective WHERE is cheaper to sort).
+     *
+     * @param sortIndex  index of the first ORDER BY field
+     * @param candidates IDs matching the indexed part of WHERE, or null if all documents are candidates
+     * @param condition  condition to check on loaded candidates, or null
+     * @param loader     loads a document by ID, returns null if missing
+     * @param filter     the find filter
+     * @return ordered page, or empty if the index cannot be used for this query
      */
-    public boolean evaluateCondition(@NonNull Condition condition, @NonNull Document document) {
-        Map<String, Object> docMap = document.asMap(this.configurer, true);
+    public Optional<Stream<PersistenceEntity<Document>>> applyIndexOrder(@NonNull PropertyIndex sortIndex, DocIdBitmap candidates, Condition condition,
+                                                                         @NonNull Function<String, PersistenceEntity<Document>> loader, @NonNull FindFilter filter) {
+        if (!filter.hasOrderBy() || !filter.hasLimit()) {
+            return Optional.empty();
+        }
 
-        if (condition.getPath() != null) {
-            Object value = extractValue(docMap, condition.getPath().toParts());
-            return condition.check(value);
+        // Walk visits about pageEnd * total / candidates documents, sorting the candidates costs about candidates
+        long pageEnd = pageEnd(filter);
+        if (candidates != null) {
+            long candidateCount = candidates.cardinality();
+            long total = (long) sortIndex.size() + sortIndex.nullCount();
+            if ((candidateCount * candidateCount) <= (pageEnd * total)) {
+                return Optional.empty();
+            }
         }
 
-        // Top-level AND/OR without specific path
-        return condition.check(docMap);
+        CompiledCondition compiled = (condition == null) ? null : this.compile(condition);
+        List<OrderBy> orderBys = filter.getOrderBy();
+        SortOrder tieOrder = (orderBys.size() > 1) ? new SortOrder(orderBys.subList(1, orderBys.size())) : null;
+        boolean descending = orderBys.get(0).getDirection() == OrderDirection.DESC;
+        List<PersistenceEntity<Document>> page = new ArrayList<>();
+        // a document updated during the walk may be visited twice
+        DocIdBitmap visited = new DocIdBitmap();
+
+        boolean ordered = sortIndex.forEachOrdered(descending, ids -> {
+            List<SortKey> group = new ArrayList<>();
+            ids.forEach(id -> {
+                if (((candidates != null) && !candidates.contains(id)) || !visited.add(id)) {
+                    return;
+                }
+                String docId = sortIndex.getDictionary().docIdOf(id);
+                PersistenceEntity<Document> entity = (docId == null) ? null : loader.apply(docId);
+                if ((entity == null) || ((compiled != null) && !compiled.test(entity.getValue()))) {
+                    return;
+                }
+                group.add((tieOrder == null) ? new SortKey(entity, null, null) : tieOrder.key(entity));
+            });
+            if (tieOrder != null) {
+                group.sort(tieOrder);
+            }
+            group.forEach(key -> page.add(key.getEntity()));
+            return page.size() < pageEnd;
+        });
+
+        if (!ordered) {
+            return Optional.empty();
+        }
+
+        Stream<PersistenceEntity<Document>> stream = page.stream();
+        if (filter.hasSkip()) {
+            stream = stream.skip(filter.getSkip());
+        }
+        return Optional.of(stream.limit(filter.getLimit()));
+    }
+
+    /**
+     * Compile a condition for evaluation against many documents.
+     * Prefer this over {@link #evaluateCondition(Condition, Document)} when filtering streams.
+     */
+    public CompiledCondition compile(@NonNull Condition condition) {
+        return CompiledCondition.compile(condition, this.configurer);
+    }
+
+    /**
+     * Evaluate a condition against a document.
+     */
+    public boolean evaluateCondition(@NonNull Condition condition, @NonNull Document document) {
+        return this.compile(condition).test(document);
     }
 
     /**
      * Build a comparator for ORDER BY clauses.
+     * Sort values are extracted on every comparison, sorting in {@link #applyFilter}
+     * extracts them once per document instead.
      */
     protected Comparator<PersistenceEntity<Document>> buildComparator(@NonNull List<OrderBy> orderBys) {
         if (orderBys.isEmpty()) {
             return null;
         }
+        SortOrder order = new SortOrder(orderBys);
+        return (e1, e2) -> order.compare(order.key(e1), order.key(e2));
+    }
 
-        Comparator<PersistenceEntity<Document>> comparator = null;
+    /**
+     * ORDER BY clauses compiled for extracting {@link SortKey}s.
+     */
+    private class SortOrder implements Comparator<SortKey> {
 
-        for (OrderBy orderBy : orderBys) {
-            Comparator<PersistenceEntity<Document>> fieldComparator = (e1, e2) -> {
-                Map<String, Object> map1 = e1.getValue().asMap(this.configurer, true);
-                Map<String, Object> map2 = e2.getValue().asMap(this.configurer, true);
+        private final DocumentPathAccessor[] accessors;
+        private final boolean[] descending;
 
-                Object val1 = extractValue(map1, orderBy.getPath().toParts());
-                Object val2 = extractValue(map2, orderBy.getPath().toParts());
+        private SortOrder(@NonNull List<OrderBy> orderBys) {
+            this.accessors = new DocumentPathAccessor[orderBys.size()];
+            this.descending = new boolean[orderBys.size()];
+            for (int i = 0; i < orderBys.size(); i++) {
+                this.accessors[i] = DocumentPathAccessor.of(orderBys.get(i).getPath());
+                this.descending[i] = orderBys.get(i).getDirection() == OrderDirection.DESC;
+            }
+        }
 
-                int cmp = compareForSort(val1, val2);
-                return (orderBy.getDirection() == OrderDirection.DESC) ? -cmp : cmp;
-            };
+        @SuppressWarnings("unchecked")
+        private SortKey key(@NonNull PersistenceEntity<Document> entity) {
+            Document document = entity.getValue();
+            Object[] values = new Object[this.accessors.length];
+            double[] numbers = new double[this.accessors.length];
+            Map<String, Object>[] map = new Map[1];
+            for (int i = 0; i < this.accessors.length; i++) {
+                values[i] = this.accessors[i].read(document, () -> (map[0] != null)
+                    ? map[0]
+                    : (map[0] = document.asMap(InMemoryFilterEvaluator.this.configurer, true)));
+                if (values[i] instanceof Number) {
+                    numbers[i] = ((Number) values[i]).doubleValue();
+                }
+            }
+            return new SortKey(entity, values, numbers);
+        }
 
-            if (comparator == null) {
-                comparator = fieldComparator;
-            } else {
-                comparator = comparator.thenComparing(fieldComparator);
+        @Override
+        public int compare(SortKey key1, SortKey key2) {
+            for (int i = 0; i < this.accessors.length; i++) {
+                // same as compareForSort for two numbers, without unboxing on every comparison
+                int cmp = ((key1.values[i] instanceof Number) && (key2.values[i] instanceof Number))
+                    ? Double.compare(key1.numbers[i], key2.numbers[i])
+                    : compareForSort(key1.values[i], key2.values[i]);
+                if (cmp != 0) {
+                    return this.descending[i] ? -cmp : cmp;
+                }
             }
+            return 0;
         }
+    }
+
+    /**
+     * Entity with its sort values extracted once before sorting (decorate-sort-undecorate).
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class SortKey {
+        private final PersistenceEntity<Document> entity;
+        private final Object[] values;
+        // doubleValue() of numeric values
+        private final double[] numbers;
+    }
+
+    /**
+     * Sort keeping only the first k elements, using a bounded max-heap.
+     * Equal elements keep their encounter order, like {@link Stream#sorted(Comparator)}.
+     */
+    private static <T> Stream<T> topK(@NonNull Stream<T> stream, @NonNull Comparator<T> comparator, long k) {
+        Comparator<Ranked<T>> ranking = Comparator.<Ranked<T>, T>comparing(ranked -> ranked.value, comparator)
+            .thenComparingLong(ranked -> ranked.sequence);
+
+        // consume lazily on the terminal operation, like sorted() does
+        return Stream.of(stream)
+            .flatMap(source -> {
+                PriorityQueue<Ranked<T>> heap = new PriorityQueue<>(ranking.reversed());
+                long[] sequence = new long[1];
+                source.forEach(value -> {
+                    Ranked<T> ranked = new Ranked<>(value, sequence[0]++);
+                    if (heap.size() < k) {
+                        heap.add(ranked);
+                    } else if (ranking.compare(ranked, heap.peek()) < 0) {
+                        heap.poll();
+                        heap.add(ranked);
+                    }
+                });
+                List<Ranked<T>> sorted = new ArrayList<>(heap);
+                sorted.sort(ranking);
+                return sorted.stream().map(ranked -> ranked.value);
+            })
+            .onClose(stream::close);
+    }
+
+    private static long pageEnd(@NonNull FindFilter filter) {
+        return (long) Math.max(filter.getSkip(), 0) + filter.getLimit();
+    }
 
-        return comparator;
+    @RequiredArgsConstructor
+    private static class Ranked<T> {
+        private final T value;
+        private final long sequence;
     }
 }
@@ -1,5 +1,8 @@
 package eu.okaeri.persistence.filter;
 
+import eu.okaeri.persistence.document.index.CompoundPropertyIndex;
+import eu.okaeri.persistence.document.index.DocIdBitmap;
+import eu.okaeri.persistence.document.index.DocIdDictionary;
 import eu.okaeri.persistence.document.index.PropertyIndex;
 import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistence.filter.condition.LogicalOperator;
@@ -8,10 +11,29 @@ import lombok.Data;
 import lombok.NonNull;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Optimizes queries by analyzing conditions and determining which indexes can be used.
  * Supports complex AND/OR conditions across multiple indexed fields.
+ * Index results are combined as {@link DocIdBitmap}s, so all indexes passed
+ * to {@link #optimize(Condition, Map)} must share one {@link DocIdDictionary}.
+ * Optimize and resolve the result within {@link DocIdDictionary#read} of that dictionary,
+ * so that IDs of documents removed meanwhile are not reused before they are resolved.
+ * <p>
+ * AND conditions are planned by cost: sub-conditions are ordered by the
+ * estimated number of matches ({@link PropertyIndex#estimate(Condition)}),
+ * the most selective index is probed first and predicates matching far more
+ * documents than the current candidates are left for in-memory verification
+ * instead of being materialized. The chosen plan is available from
+ * {@link IndexResult#getPlan()} for debugging.
+ * <p>
+ * Compound indexes ({@link CompoundPropertyIndex}) answer equality conditions
+ * on a prefix of their components, optionally followed by a range on the next
+ * component, with a single seek.
+ * <p>
+ * Substring conditions on trigram indexes ({@link PropertyIndex#tryCandidatesBitmap(Condition)})
+ * yield candidates that are verified in-memory, the condition stays in the remaining condition.
  * <p>
  * Usage:
  * <pre>
@@ -27,36 +49,77 @@ import java.util.*;
  */
 public class IndexQueryOptimizer {
 
+    /**
+     * Index probes are skipped once the estimated matches of a predicate exceed
+     * the current candidate count by this factor. Verifying a candidate costs
+     * a document evaluation, materializing a posting costs a bitmap merge.
+     */
+    private static final long VERIFY_FACTOR = 32;
+
     /**
      * Result of query optimization.
      */
     @Data
     public static class IndexResult {
-        private final Set<String> docIds;
+        private final DocIdBitmap ids;
+        private final DocIdDictionary dictionary;
         private final Condition remainingCondition;
+        private final List<PlanStep> plan;
 
         /**
          * Indicates a full table scan is required (no indexes can help).
          */
         public static IndexResult fullScan() {
-            return new IndexResult(null, null);
+            return new IndexResult(null, null, null, Collections.emptyList());
         }
 
         /**
          * Indicates indexes were used successfully.
          *
-         * @param docIds    document IDs matching the indexed conditions
-         * @param remaining condition that still needs in-memory evaluation (null if fully indexed)
+         * @param ids        IDs matching the indexed conditions
+         * @param dictionary dictionary resolving the IDs
+         * @param remaining  condition that still needs in-memory evaluation (null if fully indexed)
+         */
+        public static IndexResult indexed(@NonNull DocIdBitmap ids, @NonNull DocIdDictionary dictionary, Condition remaining) {
+            return new IndexResult(ids, dictionary, remaining, Collections.emptyList());
+        }
+
+        /**
+         * Indicates indexes were used successfully following the plan.
+         *
+         * @param ids        IDs matching the indexed conditions
+         * @param dictionary dictionary resolving the IDs
+         * @param remaining  condition that still needs in-memory evaluation (null if fully indexed)
+         * @param plan       steps taken to compute the IDs
+         */
+        public static IndexResult indexed(@NonNull DocIdBitmap ids, @NonNull DocIdDictionary dictionary, Condition remaining, @NonNull List<PlanStep> plan) {
+            return new IndexResult(ids, dictionary, remaining, plan);
+        }
+
+        /**
+         * @return human-readable plan, one step per line
          */
-        public static IndexResult indexed(Set<String> docIds, Condition remaining) {
-            return new IndexResult(docIds, remaining);
+        public String explain() {
+            if (this.ids == null) {
+                return "FULL_SCAN";
+            }
+            return this.plan.stream()
+                .map(PlanStep::toString)
+                .collect(Collectors.joining("\n"));
+        }
+
+        /**
+         * @return document IDs matching the indexed conditions (null if full scan is required)
+         */
+        public Set<String> getDocIds() {
+            return (this.ids == null) ? null : this.dictionary.toDocIds(this.ids);
         }
 
         /**
          * @return true if indexes couldn't help and full scan is needed
          */
         public boolean requiresFullScan() {
-            return this.docIds == null;
+            return this.ids == null;
         }
 
         /**
@@ -67,6 +130,63 @@ public class IndexQueryOptimizer {
         }
     }
 
+    /**
+     * How a sub-condition of the query is evaluated.
+     */
+    public enum PlanAction {
+        /**
+         * Matching IDs were read from the index.
+         */
+        PROBE,
+        /**
+         * Matching IDs of multiple conditions were read from a compound index with a single seek.
+         */
+        SEEK,
+        /**
+         * Superset of matching IDs was read from the index (substring trigrams), checked in-memory.
+         */
+        CANDIDATES,
+        /**
+         * Not selective enough, checked in-memory against candidates from previous probes.
+         */
+        VERIFY,
+        /**
+         * No index can answer it, checked in-memory against candidates.
+         */
+        FILTER
+    }
+
+    /**
+     * Single step of a query plan.
+     */
+    @Data
+    public static class PlanStep {
+        private final PlanAction action;
+        private final Condition condition;
+        /**
+         * Estimated number of matching documents (-1 if unknown).
+         */
+        private final long estimate;
+
+        @Override
+        public String toString() {
+            return this.action + " " + describe(this.condition) + ((this.estimate < 0) ? "" : (" (est. " + this.estimate + ")"));
+        }
+
+        private static String describe(@NonNull Predicate predicate) {
+            if (!(predicate instanceof Condition)) {
+                return predicate.getClass().getSimpleName();
+            }
+            Condition condition = (Condition) predicate;
+            String predicates = Arrays.stream(condition.getPredicates())
+                .map(PlanStep::describe)
+                .collect(Collectors.joining(", "));
+            return (condition.getPath() == null)
+                ? (condition.getOperator() + "[" + predicates + "]")
+                : (condition.getPath().getValue() + "[" + predicates + "]");
+        }
+    }
+
     /**
      * Optimize a query using available indexes.
      *
@@ -75,23 +195,62 @@ public class IndexQueryOptimizer {
      * @return optimization result with docIds and/or remaining conditions
      */
     public IndexResult optimize(Condition condition, Map<String, PropertyIndex> indexes) {
-        if ((condition == null) || (indexes == null) || indexes.isEmpty()) {
+        return this.optimize(condition, indexes, Collections.emptyList());
+    }
+
+    /**
+     * Optimize a query using available single-field and compound indexes.
+     *
+     * @param condition       the WHERE condition to optimize
+     * @param indexes         map of field path to PropertyIndex
+     * @param compoundIndexes compound indexes of the collection
+     * @return optimization result with docIds and/or remaining conditions
+     */
+    public IndexResult optimize(Condition condition, Map<String, PropertyIndex> indexes, Collection<CompoundPropertyIndex> compoundIndexes) {
+        if ((indexes == null) || (compoundIndexes == null)) {
+            return IndexResult.fullScan();
+        }
+        if ((condition == null) || (indexes.isEmpty() && compoundIndexes.isEmpty())) {
             return IndexResult.fullScan();
         }
 
-        return this.analyzeCondition(condition, indexes);
+        DocIdDictionary dictionary = null;
+        List<DocIdDictionary> dictionaries = new ArrayList<>();
+        indexes.values().forEach(index -> dictionaries.add(index.getDictionary()));
+        compoundIndexes.forEach(index -> dictionaries.add(index.getDictionary()));
+        for (DocIdDictionary indexDictionary : dictionaries) {
+            if (dictionary == null) {
+                dictionary = indexDictionary;
+            } else if (dictionary != indexDictionary) {
+                throw new IllegalArgumentException("indexes must share a DocIdDictionary");
+            }
+        }
+
+        return this.analyzeCondition(condition, indexes, compoundIndexes);
     }
 
-    private IndexResult analyzeCondition(@NonNull Condition condition, @NonNull Map<String, PropertyIndex> indexes) {
+    private IndexResult analyzeCondition(@NonNull Condition condition, @NonNull Map<String, PropertyIndex> indexes,
+                                         @NonNull Collection<CompoundPropertyIndex> compoundIndexes) {
         // Simple single-field condition (has a path)
         if (condition.getPath() != null) {
             PropertyIndex index = indexes.get(condition.getPath().getValue());
             if (index != null) {
-                Optional<Set<String>> result = index.tryQuery(condition);
+                Optional<DocIdBitmap> result = index.tryQueryBitmap(condition);
                 if (result.isPresent()) {
-                    return IndexResult.indexed(result.get(), null);
+                    PlanStep step = new PlanStep(PlanAction.PROBE, condition, result.get().cardinality());
+                    return IndexResult.indexed(result.get(), index.getDictionary(), null, Collections.singletonList(step));
+                }
+                Optional<DocIdBitmap> candidates = index.tryCandidatesBitmap(condition);
+                if (candidates.isPresent()) {
+                    PlanStep step = new PlanStep(PlanAction.CANDIDATES, condition, candidates.get().cardinality());
+                    return IndexResult.indexed(candidates.get(), index.getDictionary(), condition, Collections.singletonList(step));
                 }
             }
+            // Leading component of a compound index
+            IndexResult seek = this.seekCompound(Collections.singletonMap(condition.getPath().getValue(), condition), compoundIndexes);
+            if (seek != null) {
+                return seek;
+            }
             // No index for this field or index can't handle this predicate
             return IndexResult.fullScan();
         }
@@ -103,77 +262,152 @@ public class IndexQueryOptimizer {
         }
 
         if (condition.getOperator() == LogicalOperator.AND) {
-            return this.optimizeAnd(predicates, indexes);
+            return this.optimizeAnd(predicates, indexes, compoundIndexes);
         }
 
         if (condition.getOperator() == LogicalOperator.OR) {
-            return this.optimizeOr(predicates, indexes);
+            return this.optimizeOr(predicates, indexes, compoundIndexes);
         }
 
         return IndexResult.fullScan();
     }
 
     /**
-     * Optimize AND condition by intersecting index results.
+     * Optimize AND condition by intersecting index results, most selective first.
      * Partial optimization is supported - indexed parts narrow down candidates,
      * remaining conditions filter in-memory.
      */
-    private IndexResult optimizeAnd(@NonNull Predicate[] predicates, @NonNull Map<String, PropertyIndex> indexes) {
-        Set<String> result = null;
+    private IndexResult optimizeAnd(@NonNull Predicate[] predicates, @NonNull Map<String, PropertyIndex> indexes,
+                                    @NonNull Collection<CompoundPropertyIndex> compoundIndexes) {
         List<Predicate> unindexedPredicates = new ArrayList<>();
+        List<PlanStep> filterSteps = new ArrayList<>();
+        List<Planned> planned = new ArrayList<>();
+
+        // Single seek of the compound index covering most conditions
+        Set<Predicate> seeked = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (!compoundIndexes.isEmpty()) {
+            Map<String, Condition> fieldConditions = new LinkedHashMap<>();
+            for (Predicate predicate : predicates) {
+                if ((predicate instanceof Condition) && (((Condition) predicate).getPath() != null)) {
+                    fieldConditions.putIfAbsent(((Condition) predicate).getPath().getValue(), (Condition) predicate);
+                }
+            }
+            IndexResult seek = this.seekCompound(fieldConditions, compoundIndexes);
+            if (seek != null) {
+                Condition answered = seek.getPlan().get(0).getCondition();
+                // a single-field index is just as good when the seek answers only one condition
+                boolean singleIndexed = (answered.getPredicates().length == 1)
+                    && indexes.containsKey(((Condition) answered.getPredicates()[0]).getPath().getValue());
+                if (!singleIndexed) {
+                    seeked.addAll(Arrays.asList(answered.getPredicates()));
+                    planned.add(new Planned(PlanAction.SEEK, answered, seek.getIds().cardinality(), seek));
+                }
+            }
+        }
 
         for (Predicate predicate : predicates) {
-            if (predicate instanceof Condition) {
-                Condition subCondition = (Condition) predicate;
-                IndexResult subResult = this.analyzeCondition(subCondition, indexes);
+            if (seeked.contains(predicate)) {
+                continue;
+            }
+            if (!(predicate instanceof Condition)) {
+                // Non-Condition predicate (shouldn't happen at top level, but handle it)
+                unindexedPredicates.add(predicate);
+                continue;
+            }
 
+            Condition subCondition = (Condition) predicate;
+            PropertyIndex index = (subCondition.getPath() == null) ? null : indexes.get(subCondition.getPath().getValue());
+            if (index != null) {
+                long estimate = index.estimate(subCondition);
+                if (estimate >= 0) {
+                    planned.add(new Planned(PlanAction.PROBE, subCondition, estimate, null));
+                    continue;
+                }
+            } else if (subCondition.getPath() == null) {
+                // Nested AND/OR - evaluate eagerly, the actual size is the estimate
+                IndexResult subResult = this.analyzeCondition(subCondition, indexes, compoundIndexes);
                 if (!subResult.requiresFullScan()) {
-                    // Got indexed results - intersect with previous
-                    if (result == null) {
-                        result = new HashSet<>(subResult.getDocIds());
-                    } else {
-                        result.retainAll(subResult.getDocIds());
-                    }
-
-                    // Early exit if intersection is empty
-                    if (result.isEmpty()) {
-                        return IndexResult.indexed(Collections.emptySet(), null);
-                    }
-
-                    // Track any remaining conditions from sub-result
-                    if (subResult.hasRemainingCondition()) {
-                        unindexedPredicates.add(subResult.getRemainingCondition());
-                    }
-                } else {
-                    // This sub-condition couldn't use index - needs in-memory eval
-                    unindexedPredicates.add(subCondition);
+                    planned.add(new Planned(PlanAction.PROBE, subCondition, subResult.getIds().cardinality(), subResult));
+                    continue;
                 }
+            }
+
+            // This sub-condition couldn't use index - needs in-memory eval
+            unindexedPredicates.add(subCondition);
+            filterSteps.add(new PlanStep(PlanAction.FILTER, subCondition, -1));
+        }
+
+        if (planned.isEmpty()) {
+            return IndexResult.fullScan();
+        }
+
+        // Most selective first
+        planned.sort(Comparator.comparingLong(Planned::getEstimate));
+        List<PlanStep> steps = new ArrayList<>();
+        DocIdBitmap result = null;
+        DocIdDictionary dictionary = null;
+
+        for (Planned next : planned) {
+            // Candidates are already few - check the rest in-memory instead of materializing postings
+            if ((result != null) && (next.getResult() == null) && (next.getEstimate() > (result.cardinality() * VERIFY_FACTOR))) {
+                unindexedPredicates.add(next.getCondition());
+                steps.add(new PlanStep(PlanAction.VERIFY, next.getCondition(), next.getEstimate()));
+                continue;
+            }
+
+            IndexResult subResult = (next.getResult() != null)
+                ? next.getResult()
+                : this.analyzeCondition(next.getCondition(), indexes, compoundIndexes);
+            if (subResult.requiresFullScan()) {
+                unindexedPredicates.add(next.getCondition());
+                filterSteps.add(new PlanStep(PlanAction.FILTER, next.getCondition(), -1));
+                continue;
+            }
+            boolean candidates = (next.getResult() == null) && subResult.hasRemainingCondition();
+            steps.add(new PlanStep(candidates ? PlanAction.CANDIDATES : next.getAction(), next.getCondition(), next.getEstimate()));
+
+            if (result == null) {
+                result = subResult.getIds();
+                dictionary = subResult.getDictionary();
             } else {
-                // Non-Condition predicate (shouldn't happen at top level, but handle it)
-                unindexedPredicates.add(predicate);
+                result.and(subResult.getIds());
+            }
+
+            // Track any remaining conditions from sub-result
+            if (subResult.hasRemainingCondition()) {
+                unindexedPredicates.add(subResult.getRemainingCondition());
+            }
+
+            // Early exit if intersection is empty
+            if (result.isEmpty()) {
+                return IndexResult.indexed(result, dictionary, null, steps);
             }
         }
 
-        if (result != null) {
-            // Build remaining condition if any predicates couldn't use index
-            Condition remaining = this.buildRemainingCondition(unindexedPredicates, LogicalOperator.AND);
-            return IndexResult.indexed(result, remaining);
+        if (result == null) {
+            return IndexResult.fullScan();
         }
 
-        return IndexResult.fullScan();
+        steps.addAll(filterSteps);
+        // Build remaining condition if any predicates couldn't use index
+        Condition remaining = this.buildRemainingCondition(unindexedPredicates, LogicalOperator.AND);
+        return IndexResult.indexed(result, dictionary, remaining, steps);
     }
 
     /**
      * Optimize OR condition by unioning index results.
      * Only works if ALL parts can be fully indexed (no partial optimization for OR).
      */
-    private IndexResult optimizeOr(@NonNull Predicate[] predicates, @NonNull Map<String, PropertyIndex> indexes) {
-        Set<String> result = new HashSet<>();
+    private IndexResult optimizeOr(@NonNull Predicate[] predicates, @NonNull Map<String, PropertyIndex> indexes,
+                                   @NonNull Collection<CompoundPropertyIndex> compoundIndexes) {
+        DocIdBitmap result = new DocIdBitmap();
+        DocIdDictionary dictionary = null;
+        List<PlanStep> plan = new ArrayList<>();
 
         for (Predicate predicate : predicates) {
             if (predicate instanceof Condition) {
                 Condition subCondition = (Condition) predicate;
-                IndexResult subResult = this.analyzeCondition(subCondition, indexes);
+                IndexResult subResult = this.analyzeCondition(subCondition, indexes, compoundIndexes);
 
                 if (subResult.requiresFullScan()) {
                     // One part of OR can't use index - must fall back to full scan
@@ -186,14 +420,60 @@ public class IndexQueryOptimizer {
                     return IndexResult.fullScan();
                 }
 
-                result.addAll(subResult.getDocIds());
+                result.or(subResult.getIds());
+                dictionary = subResult.getDictionary();
+                plan.addAll(subResult.getPlan());
             } else {
                 // Non-Condition predicate in OR - can't optimize
                 return IndexResult.fullScan();
             }
         }
 
-        return IndexResult.indexed(result, null);
+        if (dictionary == null) {
+            return IndexResult.fullScan();
+        }
+        return IndexResult.indexed(result, dictionary, null, plan);
+    }
+
+    /**
+     * Seek the compound index answering most of the single-field conditions.
+     *
+     * @return result with a single {@link PlanAction#SEEK} step over an AND of the
+     * answered conditions, or null if no compound index can be used
+     */
+    private IndexResult seekCompound(@NonNull Map<String, Condition> fieldConditions, @NonNull Collection<CompoundPropertyIndex> compoundIndexes) {
+        CompoundPropertyIndex bestIndex = null;
+        CompoundPropertyIndex.Seek best = null;
+        for (CompoundPropertyIndex index : compoundIndexes) {
+            Optional<CompoundPropertyIndex.Seek> seek = index.trySeek(fieldConditions);
+            if (!seek.isPresent()) {
+                continue;
+            }
+            if ((best == null) || (seek.get().getConditions().size() > best.getConditions().size())
+                || ((seek.get().getConditions().size() == best.getConditions().size()) && (seek.get().getIds().cardinality() < best.getIds().cardinality()))) {
+                bestIndex = index;
+                best = seek.get();
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        Condition answered = Condition.and(best.getConditions().toArray(new Predicate[0]));
+        PlanStep step = new PlanStep(PlanAction.SEEK, answered, best.getIds().cardinality());
+        return IndexResult.indexed(best.getIds(), bestIndex.getDictionary(), null, Collections.singletonList(step));
+    }
+
+    /**
+     * Indexable sub-condition of an AND with its estimated match count.
+     */
+    @Data
+    private static class Planned {
+        private final PlanAction action;
+        private final Condition condition;
+        private final long estimate;
+        // already evaluated nested condition (null for single-field conditions)
+        private final IndexResult result;
     }
 
     /**
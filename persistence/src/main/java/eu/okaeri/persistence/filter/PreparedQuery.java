@@ -0,0 +1,66 @@
+package eu.okaeri.persistence.filter;
+
+import eu.okaeri.persistence.FilterablePersistence;
+import eu.okaeri.persistence.PersistenceCollection;
+import eu.okaeri.persistence.PersistenceEntity;
+import eu.okaeri.persistence.document.Document;
+import lombok.NonNull;
+
+import java.util.stream.Stream;
+
+/**
+ * Query template prepared for repeated execution, arguments are bound
+ * to its {@link QueryParameter}s on every call.
+ * <p>
+ * The WHERE condition of the template applies to all operations, ORDER BY,
+ * LIMIT and SKIP apply to {@link #find} and {@link #count} like in {@link FindFilter}.
+ */
+public interface PreparedQuery {
+
+    /**
+     * Bind the arguments and rebuild the filters for every call, for backends
+     * without native prepared queries.
+     *
+     * @param persistence persistence executing the filters
+     * @param collection  target collection
+     * @param template    find filter with {@link QueryParameter} operands
+     * @return prepared query
+     */
+    static PreparedQuery of(@NonNull FilterablePersistence persistence, @NonNull PersistenceCollection collection, @NonNull FindFilter template) {
+        return new FilterPreparedQuery(persistence, collection, template);
+    }
+
+    /**
+     * Find entities matching the template.
+     *
+     * @param args arguments of the parameters
+     * @return Stream of matching entities
+     */
+    Stream<PersistenceEntity<Document>> find(Object... args);
+
+    /**
+     * Count entities matching the template.
+     *
+     * @param args arguments of the parameters
+     * @return Number of matching entities
+     */
+    long count(Object... args);
+
+    /**
+     * Check if any entity matches the template, or if the collection
+     * is not empty for templates without a WHERE condition.
+     *
+     * @param args arguments of the parameters
+     * @return True if at least one entity matches
+     */
+    boolean exists(Object... args);
+
+    /**
+     * Delete entities matching the template.
+     *
+     * @param args arguments of the parameters
+     * @return Number of entities deleted
+     * @throws IllegalArgumentException if the template has no WHERE condition
+     */
+    long delete(Object... args);
+}
@@ -0,0 +1,127 @@
+package eu.okaeri.persistence.filter;
+
+import eu.okaeri.persistence.PersistencePath;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NonNull;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Selection of document fields returned by a find.
+ * <p>
+ * Including paths returns documents with only these fields (and their parents),
+ * excluding paths returns documents with everything but these fields.
+ * Fields missing from the projected document read as null (or their defaults in
+ * typed entities), so projected documents cannot be saved back.
+ */
+@Data
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class Projection {
+
+    private final List<PersistencePath> paths;
+    private final boolean exclude;
+
+    public static Projection include(@NonNull String... paths) {
+        return new Projection(parse(paths), false);
+    }
+
+    public static Projection include(@NonNull PersistencePath... paths) {
+        return new Projection(Arrays.asList(paths), false);
+    }
+
+    public static Projection exclude(@NonNull String... paths) {
+        return new Projection(parse(paths), true);
+    }
+
+    public static Projection exclude(@NonNull PersistencePath... paths) {
+        return new Projection(Arrays.asList(paths), true);
+    }
+
+    public boolean isInclude() {
+        return !this.exclude;
+    }
+
+    /**
+     * Paths as a tree of field names, where leaves hold the full path.
+     * Paths nested in another selected path are covered by it and skipped.
+     *
+     * @return ordered tree of {@code String -> PersistencePath | Map}
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> toTree() {
+        Map<String, Object> tree = new LinkedHashMap<>();
+        for (PersistencePath path : this.paths) {
+            List<String> parts = path.toParts();
+            Map<String, Object> node = tree;
+            for (int i = 0; i < parts.size(); i++) {
+                Object child = node.get(parts.get(i));
+                if (child instanceof PersistencePath) {
+                    break; // parent already selected
+                }
+                if (i == (parts.size() - 1)) {
+                    node.put(parts.get(i), path);
+                    break;
+                }
+                if (child == null) {
+                    child = new LinkedHashMap<String, Object>();
+                    node.put(parts.get(i), child);
+                }
+                node = (Map<String, Object>) child;
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Project a simplified document map.
+     *
+     * @param document simplified document, not modified
+     * @return new map with the selected fields
+     */
+    public Map<String, Object> apply(@NonNull Map<String, Object> document) {
+        return this.exclude ? omit(document, this.toTree()) : select(document, this.toTree());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> select(Map<String, Object> source, Map<String, Object> tree) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : tree.entrySet()) {
+            Object value = source.get(entry.getKey());
+            if (value == null) {
+                continue;
+            }
+            if (entry.getValue() instanceof PersistencePath) {
+                result.put(entry.getKey(), value);
+            } else if (value instanceof Map) {
+                Map<String, Object> nested = select((Map<String, Object>) value, (Map<String, Object>) entry.getValue());
+                if (!nested.isEmpty()) {
+                    result.put(entry.getKey(), nested);
+                }
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> omit(Map<String, Object> source, Map<String, Object> tree) {
+        Map<String, Object> result = new LinkedHashMap<>(source);
+        for (Map.Entry<String, Object> entry : tree.entrySet()) {
+            Object value = source.get(entry.getKey());
+            if (entry.getValue() instanceof PersistencePath) {
+                result.remove(entry.getKey());
+            } else if (value instanceof Map) {
+                result.put(entry.getKey(), omit((Map<String, Object>) value, (Map<String, Object>) entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    private static List<PersistencePath> parse(String... paths) {
+        return Arrays.stream(paths)
+            .map(path -> PersistencePath.parse(path, "."))
+            .collect(Collectors.toList());
+    }
+}
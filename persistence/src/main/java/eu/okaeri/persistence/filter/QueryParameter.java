@@ -0,0 +1,122 @@
+package eu.okaeri.persistence.filter;
+
+import eu.okaeri.persistence.filter.condition.Condition;
+import eu.okaeri.persistence.filter.condition.LogicalOperator;
+import eu.okaeri.persistence.filter.predicate.Predicate;
+import eu.okaeri.persistence.filter.predicate.equality.EqPredicate;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static eu.okaeri.persistence.filter.predicate.PredicateValidation.validated;
+
+/**
+ * Argument slot of a query template, used as the operand of {@link EqPredicate}.
+ * <p>
+ * Templates are prepared once with {@code PreparablePersistence#prepare} and then
+ * executed with different arguments. Backends render type-specific comparisons
+ * (e.g. numeric casts) using the declared {@link #getType()} of the parameter.
+ */
+@Data
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class QueryParameter {
+
+    private static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<>();
+
+    static {
+        WRAPPERS.put(boolean.class, Boolean.class);
+        WRAPPERS.put(byte.class, Byte.class);
+        WRAPPERS.put(short.class, Short.class);
+        WRAPPERS.put(char.class, Character.class);
+        WRAPPERS.put(int.class, Integer.class);
+        WRAPPERS.put(long.class, Long.class);
+        WRAPPERS.put(float.class, Float.class);
+        WRAPPERS.put(double.class, Double.class);
+    }
+
+    private final int index;
+    private final Class<?> type;
+
+    /**
+     * Create a parameter bound to an argument.
+     *
+     * @param index index of the argument
+     * @param type  declared type of the argument, primitives are boxed
+     * @return parameter
+     */
+    public static QueryParameter of(int index, @NonNull Class<?> type) {
+        return new QueryParameter(index, WRAPPERS.getOrDefault(type, type));
+    }
+
+    /**
+     * Check if the declared type determines how the argument is compared:
+     * numbers, booleans, strings, enums and UUIDs. Arguments of other types
+     * can only be bound by rebuilding the filter.
+     */
+    public boolean isScalar() {
+        return Number.class.isAssignableFrom(this.type)
+            || (this.type == Boolean.class)
+            || CharSequence.class.isAssignableFrom(this.type)
+            || Enum.class.isAssignableFrom(this.type)
+            || (this.type == UUID.class);
+    }
+
+    /**
+     * Get the argument of this parameter, validated like an {@link EqPredicate} operand.
+     *
+     * @throws NullPointerException     if the argument is null
+     * @throws IllegalArgumentException if the argument is not of the declared type
+     */
+    public Object bind(@NonNull Object[] args) {
+
+        Object value = args[this.index];
+        if (value == null) {
+            throw new NullPointerException("argument " + this.index + " of a query template is null");
+        }
+
+        if (!this.type.isInstance(value)) {
+            throw new IllegalArgumentException("argument " + this.index + " of a query template must be " + this.type.getName() + ", got " + value.getClass().getName());
+        }
+
+        return validated(value);
+    }
+
+    /**
+     * Replace the parameters of a template condition with their arguments.
+     *
+     * @param condition template condition
+     * @param args      arguments of the call
+     * @return condition with plain operands
+     */
+    public static Condition bind(@NonNull Condition condition, @NonNull Object[] args) {
+
+        Predicate[] predicates = new Predicate[condition.getPredicates().length];
+        for (int i = 0; i < predicates.length; i++) {
+            predicates[i] = bind(condition.getPredicates()[i], args);
+        }
+
+        if (condition.getPath() == null) {
+            return (condition.getOperator() == LogicalOperator.OR) ? Condition.or(predicates) : Condition.and(predicates);
+        }
+        return (condition.getOperator() == LogicalOperator.OR) ? Condition.or(condition.getPath(), predicates) : Condition.and(condition.getPath(), predicates);
+    }
+
+    private static Predicate bind(Predicate predicate, Object[] args) {
+
+        if (predicate instanceof Condition) {
+            return bind((Condition) predicate, args);
+        }
+
+        if ((predicate instanceof EqPredicate) && (((EqPredicate) predicate).getRightOperand() instanceof QueryParameter)) {
+            EqPredicate eq = (EqPredicate) predicate;
+            return new EqPredicate(((QueryParameter) eq.getRightOperand()).bind(args), eq.isIgnoreCase());
+        }
+
+        return predicate;
+    }
+}
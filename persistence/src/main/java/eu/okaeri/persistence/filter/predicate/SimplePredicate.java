@@ -1,5 +1,7 @@
 package eu.okaeri.persistence.filter.predicate;
 
+import eu.okaeri.persistence.filter.predicate.collection.ArrayContainsAnyPredicate;
+import eu.okaeri.persistence.filter.predicate.collection.ArrayContainsPredicate;
 import eu.okaeri.persistence.filter.predicate.collection.InPredicate;
 import eu.okaeri.persistence.filter.predicate.collection.NotInPredicate;
 import eu.okaeri.persistence.filter.predicate.equality.EqPredicate;
@@ -408,6 +410,30 @@ public abstract class SimplePredicate implements Predicate {
         return new NotInPredicate(Arrays.asList(values));
     }
 
+    /**
+     * Creates an array contains predicate for array (collection) fields.
+     * {@code value IN field}
+     * <p>
+     * Answered by indexes on the array field (each element is indexed).
+     *
+     * @param value the element to look for
+     * @return array contains predicate
+     */
+    public static SimplePredicate arrayContains(@NonNull Object value) {
+        return new ArrayContainsPredicate(value);
+    }
+
+    /**
+     * Creates an array contains any predicate for array (collection) fields.
+     * {@code value1 IN field OR value2 IN field OR ...}
+     *
+     * @param values the elements to look for
+     * @return array contains any predicate
+     */
+    public static SimplePredicate arrayContainsAny(@NonNull Object... values) {
+        return new ArrayContainsAnyPredicate(Arrays.asList(values));
+    }
+
     /**
      * Creates a starts-with predicate for string prefix matching.
      * {@code field LIKE 'prefix%'}
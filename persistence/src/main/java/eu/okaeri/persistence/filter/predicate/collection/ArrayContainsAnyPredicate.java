@@ -0,0 +1,30 @@
+package eu.okaeri.persistence.filter.predicate.collection;
+
+import eu.okaeri.persistence.filter.predicate.SimplePredicate;
+import lombok.NonNull;
+
+import java.util.Collection;
+
+import static eu.okaeri.persistence.document.DocumentValueUtils.compareEquals;
+import static eu.okaeri.persistence.filter.predicate.PredicateValidation.validatedAll;
+
+/**
+ * Array field contains any of VALUES
+ * {@code x in field or y in field or z in field}
+ */
+public class ArrayContainsAnyPredicate extends SimplePredicate {
+
+    public ArrayContainsAnyPredicate(@NonNull Collection<?> values) {
+        super(validatedAll(values));
+    }
+
+    @Override
+    public boolean check(Object leftOperand) {
+        if (!(leftOperand instanceof Collection)) {
+            return false;
+        }
+        Collection<?> values = (Collection<?>) this.getRightOperand();
+        return ((Collection<?>) leftOperand).stream()
+            .anyMatch(element -> values.stream().anyMatch(value -> compareEquals(element, value)));
+    }
+}
@@ -0,0 +1,29 @@
+package eu.okaeri.persistence.filter.predicate.collection;
+
+import eu.okaeri.persistence.filter.predicate.SimplePredicate;
+import lombok.NonNull;
+
+import java.util.Collection;
+
+import static eu.okaeri.persistence.document.DocumentValueUtils.compareEquals;
+import static eu.okaeri.persistence.filter.predicate.PredicateValidation.validated;
+
+/**
+ * Array field contains VALUE
+ * {@code x in field}
+ */
+public class ArrayContainsPredicate extends SimplePredicate {
+
+    public ArrayContainsPredicate(@NonNull Object value) {
+        super(validated(value));
+    }
+
+    @Override
+    public boolean check(Object leftOperand) {
+        if (!(leftOperand instanceof Collection)) {
+            return false;
+        }
+        Object value = this.getRightOperand();
+        return ((Collection<?>) leftOperand).stream().anyMatch(element -> compareEquals(element, value));
+    }
+}
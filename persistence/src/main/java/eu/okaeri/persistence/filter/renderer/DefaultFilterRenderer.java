@@ -2,6 +2,7 @@ package eu.okaeri.persistence.filter.renderer;
 
 import eu.okaeri.persistence.PersistencePath;
 import eu.okaeri.persistence.filter.OrderBy;
+import eu.okaeri.persistence.filter.QueryParameter;
 import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistence.filter.condition.LogicalOperator;
 import eu.okaeri.persistence.filter.predicate.Predicate;
@@ -96,6 +97,10 @@ public class DefaultFilterRenderer implements FilterRenderer {
             return this.renderCondition((Condition) operand);
         }
 
+        if (operand instanceof QueryParameter) {
+            return this.renderParameter((QueryParameter) operand);
+        }
+
         if (operand instanceof Double) {
             double dOp = (Double) operand;
             if (dOp == (int) dOp) {
@@ -148,6 +153,22 @@ public class DefaultFilterRenderer implements FilterRenderer {
         throw new IllegalArgumentException("cannot render operand " + operand + " [" + operand.getClass() + "]");
     }
 
+    /**
+     * Render a placeholder for a parameter of a query template.
+     * Renderers of backends without prepared queries cannot render parameters.
+     */
+    protected String renderParameter(@NonNull QueryParameter parameter) {
+        throw new IllegalArgumentException("cannot render parameter " + parameter + " of a query template");
+    }
+
+    /**
+     * Type of the right operand of a predicate, the declared type for {@link QueryParameter}s.
+     */
+    protected Class<?> operandType(@NonNull SimplePredicate predicate) {
+        Object operand = predicate.getRightOperand();
+        return (operand instanceof QueryParameter) ? ((QueryParameter) operand).getType() : operand.getClass();
+    }
+
     @Override
     public String renderOrderBy(@NonNull List<OrderBy> orderBy) {
         return orderBy.stream()
@@ -38,6 +38,11 @@ public class DefaultDocumentRepository<T extends Document> implements DocumentRe
         return this.persistence.count(this.collection);
     }
 
+    @Override
+    public long count(@NonNull Condition condition) {
+        return this.persistence.count(this.collection, FindFilter.builder().where(condition).build());
+    }
+
     @Override
     public boolean deleteAll() {
         return this.persistence.deleteAll(this.collection);
@@ -70,6 +75,11 @@ public class DefaultDocumentRepository<T extends Document> implements DocumentRe
         return this.persistence.exists(this.collection, toPath(path));
     }
 
+    @Override
+    public boolean exists(@NonNull Condition condition) {
+        return this.persistence.exists(this.collection, condition);
+    }
+
     @Override
     public Stream<T> streamAll() {
         return this.persistence.streamAll(this.collection)
@@ -21,6 +21,14 @@ public interface DocumentRepository<PATH, T extends Document> {
 
     long count();
 
+    /**
+     * Count documents matching the condition without loading them.
+     *
+     * @param condition WHERE condition
+     * @return Number of matching documents
+     */
+    long count(Condition condition);
+
     boolean deleteAll();
 
     long delete(DeleteFilter filter);
@@ -33,6 +41,14 @@ public interface DocumentRepository<PATH, T extends Document> {
 
     boolean existsByPath(PATH path);
 
+    /**
+     * Check if any document matches the condition without loading it.
+     *
+     * @param condition WHERE condition
+     * @return true if at least one document matches
+     */
+    boolean exists(Condition condition);
+
     Collection<T> findAll();
 
     /**
@@ -4,18 +4,22 @@ import eu.okaeri.persistence.PersistenceCollection;
 import eu.okaeri.persistence.PersistenceEntity;
 import eu.okaeri.persistence.document.Document;
 import eu.okaeri.persistence.document.DocumentPersistence;
-import eu.okaeri.persistence.filter.DeleteFilter;
 import eu.okaeri.persistence.filter.FindFilter;
 import eu.okaeri.persistence.filter.FindFilterBuilder;
 import eu.okaeri.persistence.filter.OrderBy;
+import eu.okaeri.persistence.filter.PreparedQuery;
+import eu.okaeri.persistence.filter.QueryParameter;
 import eu.okaeri.persistence.filter.condition.Condition;
 import eu.okaeri.persistence.filter.condition.LogicalOperator;
 import eu.okaeri.persistence.filter.predicate.equality.EqPredicate;
 import eu.okaeri.persistence.repository.query.*;
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.*;
@@ -26,15 +30,18 @@ import java.util.stream.Stream;
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class RepositoryDeclaration<T extends DocumentRepository> {
 
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+
     private final Class<T> type;
-    private final Map<Method, RepositoryMethodCaller> methods;
+    private final Map<Method, QueryMethod> methods;
     private final Class<?> pathType;
     private final Class<? extends Document> entityType;
 
     @SuppressWarnings("unchecked")
     public static <A extends DocumentRepository> RepositoryDeclaration<A> of(@NonNull Class<A> clazz) {
 
-        Map<Method, RepositoryMethodCaller> methods = new HashMap<>();
+        Map<Method, QueryMethod> methods = new HashMap<>();
         Type[] types = ((ParameterizedType) clazz.getGenericInterfaces()[0]).getActualTypeArguments();
         Class<?> pathType = (Class<?>) types[0];
         Class<? extends Document> entityType = (Class<? extends Document>) types[1];
@@ -58,9 +65,8 @@ public class RepositoryDeclaration<T extends DocumentRepository> {
             // Parse method name - fail fast if invalid
             ParsedMethod parsed = MethodNameParser.parse(method, entityType);
 
-            // Create method caller based on parsed method
-            RepositoryMethodCaller caller = createCaller(parsed, entityType);
-            methods.put(method, caller);
+            // Compile the query template and the caller mapping its results
+            methods.put(method, new QueryMethod(buildFindFilter(parsed), createCaller(parsed, entityType)));
         }
 
         return new RepositoryDeclaration<A>(clazz, methods, pathType, entityType);
@@ -87,19 +93,21 @@ public class RepositoryDeclaration<T extends DocumentRepository> {
     }
 
     /**
-     * Build a Condition from ParsedMethod's query parts and arguments.
+     * Build a template Condition from ParsedMethod's query parts,
+     * with a {@link QueryParameter} for the argument of each part.
      */
-    private static Condition buildCondition(ParsedMethod parsed, Object[] args) {
+    private static Condition buildCondition(ParsedMethod parsed) {
         List<QueryPart> parts = parsed.getQueryParts();
         if (parts.isEmpty()) {
             return null;
         }
 
         // Build conditions for each query part
+        Class<?>[] parameterTypes = parsed.getMethod().getParameterTypes();
         List<Condition> conditions = new ArrayList<>();
         for (QueryPart part : parts) {
-            Object value = args[part.getParameterIndex()];
-            Condition condition = Condition.on(part.getField(), new EqPredicate(value));
+            QueryParameter parameter = QueryParameter.of(part.getParameterIndex(), parameterTypes[part.getParameterIndex()]);
+            Condition condition = Condition.on(part.getField(), new EqPredicate(parameter));
             conditions.add(condition);
         }
 
@@ -192,12 +200,12 @@ public class RepositoryDeclaration<T extends DocumentRepository> {
     }
 
     /**
-     * Build FindFilter from ParsedMethod and arguments.
+     * Build the template FindFilter of a ParsedMethod, prepared once per repository.
      */
-    private static FindFilter buildFindFilter(ParsedMethod parsed, Object[] args) {
+    private static FindFilter buildFindFilter(ParsedMethod parsed) {
         FindFilterBuilder builder = FindFilter.builder();
 
-        Condition condition = buildCondition(parsed, args);
+        Condition condition = buildCondition(parsed);
         if (condition != null) {
             builder.where(condition);
         }
@@ -224,88 +232,61 @@ public class RepositoryDeclaration<T extends DocumentRepository> {
 
         if (returnType == Optional.class) {
             if (insideType == PersistenceEntity.class) {
-                return (persistence, collection, args) -> {
-                    FindFilter filter = buildFindFilter(parsed, args);
-                    return persistence.find(collection, filter)
-                        .findFirst()
-                        .map(entity -> entity.into(entityType));
-                };
+                return (query, args) -> query.find(args)
+                    .findFirst()
+                    .map(entity -> entity.into(entityType));
             } else {
-                return (persistence, collection, args) -> {
-                    FindFilter filter = buildFindFilter(parsed, args);
-                    return persistence.find(collection, filter)
-                        .findFirst()
-                        .map(entity -> entity.into(entityType))
-                        .map(PersistenceEntity::getValue);
-                };
+                return (query, args) -> query.find(args)
+                    .findFirst()
+                    .map(entity -> entity.into(entityType))
+                    .map(PersistenceEntity::getValue);
             }
         }
 
         if (returnType == Stream.class) {
             if (insideType == PersistenceEntity.class) {
-                return (persistence, collection, args) -> {
-                    FindFilter filter = buildFindFilter(parsed, args);
-                    return persistence.find(collection, filter)
-                        .map(entity -> entity.into(entityType));
-                };
+                return (query, args) -> query.find(args)
+                    .map(entity -> entity.into(entityType));
             } else {
-                return (persistence, collection, args) -> {
-                    FindFilter filter = buildFindFilter(parsed, args);
-                    return persistence.find(collection, filter)
-                        .map(entity -> entity.into(entityType))
-                        .map(PersistenceEntity::getValue);
-                };
+                return (query, args) -> query.find(args)
+                    .map(entity -> entity.into(entityType))
+                    .map(PersistenceEntity::getValue);
             }
         }
 
         if ((returnType == List.class) || (returnType == Collection.class)) {
             if (insideType == PersistenceEntity.class) {
-                return (persistence, collection, args) -> {
-                    FindFilter filter = buildFindFilter(parsed, args);
-                    return persistence.find(collection, filter)
-                        .map(entity -> entity.into(entityType))
-                        .collect(Collectors.toList());
-                };
+                return (query, args) -> query.find(args)
+                    .map(entity -> entity.into(entityType))
+                    .collect(Collectors.toList());
             } else {
-                return (persistence, collection, args) -> {
-                    FindFilter filter = buildFindFilter(parsed, args);
-                    return persistence.find(collection, filter)
-                        .map(entity -> entity.into(entityType))
-                        .map(PersistenceEntity::getValue)
-                        .collect(Collectors.toList());
-                };
+                return (query, args) -> query.find(args)
+                    .map(entity -> entity.into(entityType))
+                    .map(PersistenceEntity::getValue)
+                    .collect(Collectors.toList());
             }
         }
 
         if (returnType == Set.class) {
             if (insideType == PersistenceEntity.class) {
-                return (persistence, collection, args) -> {
-                    FindFilter filter = buildFindFilter(parsed, args);
-                    return persistence.find(collection, filter)
-                        .map(entity -> entity.into(entityType))
-                        .collect(Collectors.toSet());
-                };
+                return (query, args) -> query.find(args)
+                    .map(entity -> entity.into(entityType))
+                    .collect(Collectors.toSet());
             } else {
-                return (persistence, collection, args) -> {
-                    FindFilter filter = buildFindFilter(parsed, args);
-                    return persistence.find(collection, filter)
-                        .map(entity -> entity.into(entityType))
-                        .map(PersistenceEntity::getValue)
-                        .collect(Collectors.toSet());
-                };
+                return (query, args) -> query.find(args)
+                    .map(entity -> entity.into(entityType))
+                    .map(PersistenceEntity::getValue)
+                    .collect(Collectors.toSet());
             }
         }
 
         // Direct entity return (naked T)
         if (Document.class.isAssignableFrom(returnType)) {
-            return (persistence, collection, args) -> {
-                FindFilter filter = buildFindFilter(parsed, args);
-                return persistence.find(collection, filter)
-                    .findFirst()
-                    .map(entity -> entity.into(entityType))
-                    .map(PersistenceEntity::getValue)
-                    .orElse(null);
-            };
+            return (query, args) -> query.find(args)
+                .findFirst()
+                .map(entity -> entity.into(entityType))
+                .map(PersistenceEntity::getValue)
+                .orElse(null);
         }
 
         throw new IllegalArgumentException("Unsupported return type for FIND: " + returnType);
@@ -315,42 +296,26 @@ public class RepositoryDeclaration<T extends DocumentRepository> {
      * Create caller for COUNT operations.
      */
     private static RepositoryMethodCaller createCountCaller(ParsedMethod parsed, Class<? extends Document> entityType) {
-        return (persistence, collection, args) -> {
-            FindFilter filter = buildFindFilter(parsed, args);
-            return persistence.find(collection, filter).count();
-        };
+        return (query, args) -> query.count(args);
     }
 
     /**
      * Create caller for EXISTS operations.
      */
     private static RepositoryMethodCaller createExistsCaller(ParsedMethod parsed, Class<? extends Document> entityType) {
-        return (persistence, collection, args) -> {
-            // Use limit 1 for efficiency
-            FindFilterBuilder builder = FindFilter.builder();
-
-            Condition condition = buildCondition(parsed, args);
-            if (condition != null) {
-                builder.where(condition);
-            }
-            builder.limit(1);
-
-            return persistence.find(collection, builder.build()).findAny().isPresent();
-        };
+        return (query, args) -> query.exists(args);
     }
 
     /**
      * Create caller for DELETE operations.
      */
     private static RepositoryMethodCaller createDeleteCaller(ParsedMethod parsed) {
-        return (persistence, collection, args) -> {
-            Condition condition = buildCondition(parsed, args);
-            if (condition == null) {
+        boolean hasCondition = !parsed.getQueryParts().isEmpty();
+        return (query, args) -> {
+            if (!hasCondition) {
                 throw new IllegalStateException("DELETE operations require a WHERE condition");
             }
-
-            DeleteFilter filter = DeleteFilter.builder().where(condition).build();
-            return persistence.delete(collection, filter);
+            return query.delete(args);
         };
     }
 
@@ -383,11 +348,47 @@ public class RepositoryDeclaration<T extends DocumentRepository> {
      * These methods are provided by the framework and should not be parsed.
      */
     private static boolean isDefaultRepositoryMethod(Method method) {
+        return findDefaultRepositoryMethod(method) != null;
+    }
+
+    /**
+     * Name of the implementation generated by the repository annotation processor,
+     * e.g. {@code com.example.Repositories$UserRepository} is implemented
+     * by {@code com.example.Repositories_UserRepositoryImpl}.
+     *
+     * @param binaryName binary name of the repository interface
+     * @return binary name of the generated class
+     */
+    public static String getGeneratedName(@NonNull String binaryName) {
+        int packageEnd = binaryName.lastIndexOf('.');
+        return binaryName.substring(0, packageEnd + 1) + binaryName.substring(packageEnd + 1).replace('$', '_') + "Impl";
+    }
+
+    /**
+     * Create the implementation generated at compile time for a repository interface.
+     *
+     * @return repository, or null if no implementation was generated
+     */
+    @SuppressWarnings("unchecked")
+    public static <A extends DocumentRepository> A newGenerated(@NonNull Class<A> clazz, @NonNull DocumentPersistence persistence, @NonNull PersistenceCollection collection) {
+
+        Class<?> implementation;
         try {
-            DefaultDocumentRepository.class.getMethod(method.getName(), method.getParameterTypes());
-            return true;
-        } catch (NoSuchMethodException e) {
-            return false;
+            implementation = Class.forName(getGeneratedName(clazz.getName()), true, clazz.getClassLoader());
+        } catch (ClassNotFoundException exception) {
+            return null;
+        }
+
+        if (!clazz.isAssignableFrom(implementation)) {
+            return null;
+        }
+
+        try {
+            return (A) implementation.getConstructor(DocumentPersistence.class, PersistenceCollection.class).newInstance(persistence, collection);
+        } catch (InvocationTargetException exception) {
+            throw new IllegalStateException("cannot create repository " + implementation.getName(), exception.getCause());
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("cannot create repository " + implementation.getName(), exception);
         }
     }
 
@@ -395,51 +396,143 @@ public class RepositoryDeclaration<T extends DocumentRepository> {
     public T newProxy(@NonNull DocumentPersistence persistence, @NonNull PersistenceCollection collection, @NonNull ClassLoader classLoader) {
 
         DefaultDocumentRepository defaultRepository = new DefaultDocumentRepository(persistence, collection, this.entityType);
-        Map<Method, Method> defaultRepositoryMethods = new HashMap<>();
+        Map<Method, MethodInvoker> invokers = this.createInvokers(persistence, collection, defaultRepository);
 
         return (T) Proxy.newProxyInstance(classLoader, new Class[]{this.type}, (proxy, method, args) -> {
+            MethodInvoker invoker = invokers.get(method);
+            if (invoker == null) {
+                throw new IllegalArgumentException("cannot proxy " + method);
+            }
+            return invoker.invoke(proxy, (args == null) ? NO_ARGS : args);
+        });
+    }
+
+    /**
+     * Resolve the implementation of every proxied method once, so that a call
+     * is a single lookup without reflection:
+     * <ul>
+     *   <li>interface default methods - special method handles taking the proxy, looked up on first call</li>
+     *   <li>methods provided by {@link DefaultDocumentRepository} - method handles bound to it</li>
+     *   <li>methods parsed from their name - {@link RepositoryMethodCaller}s of queries prepared by the persistence</li>
+     * </ul>
+     */
+    private Map<Method, MethodInvoker> createInvokers(DocumentPersistence persistence, PersistenceCollection collection, DefaultDocumentRepository defaultRepository) {
+
+        List<Method> proxied = new ArrayList<>(Arrays.asList(this.type.getMethods()));
+        for (String name : Arrays.asList("hashCode", "equals", "toString")) {
+            proxied.add(Arrays.stream(Object.class.getMethods())
+                .filter(method -> method.getName().equals(name))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new));
+        }
+
+        Map<Method, MethodInvoker> invokers = new HashMap<>();
+        for (Method method : proxied) {
+
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
 
             // third party interface methods
-            Class<?> dClass = method.getDeclaringClass();
             if (method.isDefault()) {
-                try {
-                    MethodType methodType = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
-                    return MethodHandles.lookup().findSpecial(dClass, method.getName(), methodType, dClass).bindTo(proxy).invokeWithArguments(args);
-                } catch (IllegalAccessException ignored) {
-                }
-                // java 8 fallback
-                Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class);
-                constructor.setAccessible(true);
-                return constructor.newInstance(dClass).in(dClass).unreflectSpecial(method, dClass).bindTo(proxy).invokeWithArguments(args);
+                invokers.put(method, new DefaultMethodInvoker(method));
+                continue;
             }
 
             // okaeri-persistence provided impl
-            try {
-                Method defaultMethod;
-                if (defaultRepositoryMethods.containsKey(method)) {
-                    defaultMethod = defaultRepositoryMethods.get(method);
-                } else {
-                    defaultMethod = defaultRepository.getClass().getMethod(method.getName(), method.getParameterTypes());
-                    defaultRepositoryMethods.put(method, defaultMethod);
-                }
-                if (defaultMethod != null) {
-                    try {
-                        return defaultMethod.invoke(defaultRepository, args);
-                    } catch (InvocationTargetException exception) {
-                        throw exception.getCause();
-                    }
+            Method defaultMethod = findDefaultRepositoryMethod(method);
+            if (defaultMethod != null) {
+                MethodHandle handle;
+                try {
+                    handle = spread(MethodHandles.publicLookup().unreflect(defaultMethod).bindTo(defaultRepository), method.getParameterCount());
+                } catch (IllegalAccessException exception) {
+                    throw new IllegalStateException("cannot access " + defaultMethod, exception);
                 }
-            } catch (NoSuchMethodException | SecurityException ignored) {
-                defaultRepositoryMethods.put(method, null);
+                invokers.put(method, (proxy, args) -> (Object) handle.invokeExact(args));
+                continue;
             }
 
             // okaeri-persistence generated (parsed from method name)
-            RepositoryMethodCaller caller = this.methods.get(method);
-            if (caller == null) {
-                throw new IllegalArgumentException("cannot proxy " + method);
+            QueryMethod queryMethod = this.methods.get(method);
+            if (queryMethod != null) {
+                PreparedQuery query = persistence.prepare(collection, queryMethod.getTemplate());
+                RepositoryMethodCaller caller = queryMethod.getCaller();
+                invokers.put(method, (proxy, args) -> caller.call(query, args));
             }
+        }
 
-            return caller.call(persistence, collection, args);
-        });
+        return invokers;
+    }
+
+    private static Method findDefaultRepositoryMethod(Method method) {
+        try {
+            return DefaultDocumentRepository.class.getMethod(method.getName(), method.getParameterTypes());
+        } catch (NoSuchMethodException | SecurityException ignored) {
+            return null;
+        }
+    }
+
+    @SneakyThrows
+    private static MethodHandle defaultMethodHandle(Method method) {
+        Class<?> dClass = method.getDeclaringClass();
+        try {
+            MethodType methodType = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+            return MethodHandles.lookup().findSpecial(dClass, method.getName(), methodType, dClass);
+        } catch (IllegalAccessException ignored) {
+        }
+        // java 8 fallback
+        Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(dClass).in(dClass).unreflectSpecial(method, dClass);
+    }
+
+    /**
+     * Adapt a handle to {@code (Object[])Object} for {@link MethodHandle#invokeExact}.
+     */
+    private static MethodHandle spread(MethodHandle handle, int parameterCount) {
+        return handle.asType(handle.type().generic())
+            .asSpreader(Object[].class, parameterCount)
+            .asType(SPREAD_TYPE);
+    }
+
+    private static Object[] prepend(Object first, Object[] args) {
+        Object[] result = new Object[args.length + 1];
+        result[0] = first;
+        System.arraycopy(args, 0, result, 1, args.length);
+        return result;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class QueryMethod {
+        private final FindFilter template;
+        private final RepositoryMethodCaller caller;
+    }
+
+    @FunctionalInterface
+    private interface MethodInvoker {
+        Object invoke(Object proxy, Object[] args) throws Throwable;
+    }
+
+    /**
+     * Invoker of an interface default method. The special handle is looked up
+     * on first call, so that a method that cannot be accessed (e.g. declared
+     * by a package-private interface) fails only when called.
+     */
+    @RequiredArgsConstructor
+    private static class DefaultMethodInvoker implements MethodInvoker {
+
+        private final Method method;
+        private volatile MethodHandle handle;
+
+        @Override
+        public Object invoke(Object proxy, Object[] args) throws Throwable {
+            MethodHandle handle = this.handle;
+            if (handle == null) {
+                handle = spread(defaultMethodHandle(this.method), this.method.getParameterCount() + 1);
+                this.handle = handle;
+            }
+            return (Object) handle.invokeExact(prepend(proxy, args));
+        }
     }
 }
@@ -1,8 +1,7 @@
 package eu.okaeri.persistence.repository;
 
-import eu.okaeri.persistence.PersistenceCollection;
-import eu.okaeri.persistence.document.DocumentPersistence;
+import eu.okaeri.persistence.filter.PreparedQuery;
 
 public interface RepositoryMethodCaller {
-    Object call(DocumentPersistence persistence, PersistenceCollection collection, Object[] args);
+    Object call(PreparedQuery query, Object[] args);
 }
@@ -54,7 +54,8 @@ public @interface DocumentCollection {
     boolean autofixIndexes() default true;
 
     /**
-     * Index definitions for this collection.
+     * Index definitions for this collection, both single-field and compound
+     * (see {@link DocumentIndex#paths()}).
      *
      * @return array of index definitions (default: empty)
      */
@@ -1,11 +1,15 @@
 package eu.okaeri.persistence.repository.annotation;
 
+import eu.okaeri.persistence.document.index.IndexType;
+
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 
 /**
- * Defines an index on a document field.
+ * Defines an index on a document field, or a compound index on multiple fields.
  * Backends create native indexes where supported (MongoDB, PostgreSQL) or emulate them (Redis, Flat Files).
+ * <p>
+ * Exactly one of {@link #path()} and {@link #paths()} must be specified.
  */
 @Retention(RetentionPolicy.RUNTIME)
 public @interface DocumentIndex {
@@ -13,7 +17,35 @@ public @interface DocumentIndex {
     /**
      * Path to the indexed field. Supports nested paths using dot notation (e.g., "profile.email").
      */
-    String path();
+    String path() default "";
+
+    /**
+     * Paths of a compound index, in index order (e.g., {"category", "level"}).
+     * Queries with equality on a prefix of the paths, optionally followed by a range
+     * on the next path, are answered by a single index seek.
+     * <p>
+     * Supported by In-Memory, Flat Files, MongoDB, PostgreSQL and MariaDB.
+     * Ignored by other backends.
+     */
+    String[] paths() default {};
+
+    /**
+     * Also index reversed string values, so that {@code endsWith} queries are
+     * answered by the index instead of a full scan (case-sensitive and ignoring case).
+     * Costs a second sorted copy of the values.
+     * <p>
+     * Used by In-Memory and Flat Files. Ignored by other backends.
+     */
+    boolean reverse() default false;
+
+    /**
+     * Index type, {@link IndexType#TRIGRAM} additionally answers substring ({@code contains}) queries.
+     * <p>
+     * Used by In-Memory and Flat Files (in-memory trigram postings) and PostgreSQL
+     * ({@code pg_trgm} GIN index, requires the extension to be available).
+     * Ignored by other backends. Not supported for compound indexes.
+     */
+    IndexType type() default IndexType.DEFAULT;
 
     /**
      * Maximum length for indexed values in emulated index tables.
@@ -0,0 +1,82 @@
+package eu.okaeri.persistence.repository.query;
+
+import eu.okaeri.configs.OkaeriConfig;
+import eu.okaeri.configs.schema.ConfigDeclaration;
+import eu.okaeri.configs.schema.FieldDeclaration;
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Field structure of an entity as seen by {@link MethodNameParser}.
+ * <p>
+ * At runtime it is backed by {@link ConfigDeclaration} (see {@link #of(Class)}),
+ * the repository annotation processor provides one built from the compiler model
+ * to parse method names at compile time.
+ */
+public interface EntitySchema {
+
+    /**
+     * Entity name used in error messages.
+     */
+    String getName();
+
+    /**
+     * Declared field names in declaration order.
+     */
+    List<String> getFieldNames();
+
+    /**
+     * Check if a field is declared.
+     */
+    default boolean hasField(@NonNull String name) {
+        return this.getFieldNames().contains(name);
+    }
+
+    /**
+     * Get the schema of a nested config field.
+     *
+     * @return schema, or null if the field is not declared or not a config
+     */
+    EntitySchema getNested(@NonNull String name);
+
+    /**
+     * Create a schema of a config class using {@link ConfigDeclaration}.
+     */
+    static EntitySchema of(@NonNull Class<?> type) {
+
+        ConfigDeclaration declaration = ConfigDeclaration.of(type);
+        List<String> fieldNames = declaration.getFields().stream()
+            .map(FieldDeclaration::getName)
+            .collect(Collectors.toList());
+
+        return new EntitySchema() {
+            @Override
+            public String getName() {
+                return type.getSimpleName();
+            }
+
+            @Override
+            public List<String> getFieldNames() {
+                return fieldNames;
+            }
+
+            @Override
+            public boolean hasField(@NonNull String name) {
+                return declaration.getField(name).isPresent();
+            }
+
+            @Override
+            public EntitySchema getNested(@NonNull String name) {
+                Optional<FieldDeclaration> field = declaration.getField(name);
+                if (!field.isPresent()) {
+                    return null;
+                }
+                Class<?> fieldType = field.get().getType().getType();
+                return OkaeriConfig.class.isAssignableFrom(fieldType) ? EntitySchema.of(fieldType) : null;
+            }
+        };
+    }
+}
@@ -1,9 +1,5 @@
 package eu.okaeri.persistence.repository.query;
 
-import eu.okaeri.configs.OkaeriConfig;
-import eu.okaeri.configs.schema.ConfigDeclaration;
-import eu.okaeri.configs.schema.FieldDeclaration;
-import eu.okaeri.configs.schema.GenericsDeclaration;
 import eu.okaeri.persistence.document.Document;
 import eu.okaeri.persistence.filter.condition.LogicalOperator;
 import lombok.AccessLevel;
@@ -11,9 +7,7 @@ import lombok.NoArgsConstructor;
 import lombok.NonNull;
 
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.util.*;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -65,7 +59,26 @@ public final class MethodNameParser {
      * @throws MethodParseException if method cannot be parsed or is invalid
      */
     public static ParsedMethod parse(@NonNull Method method, @NonNull Class<? extends Document> entityType) {
-        String methodName = method.getName();
+        ParsedMethod parsed = parse(method.getName(), method.getParameterCount(), EntitySchema.of(entityType), method);
+        validate(parsed);
+        return parsed;
+    }
+
+    /**
+     * Parse a repository method name without its reflective signature.
+     * Return types are not validated, {@link ParsedMethod#getMethod()} is null.
+     *
+     * @param methodName     the method name to parse
+     * @param parameterCount number of method parameters
+     * @param schema         the entity schema for field validation
+     * @return parsed method structure
+     * @throws MethodParseException if method cannot be parsed or is invalid
+     */
+    public static ParsedMethod parse(@NonNull String methodName, int parameterCount, @NonNull EntitySchema schema) {
+        return parse(methodName, parameterCount, schema, null);
+    }
+
+    private static ParsedMethod parse(String methodName, int parameterCount, EntitySchema schema, Method method) {
 
         // Step 1: Extract operation type and prefix
         MethodOperation operation = extractOperation(methodName);
@@ -120,18 +133,18 @@ public final class MethodNameParser {
 
             // Parse conditions if not empty
             if (!conditionsPart.isEmpty()) {
-                queryParts = parseConditions(conditionsPart, method.getParameterCount(), entityType);
+                queryParts = parseConditions(conditionsPart, parameterCount, schema);
             }
 
             // Parse ordering
             if (!orderByPart.isEmpty()) {
-                orderParts = parseOrderBy(orderByPart, entityType);
+                orderParts = parseOrderBy(orderByPart, schema);
             }
         } else if (hasOrderByDirectly || queryAll) {
             // Query all or direct OrderBy without conditions
             if (remaining.startsWith(ORDER_BY_KEYWORD)) {
                 String orderByPart = remaining.substring(ORDER_BY_KEYWORD.length());
-                orderParts = parseOrderBy(orderByPart, entityType);
+                orderParts = parseOrderBy(orderByPart, schema);
             } else if (!remaining.isEmpty() && queryAll) {
                 throw new MethodParseException("Invalid method name after 'All': " + methodName);
             }
@@ -150,8 +163,14 @@ public final class MethodNameParser {
 
         ParsedMethod parsed = builder.build();
 
-        // Step 6: Validate against method signature
-        validate(parsed, entityType);
+        // Step 6: Validate parameter count
+        int expectedParams = parsed.getQueryParts().size();
+        if (parameterCount != expectedParams) {
+            throw new MethodParseException(
+                "Parameter count mismatch: method " + methodName +
+                    " has " + parameterCount + " parameters but query requires " + expectedParams
+            );
+        }
 
         return parsed;
     }
@@ -214,7 +233,7 @@ public final class MethodNameParser {
      * Converts $ to dot notation for nested fields.
      * Validates and resolves field paths against entity type.
      */
-    private static List<QueryPart> parseConditions(String conditionsPart, int parameterCount, Class<?> entityType) {
+    private static List<QueryPart> parseConditions(String conditionsPart, int parameterCount, EntitySchema schema) {
         if (conditionsPart.isEmpty()) {
             throw new MethodParseException("Empty condition part after 'By'");
         }
@@ -234,9 +253,9 @@ public final class MethodNameParser {
             // remaining string as one field. This way, compound field names like
             // "authorId" or "brandName" (which contain "Or"/"And" as substrings followed
             // by uppercase) are not mis-tokenized into two fragments.
-            FieldSplit split = findNextField(remaining, entityType);
+            FieldSplit split = findNextField(remaining, schema);
 
-            String fieldPath = resolveFieldPath(split.rawFieldName, entityType);
+            String fieldPath = resolveFieldPath(split.rawFieldName, schema);
 
             // Use pending operator from previous iteration (null for first field)
             parts.add(new QueryPart(fieldPath, paramIndex++, pendingOperator));
@@ -283,7 +302,7 @@ public final class MethodNameParser {
      * the subsequent resolveFieldPath() call will then surface a descriptive
      * "Unknown field" error if that whole-string field also doesn't exist.
      */
-    private static FieldSplit findNextField(String remaining, Class<?> entityType) {
+    private static FieldSplit findNextField(String remaining, EntitySchema schema) {
         int searchPos = 0;
         while (searchPos < remaining.length()) {
             int andPos = findKeywordAtWordBoundary(remaining, AND_KEYWORD, searchPos);
@@ -306,7 +325,7 @@ public final class MethodNameParser {
             }
 
             String candidateField = remaining.substring(0, candidatePos);
-            if (!candidateField.isEmpty() && fieldResolves(candidateField, entityType)) {
+            if (!candidateField.isEmpty() && fieldResolves(candidateField, schema)) {
                 return new FieldSplit(candidateField, candidateOp, candidatePos + keywordLength);
             }
 
@@ -320,9 +339,9 @@ public final class MethodNameParser {
     }
 
     /** Non-throwing variant of resolveFieldPath used for split-point validation. */
-    private static boolean fieldResolves(String rawFieldName, Class<?> entityType) {
+    private static boolean fieldResolves(String rawFieldName, EntitySchema schema) {
         try {
-            resolveFieldPath(rawFieldName, entityType);
+            resolveFieldPath(rawFieldName, schema);
             return true;
         } catch (MethodParseException e) {
             return false;
@@ -418,31 +437,29 @@ public final class MethodNameParser {
 
     /**
      * Resolve a field path from the method name part, with automatic subfield discovery.
-     * Uses ConfigDeclaration API for field introspection.
+     * Uses the entity schema for field introspection.
      * Tries:
      * 1. Exact match after basic normalization (e.g., "name" → "name", "profile$age" → "profile.age")
      * 2. Subfield discovery without $ (e.g., "profileAge" → "profile.age" if profile.age exists)
      *
      * @param rawFieldName the raw field name from the method (e.g., "ProfileAge", "Meta$Name")
-     * @param entityType   the entity class to validate against
+     * @param schema       the entity schema to validate against
      * @return the resolved field path (e.g., "profile.age", "meta.name")
      * @throws MethodParseException if field cannot be resolved
      */
-    private static String resolveFieldPath(String rawFieldName, Class<?> entityType) {
-        ConfigDeclaration declaration = ConfigDeclaration.of(entityType);
-
+    private static String resolveFieldPath(String rawFieldName, EntitySchema schema) {
         // First, try basic normalization (handles $ separator)
         String normalized = normalizeFieldName(rawFieldName);
 
         // Check if the normalized path exists
-        if (fieldPathExists(normalized, declaration)) {
+        if (fieldPathExists(normalized, schema)) {
             return normalized;
         }
 
         // If normalized path doesn't exist and doesn't contain dots,
         // try to discover nested fields by matching camelCase parts to entity structure
         if (!normalized.contains(".")) {
-            String discovered = discoverNestedFieldPath(normalized, declaration);
+            String discovered = discoverNestedFieldPath(normalized, schema);
             if (discovered != null) {
                 return discovered;
             }
@@ -450,31 +467,29 @@ public final class MethodNameParser {
 
         // Field not found - throw descriptive error
         throw new MethodParseException(
-            "Unknown field '" + normalized + "' in entity " + entityType.getSimpleName() +
-                ". Available fields: " + getAvailableFields(declaration)
+            "Unknown field '" + normalized + "' in entity " + schema.getName() +
+                ". Available fields: " + getAvailableFields(schema)
         );
     }
 
     /**
-     * Check if a field path exists in the entity type using ConfigDeclaration.
+     * Check if a field path exists in the entity schema.
      * Supports nested paths like "profile.age".
      */
-    private static boolean fieldPathExists(String path, ConfigDeclaration declaration) {
+    private static boolean fieldPathExists(String path, EntitySchema schema) {
         String[] parts = path.split("\\.");
 
-        ConfigDeclaration current = declaration;
+        EntitySchema current = schema;
         for (String part : parts) {
-            Optional<FieldDeclaration> field = current.getField(part);
-            if (!field.isPresent()) {
+            if (!current.hasField(part)) {
                 return false;
             }
 
-            // For nested paths, get declaration of the field type
+            // For nested paths, get schema of the field type
             if (parts.length > 1) {
-                GenericsDeclaration fieldType = field.get().getType();
-                Class<?> rawType = fieldType.getType();
-                if (OkaeriConfig.class.isAssignableFrom(rawType)) {
-                    current = ConfigDeclaration.of(rawType);
+                EntitySchema nested = current.getNested(part);
+                if (nested != null) {
+                    current = nested;
                 } else {
                     // Non-config type can't have subfields
                     return parts[parts.length - 1].equals(part);
@@ -488,10 +503,9 @@ public final class MethodNameParser {
      * Try to discover a nested field path from a camelCase field name.
      * E.g., "profileAge" → "profile.age" if entity has field "profile" with subfield "age".
      */
-    private static String discoverNestedFieldPath(String camelCaseName, ConfigDeclaration declaration) {
+    private static String discoverNestedFieldPath(String camelCaseName, EntitySchema schema) {
         // Try to match the beginning of camelCaseName to a field
-        for (FieldDeclaration field : declaration.getFields()) {
-            String fieldName = field.getName();
+        for (String fieldName : schema.getFieldNames()) {
 
             // Check if camelCaseName starts with this field name
             if ((camelCaseName.length() > fieldName.length()) &&
@@ -504,18 +518,17 @@ public final class MethodNameParser {
                 String subFieldName = Character.toLowerCase(remaining.charAt(0)) + remaining.substring(1);
 
                 // Check if this field type has the subfield
-                Class<?> fieldType = field.getType().getType();
-                if (OkaeriConfig.class.isAssignableFrom(fieldType)) {
-                    ConfigDeclaration subDeclaration = ConfigDeclaration.of(fieldType);
+                EntitySchema subSchema = schema.getNested(fieldName);
+                if (subSchema != null) {
 
                     // Recursively try to resolve the remaining path
-                    String subPath = discoverNestedFieldPath(subFieldName, subDeclaration);
+                    String subPath = discoverNestedFieldPath(subFieldName, subSchema);
                     if (subPath != null) {
                         return fieldName + "." + subPath;
                     }
 
                     // Or check if it's a direct field
-                    if (subDeclaration.getField(subFieldName).isPresent()) {
+                    if (subSchema.hasField(subFieldName)) {
                         return fieldName + "." + subFieldName;
                     }
                 }
@@ -528,22 +541,19 @@ public final class MethodNameParser {
     /**
      * Get a comma-separated list of available fields for error messages.
      */
-    private static String getAvailableFields(ConfigDeclaration declaration) {
+    private static String getAvailableFields(EntitySchema schema) {
         StringBuilder sb = new StringBuilder();
 
-        for (FieldDeclaration field : declaration.getFields()) {
+        for (String fieldName : schema.getFieldNames()) {
             if (sb.length() > 0) {
                 sb.append(", ");
             }
-            sb.append(field.getName());
+            sb.append(fieldName);
 
             // If field is an OkaeriConfig, show its subfields too
-            Class<?> fieldType = field.getType().getType();
-            if (OkaeriConfig.class.isAssignableFrom(fieldType)) {
-                ConfigDeclaration subDeclaration = ConfigDeclaration.of(fieldType);
-                List<String> subFields = subDeclaration.getFields().stream()
-                    .map(FieldDeclaration::getName)
-                    .collect(Collectors.toList());
+            EntitySchema subSchema = schema.getNested(fieldName);
+            if (subSchema != null) {
+                List<String> subFields = subSchema.getFieldNames();
                 if (!subFields.isEmpty()) {
                     sb.append(" (").append(String.join(", ", subFields)).append(")");
                 }
@@ -558,7 +568,7 @@ public final class MethodNameParser {
      * Supports multiple orderings: OrderByLevelDescNameAsc
      * Validates and resolves field paths against entity type.
      */
-    private static List<OrderPart> parseOrderBy(String orderByPart, Class<?> entityType) {
+    private static List<OrderPart> parseOrderBy(String orderByPart, EntitySchema schema) {
         if (orderByPart.isEmpty()) {
             throw new MethodParseException("Empty OrderBy clause");
         }
@@ -573,9 +583,9 @@ public final class MethodNameParser {
             // boundary in order and keep the first whose left side resolves to a
             // real entity field. This lets fields like "descriptor" or "ascending"
             // pass through without being mis-tokenized.
-            OrderSplit split = findNextOrderField(remaining, entityType);
+            OrderSplit split = findNextOrderField(remaining, schema);
 
-            String fieldPath = resolveFieldPath(split.rawFieldName, entityType);
+            String fieldPath = resolveFieldPath(split.rawFieldName, schema);
             parts.add(new OrderPart(fieldPath, split.isAscending));
 
             pos = pos + split.consumedLength;
@@ -611,7 +621,7 @@ public final class MethodNameParser {
      * field. Falls back to "consume everything, default ascending" if no
      * boundary yields a hit.
      */
-    private static OrderSplit findNextOrderField(String remaining, Class<?> entityType) {
+    private static OrderSplit findNextOrderField(String remaining, EntitySchema schema) {
         int searchPos = 0;
         while (searchPos < remaining.length()) {
             int ascPos = findOrderKeyword(remaining, ASC_KEYWORD, searchPos);
@@ -634,7 +644,7 @@ public final class MethodNameParser {
             }
 
             String candidateField = remaining.substring(0, candidatePos);
-            if (!candidateField.isEmpty() && fieldResolves(candidateField, entityType)) {
+            if (!candidateField.isEmpty() && fieldResolves(candidateField, schema)) {
                 return new OrderSplit(candidateField, isAscending, candidatePos + keywordLength);
             }
 
@@ -670,20 +680,10 @@ public final class MethodNameParser {
     }
 
     /**
-     * Validate parsed method against its signature and entity type.
+     * Validate parsed method against its signature.
      */
-    private static void validate(ParsedMethod parsed, Class<? extends Document> entityType) {
+    private static void validate(ParsedMethod parsed) {
         Method method = parsed.getMethod();
-        Parameter[] parameters = method.getParameters();
-
-        // Validate parameter count
-        int expectedParams = parsed.getQueryParts().size();
-        if (parameters.length != expectedParams) {
-            throw new MethodParseException(
-                "Parameter count mismatch: method " + method.getName() +
-                    " has " + parameters.length + " parameters but query requires " + expectedParams
-            );
-        }
 
         // Validate return type for stream prefix
         if (parsed.isRequiresStreamReturn() && (method.getReturnType() != Stream.class)) {
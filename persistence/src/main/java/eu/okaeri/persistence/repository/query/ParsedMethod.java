@@ -19,8 +19,8 @@ import java.util.List;
 public class ParsedMethod {
     /**
      * Original method being parsed.
+     * Null if parsed from the method name only.
      */
-    @NonNull
     private final Method method;
 
     /**
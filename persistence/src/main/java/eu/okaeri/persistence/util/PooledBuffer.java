@@ -0,0 +1,72 @@
+package eu.okaeri.persistence.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Output buffer reusing a per-thread byte array for serialized documents.
+ * <p>
+ * The array grows to fit the largest document written by the thread and is kept
+ * for the next {@link #acquire()} after {@link #close()}, unless it grew above
+ * {@code okaeri.persistence.pooledBuffer.maxRetainedBytes} (default: 1048576).
+ * Two arrays are kept per thread for nested acquires (e.g. compressing
+ * a serialized document). Only the arrays are kept, so no classes of this library
+ * are retained by long-lived threads.
+ */
+public final class PooledBuffer extends ByteArrayOutputStream implements AutoCloseable {
+
+    private static final int INITIAL_CAPACITY = 8192;
+    private static final int MAX_RETAINED_BYTES =
+        Integer.parseInt(System.getProperty("okaeri.persistence.pooledBuffer.maxRetainedBytes", "1048576"));
+
+    private static final int POOLED_ARRAYS = 2;
+    private static final ThreadLocal<byte[][]> POOL = ThreadLocal.withInitial(() -> new byte[POOLED_ARRAYS][]);
+
+    private boolean closed;
+
+    private PooledBuffer(byte[] buf) {
+        super(0);
+        this.buf = buf;
+    }
+
+    /**
+     * Take a pooled array of the current thread, or a new one if all are in use.
+     * Must be closed to return it.
+     */
+    public static PooledBuffer acquire() {
+        byte[][] pool = POOL.get();
+        for (int i = 0; i < pool.length; i++) {
+            byte[] buf = pool[i];
+            if (buf != null) {
+                pool[i] = null;
+                return new PooledBuffer(buf);
+            }
+        }
+        return new PooledBuffer(new byte[INITIAL_CAPACITY]);
+    }
+
+    /**
+     * View of the written bytes, valid until the buffer is closed.
+     */
+    public synchronized ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(this.buf, 0, this.count);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.buf.length > MAX_RETAINED_BYTES) {
+            return;
+        }
+        byte[][] pool = POOL.get();
+        for (int i = 0; i < pool.length; i++) {
+            if (pool[i] == null) {
+                pool[i] = this.buf;
+                return;
+            }
+        }
+    }
+}
@@ -89,4 +89,10 @@ public class PersistenceCollectionTest {
         assertThat(collection.getValue()).isEqualTo("manual_path");
         assertThat(collection.getKeyLength()).isEqualTo(100);
     }
+
+    @Test
+    public void test_document_type_detection() {
+        assertThat(PersistenceCollection.of(UserRepositoryWithUuid.class).getDocumentType()).isEqualTo(UserDocument.class);
+        assertThat(PersistenceCollection.of("manual_path").getDocumentType()).isNull();
+    }
 }
@@ -0,0 +1,79 @@
+package eu.okaeri.persistence.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryDocumentCodecTest {
+
+    @Test
+    void round_trip_keeps_values() throws IOException {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("name", "zażółć");
+        document.put("level", -42);
+        document.put("minInt", Integer.MIN_VALUE);
+        document.put("exp", Long.MAX_VALUE);
+        document.put("ratio", 0.25d);
+        document.put("weight", 1.5f);
+        document.put("big", new BigInteger("123456789012345678901234567890"));
+        document.put("price", new BigDecimal("10.50"));
+        document.put("active", true);
+        document.put("deleted", null);
+        document.put("tags", Arrays.asList("a", "b"));
+        document.put("profile", Collections.singletonMap("city", "Warsaw"));
+
+        assertThat(decode(encode(document))).isEqualTo(document);
+    }
+
+    @Test
+    void repeated_keys_are_written_once() throws IOException {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("identifier", i);
+            item.put("description", null);
+            items.add(item);
+        }
+        Map<String, Object> document = Collections.singletonMap("items", items);
+
+        byte[] encoded = encode(document);
+        String text = new String(encoded, StandardCharsets.ISO_8859_1);
+        assertThat(text.split("description", -1)).hasSize(2);
+        assertThat(decode(encoded)).isEqualTo(document);
+    }
+
+    @Test
+    void first_byte_tells_binary_from_text() throws IOException {
+        assertThat(BinaryDocumentCodec.isBinary(encode(Collections.emptyMap())[0])).isTrue();
+        assertThat(BinaryDocumentCodec.isBinary('{')).isFalse();
+        assertThat(BinaryDocumentCodec.isBinary(-1)).isFalse();
+    }
+
+    @Test
+    void truncated_input_throws() throws IOException {
+        byte[] encoded = encode(Collections.singletonMap("scores", Arrays.asList(1, 2, 3)));
+        for (int length = 0; length < encoded.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThatThrownBy(() -> decode(truncated)).isInstanceOf(IOException.class);
+        }
+    }
+
+    private static byte[] encode(Map<String, ?> document) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BinaryDocumentCodec.encode(document, output);
+        return output.toByteArray();
+    }
+
+    private static Map<String, Object> decode(byte[] data) throws IOException {
+        return BinaryDocumentCodec.decode(new ByteArrayInputStream(data));
+    }
+}
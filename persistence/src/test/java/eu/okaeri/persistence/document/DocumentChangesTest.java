@@ -0,0 +1,67 @@
+package eu.okaeri.persistence.document;
+
+import eu.okaeri.persistence.filter.operation.SetOperation;
+import eu.okaeri.persistence.filter.operation.UnsetOperation;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentChangesTest {
+
+    private static Map<String, Object> player() {
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("age", 25);
+        profile.put("city", "Warsaw");
+
+        Map<String, Object> player = new LinkedHashMap<>();
+        player.put("name", "alice");
+        player.put("level", 10);
+        player.put("lastLogin", "2025-01-01T00:00:00Z");
+        player.put("banned", false);
+        player.put("tags", Arrays.asList("vip"));
+        player.put("profile", profile);
+        return player;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void changed_fields_become_operations() {
+        Map<String, Object> current = player();
+        current.put("lastLogin", "2025-01-02T00:00:00Z");
+        ((Map<String, Object>) current.get("profile")).put("age", 26);
+        current.remove("banned");
+
+        assertThat(DocumentChanges.diff(player(), current)).containsExactly(
+            new SetOperation("lastLogin", "2025-01-02T00:00:00Z"),
+            new SetOperation("profile.age", 26),
+            new UnsetOperation("banned"));
+    }
+
+    @Test
+    void unchanged_document_has_no_operations() {
+        assertThat(DocumentChanges.diff(player(), player())).isEmpty();
+    }
+
+    @Test
+    void changed_list_requires_full_write() {
+        Map<String, Object> current = player();
+        current.put("tags", Arrays.asList("vip", "admin"));
+
+        assertThat(DocumentChanges.diff(player(), current)).isNull();
+    }
+
+    @Test
+    void mostly_changed_document_requires_full_write() {
+        Map<String, Object> current = player();
+        current.put("name", "bob");
+        current.put("level", 11);
+        current.put("lastLogin", null);
+        current.put("banned", true);
+
+        assertThat(DocumentChanges.diff(player(), current)).isNull();
+    }
+}
@@ -0,0 +1,61 @@
+package eu.okaeri.persistence.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocumentCompressionTest {
+
+    @Test
+    void round_trip_restores_document() throws IOException {
+        StringBuilder json = new StringBuilder("{\"inventory\":[");
+        for (int i = 0; i < 1000; i++) {
+            json.append("{\"item\":\"stone\",\"count\":").append(i % 64).append("},");
+        }
+        json.append("{}]}");
+        byte[] plain = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DocumentCompression.compress(plain, 0, plain.length, Deflater.BEST_SPEED, output);
+        byte[] compressed = output.toByteArray();
+
+        assertThat(compressed.length).isLessThan(plain.length / 4);
+        assertThat(DocumentCompression.isCompressed(compressed[0])).isTrue();
+        assertThat(BinaryDocumentCodec.isBinary(compressed[0])).isFalse();
+
+        Inflater inflater = new Inflater();
+        try (InputStream input = DocumentCompression.decompress(new ByteArrayInputStream(compressed), inflater)) {
+            ByteArrayOutputStream restored = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = input.read(chunk)) > 0) {
+                restored.write(chunk, 0, read);
+            }
+            assertThat(restored.toByteArray()).isEqualTo(plain);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Test
+    void unknown_codec_throws() {
+        byte[] data = {(byte) DocumentCompression.MAGIC, 42};
+        Inflater inflater = new Inflater();
+        try {
+            assertThatThrownBy(() -> DocumentCompression.decompress(new ByteArrayInputStream(data), inflater))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("42");
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package eu.okaeri.persistence.document;
+
+import eu.okaeri.persistence.document.DocumentMapping.FieldMapping;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentMappingTest {
+
+    static class Player extends Document {
+        private String name = "alice";
+        private int level = 10;
+        private List<String> tags;
+    }
+
+    @Test
+    void mapping_is_cached_per_class() {
+        assertThat(DocumentMapping.of(Player.class)).isSameAs(DocumentMapping.of(Player.class));
+    }
+
+    @Test
+    void fields_are_read() {
+        Player player = new Player();
+        DocumentMapping mapping = DocumentMapping.of(Player.class);
+
+        FieldMapping name = mapping.getField("name");
+        FieldMapping level = mapping.getField("level");
+        assertThat(name.getType()).isEqualTo(String.class);
+        assertThat(level.getType()).isEqualTo(int.class);
+        assertThat(name.get(player)).isEqualTo("alice");
+        assertThat(level.get(player)).isEqualTo(10);
+
+        player.name = "bob";
+        assertThat(name.get(player)).isEqualTo("bob");
+    }
+
+    @Test
+    void undeclared_field_is_null() {
+        assertThat(DocumentMapping.of(Player.class).getField("missing")).isNull();
+        assertThat(DocumentMapping.of(Player.class).getField("tags").getType()).isEqualTo(List.class);
+    }
+}
@@ -0,0 +1,124 @@
+package eu.okaeri.persistence.document;
+
+import eu.okaeri.configs.json.simple.JsonSimpleConfigurer;
+import eu.okaeri.persistence.Persistence;
+import eu.okaeri.persistence.PersistenceCollection;
+import eu.okaeri.persistence.PersistencePath;
+import eu.okaeri.persistence.UpdatablePersistence;
+import eu.okaeri.persistence.filter.operation.UpdateOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentPersistenceWriteTest {
+
+    interface UpdatableBackend extends Persistence, UpdatablePersistence {
+    }
+
+    public static class Player extends Document {
+        private String name = "alice";
+        private String guild = "red";
+        private int level = 10;
+        private int coins = 5;
+    }
+
+    private final PersistenceCollection collection = PersistenceCollection.of("players").documentType(Player.class);
+    private final PersistencePath path = PersistencePath.of("alice");
+    private UpdatableBackend backend;
+    private DocumentPersistence persistence;
+
+    @BeforeEach
+    void prepare() {
+        this.backend = mock(UpdatableBackend.class);
+        when(this.backend.getSerializer()).thenReturn(new DocumentSerializer(DocumentSerializerConfig.builder()
+            .configurer(new JsonSimpleConfigurer())
+            .changeTracking(true)
+            .build()));
+        when(this.backend.write(eq(this.collection), eq(this.path), any(Document.class))).thenReturn(true);
+        when(this.backend.isPartialUpdatePreferred()).thenReturn(true);
+        this.persistence = new DocumentPersistence(this.backend);
+    }
+
+    private Player read() {
+        Player player = (Player) this.persistence.getSerializer().createDocument(this.collection, this.path);
+        this.persistence.getSerializer().track(player);
+        return player;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void changed_fields_are_updated() {
+        when(this.backend.updateOne(eq(this.collection), eq(this.path), anyList())).thenReturn(true);
+        Player player = this.read();
+        player.coins = 6;
+
+        assertThat(this.persistence.write(this.collection, this.path, player)).isTrue();
+
+        ArgumentCaptor<List<UpdateOperation>> operations = ArgumentCaptor.forClass(List.class);
+        verify(this.backend).updateOne(eq(this.collection), eq(this.path), operations.capture());
+        assertThat(operations.getValue()).extracting(UpdateOperation::getField).containsExactly("coins");
+        verify(this.backend, never()).write(eq(this.collection), eq(this.path), any(Document.class));
+    }
+
+    @Test
+    void missing_document_is_written_in_full() {
+        when(this.backend.updateOne(eq(this.collection), eq(this.path), anyList())).thenReturn(false);
+        Player player = this.read();
+        player.coins = 6;
+
+        assertThat(this.persistence.write(this.collection, this.path, player)).isTrue();
+        verify(this.backend).write(this.collection, this.path, player);
+    }
+
+    @Test
+    void unchanged_document_is_not_written() {
+        when(this.backend.exists(this.collection, this.path)).thenReturn(true);
+
+        assertThat(this.persistence.write(this.collection, this.path, this.read())).isTrue();
+        verify(this.backend, never()).updateOne(eq(this.collection), eq(this.path), anyList());
+        verify(this.backend, never()).write(eq(this.collection), eq(this.path), any(Document.class));
+    }
+
+    @Test
+    void unchanged_document_deleted_meanwhile_is_written() {
+        when(this.backend.exists(this.collection, this.path)).thenReturn(false);
+        Player player = this.read();
+
+        assertThat(this.persistence.write(this.collection, this.path, player)).isTrue();
+        verify(this.backend).write(this.collection, this.path, player);
+    }
+
+    @Test
+    void document_is_written_in_full_if_partial_updates_do_not_pay_off() {
+        when(this.backend.isPartialUpdatePreferred()).thenReturn(false);
+        Player player = this.read();
+        player.coins = 6;
+
+        assertThat(this.persistence.write(this.collection, this.path, player)).isTrue();
+        verify(this.backend, never()).updateOne(eq(this.collection), eq(this.path), anyList());
+        verify(this.backend).write(this.collection, this.path, player);
+    }
+
+    @Test
+    void projected_document_is_not_written() {
+        Player player = this.read();
+        player.setProjected(true);
+
+        assertThatThrownBy(() -> this.persistence.write(this.collection, this.path, player))
+            .isInstanceOf(IllegalStateException.class);
+        verify(this.backend, never()).updateOne(eq(this.collection), eq(this.path), anyList());
+        verify(this.backend, never()).write(eq(this.collection), eq(this.path), any(Document.class));
+    }
+}
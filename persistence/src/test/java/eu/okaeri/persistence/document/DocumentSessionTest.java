@@ -0,0 +1,93 @@
+package eu.okaeri.persistence.document;
+
+import eu.okaeri.configs.json.simple.JsonSimpleConfigurer;
+import eu.okaeri.persistence.PersistenceCollection;
+import eu.okaeri.persistence.PersistencePath;
+import eu.okaeri.persistence.filter.DeleteFilter;
+import eu.okaeri.persistence.filter.UpdateBuilder;
+import eu.okaeri.persistence.filter.UpdateFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static eu.okaeri.persistence.filter.condition.Condition.on;
+import static eu.okaeri.persistence.filter.predicate.SimplePredicate.eq;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentSessionTest {
+
+    public static class Player extends Document {
+        private String name;
+        private int coins = 5;
+    }
+
+    private final PersistenceCollection collection = PersistenceCollection.of("players").documentType(Player.class);
+    private final PersistencePath alice = PersistencePath.of("alice");
+    private final PersistencePath bob = PersistencePath.of("bob");
+    private DocumentPersistence persistence;
+
+    @BeforeEach
+    void prepare() {
+        // Serialized storage so that edits of held documents reach the backend only by writes
+        this.persistence = new DocumentPersistence(new InMemoryPersistence(DocumentSerializerConfig.builder()
+            .configurer(new JsonSimpleConfigurer())
+            .build(), true));
+        this.persistence.registerCollection(this.collection);
+        this.persistence.write(this.collection, this.alice, this.player("alice"));
+        this.persistence.write(this.collection, this.bob, this.player("bob"));
+    }
+
+    private Player player(String name) {
+        Player player = (Player) this.persistence.getSerializer().createDocument(this.collection, PersistencePath.of(name));
+        player.name = name;
+        return player;
+    }
+
+    private Player read(PersistencePath path) {
+        return this.persistence.read(this.collection, path).map(document -> document.into(Player.class)).orElse(null);
+    }
+
+    @Test
+    void edits_are_written_on_close() {
+        try (DocumentSession session = this.persistence.session()) {
+            this.read(this.alice).coins = 50;
+            assertThat(this.read(this.alice).coins).isEqualTo(50);
+        }
+        assertThat(this.read(this.alice).coins).isEqualTo(50);
+    }
+
+    @Test
+    void edits_are_written_before_filtered_update() {
+        try (DocumentSession session = this.persistence.session()) {
+            this.read(this.alice).coins = 50;
+            this.persistence.update(this.collection, UpdateFilter.builder()
+                .where(on("name", eq("bob")))
+                .increment("coins", 1)
+                .build());
+        }
+        assertThat(this.read(this.alice).coins).isEqualTo(50);
+        assertThat(this.read(this.bob).coins).isEqualTo(6);
+    }
+
+    @Test
+    void edits_are_written_before_filtered_delete() {
+        try (DocumentSession session = this.persistence.session()) {
+            this.read(this.alice).coins = 50;
+            this.persistence.delete(this.collection, DeleteFilter.builder()
+                .where(on("name", eq("bob")))
+                .build());
+        }
+        assertThat(this.read(this.alice).coins).isEqualTo(50);
+        assertThat(this.read(this.bob)).isNull();
+    }
+
+    @Test
+    void edits_are_written_before_update_by_path() {
+        try (DocumentSession session = this.persistence.session()) {
+            this.read(this.alice).coins = 50;
+            this.persistence.updateOne(this.collection, this.alice, new UpdateBuilder()
+                .increment("coins", 1)
+                .getOperations());
+        }
+        assertThat(this.read(this.alice).coins).isEqualTo(51);
+    }
+}
@@ -0,0 +1,87 @@
+package eu.okaeri.persistence.document.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DocIdBitmapTest {
+
+    @Test
+    public void test_add_remove_contains() {
+        DocIdBitmap bitmap = DocIdBitmap.of(3, 1, 70000, 2);
+        assertThat(bitmap.toArray()).containsExactly(1, 2, 3, 70000);
+        assertThat(bitmap.contains(70000)).isTrue();
+        assertThat(bitmap.add(2)).isFalse();
+        assertThat(bitmap.remove(70000)).isTrue();
+        assertThat(bitmap.remove(70000)).isFalse();
+        assertThat(bitmap.cardinality()).isEqualTo(3);
+    }
+
+    @Test
+    public void test_set_operations_match_tree_set() {
+        Random random = new Random(42);
+        for (int round = 0; round < 30; round++) {
+            // alternate between sparse (array) and dense (bitmap) containers
+            int range = ((round % 2) == 0) ? 300_000 : 20_000;
+            TreeSet<Integer> left = new TreeSet<>();
+            TreeSet<Integer> right = new TreeSet<>();
+            DocIdBitmap leftBitmap = new DocIdBitmap();
+            DocIdBitmap rightBitmap = new DocIdBitmap();
+            for (int i = 0; i < 10_000; i++) {
+                int a = random.nextInt(range);
+                int b = random.nextInt(range);
+                left.add(a);
+                leftBitmap.add(a);
+                right.add(b);
+                rightBitmap.add(b);
+            }
+
+            DocIdBitmap and = leftBitmap.copy();
+            and.and(rightBitmap);
+            TreeSet<Integer> expectedAnd = new TreeSet<>(left);
+            expectedAnd.retainAll(right);
+            assertThat(and.toArray()).containsExactly(expectedAnd.stream().mapToInt(Integer::intValue).toArray());
+
+            DocIdBitmap or = leftBitmap.copy();
+            or.or(rightBitmap);
+            TreeSet<Integer> expectedOr = new TreeSet<>(left);
+            expectedOr.addAll(right);
+            assertThat(or.toArray()).containsExactly(expectedOr.stream().mapToInt(Integer::intValue).toArray());
+
+            DocIdBitmap andNot = leftBitmap.copy();
+            andNot.andNot(rightBitmap);
+            TreeSet<Integer> expectedAndNot = new TreeSet<>(left);
+            expectedAndNot.removeAll(right);
+            assertThat(andNot.toArray()).containsExactly(expectedAndNot.stream().mapToInt(Integer::intValue).toArray());
+
+            // copies are independent
+            assertThat(leftBitmap.cardinality()).isEqualTo(left.size());
+        }
+    }
+
+    @Test
+    public void test_dictionary_shared_between_indexes() {
+        DocIdDictionary dictionary = new DocIdDictionary();
+        PropertyIndex level = new PropertyIndex(IndexProperty.of("level").fieldType(int.class), dictionary);
+        PropertyIndex name = new PropertyIndex(IndexProperty.of("name").fieldType(String.class), dictionary);
+        level.put("a", 1);
+        name.put("a", "Alice");
+        level.put("b", 2);
+        name.put("b", null);
+
+        assertThat(level.getValue("a")).isEqualTo(1);
+        assertThat(name.findNull()).containsExactly("b");
+
+        level.remove("a");
+        name.remove("a");
+        dictionary.release("a");
+        level.put("c", 1);
+
+        assertThat(dictionary.size()).isEqualTo(2);
+        assertThat(level.findEquals(1)).containsExactly("c");
+        assertThat(name.findNotNull()).isEmpty();
+    }
+}
@@ -0,0 +1,159 @@
+package eu.okaeri.persistence.document.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DocIdDictionaryTest {
+
+    @Test
+    public void test_released_id_is_reused() {
+        DocIdDictionary dictionary = new DocIdDictionary();
+        int id = dictionary.idOf("a");
+        dictionary.release("a");
+        assertThat(dictionary.idOf("b")).isEqualTo(id);
+    }
+
+    @Test
+    public void test_released_id_is_not_reused_during_read() {
+        DocIdDictionary dictionary = new DocIdDictionary();
+        int id = dictionary.idOf("a");
+
+        int reassigned = dictionary.read(() -> {
+            dictionary.release("a");
+            return dictionary.idOf("b");
+        });
+        assertThat(reassigned).isNotEqualTo(id);
+        assertThat(dictionary.docIdOf(id)).isNull();
+
+        // reused once the read is finished
+        assertThat(dictionary.idOf("c")).isEqualTo(id);
+    }
+
+    @Test
+    public void test_cleared_ids_are_not_reused_during_read() {
+        DocIdDictionary dictionary = new DocIdDictionary();
+        int id = dictionary.idOf("a");
+
+        int reassigned = dictionary.read(() -> {
+            dictionary.clear();
+            return dictionary.idOf("b");
+        });
+        assertThat(reassigned).isNotEqualTo(id);
+        assertThat(dictionary.docIdOf(id)).isNull();
+        assertThat(dictionary.find("a")).isEqualTo(-1);
+
+        // reused once the read is finished
+        assertThat(dictionary.idOf("c")).isEqualTo(id);
+    }
+
+    @Test
+    public void test_queries_never_see_ids_reused_after_clear() throws Exception {
+        DocIdDictionary dictionary = new DocIdDictionary();
+        PropertyIndex kind = new PropertyIndex(IndexProperty.of("kind").fieldType(String.class), dictionary);
+        for (int i = 0; i < 1_000; i++) {
+            kind.put("old" + i, "old");
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < 2; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        // all documents are deleted and the IDs assigned to new documents meanwhile
+                        Set<String> old = kind.findEquals("old");
+                        assertThat(old).allMatch(docId -> docId.startsWith("old"));
+                    }
+                } catch (Throwable throwable) {
+                    failure.set(throwable);
+                }
+            }));
+        }
+
+        // writer deletes all documents, as InMemoryPersistence#deleteAll does, and adds new ones
+        threads.add(new Thread(() -> {
+            for (int i = 0; !stop.get(); i++) {
+                kind.clear();
+                dictionary.clear();
+                for (int j = 0; j < 1_000; j++) {
+                    kind.put(((i % 2) == 0) ? ("new" + j) : ("old" + j), ((i % 2) == 0) ? "new" : "old");
+                }
+            }
+        }));
+
+        threads.forEach(Thread::start);
+        Thread.sleep(500);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(failure.get()).isNull();
+    }
+
+    @Test
+    public void test_queries_never_see_reused_ids() throws Exception {
+        DocIdDictionary dictionary = new DocIdDictionary();
+        PropertyIndex kind = new PropertyIndex(IndexProperty.of("kind").fieldType(String.class), dictionary);
+        PropertyIndex level = new PropertyIndex(IndexProperty.of("level").fieldType(long.class), dictionary);
+        for (int i = 0; i < 1_000; i++) {
+            kind.put("old" + i, "old");
+            level.put("old" + i, (long) i);
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < 2; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        // IDs of removed old documents are reassigned to new documents meanwhile
+                        Set<String> old = kind.findEquals("old");
+                        assertThat(old).allMatch(docId -> docId.startsWith("old"));
+                        Set<String> low = level.findLessThan(500);
+                        assertThat(low).allMatch(docId -> docId.startsWith("old"));
+                    }
+                } catch (Throwable throwable) {
+                    failure.set(throwable);
+                }
+            }));
+        }
+
+        // writer replaces old documents with new ones, level of new documents is never below 1000
+        threads.add(new Thread(() -> {
+            for (int i = 0; !stop.get(); i++) {
+                String removed = "old" + (i % 1_000);
+                kind.remove(removed);
+                level.remove(removed);
+                dictionary.release(removed);
+                kind.put("new" + i, "new");
+                level.put("new" + i, 1_000L + i);
+                kind.remove("new" + i);
+                level.remove("new" + i);
+                dictionary.release("new" + i);
+                kind.put(removed, "old");
+                level.put(removed, (long) (i % 1_000));
+            }
+        }));
+
+        threads.forEach(Thread::start);
+        Thread.sleep(500);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(failure.get()).isNull();
+    }
+}
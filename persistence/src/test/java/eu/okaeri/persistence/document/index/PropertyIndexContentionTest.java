@@ -0,0 +1,89 @@
+package eu.okaeri.persistence.document.index;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Range query throughput with a single concurrent writer.
+ * <p>
+ * Reader throughput should scale with the number of reader threads,
+ * as readers never wait for the writer (or each other).
+ */
+@Disabled("Benchmark, no reason to run it unless changing index concurrency")
+public class PropertyIndexContentionTest {
+
+    private static final int DOCUMENTS = 100_000;
+    private static final int STABLE_DOCUMENTS = DOCUMENTS / 2;
+    private static final int RANGE_WIDTH = 100;
+    private static final long DURATION_MS = 2_000;
+
+    @Test
+    public void test_range_query_throughput_under_writes() throws Exception {
+        int maxReaders = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        for (int readers = 1; readers <= maxReaders; readers *= 2) {
+            this.run(readers);
+        }
+    }
+
+    private void run(int readers) throws Exception {
+        PropertyIndex index = new PropertyIndex(IndexProperty.of("level").fieldType(long.class));
+        for (int i = 0; i < DOCUMENTS; i++) {
+            index.put("doc" + i, (long) i);
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < readers; i++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (!stop.get()) {
+                        long min = random.nextInt(STABLE_DOCUMENTS - RANGE_WIDTH);
+                        Set<String> result = index.findBetween(min, min + RANGE_WIDTH - 1);
+                        // stable documents are never touched by the writer
+                        assertThat(result).hasSize(RANGE_WIDTH);
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable throwable) {
+                    failure.set(throwable);
+                }
+            }));
+        }
+
+        // writer updates only the upper half of the documents
+        threads.add(new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (!stop.get()) {
+                int doc = STABLE_DOCUMENTS + random.nextInt(DOCUMENTS - STABLE_DOCUMENTS);
+                index.put("doc" + doc, (long) (STABLE_DOCUMENTS + random.nextInt(DOCUMENTS - STABLE_DOCUMENTS)));
+                writes.incrementAndGet();
+            }
+        }));
+
+        threads.forEach(Thread::start);
+        Thread.sleep(DURATION_MS);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(failure.get()).isNull();
+        double seconds = DURATION_MS / 1000.0;
+        System.out.printf("  readers=%d: reads=%.0f/s (%.0f/s per reader), writes=%.0f/s%n",
+            readers, reads.get() / seconds, reads.get() / seconds / readers, writes.get() / seconds);
+    }
+}
@@ -0,0 +1,223 @@
+package eu.okaeri.persistence.document.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static eu.okaeri.persistence.filter.condition.Condition.on;
+import static eu.okaeri.persistence.filter.predicate.SimplePredicate.arrayContains;
+import static eu.okaeri.persistence.filter.predicate.SimplePredicate.arrayContainsAny;
+import static eu.okaeri.persistence.filter.predicate.SimplePredicate.eq;
+import static eu.okaeri.persistence.filter.predicate.SimplePredicate.in;
+import static eu.okaeri.persistence.filter.predicate.SimplePredicate.ne;
+import static eu.okaeri.persistence.filter.predicate.SimplePredicate.notIn;
+import static eu.okaeri.persistence.filter.predicate.SimplePredicate.startsWith;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PropertyIndexTest {
+
+    @Test
+    public void test_integral_range() {
+        PropertyIndex index = new PropertyIndex(IndexProperty.of("level").fieldType(int.class));
+        for (int i = 0; i < 1000; i++) {
+            index.put("doc" + i, i % 100);
+        }
+
+        assertThat(index.findGreaterThan(97)).hasSize(20);
+        assertThat(index.findGreaterThanOrEqual(97)).hasSize(30);
+        assertThat(index.findLessThan(2)).hasSize(20);
+        assertThat(index.findLessThanOrEqual(2L)).hasSize(30);
+        assertThat(index.findBetween(10, 19)).hasSize(100);
+        // fractional bounds against integral keys
+        assertThat(index.findGreaterThan(97.5)).hasSize(20);
+        assertThat(index.findLessThan(1.5)).hasSize(20);
+        assertThat(index.findBetween(new BigDecimal("9.1"), 10.9)).hasSize(10);
+        // out of range bounds
+        assertThat(index.findGreaterThan(Double.NEGATIVE_INFINITY)).hasSize(1000);
+        assertThat(index.findGreaterThan(new BigDecimal("1e30"))).isEmpty();
+        assertThat(index.findLessThan(Long.MIN_VALUE)).isEmpty();
+        assertThat(index.findBetween(20, 10)).isEmpty();
+    }
+
+    @Test
+    public void test_integral_update_and_remove() {
+        PropertyIndex index = new PropertyIndex(IndexProperty.of("level").fieldType(long.class));
+        index.put("a", 5L);
+        index.put("b", 5L);
+        index.put("c", 10L);
+
+        index.put("a", 20L);
+        assertThat(index.findLessThanOrEqual(5)).containsExactly("b");
+        assertThat(index.findGreaterThan(10)).containsExactly("a");
+
+        index.remove("b");
+        index.put("c", null);
+        assertThat(index.findLessThan(20)).isEmpty();
+        assertThat(index.findNull()).containsExactly("c");
+    }
+
+    @Test
+    public void test_unchanged_value_is_skipped() {
+        PropertyIndex index = new PropertyIndex(IndexProperty.of("name").fieldType(String.class));
+        assertThat(index.put("a", "alice")).isTrue();
+        assertThat(index.put("a", "alice")).isFalse();
+        assertThat(index.put("a", null)).isTrue();
+        assertThat(index.put("a", null)).isFalse();
+        assertThat(index.put("a", "bob")).isTrue();
+        assertThat(index.findEquals("bob")).containsExactly("a");
+        assertThat(index.findNull()).isEmpty();
+    }
+
+    @Test
+    public void test_floating_range() {
+        PropertyIndex index = new PropertyIndex(IndexProperty.of("rating").fieldType(double.class));
+        index.put("neg", -1.5);
+        index.put("zero", -0.0);
+        index.put("small", 0.1);
+        index.put("float", 0.1f);
+        index.put("int", 3);
+        index.put("nan", Double.NaN);
+
+        assertThat(index.findGreaterThanOrEqual(0)).containsExactlyInAnyOrder("zero", "small", "float", "int");
+        assertThat(index.findGreaterThan(0.1)).containsExactly("int");
+        assertThat(index.findLessThan(0)).containsExactly("neg");
+        assertThat(index.findBetween(-2, 0.1)).containsExactlyInAnyOrder("neg", "zero", "small", "float");
+        assertThat(index.findGreaterThan(Double.NaN)).isEmpty();
+    }
+
+    @Test
+    public void test_fallback_to_decimal() {
+        PropertyIndex index = new PropertyIndex(IndexProperty.of("level").fieldType(int.class));
+        index.put("a", 1);
+        index.put("b", "2");
+        index.put("c", new BigDecimal("2.5"));
+
+        assertThat(index.findGreaterThan(1)).containsExactlyInAnyOrder("b", "c");
+        assertThat(index.findLessThan(2.5)).containsExactlyInAnyOrder("a", "b");
+
+        PropertyIndex untyped = new PropertyIndex();
+        untyped.put("a", "10");
+        untyped.put("b", "abc");
+        untyped.put("c", 11.5);
+        assertThat(untyped.findGreaterThanOrEqual(10)).containsExactlyInAnyOrder("a", "c");
+    }
+
+    @Test
+    public void test_ordered_walk() {
+        PropertyIndex index = new PropertyIndex(IndexProperty.of("level").fieldType(int.class));
+        index.put("a", 3);
+        index.put("b", 1);
+        index.put("c", 3);
+        index.put("d", null);
+        index.put("e", 2);
+
+        List<Integer> ascending = new ArrayList<>();
+        assertThat(index.forEachOrdered(false, ids -> ascending.add(ids.cardinality()))).isTrue();
+        assertThat(ascending).containsExactly(1, 1, 2, 1); // 1, 2, 3 (a, c), null
+
+        List<String> descending = new ArrayList<>();
+        index.forEachOrdered(true, ids -> {
+            descending.addAll(index.getDictionary().toDocIds(ids));
+            return descending.size() < 3;
+        });
+        assertThat(descending).containsExactlyInAnyOrder("d", "a", "c");
+
+        // non-numeric values cannot be ordered by the range index
+        index.put("f", "abc");
+        assertThat(index.forEachOrdered(false, ids -> true)).isFalse();
+    }
+
+    @Test
+    public void test_prefix_and_suffix() {
+        PropertyIndex index = new PropertyIndex(IndexProperty.of("name").fieldType(String.class).reverse(true));
+        index.put("a", "Steve");
+        index.put("b", "steven");
+        index.put("c", "Stella");
+        index.put("d", "eve");
+        index.put("e", null);
+
+        assertThat(index.findStartsWith("Ste", false)).containsExactlyInAnyOrder("a", "c");
+        assertThat(index.findStartsWith("ste", true)).containsExactlyInAnyOrder("a", "b", "c");
+        assertThat(index.findStartsWith("", false)).containsExactlyInAnyOrder("a", "b", "c", "d");
+        assertThat(index.findEndsWith("eve", false)).containsExactlyInAnyOrder("a", "d");
+        assertThat(index.findEndsWith("EVE", true)).containsExactlyInAnyOrder("a", "d");
+        assertThat(index.tryQuery(on("name", startsWith("stev").ignoreCase()))).hasValueSatisfying(ids ->
+            assertThat(ids).containsExactlyInAnyOrder("a", "b"));
+
+        // string predicates also match the text form of other values
+        index.put("f", 123);
+        assertThat(index.tryQuery(on("name", startsWith("12")))).isEmpty();
+    }
+
+    @Test
+    public void test_array_elements() {
+        PropertyIndex index = new PropertyIndex(IndexProperty.of("tags").fieldType(List.class));
+        index.put("a", Arrays.asList("admin", "vip"));
+        index.put("b", Arrays.asList("vip", "vip"));
+        index.put("c", Arrays.asList());
+        index.put("d", null);
+
+        assertThat(index.tryQuery(on("tags", arrayContains("vip")))).hasValueSatisfying(ids ->
+            assertThat(ids).containsExactlyInAnyOrder("a", "b"));
+        assertThat(index.tryQuery(on("tags", arrayContainsAny("admin", "guest")))).hasValueSatisfying(ids ->
+            assertThat(ids).containsExactlyInAnyOrder("a"));
+
+        index.put("a", Arrays.asList("guest"));
+        assertThat(index.tryQuery(on("tags", arrayContains("admin")))).hasValueSatisfying(ids ->
+            assertThat(ids).isEmpty());
+        index.remove("b");
+        assertThat(index.tryQuery(on("tags", arrayContains("vip")))).hasValueSatisfying(ids ->
+            assertThat(ids).isEmpty());
+
+        // numbers match strings by value, so mixed elements are not served from the index
+        index.put("e", Arrays.asList(1, 2));
+        assertThat(index.tryQuery(on("tags", arrayContains("guest")))).isEmpty();
+        assertThat(index.tryQuery(on("tags", arrayContains(2)))).isEmpty();
+        index.remove("a");
+        assertThat(index.tryQuery(on("tags", arrayContains(2.0)))).hasValueSatisfying(ids ->
+            assertThat(ids).containsExactlyInAnyOrder("e"));
+    }
+
+    private enum Rank {
+        ADMIN, PLAYER
+    }
+
+    @Test
+    public void test_equality_operands_compared_by_value() {
+        PropertyIndex levels = new PropertyIndex(IndexProperty.of("level").fieldType(long.class));
+        levels.put("a", 5L);
+        levels.put("b", 7L);
+        levels.put("c", null);
+
+        // integer operands over long values
+        assertThat(levels.tryQuery(on("level", eq(5)))).hasValueSatisfying(ids ->
+            assertThat(ids).containsExactly("a"));
+        assertThat(levels.tryQuery(on("level", ne(5)))).hasValueSatisfying(ids ->
+            assertThat(ids).containsExactlyInAnyOrder("b", "c"));
+        assertThat(levels.tryQuery(on("level", notIn(5, 7.0)))).hasValueSatisfying(ids ->
+            assertThat(ids).containsExactly("c"));
+
+        PropertyIndex ranks = new PropertyIndex(IndexProperty.of("rank").fieldType(String.class));
+        ranks.put("a", "ADMIN");
+        ranks.put("b", "player");
+        ranks.put("c", "PLAYER");
+
+        // enum builders compare by name, enum values in sets match their name ignoring case
+        assertThat(ranks.tryQuery(on("rank", ne(Rank.PLAYER)))).hasValueSatisfying(ids ->
+            assertThat(ids).containsExactlyInAnyOrder("a", "b"));
+        assertThat(ranks.tryQuery(on("rank", in(Rank.PLAYER)))).hasValueSatisfying(ids ->
+            assertThat(ids).containsExactlyInAnyOrder("b", "c"));
+        assertThat(ranks.tryQuery(on("rank", notIn(Rank.PLAYER, UUID.randomUUID())))).hasValueSatisfying(ids ->
+            assertThat(ids).containsExactly("a"));
+
+        // numbers match strings by value, so mixed values are not served from the index
+        ranks.put("d", 5);
+        assertThat(ranks.tryQuery(on("rank", ne(Rank.PLAYER)))).isEmpty();
+        assertThat(ranks.tryQuery(on("rank", ne("5")))).isEmpty();
+        assertThat(ranks.tryQuery(on("rank", eq(5)))).isEmpty();
+    }
+}
@@ -0,0 +1,178 @@
+package eu.okaeri.persistence.filter;
+
+import eu.okaeri.persistence.document.index.CompoundPropertyIndex;
+import eu.okaeri.persistence.document.index.DocIdDictionary;
+import eu.okaeri.persistence.document.index.IndexProperty;
+import eu.okaeri.persistence.document.index.IndexType;
+import eu.okaeri.persistence.document.index.PropertyIndex;
+import eu.okaeri.persistence.filter.IndexQueryOptimizer.IndexResult;
+import eu.okaeri.persistence.filter.IndexQueryOptimizer.PlanAction;
+import eu.okaeri.persistence.filter.condition.Condition;
+import eu.okaeri.persistence.filter.predicate.equality.EqPredicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static eu.okaeri.persistence.filter.condition.Condition.and;
+import static eu.okaeri.persistence.filter.condition.Condition.on;
+import static eu.okaeri.persistence.filter.predicate.SimplePredicate.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexQueryOptimizerTest {
+
+    private final IndexQueryOptimizer optimizer = new IndexQueryOptimizer();
+    private Map<String, PropertyIndex> indexes;
+    private CompoundPropertyIndex guildLevel;
+
+    @BeforeEach
+    public void prepare() {
+        DocIdDictionary dictionary = new DocIdDictionary();
+        PropertyIndex active = new PropertyIndex(IndexProperty.of("active").fieldType(boolean.class), dictionary);
+        PropertyIndex level = new PropertyIndex(IndexProperty.of("level").fieldType(int.class), dictionary);
+        this.guildLevel = new CompoundPropertyIndex(IndexProperty.compound(
+            IndexProperty.of("guild").fieldType(String.class),
+            IndexProperty.of("level").fieldType(int.class)), dictionary);
+        for (int i = 0; i < 10_000; i++) {
+            active.put("doc" + i, (i % 20) != 0);
+            level.put("doc" + i, i % 1000);
+            this.guildLevel.put("doc" + i, Arrays.asList("guild" + (i % 10), i % 1000));
+        }
+        this.indexes = new HashMap<>();
+        this.indexes.put("active", active);
+        this.indexes.put("level", level);
+    }
+
+    @Test
+    public void test_estimates() {
+        PropertyIndex level = this.indexes.get("level");
+        assertThat(level.distinctCount()).isEqualTo(1000);
+        assertThat(level.estimate(on("level", eq(3)))).isEqualTo(10);
+        assertThat(level.estimate(on("level", gte(990)))).isEqualTo(100);
+        assertThat(level.estimate(on("level", gte(100), lt(200)))).isEqualTo(1000);
+        assertThat(level.estimate(on("level", startsWith("1")))).isEqualTo(-1);
+        assertThat(this.indexes.get("active").estimate(on("active", notNull()))).isEqualTo(10_000);
+    }
+
+    @Test
+    public void test_most_selective_probed_first() {
+        IndexResult result = this.optimizer.optimize(and(on("active", eq(true)), on("level", eq(3))), this.indexes);
+
+        assertThat(result.getPlan()).extracting(IndexQueryOptimizer.PlanStep::getAction)
+            .containsExactly(PlanAction.PROBE, PlanAction.VERIFY);
+        assertThat(result.getPlan().get(0).getCondition().getPath().getValue()).isEqualTo("level");
+        // active is verified against 10 candidates instead of materializing 9500 ids
+        assertThat(result.getDocIds()).hasSize(10);
+        assertThat(result.getRemainingCondition().getPath().getValue()).isEqualTo("active");
+    }
+
+    @Test
+    public void test_comparable_predicates_are_intersected() {
+        IndexResult result = this.optimizer.optimize(and(on("level", gte(500)), on("active", eq(false))), this.indexes);
+
+        assertThat(result.getPlan()).extracting(IndexQueryOptimizer.PlanStep::getAction)
+            .containsExactly(PlanAction.PROBE, PlanAction.PROBE);
+        assertThat(result.getDocIds()).hasSize(250);
+        assertThat(result.hasRemainingCondition()).isFalse();
+    }
+
+    @Test
+    public void test_compound_index_single_seek() {
+        IndexResult result = this.optimizer.optimize(and(on("guild", eq("guild3")), on("level", gte(100), lt(200)), on("active", eq(true))),
+            this.indexes, Collections.singletonList(this.guildLevel));
+
+        assertThat(result.getPlan()).extracting(IndexQueryOptimizer.PlanStep::getAction)
+            .containsExactly(PlanAction.SEEK, PlanAction.VERIFY);
+        // guild3 has levels 3, 13, ..., 993 - ten of them in [100, 200), each on ten documents
+        assertThat(result.getDocIds()).hasSize(100);
+        assertThat(result.getRemainingCondition().getPath().getValue()).isEqualTo("active");
+    }
+
+    @Test
+    public void test_compound_index_exclusive_range() {
+        IndexResult result = this.optimizer.optimize(and(on("guild", eq("guild3")), on("level", gt(3), lte(23))),
+            this.indexes, Collections.singletonList(this.guildLevel));
+
+        // levels 13 and 23
+        assertThat(result.getDocIds()).hasSize(20);
+        assertThat(result.hasRemainingCondition()).isFalse();
+    }
+
+    private enum Rank {
+        ADMIN, PLAYER
+    }
+
+    @Test
+    public void test_compound_index_typed_operands() {
+        CompoundPropertyIndex rankOwner = new CompoundPropertyIndex(IndexProperty.compound(
+            IndexProperty.of("rank").fieldType(Rank.class),
+            IndexProperty.of("owner").fieldType(UUID.class)), new DocIdDictionary());
+        UUID owner = UUID.randomUUID();
+        // components are indexed simplified
+        rankOwner.put("a", Arrays.asList("ADMIN", owner.toString()));
+        rankOwner.put("b", Arrays.asList("player", owner.toString()));
+
+        Map<String, Condition> conditions = new HashMap<>();
+        conditions.put("rank", on("rank", eq("ADMIN")));
+        conditions.put("owner", on("owner", new EqPredicate(owner)));
+        assertThat(rankOwner.trySeek(conditions)).hasValueSatisfying(seek ->
+            assertThat(seek.getIds().toArray()).hasSize(1));
+
+        // enum operands also match other cases of the name, so they are not answered by a seek
+        conditions.put("rank", on("rank", new EqPredicate(Rank.PLAYER)));
+        assertThat(rankOwner.trySeek(conditions)).isEmpty();
+    }
+
+    @Test
+    public void test_compound_index_mixed_component_types() {
+        CompoundPropertyIndex guildLevel = new CompoundPropertyIndex(IndexProperty.compound(
+            IndexProperty.of("guild").fieldType(String.class),
+            IndexProperty.of("level").fieldType(Object.class)), new DocIdDictionary());
+        guildLevel.put("a", Arrays.asList("guild1", 5));
+        guildLevel.put("b", Arrays.asList("guild1", "5"));
+        guildLevel.put("c", Arrays.asList("guild2", 5));
+
+        // 5 and "5" are equal for the evaluator, so the level is left to verification
+        IndexResult equal = this.optimizer.optimize(and(on("guild", eq("guild1")), on("level", eq("5"))),
+            Collections.emptyMap(), Collections.singletonList(guildLevel));
+        assertThat(equal.getDocIds()).containsExactlyInAnyOrder("a", "b");
+        assertThat(equal.getRemainingCondition().getPath().getValue()).isEqualTo("level");
+
+        // numeric ranges compare string lengths
+        IndexResult range = this.optimizer.optimize(and(on("guild", eq("guild1")), on("level", lt(3))),
+            Collections.emptyMap(), Collections.singletonList(guildLevel));
+        assertThat(range.getDocIds()).containsExactlyInAnyOrder("a", "b");
+        assertThat(range.getRemainingCondition().getPath().getValue()).isEqualTo("level");
+
+        // answered by the seek once the component holds numbers only
+        guildLevel.remove("b");
+        IndexResult uniform = this.optimizer.optimize(and(on("guild", eq("guild1")), on("level", eq(5))),
+            Collections.emptyMap(), Collections.singletonList(guildLevel));
+        assertThat(uniform.getDocIds()).containsExactly("a");
+        assertThat(uniform.hasRemainingCondition()).isFalse();
+    }
+
+    @Test
+    public void test_trigram_candidates_are_verified() {
+        PropertyIndex name = new PropertyIndex(IndexProperty.of("name").fieldType(String.class).type(IndexType.TRIGRAM));
+        name.put("a", "Red Dragon Scale");
+        name.put("b", "dragonfly wing");
+        name.put("c", "drago gone"); // all trigrams of "dragon", but not the substring
+        name.put("d", "iron sword");
+        Map<String, PropertyIndex> indexes = Collections.singletonMap("name", name);
+
+        IndexResult result = this.optimizer.optimize(on("name", contains("dragon").ignoreCase()), indexes);
+        assertThat(result.getPlan()).extracting(IndexQueryOptimizer.PlanStep::getAction)
+            .containsExactly(PlanAction.CANDIDATES);
+        assertThat(result.getDocIds()).containsExactlyInAnyOrder("a", "b", "c");
+        assertThat(result.getRemainingCondition().getPath().getValue()).isEqualTo("name");
+        assertThat(name.estimate(on("name", contains("dragon")))).isEqualTo(3);
+
+        // substrings shorter than a trigram are not indexed
+        assertThat(this.optimizer.optimize(on("name", contains("dr")), indexes).requiresFullScan()).isTrue();
+    }
+}
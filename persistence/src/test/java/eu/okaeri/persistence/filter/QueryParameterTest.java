@@ -0,0 +1,44 @@
+package eu.okaeri.persistence.filter;
+
+import eu.okaeri.persistence.filter.condition.Condition;
+import eu.okaeri.persistence.filter.predicate.equality.EqPredicate;
+import eu.okaeri.persistence.filter.renderer.DefaultFilterRenderer;
+import eu.okaeri.persistence.filter.renderer.DefaultStringRenderer;
+import org.junit.jupiter.api.Test;
+
+import static eu.okaeri.persistence.filter.condition.Condition.and;
+import static eu.okaeri.persistence.filter.condition.Condition.or;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryParameterTest {
+
+    private final DefaultFilterRenderer renderer = new DefaultFilterRenderer(new DefaultStringRenderer());
+
+    @Test
+    void primitive_types_are_boxed() {
+        assertThat(QueryParameter.of(0, int.class).getType()).isEqualTo(Integer.class);
+        assertThat(QueryParameter.of(0, boolean.class).isScalar()).isTrue();
+        assertThat(QueryParameter.of(0, Object.class).isScalar()).isFalse();
+    }
+
+    @Test
+    void bound_template_renders_like_plain_condition() {
+        Condition template = or(
+            and("name", new EqPredicate(QueryParameter.of(1, String.class))),
+            and("level", new EqPredicate(QueryParameter.of(0, int.class))));
+
+        Condition bound = QueryParameter.bind(template, new Object[]{10, "alice"});
+
+        assertThat(this.renderer.renderCondition(bound)).isEqualTo(this.renderer.renderCondition(or(
+            and("name", new EqPredicate("alice")),
+            and("level", new EqPredicate(10)))));
+    }
+
+    @Test
+    void invalid_arguments_are_rejected() {
+        QueryParameter parameter = QueryParameter.of(0, String.class);
+        assertThatThrownBy(() -> parameter.bind(new Object[]{null})).isInstanceOf(NullPointerException.class);
+        assertThatThrownBy(() -> parameter.bind(new Object[]{42})).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,62 @@
+package eu.okaeri.persistence.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PooledBufferTest {
+
+    @Test
+    void array_is_reused_after_close() {
+        PooledBuffer first = PooledBuffer.acquire();
+        first.write(1);
+        byte[] array = first.toByteBuffer().array();
+        first.close();
+
+        try (PooledBuffer second = PooledBuffer.acquire()) {
+            assertThat(second.toByteBuffer().array()).isSameAs(array);
+            assertThat(second.size()).isZero();
+        }
+    }
+
+    @Test
+    void nested_acquire_gets_new_array() {
+        try (PooledBuffer outer = PooledBuffer.acquire()) {
+            try (PooledBuffer inner = PooledBuffer.acquire()) {
+                assertThat(inner.toByteBuffer().array()).isNotSameAs(outer.toByteBuffer().array());
+            }
+        }
+    }
+
+    @Test
+    void double_close_returns_array_once() {
+        PooledBuffer buffer = PooledBuffer.acquire();
+        byte[] array = buffer.toByteBuffer().array();
+        buffer.close();
+
+        try (PooledBuffer next = PooledBuffer.acquire()) {
+            buffer.close(); // stale close must not return the array in use
+            try (PooledBuffer nested = PooledBuffer.acquire()) {
+                assertThat(next.toByteBuffer().array()).isSameAs(array);
+                assertThat(nested.toByteBuffer().array()).isNotSameAs(array);
+            }
+        }
+    }
+
+    @Test
+    void byte_buffer_views_written_bytes() {
+        try (PooledBuffer buffer = PooledBuffer.acquire()) {
+            byte[] bytes = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+            buffer.write(bytes, 0, bytes.length);
+
+            ByteBuffer view = buffer.toByteBuffer();
+            assertThat(view.remaining()).isEqualTo(bytes.length);
+            byte[] read = new byte[view.remaining()];
+            view.get(read);
+            assertThat(read).isEqualTo(bytes);
+        }
+    }
+}